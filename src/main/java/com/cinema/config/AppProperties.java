@@ -11,19 +11,126 @@ public class AppProperties {
     
     private SeatHold seatHold = new SeatHold();
     private Booking booking = new Booking();
+    private SeatCounters seatCounters = new SeatCounters();
+    private SeatStream seatStream = new SeatStream();
+    private SeatCommandQueue seatCommandQueue = new SeatCommandQueue();
+    private WaitingRoom waitingRoom = new WaitingRoom();
+    private PartitionLease partitionLease = new PartitionLease();
+    private Outbox outbox = new Outbox();
+    private Idempotency idempotency = new Idempotency();
     
     @Data
     public static class SeatHold {
         private int expiryMinutes = 10;
+        // Số bản ghi seat_holds hết hạn được xử lý trong mỗi lượt đọc của job giải phóng ghế
+        private int sweepBatchSize = 500;
+        // Số lệnh giải phóng ghế gửi trong một bulk write
+        private int releaseBatchSize = 250;
+        private TimingWheel timingWheel = new TimingWheel();
+
+        @Data
+        public static class TimingWheel {
+            private boolean enabled = true;
+            private long tickMs = 1000;
+            private int ticksPerWheel = 512;
+        }
     }
     
+    @Data
+    public static class SeatCounters {
+        // Job sửa bộ đếm chỉ kiểm tra các suất chiếu bắt đầu sau (hiện tại - lookbackHours)
+        private int repairLookbackHours = 24;
+    }
+
+    @Data
+    public static class SeatStream {
+        // Số delta gần nhất giữ lại cho mỗi suất chiếu để client kết nối lại có thể tiếp tục từ version cũ
+        private int replayBufferSize = 512;
+        // Số sự kiện tối đa chờ gửi cho một client; client chậm hơn sẽ bị ngắt và phải kết nối lại
+        private int clientQueueSize = 128;
+        private long heartbeatSeconds = 20;
+        private long timeoutMinutes = 30;
+    }
+
+    @Data
+    public static class SeatCommandQueue {
+        // Bật để gộp các lệnh ghế của cùng một suất chiếu thành từng lô ghi tuần tự (dùng khi mở bán suất chiếu nóng)
+        private boolean enabled = false;
+        private int maxBatchSize = 64;
+        private int maxQueueSize = 2000;
+        private long commandTimeoutMs = 10000;
+    }
+
+    @Data
+    public static class WaitingRoom {
+        // Số người được cho vào mỗi giây cho mỗi suất chiếu nóng (trên mỗi node giữ hàng đợi)
+        private int admissionsPerSecond = 20;
+        private long admitIntervalMs = 1000;
+        private int tokenTtlMinutes = 15;
+        // Khóa HMAC ký admission token; các node phải dùng chung một khóa. Để trống thì sinh ngẫu nhiên khi khởi động
+        private String tokenSecret;
+        // Người chờ không hỏi trạng thái trong khoảng này bị coi là đã rời hàng
+        private long abandonAfterSeconds = 60;
+        private int maxWaitHours = 6;
+        private int maxQueueSize = 200_000;
+        private long hotFlagCacheSeconds = 5;
+        // Số ghế tối đa một lượt được cho vào có thể giữ/đặt (cộng dồn mọi yêu cầu); 0 = không giới hạn
+        private int maxSeatsPerAdmission = 20;
+    }
+
+    @Data
+    public static class PartitionLease {
+        // Lease không được gia hạn trong khoảng này thì node khác được nhận phân vùng
+        private long ttlSeconds = 30;
+        private long renewIntervalMs = 10000;
+    }
+
+    @Data
+    public static class Outbox {
+        private long pollIntervalMs = 500;
+        private int batchSize = 100;
+        // Node giữ lô quá thời gian này (dừng đột ngột) thì sự kiện được giao lại
+        private long claimTimeoutSeconds = 60;
+        private int maxAttempts = 10;
+        private long initialBackoffMs = 1000;
+        private long maxBackoffMs = 300_000;
+    }
+
+    @Data
+    public static class Idempotency {
+        // Thời gian giữ phản hồi cho một Idempotency-Key (client retry trong khoảng này nhận lại phản hồi cũ)
+        private long ttlHours = 24;
+        // Request đầu tiên chưa xong sau thời gian này (node dừng đột ngột) thì request gửi lại được chạy lại
+        private long lockTimeoutSeconds = 60;
+        private int cacheSize = 10_000;
+    }
+
     @Data
     public static class Booking {
         private ConfirmationCode confirmationCode = new ConfirmationCode();
+        // Cache kết quả tra cứu booking theo mã xác nhận (trang tra cứu của khách tăng vọt trước giờ chiếu)
+        private int detailsCacheSeconds = 10;
+        private int detailsCacheSize = 10_000;
+        // Tên phim/rạp/phòng cache khi chụp thông tin hiển thị cho booking mới; tên admin vừa sửa được dùng sau tối đa chừng này giây
+        private int displayNameCacheSeconds = 60;
+        private Reconciliation reconciliation = new Reconciliation();
         
         @Data
         public static class ConfirmationCode {
             private String prefix = "CINESTAR";
+            // Khóa hoán vị mã (chống đoán mã liên tiếp); các node phải dùng chung một khóa để mã không trùng
+            private String secret = "cinema-confirmation-code";
+        }
+
+        @Data
+        public static class Reconciliation {
+            private long intervalMs = 60_000;
+            // Booking PENDING quá seat-hold.expiry-minutes + graceMinutes được xem là bỏ dở
+            private int graceMinutes = 5;
+            // Booking có ghế vừa được gia hạn giữ vẫn được chờ, nhưng không quá thời gian này kể từ lúc tạo
+            private int maxPendingMinutes = 60;
+            private int batchSize = 500;
+            private int maxBatchesPerRun = 20;
         }
     }
 }
\ No newline at end of file
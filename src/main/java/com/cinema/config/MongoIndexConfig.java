@@ -25,6 +25,11 @@ public class MongoIndexConfig {
         createRoomIndexes();
         createMovieIndexes();
         createShowtimeIndexes();
+        createSeatHoldIndexes();
+        createWaitingRoomIndexes();
+        createPartitionLeaseIndexes();
+        createOutboxIndexes();
+        createIdempotencyIndexes();
         createBookingIndexes();
         createPaymentIndexes();
         createConcessionIndexes();
@@ -80,9 +85,15 @@ public class MongoIndexConfig {
                 .on("bookingTime", Sort.Direction.ASC)
                 .named("idx_booking_paymentStatus_bookingTime"));
         
+        // _id phân định các booking cùng createdAt cho phân trang theo con trỏ
         ops.ensureIndex(new Index()
                 .on("createdAt", Sort.Direction.DESC)
-                .named("idx_booking_createdAt"));
+                .on("_id", Sort.Direction.DESC)
+                .named("idx_booking_createdAt_id"));
+        // idx_booking_createdAt (chỉ createdAt) là tiền tố của index trên, giữ lại chỉ tốn chi phí ghi
+        if (ops.getIndexInfo().stream().anyMatch(index -> "idx_booking_createdAt".equals(index.getName()))) {
+            ops.dropIndex("idx_booking_createdAt");
+        }
     }
 
     private void createRoomIndexes() {
@@ -143,6 +154,84 @@ public class MongoIndexConfig {
                 .named("idx_showtime_hasHoldingSeats"));
     }
 
+    private void createSeatHoldIndexes() {
+        IndexOperations ops = mongoTemplate.indexOps(SeatHold.class);
+
+        ops.ensureIndex(new Index()
+                .on("expiresAt", Sort.Direction.ASC)
+                .named("idx_seatHold_expiresAt"));
+
+        ops.ensureIndex(new Index()
+                .on("partition", Sort.Direction.ASC)
+                .on("expiresAt", Sort.Direction.ASC)
+                .named("idx_seatHold_partition_expiresAt"));
+    }
+
+    private void createWaitingRoomIndexes() {
+        IndexOperations ops = mongoTemplate.indexOps(WaitingRoomTicket.class);
+
+        ops.ensureIndex(new Index()
+                .on("showtimeId", Sort.Direction.ASC)
+                .on("position", Sort.Direction.ASC)
+                .named("idx_waitingRoom_showtime_position"));
+
+        ops.ensureIndex(new Index()
+                .on("expiresAt", Sort.Direction.ASC)
+                .expire(0)
+                .named("idx_waitingRoom_expiresAt_ttl"));
+    }
+
+    private void createPartitionLeaseIndexes() {
+        IndexOperations ops = mongoTemplate.indexOps(PartitionLease.class);
+
+        ops.ensureIndex(new Index()
+                .on("group", Sort.Direction.ASC)
+                .on("owner", Sort.Direction.ASC)
+                .named("idx_partitionLease_group_owner"));
+
+        // Dọn các lease/nhịp tim của node đã dừng sau một giờ
+        ops.ensureIndex(new Index()
+                .on("expiresAt", Sort.Direction.ASC)
+                .expire(3600)
+                .named("idx_partitionLease_expiresAt_ttl"));
+    }
+
+    private void createOutboxIndexes() {
+        IndexOperations ops = mongoTemplate.indexOps(OutboxEvent.class);
+
+        ops.ensureIndex(new Index()
+                .on("status", Sort.Direction.ASC)
+                .on("availableAt", Sort.Direction.ASC)
+                .named("idx_outbox_status_availableAt"));
+
+        // Sự kiện chưa giao lâu nhất (độ trễ outbox)
+        ops.ensureIndex(new Index()
+                .on("status", Sort.Direction.ASC)
+                .on("createdAt", Sort.Direction.ASC)
+                .named("idx_outbox_status_createdAt"));
+
+        ops.ensureIndex(new Index()
+                .on("claimToken", Sort.Direction.ASC)
+                .sparse()
+                .named("idx_outbox_claimToken"));
+
+        // Dọn sự kiện đã giao sau 7 ngày
+        ops.ensureIndex(new Index()
+                .on("dispatchedAt", Sort.Direction.ASC)
+                .expire(7 * 24 * 3600)
+                .named("idx_outbox_dispatchedAt_ttl"));
+    }
+
+    private void createIdempotencyIndexes() {
+        IndexOperations ops = mongoTemplate.indexOps(IdempotencyRecord.class);
+
+        // Xóa bản ghi ngay khi tới expiresAt
+        ops.ensureIndex(new Index()
+                .on("expiresAt", Sort.Direction.ASC)
+                .expire(0)
+                .named("idx_idempotency_expiresAt_ttl"));
+    }
+
     private void createConcessionIndexes() {
         IndexOperations ops = mongoTemplate.indexOps(Concession.class);
         
@@ -0,0 +1,42 @@
+package com.cinema.config;
+
+import com.cinema.model.ReferenceId;
+import com.cinema.util.MongoIds;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveCallback;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ghi các trường {@link ReferenceId} cùng kiểu BSON với _id được tham chiếu trước khi lưu entity.
+ * Khi đọc, Spring Data tự chuyển ObjectId về String nên entity vẫn dùng id dạng chuỗi.
+ */
+@Component
+public class ReferenceIdSaveCallback implements BeforeSaveCallback<Object> {
+
+    private final Map<Class<?>, List<String>> referenceFields = new ConcurrentHashMap<>();
+
+    @Override
+    public Object onBeforeSave(Object entity, Document document, String collection) {
+        for (String field : referenceFields.computeIfAbsent(entity.getClass(), ReferenceIdSaveCallback::findReferenceFields)) {
+            Object value = document.get(field);
+            if (value instanceof String id) {
+                document.put(field, MongoIds.toDocumentId(id));
+            } else if (value instanceof List<?> ids) {
+                document.put(field, ids.stream().map(id -> id instanceof String s ? MongoIds.toDocumentId(s) : id).toList());
+            }
+        }
+        return entity;
+    }
+
+    private static List<String> findReferenceFields(Class<?> type) {
+        List<String> fields = new ArrayList<>();
+        ReflectionUtils.doWithFields(type, field -> fields.add(field.getName()), field -> field.isAnnotationPresent(ReferenceId.class));
+        return fields;
+    }
+}
@@ -6,9 +6,12 @@ import com.cinema.dto.request.LookupBookingRequest;
 import com.cinema.dto.response.BookingAggregatedDetailsDto;
 import com.cinema.dto.response.BookingDetailsDto;
 import com.cinema.service.BookingService;
+import com.cinema.service.IdempotencyService;
+import com.cinema.service.WaitingRoomService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -19,26 +22,61 @@ import com.cinema.enums.*;
 @RequiredArgsConstructor
 public class BookingController {
 
+    // Số lần tạo booking khi mã xác nhận bị trùng (chỉ xảy ra với mã từ slot chung của ConfirmationCodeGenerator)
+    private static final int MAX_CREATE_ATTEMPTS = 3;
+
     private final BookingService bookingService;
+    private final WaitingRoomService waitingRoomService;
+    private final IdempotencyService idempotencyService;
 
     /**
-     * POST /api/bookings - Tạo booking mới
+     * Tạo booking; nếu mã xác nhận trùng thì transaction đã rollback (kể cả ghế đã giữ) nên tạo lại với mã mới.
      */
-    @PostMapping
-    public ResponseEntity<ApiResponse<BookingDetailsDto>> createBooking(@Valid @RequestBody CreateBookingRequest request) {
-        try {
-            log.info("Request tạo booking mới cho showtimeId: {}", request.getShowtimeId());
-            BookingDetailsDto bookingDetails = bookingService.createBooking(request);
-            return ResponseEntity.status(HttpStatus.CREATED).body(ApiResponse.success("Booking đã được tạo thành công.", bookingDetails));
-        } catch (IllegalArgumentException | IllegalStateException e) {
-            log.warn("Lỗi khi tạo booking: {}", e.getMessage());
-            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
-        } catch (Exception e) {
-            log.error("Lỗi không mong muốn khi tạo booking: ", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ApiResponse.error("Lỗi hệ thống khi tạo booking."));
+    private BookingDetailsDto createBookingWithRetry(CreateBookingRequest request) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return bookingService.createBooking(request);
+            } catch (DuplicateKeyException e) {
+                if (attempt >= MAX_CREATE_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("Mã xác nhận bị trùng khi tạo booking, thử lại lần {}: {}", attempt + 1, e.getMessage());
+            }
         }
     }
 
+    /**
+     * POST /api/bookings - Tạo booking mới.
+     * Client gửi kèm header Idempotency-Key thì gửi lại (retry khi timeout) nhận lại booking đã tạo thay vì tạo booking mới.
+     */
+    @PostMapping
+    public ResponseEntity<ApiResponse<BookingDetailsDto>> createBooking(@Valid @RequestBody CreateBookingRequest request,
+                                                                        @RequestHeader(value = WaitingRoomController.ADMISSION_TOKEN_HEADER, required = false) String admissionToken,
+                                                                        @RequestHeader(value = WaitingRoomController.CLIENT_ID_HEADER, required = false) String waitingRoomClientId,
+                                                                        @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        // Kiểm tra lượt vào phòng chờ bên trong xử lý idempotent: request gửi lại nhận phản hồi đã lưu mà không tính hạn mức lần nữa
+        return idempotencyService.execute("booking:create", idempotencyKey, request, BookingDetailsDto.class, () -> {
+            if (!waitingRoomService.admitSeats(request.getShowtimeId(), admissionToken, waitingRoomClientId, request.getSeats())) {
+                return WaitingRoomController.admissionRequired();
+            }
+            try {
+                log.info("Request tạo booking mới cho showtimeId: {}", request.getShowtimeId());
+                BookingDetailsDto bookingDetails = createBookingWithRetry(request);
+                // Booking đã tạo không hoàn tác được: chỉ ghi nhận khi yêu cầu đồng thời vừa dùng hết hạn mức
+                if (!waitingRoomService.claimSeats(request.getShowtimeId(), waitingRoomClientId, request.getSeats())) {
+                    log.warn("Booking {} vượt hạn mức ghế của lượt vào phòng chờ (client {}).", bookingDetails.getId(), waitingRoomClientId);
+                }
+                return ResponseEntity.status(HttpStatus.CREATED).body(ApiResponse.success("Booking đã được tạo thành công.", bookingDetails));
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                log.warn("Lỗi khi tạo booking: {}", e.getMessage());
+                return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+            } catch (Exception e) {
+                log.error("Lỗi không mong muốn khi tạo booking: ", e);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ApiResponse.error("Lỗi hệ thống khi tạo booking."));
+            }
+        });
+    }
+
     /**
      * GET /api/bookings/{confirmationCode} - Tra cứu vé bằng mã xác nhận
      */
@@ -0,0 +1,29 @@
+package com.cinema.controller;
+
+import com.cinema.service.ShowtimeContentionTracker;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * GET /actuator/hotshowtimes?limit= - Các suất chiếu có nhiều thao tác ghế nhất gần đây (kèm số xung đột).
+ * Cần thêm "hotshowtimes" vào management.endpoints.web.exposure.include để truy cập qua HTTP.
+ */
+@Component
+@Endpoint(id = "hotshowtimes")
+@RequiredArgsConstructor
+public class HotShowtimesEndpoint {
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final ShowtimeContentionTracker contentionTracker;
+
+    @ReadOperation
+    public List<ShowtimeContentionTracker.HotShowtime> hottest(@Nullable Integer limit) {
+        return contentionTracker.top(limit != null ? Math.min(limit, 256) : DEFAULT_LIMIT);
+    }
+}
@@ -8,6 +8,7 @@ import com.cinema.model.Payment;
 import com.cinema.enums.*;
 import com.cinema.repository.BookingRepository; // *** THÊM IMPORT NÀY ***
 import com.cinema.service.IVNPayService;
+import com.cinema.service.IdempotencyService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -20,6 +21,7 @@ import org.springframework.web.servlet.view.RedirectView;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
 
@@ -31,6 +33,7 @@ public class PaymentController {
 
     private final IVNPayService vnPayService;
     private final BookingRepository bookingRepository; // *** INJECT BOOKING REPOSITORY ***
+    private final IdempotencyService idempotencyService;
     
     @Value("${frontend.payment.success-url}")
     private String frontendSuccessUrl;
@@ -41,14 +44,20 @@ public class PaymentController {
     @PostMapping("/vnpay/create")
     public ResponseEntity<ApiResponse<CreatePaymentResponseDto>> createVNPayPayment(
             @Valid @RequestBody CreatePaymentRequestDto paymentRequest,
+            @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
             HttpServletRequest httpServletRequest) {
-        log.info("Yêu cầu tạo URL thanh toán VNPay cho bookingId: {}", paymentRequest.getBookingId());
-        CreatePaymentResponseDto paymentResponse = vnPayService.createPaymentUrl(paymentRequest, httpServletRequest);
-        if (paymentResponse.isSuccess()) {
-            return ResponseEntity.ok(ApiResponse.success("Tạo URL thanh toán thành công.", paymentResponse));
-        } else {
-            return ResponseEntity.badRequest().body(ApiResponse.error(paymentResponse.getMessage()));
-        }
+        // Gửi lại cùng Idempotency-Key nhận lại URL (và giao dịch) đã tạo, không sinh thêm Payment.
+        // Chỉ phát lại khi URL còn hạn: sau vnp_ExpireDate request gửi lại tạo URL mới
+        return idempotencyService.execute("payment:vnpay-create", idempotencyKey, paymentRequest, CreatePaymentResponseDto.class,
+                Duration.ofMinutes(IVNPayService.PAYMENT_URL_EXPIRY_MINUTES), () -> {
+            log.info("Yêu cầu tạo URL thanh toán VNPay cho bookingId: {}", paymentRequest.getBookingId());
+            CreatePaymentResponseDto paymentResponse = vnPayService.createPaymentUrl(paymentRequest, httpServletRequest);
+            if (paymentResponse.isSuccess()) {
+                return ResponseEntity.ok(ApiResponse.success("Tạo URL thanh toán thành công.", paymentResponse));
+            } else {
+                return ResponseEntity.badRequest().body(ApiResponse.error(paymentResponse.getMessage()));
+            }
+        });
     }
 
     // Endpoint này là IPN, KHÔNG SỬA ĐỔI NỘI DUNG TRẢ VỀ
@@ -2,16 +2,26 @@ package com.cinema.controller;
 
 import com.cinema.dto.ApiResponse;
 import com.cinema.dto.request.ExtendHoldRequest;
+import com.cinema.dto.request.HoldBestSeatsRequest;
 import com.cinema.dto.request.HoldSeatRequest;
 import com.cinema.dto.request.ReleaseSeatRequest;
 import com.cinema.dto.response.SeatStatusDto;
+import com.cinema.service.SeatAllocationService;
+import com.cinema.service.SeatMapStreamService;
 import com.cinema.service.SeatService;
+import com.cinema.service.SeatVersionCache;
+import com.cinema.service.WaitingRoomService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @Slf4j
 @RestController
 @RequestMapping("/api/seats")
@@ -19,28 +29,91 @@ import org.springframework.web.bind.annotation.*;
 public class SeatController {
 
     private final SeatService seatService;
+    private final SeatMapStreamService seatMapStreamService;
+    private final SeatVersionCache seatVersionCache;
+    private final SeatAllocationService seatAllocationService;
+    private final WaitingRoomService waitingRoomService;
 
     /**
      * GET /api/seats/showtime/{showtimeId} - Trạng thái ghế theo suất chiếu
+     * ETag là seatVersion; nếu If-None-Match khớp version hiện tại thì trả 304 mà không đọc lại suất chiếu.
      */
     @GetMapping("/showtime/{showtimeId}")
-    public ResponseEntity<ApiResponse<SeatStatusDto>> getSeatStatusByShowtime(@PathVariable String showtimeId) {
+    public ResponseEntity<ApiResponse<SeatStatusDto>> getSeatStatusByShowtime(@PathVariable String showtimeId,
+                                                                              @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
         log.info("Request lấy trạng thái ghế cho showtimeId: {}", showtimeId);
+        if (ifNoneMatch != null) {
+            Long currentVersion = seatVersionCache.currentVersion(showtimeId);
+            if (currentVersion != null && etagMatches(ifNoneMatch, seatStatusEtag(currentVersion))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(seatStatusEtag(currentVersion)).build();
+            }
+        }
         return seatService.getSeatStatusForShowtime(showtimeId)
-                .map(seatStatus -> ResponseEntity.ok(ApiResponse.success(seatStatus)))
+                .map(seatStatus -> ResponseEntity.ok()
+                        .eTag(seatStatusEtag(seatStatus.getSeatVersion()))
+                        .body(ApiResponse.success(seatStatus)))
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    private static String seatStatusEtag(long seatVersion) {
+        return "\"v" + seatVersion + "\"";
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * GET /api/seats/showtime/{showtimeId}/stream - Luồng SSE trạng thái ghế (snapshot rồi các delta)
+     * Client kết nối lại gửi header Last-Event-ID để nhận tiếp các delta bị lỡ.
+     */
+    @GetMapping(value = "/showtime/{showtimeId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> streamSeatStatus(@PathVariable String showtimeId,
+                                                       @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        log.info("Request theo dõi trạng thái ghế cho showtimeId: {}, lastEventId: {}", showtimeId, lastEventId);
+        try {
+            return ResponseEntity.ok(seatMapStreamService.subscribe(showtimeId, lastEventId));
+        } catch (IllegalArgumentException e) {
+            log.warn("Không thể theo dõi trạng thái ghế: {}", e.getMessage());
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            log.warn("Không thể theo dõi trạng thái ghế: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        } catch (DataAccessException e) {
+            log.warn("Không thể đọc trạng thái ghế để mở luồng: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Không thể đọc trạng thái ghế, vui lòng thử lại.");
+        }
+    }
+
     /**
      * POST /api/seats/hold - Giữ ghế tạm thời
      */
     @PostMapping("/hold")
-    public ResponseEntity<ApiResponse<String>> holdSeats(@Valid @RequestBody HoldSeatRequest request) {
+    public ResponseEntity<ApiResponse<String>> holdSeats(@Valid @RequestBody HoldSeatRequest request,
+                                                         @RequestHeader(value = WaitingRoomController.ADMISSION_TOKEN_HEADER, required = false) String admissionToken,
+                                                         @RequestHeader(value = WaitingRoomController.CLIENT_ID_HEADER, required = false) String waitingRoomClientId) {
+        if (!waitingRoomService.admitSeats(request.getShowtimeId(), admissionToken, waitingRoomClientId, request.getSeatIds())) {
+            return WaitingRoomController.admissionRequired();
+        }
         try {
             log.info("Request giữ ghế: showtimeId={}, seats={}, phone={}", 
                      request.getShowtimeId(), request.getSeatIds(), request.getCustomerPhone());
             boolean success = seatService.holdSeats(request.getShowtimeId(), request.getSeatIds(), request.getCustomerPhone());
             if (success) {
+                // Chỉ tính hạn mức khi giữ ghế thành công; yêu cầu đồng thời vừa dùng hết hạn mức thì trả ghế lại
+                if (!waitingRoomService.claimSeats(request.getShowtimeId(), waitingRoomClientId, request.getSeatIds())) {
+                    seatService.releaseSeats(request.getShowtimeId(), request.getSeatIds());
+                    return WaitingRoomController.admissionRequired();
+                }
                 return ResponseEntity.ok(ApiResponse.success("Ghế đã được giữ thành công.", null));
             } else {
                 // Trường hợp này SeatService nên throw exception nếu không thành công do ghế không available
@@ -52,20 +125,52 @@ public class SeatController {
         }
     }
 
+    /**
+     * POST /api/seats/hold-best - Tự chọn và giữ N ghế trống liền nhau tốt nhất
+     */
+    @PostMapping("/hold-best")
+    public ResponseEntity<ApiResponse<List<String>>> holdBestSeats(@Valid @RequestBody HoldBestSeatsRequest request,
+                                                                   @RequestHeader(value = WaitingRoomController.ADMISSION_TOKEN_HEADER, required = false) String admissionToken,
+                                                                   @RequestHeader(value = WaitingRoomController.CLIENT_ID_HEADER, required = false) String waitingRoomClientId) {
+        if (!waitingRoomService.admitSeatCount(request.getShowtimeId(), admissionToken, waitingRoomClientId, request.getQuantity())) {
+            return WaitingRoomController.admissionRequired();
+        }
+        try {
+            log.info("Request giữ ghế tốt nhất: showtimeId={}, quantity={}, seatType={}, phone={}",
+                     request.getShowtimeId(), request.getQuantity(), request.getSeatType(), request.getCustomerPhone());
+            List<String> seatIds = seatAllocationService.holdBestAvailable(
+                    request.getShowtimeId(), request.getQuantity(), request.getSeatType(), request.getCustomerPhone());
+            if (!waitingRoomService.claimSeats(request.getShowtimeId(), waitingRoomClientId, seatIds)) {
+                seatService.releaseSeats(request.getShowtimeId(), seatIds);
+                return WaitingRoomController.admissionRequired();
+            }
+            return ResponseEntity.ok(ApiResponse.success("Ghế đã được giữ thành công.", seatIds));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            log.warn("Lỗi khi giữ ghế tốt nhất: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
     /**
      * DELETE /api/seats/release - Hủy giữ ghế
      */
     @DeleteMapping("/release") // Hoặc dùng POST nếu body phức tạp hơn hoặc không muốn dùng DELETE với body
-    public ResponseEntity<ApiResponse<String>> releaseSeats(@Valid @RequestBody ReleaseSeatRequest request) {
+    public ResponseEntity<ApiResponse<String>> releaseSeats(@Valid @RequestBody ReleaseSeatRequest request,
+                                                            @RequestHeader(value = WaitingRoomController.ADMISSION_TOKEN_HEADER, required = false) String admissionToken,
+                                                            @RequestHeader(value = WaitingRoomController.CLIENT_ID_HEADER, required = false) String waitingRoomClientId) {
         try {
             log.info("Request hủy giữ ghế: showtimeId={}, seats={}", request.getShowtimeId(), request.getSeatIds());
             boolean success = seatService.releaseSeats(request.getShowtimeId(), request.getSeatIds());
             if (success) {
+                // Ghế đã hủy giữ không còn tính vào hạn mức của lượt vào phòng chờ
+                if (waitingRoomService.isAdmitted(request.getShowtimeId(), admissionToken, waitingRoomClientId)) {
+                    waitingRoomService.returnSeats(request.getShowtimeId(), waitingRoomClientId, request.getSeatIds());
+                }
                 return ResponseEntity.ok(ApiResponse.success("Ghế đã được hủy giữ thành công.", null));
             } else {
                 return ResponseEntity.badRequest().body(ApiResponse.error("Không thể hủy giữ ghế hoặc không có ghế nào đang được giữ."));
             }
-        } catch (IllegalArgumentException e) {
+        } catch (IllegalArgumentException | IllegalStateException e) {
             log.warn("Lỗi khi hủy giữ ghế: {}", e.getMessage());
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
@@ -75,7 +180,12 @@ public class SeatController {
      * POST /api/seats/extend-hold - Gia hạn giữ ghế
      */
     @PostMapping("/extend-hold")
-    public ResponseEntity<ApiResponse<String>> extendHold(@Valid @RequestBody ExtendHoldRequest request) {
+    public ResponseEntity<ApiResponse<String>> extendHold(@Valid @RequestBody ExtendHoldRequest request,
+                                                          @RequestHeader(value = WaitingRoomController.ADMISSION_TOKEN_HEADER, required = false) String admissionToken,
+                                                          @RequestHeader(value = WaitingRoomController.CLIENT_ID_HEADER, required = false) String waitingRoomClientId) {
+        if (!waitingRoomService.isAdmitted(request.getShowtimeId(), admissionToken, waitingRoomClientId)) {
+            return WaitingRoomController.admissionRequired();
+        }
         try {
             log.info("Request gia hạn giữ ghế: showtimeId={}, seats={}", request.getShowtimeId(), request.getSeatIds());
             boolean success = seatService.extendSeatHold(request.getShowtimeId(), request.getSeatIds());
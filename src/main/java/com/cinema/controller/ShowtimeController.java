@@ -2,6 +2,7 @@ package com.cinema.controller;
 
 import com.cinema.dto.ApiResponse;
 import com.cinema.model.Showtime;
+import com.cinema.dto.response.ShowtimeDetailsDto;
 import com.cinema.dto.response.ShowtimeSummaryDto;
 import com.cinema.service.ShowtimeService;
 
@@ -50,7 +51,7 @@ public class ShowtimeController {
      * GET /api/showtimes/{id} - Chi tiết suất chiếu
      */
     @GetMapping("/{id}")
-    public ResponseEntity<ApiResponse<Showtime>> getShowtimeById(@PathVariable String id) {
+    public ResponseEntity<ApiResponse<ShowtimeDetailsDto>> getShowtimeById(@PathVariable String id) {
         log.info("=== API REQUEST: GET /api/showtimes/{} ===", id);
         
         return showtimeService.getShowtimeById(id)
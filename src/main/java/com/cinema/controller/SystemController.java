@@ -1,12 +1,24 @@
 package com.cinema.controller;
 
 import com.cinema.dto.ApiResponse;
+import com.cinema.dto.response.BookingPageDto;
+import com.cinema.service.BookingDisplayService;
+import com.cinema.service.BookingService;
+import com.cinema.service.PendingBookingReconciler;
+import com.cinema.service.ReferenceIdMigrationService;
+import com.cinema.service.SeatCounterRepairService;
+import com.cinema.service.SeatMapMigrationService;
 import com.cinema.service.SystemUtilityService;
+import com.cinema.service.WaitingRoomService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Map;
@@ -17,7 +29,16 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class SystemController {
 
+    private static final int MAX_BOOKING_PAGE_SIZE = 100;
+
     private final SystemUtilityService systemUtilityService;
+    private final SeatMapMigrationService seatMapMigrationService;
+    private final SeatCounterRepairService seatCounterRepairService;
+    private final WaitingRoomService waitingRoomService;
+    private final BookingDisplayService bookingDisplayService;
+    private final BookingService bookingService;
+    private final ReferenceIdMigrationService referenceIdMigrationService;
+    private final PendingBookingReconciler pendingBookingReconciler;
 
     /**
      * GET /api/health - Health check
@@ -32,4 +53,100 @@ public class SystemController {
             return ResponseEntity.status(503).body(ApiResponse.error("Hệ thống có lỗi."));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * POST /api/admin/seat-maps/compact - Chuyển hàng loạt bản đồ ghế sang dạng bitmap
+     */
+    @PostMapping("/admin/seat-maps/compact")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> compactSeatMaps(@RequestParam(defaultValue = "100") int limit) {
+        log.info("Request compact seat maps, limit={}", limit);
+        Map<String, Object> result = seatMapMigrationService.compactAll(Math.max(1, limit));
+        return ResponseEntity.ok(ApiResponse.success("Đã chuyển đổi bản đồ ghế.", result));
+    }
+
+    /**
+     * POST /api/admin/seat-maps/{showtimeId}/compact - Chuyển bản đồ ghế của một suất chiếu sang dạng bitmap
+     */
+    @PostMapping("/admin/seat-maps/{showtimeId}/compact")
+    public ResponseEntity<ApiResponse<Boolean>> compactSeatMap(@PathVariable String showtimeId) {
+        log.info("Request compact seat map for showtime {}", showtimeId);
+        boolean migrated = seatMapMigrationService.compactShowtime(showtimeId);
+        return ResponseEntity.ok(ApiResponse.success(migrated ? "Đã chuyển sang dạng bitmap." : "Suất chiếu không ở dạng cũ.", migrated));
+    }
+
+    /**
+     * POST /api/admin/seat-maps/{showtimeId}/expand - Chuyển bản đồ ghế của một suất chiếu về dạng cũ
+     */
+    @PostMapping("/admin/seat-maps/{showtimeId}/expand")
+    public ResponseEntity<ApiResponse<Boolean>> expandSeatMap(@PathVariable String showtimeId) {
+        log.info("Request expand seat map for showtime {}", showtimeId);
+        boolean migrated = seatMapMigrationService.expandShowtime(showtimeId);
+        return ResponseEntity.ok(ApiResponse.success(migrated ? "Đã chuyển về dạng cũ." : "Suất chiếu không ở dạng bitmap.", migrated));
+    }
+
+    /**
+     * POST /api/admin/seat-counters/repair - Đếm lại và sửa bộ đếm ghế bị lệch
+     */
+    @PostMapping("/admin/seat-counters/repair")
+    public ResponseEntity<ApiResponse<Map<String, Integer>>> repairSeatCounters() {
+        log.info("Request repair seat counters");
+        return ResponseEntity.ok(ApiResponse.success("Đã kiểm tra bộ đếm ghế.", seatCounterRepairService.repairSeatCounters()));
+    }
+
+    /**
+     * GET /api/admin/bookings?cursor=&size=&includeTotal= - Danh sách booking mới nhất trước, phân trang theo con trỏ
+     */
+    @GetMapping("/admin/bookings")
+    public ResponseEntity<ApiResponse<BookingPageDto>> getBookings(@RequestParam(required = false) String cursor,
+                                                                  @RequestParam(defaultValue = "20") int size,
+                                                                  @RequestParam(defaultValue = "false") boolean includeTotal) {
+        log.info("Request admin bookings page, size={}, includeTotal={}", size, includeTotal);
+        try {
+            BookingPageDto page = bookingService.getBookingsPage(cursor, Math.min(Math.max(1, size), MAX_BOOKING_PAGE_SIZE), includeTotal);
+            return ResponseEntity.ok(ApiResponse.success("Lấy danh sách booking thành công.", page));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * POST /api/admin/bookings/display/backfill - Bổ sung thông tin hiển thị cho booking cũ
+     */
+    @PostMapping("/admin/bookings/display/backfill")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> backfillBookingDisplay(@RequestParam(defaultValue = "10000") int limit) {
+        log.info("Request backfill booking display snapshots, limit={}", limit);
+        return ResponseEntity.ok(ApiResponse.success("Đã bổ sung thông tin hiển thị.", bookingDisplayService.backfill(Math.max(1, limit))));
+    }
+
+    /**
+     * POST /api/admin/references/normalize - Chuẩn hóa kiểu id của các trường tham chiếu (chạy lại tới khi completed = true)
+     */
+    @PostMapping("/admin/references/normalize")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> normalizeReferences(@RequestParam(defaultValue = "10000") int limit) {
+        log.info("Request normalize reference ids, limit={}", limit);
+        return ResponseEntity.ok(ApiResponse.success("Đã chuẩn hóa tham chiếu.", referenceIdMigrationService.migrate(Math.max(1, limit))));
+    }
+
+    /**
+     * POST /api/admin/bookings/reconcile-pending - Chuyển ngay các booking PENDING quá hạn sang EXPIRED (không chờ job định kỳ)
+     */
+    @PostMapping("/admin/bookings/reconcile-pending")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> reconcilePendingBookings() {
+        log.info("Request reconcile stale pending bookings");
+        return ResponseEntity.ok(ApiResponse.success("Đã đối soát booking chờ thanh toán.", pendingBookingReconciler.reconcile()));
+    }
+
+    /**
+     * PUT /api/admin/showtimes/{showtimeId}/hot-sale?enabled= - Bật/tắt phòng chờ cho suất chiếu mở bán nóng
+     */
+    @PutMapping("/admin/showtimes/{showtimeId}/hot-sale")
+    public ResponseEntity<ApiResponse<Boolean>> setHotSale(@PathVariable String showtimeId, @RequestParam boolean enabled) {
+        log.info("Request set hot sale for showtime {}: {}", showtimeId, enabled);
+        try {
+            waitingRoomService.setHotSale(showtimeId, enabled);
+            return ResponseEntity.ok(ApiResponse.success(enabled ? "Đã bật phòng chờ." : "Đã tắt phòng chờ.", enabled));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(404).body(ApiResponse.error(e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.cinema.controller;
+
+import com.cinema.dto.ApiResponse;
+import com.cinema.dto.response.WaitingRoomStatusDto;
+import com.cinema.service.WaitingRoomService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/waiting-room")
+@RequiredArgsConstructor
+public class WaitingRoomController {
+
+    // Header mang admission token khi gọi API giữ ghế/đặt vé của suất chiếu mở bán nóng
+    public static final String ADMISSION_TOKEN_HEADER = "X-Admission-Token";
+    // Header mang clientId đã xếp hàng; admission token chỉ hợp lệ với đúng clientId được cấp
+    public static final String CLIENT_ID_HEADER = "X-Waiting-Room-Client";
+
+    private final WaitingRoomService waitingRoomService;
+
+    /**
+     * Phản hồi 403 cho yêu cầu tới suất chiếu mở bán nóng mà không có admission token hợp lệ.
+     */
+    static <T> ResponseEntity<ApiResponse<T>> admissionRequired() {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(ApiResponse.error("Suất chiếu đang mở bán qua phòng chờ, vui lòng xếp hàng để nhận lượt (hoặc lượt của bạn đã giữ đủ số ghế cho phép)."));
+    }
+
+    /**
+     * POST /api/waiting-room/{showtimeId}/join - Vào hàng chờ của suất chiếu mở bán nóng
+     */
+    @PostMapping("/{showtimeId}/join")
+    public ResponseEntity<ApiResponse<WaitingRoomStatusDto>> join(@PathVariable String showtimeId,
+                                                                  @RequestParam(required = false) String clientId) {
+        try {
+            WaitingRoomStatusDto status = waitingRoomService.join(showtimeId, clientId);
+            log.info("Client {} vào phòng chờ của Showtime {}, admitted={}", status.getClientId(), showtimeId, status.isAdmitted());
+            return ResponseEntity.ok(ApiResponse.success(status));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            log.warn("Không thể vào phòng chờ của Showtime {}: {}", showtimeId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * GET /api/waiting-room/{showtimeId}/status?clientId= - Vị trí trong hàng hoặc admission token khi đến lượt
+     */
+    @GetMapping("/{showtimeId}/status")
+    public ResponseEntity<ApiResponse<WaitingRoomStatusDto>> status(@PathVariable String showtimeId,
+                                                                    @RequestParam String clientId) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(waitingRoomService.status(showtimeId, clientId)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error(e.getMessage()));
+        }
+    }
+}
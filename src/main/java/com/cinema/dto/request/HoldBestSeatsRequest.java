@@ -0,0 +1,25 @@
+package com.cinema.dto.request;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldBestSeatsRequest {
+    @NotNull(message = "Showtime ID không được để trống")
+    private String showtimeId;
+
+    @NotNull(message = "Số lượng ghế không được để trống")
+    @Min(value = 1, message = "Số lượng ghế phải từ 1 đến 10")
+    @Max(value = 10, message = "Số lượng ghế phải từ 1 đến 10")
+    private Integer quantity;
+
+    private String seatType; // Tùy chọn: chỉ chọn ghế thuộc loại này (ví dụ: vip, couple)
+
+    private String customerPhone;
+}
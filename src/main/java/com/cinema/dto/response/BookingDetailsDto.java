@@ -30,6 +30,16 @@ public class BookingDetailsDto {
     private String confirmationCode; //
     private LocalDateTime createdAt; //
 
+    /**
+     * Tạo DTO từ thông tin hiển thị đã lưu trong booking, không cần truy vấn thêm.
+     */
+    public static BookingDetailsDto fromBooking(Booking booking) {
+        Booking.DisplaySnapshot display = booking.getDisplay();
+        return display != null
+                ? fromBooking(booking, display.getMovieTitle(), display.getCinemaName(), display.getRoomName(), display.getShowDateTime())
+                : fromBooking(booking, "N/A", "N/A", "N/A", null);
+    }
+
     public static BookingDetailsDto fromBooking(Booking booking, String movieTitle, String cinemaName, String roomName, LocalDateTime showDateTime) { //
         BookingDetailsDto dto = new BookingDetailsDto(); //
         dto.setId(booking.getId()); //
@@ -0,0 +1,18 @@
+package com.cinema.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingPageDto {
+    private List<BookingAggregatedDetailsDto> items;
+    // Gửi lại qua tham số cursor để lấy trang tiếp theo; null khi đã hết
+    private String nextCursor;
+    // Tổng số booking ước lượng, chỉ có khi yêu cầu includeTotal
+    private Long estimatedTotal;
+}
@@ -0,0 +1,21 @@
+package com.cinema.dto.response;
+
+import com.cinema.enums.SeatState;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Sự kiện trên luồng trạng thái ghế: snapshot = true chứa toàn bộ ghế, ngược lại chỉ chứa các ghế vừa đổi trạng thái.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SeatMapEventDto {
+    private String showtimeId;
+    private long version;
+    private boolean snapshot;
+    private Map<String, SeatState> seats;
+}
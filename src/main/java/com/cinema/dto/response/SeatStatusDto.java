@@ -17,4 +17,5 @@ public class SeatStatusDto {
     private Integer availableSeats;
     private Integer holdingSeats;
     private Integer bookedSeats;
+    private Long seatVersion;
 }
\ No newline at end of file
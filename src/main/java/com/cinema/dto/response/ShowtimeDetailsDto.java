@@ -0,0 +1,37 @@
+package com.cinema.dto.response;
+
+import com.cinema.enums.ShowtimeStatus;
+import com.cinema.model.Showtime; // Sử dụng Showtime.SeatStatus, Showtime.PricingTiers
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Chi tiết suất chiếu trả cho client. seatStatus luôn ở dạng cũ (mọi ghế của phòng, kể cả UNAVAILABLE),
+ * kể cả khi suất chiếu lưu bản đồ ghế dạng bitmap; seatBits/seatEncoding không được trả ra.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShowtimeDetailsDto {
+    private String id;
+    private String movieId;
+    private String cinemaId;
+    private String roomId;
+    private LocalDateTime showDateTime;
+
+    private String screenType;
+    private Showtime.PricingTiers pricingTiers;
+    private Integer totalSeats;
+    private Integer availableSeats;
+    private Integer holdingSeats;
+    private Integer bookedSeats;
+    private Long seatVersion;
+    private ShowtimeStatus status;
+    private Map<String, Showtime.SeatStatus> seatStatus;
+    private boolean hasHoldingSeats;
+    private boolean hotSale;
+}
@@ -0,0 +1,22 @@
+package com.cinema.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitingRoomStatusDto {
+    private String showtimeId;
+    private String clientId;
+    private boolean admitted;
+    // Số người đứng trước (0 khi đã được vào)
+    private long peopleAhead;
+    private long estimatedWaitSeconds;
+    // Gửi kèm header X-Admission-Token (cùng clientId trong header X-Waiting-Room-Client) khi gọi API giữ ghế/đặt vé
+    private String admissionToken;
+    private LocalDateTime tokenExpiresAt;
+}
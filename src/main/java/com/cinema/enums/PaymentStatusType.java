@@ -5,5 +5,9 @@ public enum PaymentStatusType {
     COMPLETED,
     FAILED,
     CANCELLED,
-    REFUNDED
+    REFUNDED,
+    // Booking quá hạn giữ ghế mà chưa thanh toán (PendingBookingReconciler)
+    EXPIRED,
+    // Đã nhận tiền nhưng không giữ lại được ghế (booking đã hết hạn hoặc bị hủy): cần hoàn tiền hoặc xử lý thủ công
+    REFUND_REQUIRED
 }   
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.cinema.exceptions;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Ném ra khi một hoặc nhiều ghế được yêu cầu không còn ở trạng thái cho phép
+ * (ví dụ: đã bị người khác giữ hoặc đặt trước).
+ * Kế thừa IllegalStateException để các controller hiện tại vẫn xử lý như lỗi 400.
+ */
+@Getter
+public class SeatConflictException extends IllegalStateException {
+
+    private final String showtimeId;
+    private final List<String> conflictingSeatIds;
+
+    public SeatConflictException(String showtimeId, List<String> conflictingSeatIds) {
+        super("Ghế " + String.join(", ", conflictingSeatIds) + " không còn trống hoặc đã được giữ. Vui lòng chọn ghế khác.");
+        this.showtimeId = showtimeId;
+        this.conflictingSeatIds = List.copyOf(conflictingSeatIds);
+    }
+}
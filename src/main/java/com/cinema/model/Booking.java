@@ -20,6 +20,7 @@ public class Booking {
     private String id; //
     
     private CustomerInfo customerInfo; //
+    @ReferenceId
     private String showtimeId; //
     private LocalDateTime bookingTime; //
     private List<String> seats; //
@@ -36,6 +37,18 @@ public class Booking {
     private String confirmationCode; //
     private LocalDateTime createdAt; //
     private LocalDateTime updatedAt; //
+    // Thông tin hiển thị chụp lại lúc tạo booking, không đổi về sau; null với booking cũ chưa được bổ sung
+    private DisplaySnapshot display;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DisplaySnapshot {
+        private String movieTitle;
+        private String cinemaName;
+        private String roomName;
+        private LocalDateTime showDateTime;
+    }
     
     @Data
     @NoArgsConstructor
@@ -22,5 +22,6 @@ public class Concession {
     private Long price;
     private String image;
     private Boolean availability;
+    @ReferenceId
     private List<String> cinemaIds;
 }
\ No newline at end of file
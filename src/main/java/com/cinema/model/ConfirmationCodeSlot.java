@@ -0,0 +1,28 @@
+package com.cinema.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Slot sinh mã xác nhận của một node. Node giữ slot suốt vòng đời và chỉ cấp mã trong các giây
+ * đến highWaterSecond (đã ghi trước khi dùng); node nhận lại slot sau đó bắt đầu từ highWaterSecond + 1,
+ * nên hai chủ sở hữu liên tiếp của cùng một slot không bao giờ cấp mã trong cùng một giây.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "confirmation_code_slots")
+public class ConfirmationCodeSlot {
+    @Id
+    private Integer id; // số slot
+
+    private String owner;
+    private LocalDateTime expiresAt;
+    // Giây lớn nhất (tính từ mốc của ConfirmationCodeGenerator) chủ sở hữu được phép cấp mã
+    private Long highWaterSecond;
+}
@@ -0,0 +1,40 @@
+package com.cinema.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Kết quả của một request POST gắn Idempotency-Key, để request gửi lại (client retry khi timeout)
+ * nhận lại đúng phản hồi cũ thay vì tạo thêm booking/giao dịch. Tự xóa khi quá expiresAt (TTL index).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "idempotency_keys")
+public class IdempotencyRecord {
+
+    public enum Status {
+        IN_PROGRESS,
+        COMPLETED
+    }
+
+    // "<scope>:<key>" (scope là endpoint, ví dụ booking:create)
+    @Id
+    private String id;
+
+    // SHA-256 của body request; cùng key nhưng body khác bị từ chối
+    private String requestHash;
+    private Status status;
+    private Integer httpStatus;
+    // Body phản hồi đã serialize (JSON) để trả lại nguyên văn
+    private String responseBody;
+    private LocalDateTime createdAt;
+    // Node xử lý dừng đột ngột thì request sau thời điểm này được phép chạy lại
+    private LocalDateTime lockedUntil;
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,53 @@
+package com.cinema.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Sự kiện phát sinh sau một thay đổi booking, được ghi cùng transaction với thay đổi đó và được
+ * OutboxDispatcher giao cho các OutboxHandler ngoài luồng xử lý request (ít nhất một lần).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "outbox_events")
+public class OutboxEvent {
+
+    public static final String BOOKING_CREATED = "BOOKING_CREATED";
+    public static final String BOOKING_PAID = "BOOKING_PAID";
+    public static final String BOOKING_REFUND_REQUIRED = "BOOKING_REFUND_REQUIRED";
+
+    public enum Status {
+        PENDING,
+        DISPATCHED,
+        // Hết số lần thử; cần xử lý thủ công
+        FAILED
+    }
+
+    @Id
+    private String id;
+
+    private String type;
+    private String aggregateId;
+    private Map<String, Object> payload;
+    private Status status;
+    private int attempts;
+    private LocalDateTime createdAt;
+    // Thời điểm sớm nhất được giao (lùi lại khi đang được một node xử lý hoặc chờ thử lại)
+    private LocalDateTime availableAt;
+    // Đánh dấu lô đang xử lý sự kiện; null khi không có node nào giữ
+    private String claimToken;
+    private String lastError;
+    private LocalDateTime dispatchedAt;
+
+    public static OutboxEvent of(String type, String aggregateId, Map<String, Object> payload) {
+        LocalDateTime now = LocalDateTime.now();
+        return new OutboxEvent(null, type, aggregateId, payload, Status.PENDING, 0, now, now, null, null, null);
+    }
+}
@@ -0,0 +1,35 @@
+package com.cinema.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lease sở hữu một phân vùng công việc (ví dụ: phân vùng của job giải phóng ghế hết hạn) của một node.
+ * Bản ghi có partition = null là nhịp tim thành viên của node trong nhóm, dùng để chia đều số phân vùng.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "partition_leases")
+public class PartitionLease {
+    @Id
+    private String id; // <group>:<partition> hoặc <group>:member:<nodeId>
+
+    private String group;
+    private Integer partition;
+    private String owner;
+    private LocalDateTime expiresAt;
+
+    public static String idOf(String group, int partition) {
+        return group + ":" + partition;
+    }
+
+    public static String memberIdOf(String group, String nodeId) {
+        return group + ":member:" + nodeId;
+    }
+}
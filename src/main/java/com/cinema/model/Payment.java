@@ -18,6 +18,7 @@ import java.util.Map;
 public class Payment {
     @Id
     private String id;
+    @ReferenceId
     private String bookingId; // Liên kết với Booking
     private String transactionId; // Mã giao dịch của VNPay (vnp_TxnRef)
     private String vnpTransactionNo; // Mã giao dịch của VNPay (vnp_TransactionNo)
@@ -0,0 +1,16 @@
+package com.cinema.model;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Đánh dấu trường (String hoặc List&lt;String&gt;) tham chiếu tới _id của collection khác. Khi lưu, giá trị được
+ * ghi cùng kiểu BSON với _id đó (ObjectId cho id hex 24 ký tự, chuỗi cho các id khác) để $lookup và bộ lọc
+ * dùng được phép so sánh bằng trên index.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface ReferenceId {
+}
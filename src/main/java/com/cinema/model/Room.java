@@ -19,6 +19,7 @@ public class Room {
     @Id
     private String id;
     
+    @ReferenceId
     private String cinemaId;
     
     private String roomNumber;
@@ -0,0 +1,49 @@
+package com.cinema.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bản ghi chỉ mục thời hạn giữ ghế: mỗi ghế đang HOLDING của một suất chiếu có đúng một bản ghi.
+ * Job giải phóng ghế chỉ quét các bản ghi đã hết hạn theo index trên expiresAt
+ * thay vì đọc toàn bộ bản đồ ghế của các suất chiếu.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "seat_holds")
+public class SeatHold {
+    @Id
+    private String id; // <showtimeId>:<seatId>
+
+    private String showtimeId;
+    private String seatId;
+    private LocalDateTime holdStartedAt;
+    private LocalDateTime expiresAt;
+    // Phân vùng của job giải phóng ghế: mỗi node chỉ quét các phân vùng nó đang giữ lease
+    private Integer partition;
+
+    // Số phân vùng cố định cho toàn cụm; thay đổi giá trị này cần gán lại partition cho các bản ghi hiện có
+    public static final int SWEEP_PARTITIONS = 64;
+    public static final String SWEEP_LEASE_GROUP = "seat-hold-sweep";
+
+    public SeatHold(String id, String showtimeId, String seatId, LocalDateTime holdStartedAt, LocalDateTime expiresAt) {
+        this(id, showtimeId, seatId, holdStartedAt, expiresAt, partitionOf(showtimeId));
+    }
+
+    public static String idOf(String showtimeId, String seatId) {
+        return showtimeId + ":" + seatId;
+    }
+
+    /**
+     * Mọi ghế của một suất chiếu thuộc cùng một phân vùng (String.hashCode ổn định giữa các JVM).
+     */
+    public static int partitionOf(String showtimeId) {
+        return Math.floorMod(showtimeId.hashCode(), SWEEP_PARTITIONS);
+    }
+}
@@ -12,6 +12,7 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 @Data
@@ -22,10 +23,13 @@ public class Showtime {
     @Id
     private String id;
     
+    @ReferenceId
     private String movieId;
     
+    @ReferenceId
     private String cinemaId;
     
+    @ReferenceId
     private String roomId;
     
     private LocalDateTime showDateTime;
@@ -34,13 +38,30 @@ public class Showtime {
     private PricingTiers pricingTiers;
     private Integer totalSeats;
     private Integer availableSeats;
+    // Bộ đếm được cập nhật bằng $inc cùng lệnh đổi trạng thái ghế; SeatCounterRepairService sửa sai lệch nếu có
+    private Integer holdingSeats;
+    private Integer bookedSeats;
+    // Tăng 1 sau mỗi lần trạng thái ghế/bộ đếm thay đổi; dùng làm ETag và version của luồng SSE
+    private Long seatVersion;
     
     // Sử dụng String thay vì enum để tương thích với dữ liệu hiện tại
     @Field("status")
     private ShowtimeStatus status;
     
     private Map<String, SeatStatus> seatStatus;
+    // Luôn bằng holdingSeats > 0 sau mỗi thao tác: lệnh giữ ghế bật cờ cùng $inc, mọi lệnh giảm holdingSeats
+    // tắt cờ (cùng lệnh khi biết chính xác bộ đếm, nếu không thì bằng lệnh có điều kiện holdingSeats <= 0 ngay sau đó)
     private boolean hasHoldingSeats;
+    // Suất chiếu mở bán nóng: API giữ ghế/đặt vé yêu cầu admission token từ phòng chờ
+    private boolean hotSale;
+
+    // Mã hóa gọn (tùy chọn): khi seatEncoding = "bitmap", trạng thái mỗi ghế nằm trong seatBits
+    // (2 bit/ghế, 32 ghế/phần tử int64, theo thứ tự ghế của Room.SeatMap) và seatStatus
+    // chỉ còn chứa các ghế HOLDING/BOOKED kèm holdStartedAt/bookingId.
+    private String seatEncoding;
+    private List<Long> seatBits;
+    // Thời điểm đặt seatEncoding = "migrating"; dấu quá hạn (node dừng giữa chừng) được SeatMapMigrationService gỡ
+    private LocalDateTime seatMigrationStartedAt;
     
     @Data
     @NoArgsConstructor
@@ -0,0 +1,38 @@
+package com.cinema.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Vé xếp hàng trong phòng chờ của một suất chiếu mở bán nóng.
+ * Hàng đợi được giữ trong bộ nhớ; collection này chỉ dùng để khôi phục hàng đợi khi khởi động lại
+ * và tự xóa bản ghi khi hết hạn (TTL index trên expiresAt).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "waiting_room_tickets")
+public class WaitingRoomTicket {
+    @Id
+    private String id; // <showtimeId>:<clientId>
+
+    private String showtimeId;
+    private String clientId;
+    private long position;
+    private LocalDateTime joinedAt;
+    // null khi còn đang chờ
+    private LocalDateTime admittedAt;
+    private LocalDateTime expiresAt;
+    // Ghế đã giữ/đặt bằng admission token của lượt này (tối đa maxSeatsPerAdmission ghế)
+    private List<String> claimedSeats;
+
+    public static String idOf(String showtimeId, String clientId) {
+        return showtimeId + ":" + clientId;
+    }
+}
@@ -4,13 +4,19 @@ import com.cinema.model.Booking;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.List;
 
 @Repository
-public interface BookingRepository extends MongoRepository<Booking, String>, BookingRepositoryCustom { // Thêm kế thừa
+public interface BookingRepository extends MongoRepository<Booking, String>, BookingRepositoryCustom, ReferenceIdQueries { // Thêm kế thừa
     Optional<Booking> findByConfirmationCode(String confirmationCode);
     Optional<Booking> findByCustomerInfo_PhoneAndCustomerInfo_Email(String phone, String email);
     List<Booking> findByCustomerInfo_PhoneOrderByBookingTimeDesc(String phone);
-    List<Booking> findByShowtimeId(String showtimeId);
+    // showtimeId lưu cùng kiểu với _id của suất chiếu; xem ReferenceIdQueries
+    default List<Booking> findByShowtimeId(String showtimeId) {
+        return findByShowtimeIdIn(referenceValues(showtimeId));
+    }
+
+    List<Booking> findByShowtimeIdIn(Collection<Object> showtimeIds);
 }
\ No newline at end of file
@@ -1,11 +1,41 @@
 package com.cinema.repository;
 
 import com.cinema.dto.response.BookingAggregatedDetailsDto;
+import com.cinema.enums.PaymentMethodType;
+import com.cinema.enums.PaymentStatusType;
+import com.cinema.model.Booking;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 public interface BookingRepositoryCustom {
     Optional<BookingAggregatedDetailsDto> findBookingWithDetailsById(String bookingId);
+
+    Optional<BookingAggregatedDetailsDto> findBookingWithDetailsByConfirmationCode(String confirmationCode);
+
+    /**
+     * Booking mới nhất của khách theo SĐT và email, kèm thông tin chi tiết.
+     */
+    Optional<BookingAggregatedDetailsDto> findBookingWithDetailsByCustomer(String phone, String email);
     Page<BookingAggregatedDetailsDto> findAllBookingsWithDetails(Pageable pageable);
+
+    /**
+     * Trang booking mới nhất trước (createdAt, _id giảm dần) đứng sau vị trí (createdAt, bookingId);
+     * vị trí null lấy từ đầu danh sách.
+     */
+    List<BookingAggregatedDetailsDto> findBookingsWithDetailsBefore(LocalDateTime createdAt, String bookingId, int limit);
+
+    /**
+     * Số booking ước lượng từ metadata của collection, không quét dữ liệu.
+     */
+    long estimatedCount();
+
+    /**
+     * Chuyển trạng thái thanh toán chỉ khi booking vẫn ở trạng thái {@code expected}.
+     * Trả về booking sau khi cập nhật, hoặc empty nếu trạng thái vừa bị luồng khác thay đổi.
+     */
+    Optional<Booking> updatePaymentStatus(String bookingId, PaymentStatusType expected, PaymentStatusType status,
+                                          PaymentMethodType paymentMethod, String paymentReference);
 }
\ No newline at end of file
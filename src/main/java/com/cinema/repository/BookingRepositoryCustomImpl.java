@@ -1,7 +1,10 @@
 package com.cinema.repository;
 
 import com.cinema.dto.response.BookingAggregatedDetailsDto;
+import com.cinema.enums.PaymentMethodType;
+import com.cinema.enums.PaymentStatusType;
 import com.cinema.model.*;
+import com.cinema.service.ReferenceIdMigrationService;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.bson.Document;
@@ -9,11 +12,17 @@ import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.*;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -23,12 +32,17 @@ import java.util.Optional;
 public class BookingRepositoryCustomImpl implements BookingRepositoryCustom {
 
     private final MongoTemplate mongoTemplate;
+    private final ReferenceIdMigrationService referenceIdMigrationService;
 
     /**
-     * Helper method để tạo một AggregationOperation cho $lookup
-     * có khả năng xử lý ID dạng String (cả ObjectId và slug) một cách an toàn.
+     * Helper method để tạo một AggregationOperation cho $lookup.
+     * Khi các trường tham chiếu đã được chuẩn hóa cùng kiểu với _id, dùng localField/foreignField
+     * (so sánh bằng trên index _id); trong lúc chuyển đổi vẫn xử lý ID dạng String (cả ObjectId và slug).
      */
 private AggregationOperation createPipelineLookup(String from, String localField, String as) {
+    if (referenceIdMigrationService.isReferencesNormalized()) {
+        return Aggregation.lookup(from, localField, "_id", as);
+    }
     return context -> new Document("$lookup",
             new Document("from", from)
                     .append("let", new Document("lookupId", "$" + localField))
@@ -62,43 +76,30 @@ private AggregationOperation createPipelineLookup(String from, String localField
             return Optional.empty();
         }
 
-        MatchOperation matchStage = Aggregation.match(Criteria.where("_id").is(new ObjectId(bookingId)));
-
-        AggregationOperation lookupShowtime = createPipelineLookup("showtimes", "showtimeId", "showtimeDetailsAgg");
-        UnwindOperation unwindShowtime = Aggregation.unwind("showtimeDetailsAgg", true);
-
-        AggregationOperation lookupMovie = createPipelineLookup("movies", "showtimeDetailsAgg.movieId", "movieDetailsAgg");
-        UnwindOperation unwindMovie = Aggregation.unwind("movieDetailsAgg", true);
-
-        AggregationOperation lookupCinema = createPipelineLookup("cinemas", "showtimeDetailsAgg.cinemaId", "cinemaDetailsAgg");
-        UnwindOperation unwindCinema = Aggregation.unwind("cinemaDetailsAgg", true);
-
-        AggregationOperation lookupRoom = createPipelineLookup("rooms", "showtimeDetailsAgg.roomId", "roomDetailsAgg");
-        UnwindOperation unwindRoom = Aggregation.unwind("roomDetailsAgg", true);
+        return findOneWithDetails(Aggregation.match(Criteria.where("_id").is(new ObjectId(bookingId))));
+    }
 
-        Aggregation aggregation = Aggregation.newAggregation(
-                matchStage,
-                lookupShowtime, unwindShowtime,
-                lookupMovie, unwindMovie,
-                lookupCinema, unwindCinema,
-                lookupRoom, unwindRoom
-        );
+    @Override
+    public Optional<BookingAggregatedDetailsDto> findBookingWithDetailsByConfirmationCode(String confirmationCode) {
+        return findOneWithDetails(Aggregation.match(Criteria.where("confirmationCode").is(confirmationCode)));
+    }
 
-        AggregationResults<BookingAggregatedResult> results = mongoTemplate.aggregate(
-                aggregation, Booking.class, BookingAggregatedResult.class
+    @Override
+    public Optional<BookingAggregatedDetailsDto> findBookingWithDetailsByCustomer(String phone, String email) {
+        // Khách có nhiều booking cùng SĐT/email: lấy booking mới nhất (idx_booking_customerPhone_bookingTime)
+        return findOneWithDetails(
+                Aggregation.match(Criteria.where("customerInfo.phone").is(phone).and("customerInfo.email").is(email)),
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "bookingTime")),
+                Aggregation.limit(1)
         );
+    }
 
-        BookingAggregatedResult uniqueResult = results.getUniqueMappedResult();
-        if (uniqueResult != null) {
-            return Optional.of(BookingAggregatedDetailsDto.fromBookingAndAggregatedData(
-                uniqueResult,
-                uniqueResult.getMovieDetailsAgg(),
-                uniqueResult.getCinemaDetailsAgg(),
-                uniqueResult.getRoomDetailsAgg(),
-                uniqueResult.getShowtimeDetailsAgg()
-            ));
-        }
-        return Optional.empty();
+    /**
+     * Chọn một booking và join thông tin chi tiết trong cùng một aggregation.
+     */
+    private Optional<BookingAggregatedDetailsDto> findOneWithDetails(AggregationOperation... selectStages) {
+        List<BookingAggregatedDetailsDto> results = mapDetails(Aggregation.newAggregation(withDetailsLookups(selectStages)));
+        return results.isEmpty() ? Optional.empty() : Optional.of(results.get(0));
     }
 
     @Data
@@ -111,40 +112,78 @@ private AggregationOperation createPipelineLookup(String from, String localField
 
     @Override
     public Page<BookingAggregatedDetailsDto> findAllBookingsWithDetails(Pageable pageable) {
-        Aggregation countAggregation = Aggregation.newAggregation(
-                Aggregation.group().count().as("total")
-        );
-        AggregationResults<TotalCount> countResult = mongoTemplate.aggregate(
-                countAggregation, Booking.class, TotalCount.class
-        );
-        long total = countResult.getUniqueMappedResult() != null ? countResult.getUniqueMappedResult().getTotal() : 0;
-
-        AggregationOperation lookupShowtime = createPipelineLookup("showtimes", "showtimeId", "showtimeDetailsAgg");
-        UnwindOperation unwindShowtime = Aggregation.unwind("showtimeDetailsAgg", true);
-        AggregationOperation lookupMovie = createPipelineLookup("movies", "showtimeDetailsAgg.movieId", "movieDetailsAgg");
-        UnwindOperation unwindMovie = Aggregation.unwind("movieDetailsAgg", true);
-        AggregationOperation lookupCinema = createPipelineLookup("cinemas", "showtimeDetailsAgg.cinemaId", "cinemaDetailsAgg");
-        UnwindOperation unwindCinema = Aggregation.unwind("cinemaDetailsAgg", true);
-        AggregationOperation lookupRoom = createPipelineLookup("rooms", "showtimeDetailsAgg.roomId", "roomDetailsAgg");
-        UnwindOperation unwindRoom = Aggregation.unwind("roomDetailsAgg", true);
-        
-        SkipOperation skip = Aggregation.skip(pageable.getOffset());
-        LimitOperation limit = Aggregation.limit(pageable.getPageSize());
-        
-        Aggregation dataAggregation = Aggregation.newAggregation(
-                lookupShowtime, unwindShowtime,
-                lookupMovie, unwindMovie,
-                lookupCinema, unwindCinema,
-                lookupRoom, unwindRoom,
-                skip,
-                limit
-        );
-        
+        // Ước lượng từ metadata của collection thay vì $group đếm toàn bộ booking
+        long total = estimatedCount();
+
+        // Cắt trang trước rồi mới $lookup để chỉ join các booking của trang
+        Aggregation dataAggregation = Aggregation.newAggregation(withDetailsLookups(
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "createdAt", "_id")),
+                Aggregation.skip(pageable.getOffset()),
+                Aggregation.limit(pageable.getPageSize())
+        ));
+
+        return new PageImpl<>(mapDetails(dataAggregation), pageable, total);
+    }
+
+    @Override
+    public List<BookingAggregatedDetailsDto> findBookingsWithDetailsBefore(LocalDateTime createdAt, String bookingId, int limit) {
+        Criteria keyset = new Criteria();
+        if (createdAt != null && bookingId != null) {
+            // (createdAt, _id) nhỏ hơn vị trí con trỏ theo thứ tự giảm dần của idx_booking_createdAt_id
+            keyset = new Criteria().orOperator(
+                    Criteria.where("createdAt").lt(createdAt),
+                    Criteria.where("createdAt").is(createdAt).and("_id").lt(new ObjectId(bookingId))
+            );
+        }
+
+        Aggregation dataAggregation = Aggregation.newAggregation(withDetailsLookups(
+                Aggregation.match(keyset),
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "createdAt", "_id")),
+                Aggregation.limit(limit)
+        ));
+
+        return mapDetails(dataAggregation);
+    }
+
+    @Override
+    public long estimatedCount() {
+        return mongoTemplate.estimatedCount(Booking.class);
+    }
+
+    @Override
+    public Optional<Booking> updatePaymentStatus(String bookingId, PaymentStatusType expected, PaymentStatusType status,
+                                                 PaymentMethodType paymentMethod, String paymentReference) {
+        Query query = new Query(Criteria.where("_id").is(bookingId).and("paymentStatus").is(expected));
+        Update update = new Update()
+                .set("paymentStatus", status)
+                .set("paymentMethod", paymentMethod)
+                .set("paymentReference", paymentReference)
+                .set("updatedAt", LocalDateTime.now());
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Booking.class));
+    }
+
+    /**
+     * Nối các bước $lookup thông tin suất chiếu, phim, rạp, phòng vào sau các bước chọn booking.
+     */
+    private List<AggregationOperation> withDetailsLookups(AggregationOperation... selectStages) {
+        List<AggregationOperation> stages = new ArrayList<>(Arrays.asList(selectStages));
+        stages.add(createPipelineLookup("showtimes", "showtimeId", "showtimeDetailsAgg"));
+        stages.add(Aggregation.unwind("showtimeDetailsAgg", true));
+        stages.add(createPipelineLookup("movies", "showtimeDetailsAgg.movieId", "movieDetailsAgg"));
+        stages.add(Aggregation.unwind("movieDetailsAgg", true));
+        stages.add(createPipelineLookup("cinemas", "showtimeDetailsAgg.cinemaId", "cinemaDetailsAgg"));
+        stages.add(Aggregation.unwind("cinemaDetailsAgg", true));
+        stages.add(createPipelineLookup("rooms", "showtimeDetailsAgg.roomId", "roomDetailsAgg"));
+        stages.add(Aggregation.unwind("roomDetailsAgg", true));
+        return stages;
+    }
+
+    private List<BookingAggregatedDetailsDto> mapDetails(Aggregation aggregation) {
         AggregationResults<BookingAggregatedResult> results = mongoTemplate.aggregate(
-                dataAggregation, Booking.class, BookingAggregatedResult.class
+                aggregation, Booking.class, BookingAggregatedResult.class
         );
-
-        List<BookingAggregatedDetailsDto> dtoList = results.getMappedResults().stream()
+        return results.getMappedResults().stream()
                 .map(res -> BookingAggregatedDetailsDto.fromBookingAndAggregatedData(
                         res,
                         res.getMovieDetailsAgg(),
@@ -153,12 +192,5 @@ private AggregationOperation createPipelineLookup(String from, String localField
                         res.getShowtimeDetailsAgg()
                 ))
                 .toList();
-        
-        return new PageImpl<>(dtoList, pageable, total);
-    }
-
-    @Data
-    private static class TotalCount {
-        private long total;
     }
 }
\ No newline at end of file
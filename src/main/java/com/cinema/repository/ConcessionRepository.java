@@ -4,12 +4,18 @@ import com.cinema.model.Concession;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface ConcessionRepository extends MongoRepository<Concession, String> {
+public interface ConcessionRepository extends MongoRepository<Concession, String>, ReferenceIdQueries {
     List<Concession> findByAvailabilityTrue();
     List<Concession> findByCategoryAndAvailabilityTrue(String category);
     // Tìm concession áp dụng cho một cinema cụ thể và còn hàng
-    List<Concession> findByCinemaIdsContainingAndAvailabilityTrue(String cinemaId);
+    // cinemaIds lưu cùng kiểu với _id của rạp; xem ReferenceIdQueries
+    default List<Concession> findByCinemaIdsContainingAndAvailabilityTrue(String cinemaId) {
+        return findByCinemaIdsInAndAvailabilityTrue(referenceValues(cinemaId));
+    }
+
+    List<Concession> findByCinemaIdsInAndAvailabilityTrue(Collection<Object> cinemaIds);
 }
\ No newline at end of file
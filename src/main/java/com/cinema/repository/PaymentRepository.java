@@ -4,10 +4,17 @@ import com.cinema.model.Payment;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Optional;
 
 @Repository
-public interface PaymentRepository extends MongoRepository<Payment, String> {
+public interface PaymentRepository extends MongoRepository<Payment, String>, ReferenceIdQueries {
     Optional<Payment> findByTransactionId(String transactionId); // Quan trọng để tìm giao dịch khi VNPay callback
-    Optional<Payment> findByBookingId(String bookingId); // Để tìm thanh toán theo booking
+
+    // Để tìm thanh toán theo booking (bookingId lưu cùng kiểu với _id của booking; xem ReferenceIdQueries)
+    default Optional<Payment> findByBookingId(String bookingId) {
+        return findByBookingIdIn(referenceValues(bookingId));
+    }
+
+    Optional<Payment> findByBookingIdIn(Collection<Object> bookingIds);
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.cinema.repository;
+
+import java.util.List;
+
+/**
+ * Fragment dùng chung cho các repository lọc theo trường tham chiếu (movieId, cinemaId, showtimeId...).
+ * Trường tham chiếu được lưu cùng kiểu với _id được tham chiếu; trong lúc dữ liệu cũ chưa chuẩn hóa xong
+ * phải khớp cả dạng chuỗi lẫn dạng ObjectId (xem ReferenceIdMigrationService).
+ */
+public interface ReferenceIdQueries {
+
+    List<Object> referenceValues(String id);
+}
@@ -0,0 +1,19 @@
+package com.cinema.repository;
+
+import com.cinema.service.ReferenceIdMigrationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class ReferenceIdQueriesImpl implements ReferenceIdQueries {
+
+    private final ReferenceIdMigrationService referenceIdMigrationService;
+
+    @Override
+    public List<Object> referenceValues(String id) {
+        return referenceIdMigrationService.referenceValues(id);
+    }
+}
@@ -4,21 +4,44 @@ import com.cinema.model.Room;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface RoomRepository extends MongoRepository<Room, String> {
+public interface RoomRepository extends MongoRepository<Room, String>, ReferenceIdQueries {
     
-    List<Room> findByCinemaId(String cinemaId);
+    default List<Room> findByCinemaId(String cinemaId) {
+        return findByCinemaIdIn(referenceValues(cinemaId));
+    }
     
-    List<Room> findByCinemaIdAndStatus(String cinemaId, String status);
+    default List<Room> findByCinemaIdAndStatus(String cinemaId, String status) {
+        return findByCinemaIdInAndStatus(referenceValues(cinemaId), status);
+    }
     
-    Optional<Room> findByCinemaIdAndRoomNumber(String cinemaId, String roomNumber);
+    default Optional<Room> findByCinemaIdAndRoomNumber(String cinemaId, String roomNumber) {
+        return findFirstByCinemaIdInAndRoomNumber(referenceValues(cinemaId), roomNumber);
+    }
     
     List<Room> findByStatus(String status);
     
-    List<Room> findByCinemaIdAndType(String cinemaId, String type);
+    default List<Room> findByCinemaIdAndType(String cinemaId, String type) {
+        return findByCinemaIdInAndType(referenceValues(cinemaId), type);
+    }
     
-    long countByCinemaIdAndStatus(String cinemaId, String status);
+    default long countByCinemaIdAndStatus(String cinemaId, String status) {
+        return countByCinemaIdInAndStatus(referenceValues(cinemaId), status);
+    }
+
+    // cinemaId được lưu cùng kiểu với _id của rạp; xem ReferenceIdQueries
+    
+    List<Room> findByCinemaIdIn(Collection<Object> cinemaIds);
+    
+    List<Room> findByCinemaIdInAndStatus(Collection<Object> cinemaIds, String status);
+    
+    Optional<Room> findFirstByCinemaIdInAndRoomNumber(Collection<Object> cinemaIds, String roomNumber);
+    
+    List<Room> findByCinemaIdInAndType(Collection<Object> cinemaIds, String type);
+    
+    long countByCinemaIdInAndStatus(Collection<Object> cinemaIds, String status);
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.cinema.repository;
+
+import com.cinema.model.SeatHold;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SeatHoldRepository extends MongoRepository<SeatHold, String>, SeatHoldRepositoryCustom {
+}
@@ -0,0 +1,46 @@
+package com.cinema.repository;
+
+import com.cinema.model.SeatHold;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface SeatHoldRepositoryCustom {
+    /**
+     * Ghi (hoặc ghi đè) bản ghi giữ ghế cho các ghế vừa được giữ, trong một lần gọi DB.
+     */
+    void upsertHolds(String showtimeId, Collection<String> seatIds, LocalDateTime holdStartedAt, LocalDateTime expiresAt);
+
+    /**
+     * Cập nhật thời hạn cho các ghế vừa được gia hạn.
+     */
+    void extendHolds(String showtimeId, Collection<String> seatIds, LocalDateTime holdStartedAt, LocalDateTime expiresAt);
+
+    /**
+     * Xóa bản ghi giữ ghế khi ghế được hủy giữ hoặc được xác nhận đặt.
+     */
+    void deleteHolds(String showtimeId, Collection<String> seatIds);
+
+    /**
+     * Xóa bản ghi giữ ghế nếu nó chưa bị gia hạn/giữ lại kể từ khi được đọc.
+     */
+    boolean deleteIfUnchanged(SeatHold hold);
+
+    /**
+     * Như deleteIfUnchanged cho nhiều bản ghi, trong một bulk write. Trả về số bản ghi đã xóa.
+     */
+    int deleteIfUnchanged(Collection<SeatHold> holds);
+
+    /**
+     * Lấy các bản ghi đã hết hạn thuộc các phân vùng cho trước, sớm hết hạn nhất trước
+     * (index idx_seatHold_partition_expiresAt). includeUnpartitioned: gồm cả bản ghi cũ chưa có partition.
+     */
+    List<SeatHold> findExpired(Collection<Integer> partitions, boolean includeUnpartitioned, LocalDateTime threshold, int limit);
+
+    /**
+     * Chỉ thêm bản ghi nếu chưa tồn tại (dùng khi bổ sung bản ghi cho ghế HOLDING còn thiếu).
+     * Trả về true nếu bản ghi vừa được thêm.
+     */
+    boolean insertIfAbsent(SeatHold hold);
+}
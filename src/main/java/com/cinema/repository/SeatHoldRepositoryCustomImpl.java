@@ -0,0 +1,105 @@
+package com.cinema.repository;
+
+import com.cinema.model.SeatHold;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class SeatHoldRepositoryCustomImpl implements SeatHoldRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void upsertHolds(String showtimeId, Collection<String> seatIds, LocalDateTime holdStartedAt, LocalDateTime expiresAt) {
+        if (seatIds.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SeatHold.class);
+        for (String seatId : seatIds) {
+            Update update = new Update()
+                    .set("showtimeId", showtimeId)
+                    .set("seatId", seatId)
+                    .set("holdStartedAt", holdStartedAt)
+                    .set("expiresAt", expiresAt)
+                    .set("partition", SeatHold.partitionOf(showtimeId));
+            bulk.upsert(Query.query(Criteria.where("_id").is(SeatHold.idOf(showtimeId, seatId))), update);
+        }
+        bulk.execute();
+    }
+
+    @Override
+    public void extendHolds(String showtimeId, Collection<String> seatIds, LocalDateTime holdStartedAt, LocalDateTime expiresAt) {
+        if (seatIds.isEmpty()) {
+            return;
+        }
+        Query query = Query.query(Criteria.where("_id").in(toIds(showtimeId, seatIds)));
+        Update update = new Update()
+                .set("holdStartedAt", holdStartedAt)
+                .set("expiresAt", expiresAt);
+        mongoTemplate.updateMulti(query, update, SeatHold.class);
+    }
+
+    @Override
+    public void deleteHolds(String showtimeId, Collection<String> seatIds) {
+        if (seatIds.isEmpty()) {
+            return;
+        }
+        mongoTemplate.remove(Query.query(Criteria.where("_id").in(toIds(showtimeId, seatIds))), SeatHold.class);
+    }
+
+    @Override
+    public boolean deleteIfUnchanged(SeatHold hold) {
+        Query query = Query.query(Criteria.where("_id").is(hold.getId()).and("expiresAt").is(hold.getExpiresAt()));
+        return mongoTemplate.remove(query, SeatHold.class).getDeletedCount() > 0;
+    }
+
+    @Override
+    public int deleteIfUnchanged(Collection<SeatHold> holds) {
+        if (holds.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SeatHold.class);
+        for (SeatHold hold : holds) {
+            bulk.remove(Query.query(Criteria.where("_id").is(hold.getId()).and("expiresAt").is(hold.getExpiresAt())));
+        }
+        return bulk.execute().getDeletedCount();
+    }
+
+    @Override
+    public List<SeatHold> findExpired(Collection<Integer> partitions, boolean includeUnpartitioned, LocalDateTime threshold, int limit) {
+        Criteria partitionCriteria = includeUnpartitioned
+                ? new Criteria().orOperator(Criteria.where("partition").in(partitions), Criteria.where("partition").is(null))
+                : Criteria.where("partition").in(partitions);
+        Query query = Query.query(new Criteria().andOperator(partitionCriteria, Criteria.where("expiresAt").lt(threshold)))
+                .with(Sort.by(Sort.Direction.ASC, "expiresAt"))
+                .limit(limit);
+        return mongoTemplate.find(query, SeatHold.class);
+    }
+
+    @Override
+    public boolean insertIfAbsent(SeatHold hold) {
+        Update update = new Update()
+                .setOnInsert("showtimeId", hold.getShowtimeId())
+                .setOnInsert("seatId", hold.getSeatId())
+                .setOnInsert("holdStartedAt", hold.getHoldStartedAt())
+                .setOnInsert("expiresAt", hold.getExpiresAt())
+                .setOnInsert("partition", SeatHold.partitionOf(hold.getShowtimeId()));
+        return mongoTemplate.upsert(Query.query(Criteria.where("_id").is(hold.getId())), update, SeatHold.class)
+                .getUpsertedId() != null;
+    }
+
+    private List<String> toIds(String showtimeId, Collection<String> seatIds) {
+        return seatIds.stream().map(seatId -> SeatHold.idOf(showtimeId, seatId)).toList();
+    }
+}
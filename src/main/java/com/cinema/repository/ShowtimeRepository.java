@@ -6,11 +6,12 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ShowtimeRepository extends MongoRepository<Showtime, String>, ShowtimeRepositoryCustom{
+public interface ShowtimeRepository extends MongoRepository<Showtime, String>, ShowtimeRepositoryCustom, ReferenceIdQueries {
 
     // --- CÁC PHƯƠNG THỨC ĐƯỢC CẬP NHẬT ĐỂ DÙNG ENUM ---
 
@@ -18,21 +19,32 @@ public interface ShowtimeRepository extends MongoRepository<Showtime, String>, S
      * Tìm suất chiếu theo nhiều điều kiện, sử dụng ShowtimeStatus enum.
      * Spring Data sẽ tự động sử dụng converter đã đăng ký.
      */
-    List<Showtime> findByMovieIdAndCinemaIdAndShowDateTimeBetweenAndStatus(
-            String movieId, String cinemaId, LocalDateTime startDateTime, LocalDateTime endDateTime, ShowtimeStatus status);
-
-    List<Showtime> findByMovieIdAndShowDateTimeBetweenAndStatus(
-            String movieId, LocalDateTime startDateTime, LocalDateTime endDateTime, ShowtimeStatus status);
-
-    List<Showtime> findByCinemaIdAndShowDateTimeBetweenAndStatus(
-            String cinemaId, LocalDateTime startDateTime, LocalDateTime endDateTime, ShowtimeStatus status);
+    default List<Showtime> findByMovieIdAndCinemaIdAndShowDateTimeBetweenAndStatus(
+            String movieId, String cinemaId, LocalDateTime startDateTime, LocalDateTime endDateTime, ShowtimeStatus status) {
+        return findByMovieIdInAndCinemaIdInAndShowDateTimeBetweenAndStatus(referenceValues(movieId),
+                referenceValues(cinemaId), startDateTime, endDateTime, status);
+    }
+
+    default List<Showtime> findByMovieIdAndShowDateTimeBetweenAndStatus(
+            String movieId, LocalDateTime startDateTime, LocalDateTime endDateTime, ShowtimeStatus status) {
+        return findByMovieIdInAndShowDateTimeBetweenAndStatus(referenceValues(movieId), startDateTime, endDateTime, status);
+    }
+
+    default List<Showtime> findByCinemaIdAndShowDateTimeBetweenAndStatus(
+            String cinemaId, LocalDateTime startDateTime, LocalDateTime endDateTime, ShowtimeStatus status) {
+        return findByCinemaIdInAndShowDateTimeBetweenAndStatus(referenceValues(cinemaId), startDateTime, endDateTime, status);
+    }
 
     List<Showtime> findByShowDateTimeBetweenAndStatus(
             LocalDateTime startDateTime, LocalDateTime endDateTime, ShowtimeStatus status);
 
-    List<Showtime> findByMovieIdAndStatus(String movieId, ShowtimeStatus status);
+    default List<Showtime> findByMovieIdAndStatus(String movieId, ShowtimeStatus status) {
+        return findByMovieIdInAndStatus(referenceValues(movieId), status);
+    }
 
-    List<Showtime> findByCinemaIdAndStatus(String cinemaId, ShowtimeStatus status);
+    default List<Showtime> findByCinemaIdAndStatus(String cinemaId, ShowtimeStatus status) {
+        return findByCinemaIdInAndStatus(referenceValues(cinemaId), status);
+    }
 
     Optional<Showtime> findByIdAndStatus(String id, ShowtimeStatus status);
 
@@ -55,10 +67,36 @@ public interface ShowtimeRepository extends MongoRepository<Showtime, String>, S
     /**
      * Tìm suất chiếu theo ID phim (không phân biệt trạng thái).
      */
-    List<Showtime> findByMovieId(String movieId);
+    default List<Showtime> findByMovieId(String movieId) {
+        return findByMovieIdIn(referenceValues(movieId));
+    }
 
     /**
      * Tìm suất chiếu theo ID rạp (không phân biệt trạng thái).
      */
-    List<Showtime> findByCinemaId(String cinemaId);
+    default List<Showtime> findByCinemaId(String cinemaId) {
+        return findByCinemaIdIn(referenceValues(cinemaId));
+    }
+
+
+    // --- TRUY VẤN THEO THAM CHIẾU ---
+    // movieId/cinemaId được lưu cùng kiểu với _id được tham chiếu; các phương thức trên truyền vào
+    // referenceValues của ReferenceIdQueries (cả hai dạng trong lúc dữ liệu cũ chưa được chuẩn hóa).
+
+    List<Showtime> findByMovieIdInAndCinemaIdInAndShowDateTimeBetweenAndStatus(
+            Collection<Object> movieIds, Collection<Object> cinemaIds, LocalDateTime startDateTime, LocalDateTime endDateTime, ShowtimeStatus status);
+
+    List<Showtime> findByMovieIdInAndShowDateTimeBetweenAndStatus(
+            Collection<Object> movieIds, LocalDateTime startDateTime, LocalDateTime endDateTime, ShowtimeStatus status);
+
+    List<Showtime> findByCinemaIdInAndShowDateTimeBetweenAndStatus(
+            Collection<Object> cinemaIds, LocalDateTime startDateTime, LocalDateTime endDateTime, ShowtimeStatus status);
+
+    List<Showtime> findByMovieIdInAndStatus(Collection<Object> movieIds, ShowtimeStatus status);
+
+    List<Showtime> findByCinemaIdInAndStatus(Collection<Object> cinemaIds, ShowtimeStatus status);
+
+    List<Showtime> findByMovieIdIn(Collection<Object> movieIds);
+
+    List<Showtime> findByCinemaIdIn(Collection<Object> cinemaIds);
 }
\ No newline at end of file
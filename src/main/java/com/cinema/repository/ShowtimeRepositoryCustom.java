@@ -8,8 +8,7 @@ import java.util.List;
 
 public interface ShowtimeRepositoryCustom {
     /**
-     * Tìm kiếm suất chiếu một cách linh hoạt, chấp nhận movieId có thể là String hoặc ObjectId
-     * và các bộ lọc khác.
+     * Tìm kiếm suất chiếu một cách linh hoạt theo phim, rạp, thành phố, khoảng ngày và trạng thái.
      *
      * @param movieIdStr ID của phim (có thể là String hoặc ObjectId hex string)
      * @param cinemaIdStr ID của rạp (có thể là String hoặc ObjectId hex string)
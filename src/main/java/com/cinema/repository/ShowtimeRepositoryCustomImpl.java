@@ -3,8 +3,8 @@ package com.cinema.repository;
 import com.cinema.enums.ShowtimeStatus;
 import com.cinema.model.Cinema; // <<< THAY ĐỔI: Import model Cinema
 import com.cinema.model.Showtime;
+import com.cinema.service.ReferenceIdMigrationService;
 import lombok.RequiredArgsConstructor;
-import org.bson.types.ObjectId;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -23,6 +23,7 @@ public class ShowtimeRepositoryCustomImpl implements ShowtimeRepositoryCustom {
 
     private final MongoTemplate mongoTemplate;
     private final CinemaRepository cinemaRepository; // <<< THAY ĐỔI: Inject CinemaRepository
+    private final ReferenceIdMigrationService referenceIdMigrationService;
 
     // <<< THAY ĐỔI: Cập nhật toàn bộ phương thức
     @Override
@@ -50,21 +51,17 @@ public class ShowtimeRepositoryCustomImpl implements ShowtimeRepositoryCustom {
                 // Nếu rạp này không thuộc thành phố đã chọn -> không có kết quả
                 return List.of();
             }
-            allCriteria.add(Criteria.where("cinemaId").is(cinemaIdStr));
+            allCriteria.add(Criteria.where("cinemaId").in(referenceIdMigrationService.referenceValues(cinemaIdStr)));
         } else if (!cinemaIdsFromCity.isEmpty()) {
             // Nếu người dùng chỉ chọn thành phố, lọc theo tất cả các rạp trong thành phố đó
-            allCriteria.add(Criteria.where("cinemaId").in(cinemaIdsFromCity));
+            allCriteria.add(Criteria.where("cinemaId").in(referenceIdMigrationService.referenceValues(cinemaIdsFromCity)));
         }
 
 
         // 3. Lọc theo Phim (movieId)
+        // movieId lưu cùng kiểu với _id của phim; chỉ khớp cả hai dạng khi dữ liệu cũ chưa được chuẩn hóa
         if (movieIdStr != null && !movieIdStr.trim().isEmpty()) {
-            List<Criteria> movieIdCriteria = new ArrayList<>();
-            movieIdCriteria.add(Criteria.where("movieId").is(movieIdStr));
-            if (ObjectId.isValid(movieIdStr)) {
-                movieIdCriteria.add(Criteria.where("movieId").is(new ObjectId(movieIdStr)));
-            }
-            allCriteria.add(new Criteria().orOperator(movieIdCriteria));
+            allCriteria.add(Criteria.where("movieId").in(referenceIdMigrationService.referenceValues(movieIdStr)));
         }
         
         // 4. Lọc theo Khoảng thời gian (Date Range)
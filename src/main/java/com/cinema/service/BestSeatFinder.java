@@ -0,0 +1,141 @@
+package com.cinema.service;
+
+import com.cinema.enums.SeatState;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Tìm các khối N ghế trống liền nhau tốt nhất trong một phòng chiếu.
+ * <p>
+ * Mỗi ghế có điểm vị trí tính sẵn trong SeatLayout (hàng cách màn hình khoảng 2/3 chiều sâu phòng và
+ * ghế càng gần giữa hàng càng tốt). Điểm của một khối là trung bình điểm các ghế, trừ điểm nếu khối
+ * để lại một ghế trống lẻ bên cạnh (ghế khó bán). Duyệt mỗi hàng một lần bằng cửa sổ trượt nên chi phí
+ * O(số ghế) cho mỗi lần tìm.
+ */
+public final class BestSeatFinder {
+
+    private static final double IDEAL_DEPTH = 0.65;
+    private static final double ROW_WEIGHT = 0.55;
+    private static final double CENTER_WEIGHT = 0.45;
+    private static final double ORPHAN_PENALTY = 0.15;
+
+    private BestSeatFinder() {
+    }
+
+    /**
+     * Một khối ghế ứng viên: ordinal ghế đầu tiên, số ghế và điểm.
+     */
+    public record Block(int firstOrdinal, int length, double score) {
+        public List<String> seatIds(SeatLayout layout) {
+            List<String> ids = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                ids.add(layout.getSeatIds().get(firstOrdinal + i));
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Tối đa maxResults khối tốt nhất, điểm giảm dần.
+     *
+     * @param seatType nếu khác null, mọi ghế trong khối phải thuộc loại ghế này
+     */
+    public static List<Block> findBest(SeatLayout layout, SeatState[] states, int count, String seatType, int maxResults) {
+        if (count <= 0 || maxResults <= 0) {
+            return List.of();
+        }
+        PriorityQueue<Block> best = new PriorityQueue<>(maxResults + 1, Comparator.comparingDouble(Block::score));
+        for (SeatLayout.Row row : layout.getRows()) {
+            if (row.length() < count) {
+                continue;
+            }
+            int rowEnd = row.firstOrdinal() + row.length();
+            int runStart = -1;
+            for (int ordinal = row.firstOrdinal(); ordinal <= rowEnd; ordinal++) {
+                boolean usable = ordinal < rowEnd && isUsable(layout, states, ordinal, seatType);
+                if (usable && runStart < 0) {
+                    runStart = ordinal;
+                } else if (!usable && runStart >= 0) {
+                    scanRun(layout, states, row, runStart, ordinal, count, maxResults, best);
+                    runStart = -1;
+                }
+            }
+        }
+        List<Block> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(Block::score).reversed());
+        return result;
+    }
+
+    /**
+     * Điểm vị trí của từng ghế theo ordinal, dùng khi dựng SeatLayout.
+     */
+    static double[] preferenceScores(List<SeatLayout.Row> rows, int seatCount, boolean screenAtFirstRow) {
+        double[] scores = new double[seatCount];
+        int rowCount = rows.size();
+        for (SeatLayout.Row row : rows) {
+            int depth = screenAtFirstRow ? row.index() : rowCount - 1 - row.index();
+            double depthFraction = rowCount > 1 ? (double) depth / (rowCount - 1) : IDEAL_DEPTH;
+            double rowScore = Math.max(0, 1 - Math.abs(depthFraction - IDEAL_DEPTH) / IDEAL_DEPTH);
+            double center = (row.length() - 1) / 2.0;
+            for (int position = 0; position < row.length(); position++) {
+                double centerScore = center > 0 ? 1 - Math.abs(position - center) / center : 1;
+                scores[row.firstOrdinal() + position] = ROW_WEIGHT * rowScore + CENTER_WEIGHT * centerScore;
+            }
+        }
+        return scores;
+    }
+
+    private static boolean isUsable(SeatLayout layout, SeatState[] states, int ordinal, String seatType) {
+        return states[ordinal] == SeatState.AVAILABLE
+                && (seatType == null || seatType.equalsIgnoreCase(layout.seatTypeOf(ordinal)));
+    }
+
+    /**
+     * Trượt cửa sổ count ghế trên một đoạn ghế trống liên tiếp [runStart, runEnd) của hàng.
+     */
+    private static void scanRun(SeatLayout layout, SeatState[] states, SeatLayout.Row row, int runStart, int runEnd,
+                                int count, int maxResults, PriorityQueue<Block> best) {
+        if (runEnd - runStart < count) {
+            return;
+        }
+        double windowSum = 0;
+        for (int ordinal = runStart; ordinal < runStart + count; ordinal++) {
+            windowSum += layout.preferenceOf(ordinal);
+        }
+        for (int start = runStart; start + count <= runEnd; start++) {
+            if (start > runStart) {
+                windowSum += layout.preferenceOf(start + count - 1) - layout.preferenceOf(start - 1);
+            }
+            double score = windowSum / count - ORPHAN_PENALTY * orphansLeft(states, row, start, count);
+            if (best.size() < maxResults) {
+                best.add(new Block(start, count, score));
+            } else if (score > best.peek().score()) {
+                best.poll();
+                best.add(new Block(start, count, score));
+            }
+        }
+    }
+
+    /**
+     * Số ghế trống bị bỏ lẻ (kẹp giữa khối và ghế không trống/mép hàng) nếu chọn khối này.
+     */
+    private static int orphansLeft(SeatState[] states, SeatLayout.Row row, int start, int count) {
+        int rowStart = row.firstOrdinal();
+        int rowEnd = rowStart + row.length();
+        int orphans = 0;
+        int left = start - 1;
+        if (left >= rowStart && states[left] == SeatState.AVAILABLE
+                && (left - 1 < rowStart || states[left - 1] != SeatState.AVAILABLE)) {
+            orphans++;
+        }
+        int right = start + count;
+        if (right < rowEnd && states[right] == SeatState.AVAILABLE
+                && (right + 1 >= rowEnd || states[right + 1] != SeatState.AVAILABLE)) {
+            orphans++;
+        }
+        return orphans;
+    }
+}
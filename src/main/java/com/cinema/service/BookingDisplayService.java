@@ -0,0 +1,146 @@
+package com.cinema.service;
+
+import com.cinema.config.AppProperties;
+import com.cinema.model.Booking;
+import com.cinema.model.Cinema;
+import com.cinema.model.Movie;
+import com.cinema.model.Room;
+import com.cinema.model.Showtime;
+import com.cinema.util.LruCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Tạo thông tin hiển thị (tên phim, rạp, phòng, giờ chiếu) lưu kèm booking, để BookingDetailsDto
+ * được dựng từ chính booking mà không phải đọc suất chiếu, phim, rạp và phòng.
+ * Tên được đọc bằng projection và cache theo id trong cinema.booking.display-name-cache-seconds giây,
+ * để tên admin vừa sửa được dùng cho booking mới mà không cần khởi động lại.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BookingDisplayService {
+
+    private static final int BACKFILL_BATCH_SIZE = 500;
+    private static final String UNKNOWN = "N/A";
+    private static final String MIGRATION_STATE_COLLECTION = "migrations";
+    private static final String DISPLAY_BACKFILL_ID = "booking-display-backfill";
+
+    private final MongoTemplate mongoTemplate;
+    private final AppProperties appProperties;
+
+    private final LruCache<String, CachedName> names = new LruCache<>(5_000);
+
+    private record CachedName(String name, long loadedAtNanos) {
+    }
+
+    /**
+     * Thông tin hiển thị của booking thuộc suất chiếu này (suất chiếu đã được đọc sẵn).
+     */
+    public Booking.DisplaySnapshot snapshotOf(Showtime showtime) {
+        return new Booking.DisplaySnapshot(
+                nameOf(Movie.class, "title", showtime.getMovieId(), Movie::getTitle),
+                nameOf(Cinema.class, "name", showtime.getCinemaId(), Cinema::getName),
+                nameOf(Room.class, "name", showtime.getRoomId(), Room::getName),
+                showtime.getShowDateTime());
+    }
+
+    /**
+     * Bổ sung thông tin hiển thị cho các booking cũ còn thiếu, mỗi lô BACKFILL_BATCH_SIZE booking.
+     * Booking mới luôn có thông tin hiển thị nên chỉ cần chạy tới khi hoàn tất một lần; trạng thái hoàn tất được lưu
+     * trong collection migrations để các lần khởi động sau không quét display = null (không có index) nữa.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (mongoTemplate.exists(new Query(Criteria.where("_id").is(DISPLAY_BACKFILL_ID).and("completedAt").ne(null)),
+                MIGRATION_STATE_COLLECTION)) {
+            log.debug("Booking display snapshot backfill already completed, skipping.");
+            return;
+        }
+        Thread.ofVirtual().name("booking-display-backfill").start(() -> {
+            try {
+                Map<String, Object> result = backfill(Integer.MAX_VALUE);
+                mongoTemplate.upsert(new Query(Criteria.where("_id").is(DISPLAY_BACKFILL_ID)),
+                        new Update().setOnInsert("completedAt", LocalDateTime.now()), MIGRATION_STATE_COLLECTION);
+                log.info("Booking display snapshot backfill completed: {}", result);
+            } catch (RuntimeException e) {
+                log.error("Booking display snapshot backfill failed: {}", e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Bổ sung thông tin hiển thị cho tối đa {@code limit} booking chưa có.
+     */
+    public Map<String, Object> backfill(int limit) {
+        int scanned = 0;
+        int updated = 0;
+        while (scanned < limit) {
+            Query query = new Query(Criteria.where("display").is(null)).limit(Math.min(BACKFILL_BATCH_SIZE, limit - scanned));
+            query.fields().include("_id").include("showtimeId");
+            List<Booking> bookings = mongoTemplate.find(query, Booking.class);
+            if (bookings.isEmpty()) {
+                break;
+            }
+            scanned += bookings.size();
+
+            Query showtimeQuery = new Query(Criteria.where("_id").in(bookings.stream().map(Booking::getShowtimeId).distinct().toList()));
+            showtimeQuery.fields().include("movieId").include("cinemaId").include("roomId").include("showDateTime");
+            Map<String, Booking.DisplaySnapshot> snapshots = new HashMap<>();
+            mongoTemplate.find(showtimeQuery, Showtime.class).forEach(showtime -> snapshots.put(showtime.getId(), snapshotOf(showtime)));
+
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Booking.class);
+            for (Booking booking : bookings) {
+                // Suất chiếu đã bị xóa: ghi giá trị mặc định để booking không bị quét lại
+                Booking.DisplaySnapshot snapshot = snapshots.getOrDefault(booking.getShowtimeId(),
+                        new Booking.DisplaySnapshot(UNKNOWN, UNKNOWN, UNKNOWN, null));
+                bulk.updateOne(new Query(Criteria.where("_id").is(booking.getId()).and("display").is(null)),
+                        new Update().set("display", snapshot));
+            }
+            updated += bulk.execute().getModifiedCount();
+            if (bookings.size() < BACKFILL_BATCH_SIZE) {
+                break;
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("scanned", scanned);
+        result.put("updated", updated);
+        return result;
+    }
+
+    private <T> String nameOf(Class<T> type, String field, String id, Function<T, String> getter) {
+        if (id == null) {
+            return UNKNOWN;
+        }
+        String key = type.getSimpleName() + ":" + id;
+        CachedName cached = names.get(key);
+        if (cached != null && System.nanoTime() - cached.loadedAtNanos()
+                < TimeUnit.SECONDS.toNanos(appProperties.getBooking().getDisplayNameCacheSeconds())) {
+            return cached.name();
+        }
+        Query query = new Query(Criteria.where("_id").is(id));
+        query.fields().include(field);
+        T entity = mongoTemplate.findOne(query, type);
+        String name = entity != null && getter.apply(entity) != null ? getter.apply(entity) : UNKNOWN;
+        if (entity != null) {
+            names.put(key, new CachedName(name, System.nanoTime()));
+        }
+        return name;
+    }
+}
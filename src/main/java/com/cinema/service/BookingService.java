@@ -4,19 +4,29 @@ import com.cinema.config.AppProperties;
 import com.cinema.dto.request.CreateBookingRequest;
 import com.cinema.dto.response.BookingAggregatedDetailsDto;
 import com.cinema.dto.response.BookingDetailsDto;
+import com.cinema.dto.response.BookingPageDto;
 import com.cinema.enums.*;
 import com.cinema.model.*;
 import com.cinema.repository.*;
+import com.cinema.util.LruCache;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bson.types.ObjectId;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -24,15 +34,32 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class BookingService {
 
+    // PENDING -> (EXPIRED bởi job đối soát) -> COMPLETED/REFUND_REQUIRED
+    private static final int MAX_PAYMENT_TRANSITION_ATTEMPTS = 3;
+
     private final BookingRepository bookingRepository;
     private final ShowtimeRepository showtimeRepository;
     private final MovieRepository movieRepository;
     private final CinemaRepository cinemaRepository;
     private final RoomRepository roomRepository;
-    private final ConcessionRepository concessionRepository;
+    private final ConcessionCatalog concessionCatalog;
+    private final BookingDisplayService bookingDisplayService;
+    private final ConfirmationCodeGenerator confirmationCodeGenerator;
+    private final OutboxService outboxService;
     private final SeatService seatService;
     private final AppProperties appProperties;
 
+    // Kết quả tra cứu theo mã xác nhận, giữ trong thời gian ngắn (cinema.booking.details-cache-seconds)
+    private LruCache<String, CachedDetails> detailsCache;
+
+    private record CachedDetails(BookingAggregatedDetailsDto details, long loadedAtNanos) {
+    }
+
+    @PostConstruct
+    void initDetailsCache() {
+        detailsCache = new LruCache<>(appProperties.getBooking().getDetailsCacheSize());
+    }
+
     @Transactional
     public BookingDetailsDto createBooking(CreateBookingRequest request) {
         log.info("Bắt đầu tạo booking cho showtimeId: {}", request.getShowtimeId());
@@ -49,6 +76,9 @@ public class BookingService {
             throw new IllegalArgumentException("Suất chiếu đã diễn ra.");
         }
 
+        // Kiểm tra đồ ăn thức uống trước khi giữ ghế để yêu cầu không hợp lệ không chiếm ghế
+        List<Booking.ConcessionItem> bookingConcessions = resolveConcessions(request, showtime);
+
         // Bước 1: Giữ ghế trước khi tạo booking
         log.info("Đang tiến hành giữ ghế cho showtimeId: {}, seats: {}", showtime.getId(), request.getSeats());
         seatService.holdSeats(showtime.getId(), request.getSeats(), request.getCustomerInfo().getPhone());
@@ -70,7 +100,8 @@ public class BookingService {
         booking.setPaymentMethod(null); // Sẽ được set sau khi thanh toán thành công
         booking.setCreatedAt(LocalDateTime.now());
         booking.setUpdatedAt(LocalDateTime.now());
-        booking.setConfirmationCode(generateConfirmationCode());
+        booking.setConfirmationCode(confirmationCodeGenerator.next());
+        booking.setDisplay(bookingDisplayService.snapshotOf(showtime));
 
         long totalTicketPrice = 0;
         if (request.getTicketTypes() != null && !request.getTicketTypes().isEmpty()) {
@@ -87,23 +118,7 @@ public class BookingService {
         }
 
         long totalConcessionPrice = 0;
-        if (request.getConcessions() != null && !request.getConcessions().isEmpty()) {
-            List<Booking.ConcessionItem> bookingConcessions = request.getConcessions().stream().map(cReq -> {
-                Concession concessionModel = concessionRepository.findById(cReq.getItemId())
-                        .orElseThrow(() -> new IllegalArgumentException("Concession không tồn tại: " + cReq.getItemId()));
-                if (!concessionModel.getAvailability()) {
-                     throw new IllegalArgumentException("Concession " + concessionModel.getName() + " không có sẵn.");
-                }
-                if (concessionModel.getCinemaIds() != null && !concessionModel.getCinemaIds().isEmpty() && !concessionModel.getCinemaIds().contains(showtime.getCinemaId())) {
-                    throw new IllegalArgumentException("Concession " + concessionModel.getName() + " không áp dụng cho rạp này.");
-                }
-                Booking.ConcessionItem bookingConcession = new Booking.ConcessionItem();
-                bookingConcession.setItemId(cReq.getItemId());
-                bookingConcession.setName(concessionModel.getName());
-                bookingConcession.setQuantity(cReq.getQuantity());
-                bookingConcession.setPrice(concessionModel.getPrice());
-                return bookingConcession;
-            }).collect(Collectors.toList());
+        if (bookingConcessions != null) {
             booking.setConcessions(bookingConcessions);
             totalConcessionPrice = bookingConcessions.stream().mapToLong(bc -> bc.getPrice() * bc.getQuantity()).sum();
         }
@@ -112,39 +127,129 @@ public class BookingService {
 
         // Bước 2: Lưu booking vào DB
         Booking savedBooking = bookingRepository.save(booking);
+        // Các xử lý sau đặt vé (thông báo, thống kê...) chạy qua outbox, ngoài transaction đang giữ ghế
+        outboxService.publish(OutboxEvent.BOOKING_CREATED, savedBooking.getId(), bookingEventPayload(savedBooking));
         log.info("Đã tạo booking (chờ thanh toán) thành công với ID: {} và mã xác nhận: {}", savedBooking.getId(), savedBooking.getConfirmationCode());
 
         return getBookingDetailsDto(savedBooking);
     }
 
+    private static Map<String, Object> bookingEventPayload(Booking booking) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("showtimeId", booking.getShowtimeId());
+        payload.put("confirmationCode", booking.getConfirmationCode());
+        payload.put("seats", booking.getSeats());
+        payload.put("totalPrice", booking.getTotalPrice());
+        payload.put("paymentStatus", booking.getPaymentStatus() != null ? booking.getPaymentStatus().name() : null);
+        payload.put("phone", booking.getCustomerInfo() != null ? booking.getCustomerInfo().getPhone() : null);
+        payload.put("email", booking.getCustomerInfo() != null ? booking.getCustomerInfo().getEmail() : null);
+        return payload;
+    }
+
+    /**
+     * Tra cứu toàn bộ đồ ăn thức uống của yêu cầu trong một lần (danh mục trong bộ nhớ, thiếu thì một lệnh findAllById).
+     * Trả về null nếu yêu cầu không có đồ ăn thức uống.
+     */
+    private List<Booking.ConcessionItem> resolveConcessions(CreateBookingRequest request, Showtime showtime) {
+        if (request.getConcessions() == null || request.getConcessions().isEmpty()) {
+            return null;
+        }
+        Map<String, Concession> catalog = concessionCatalog.resolve(showtime.getCinemaId(),
+                request.getConcessions().stream().map(CreateBookingRequest.ConcessionItemRequest::getItemId).toList());
+        return request.getConcessions().stream().map(cReq -> {
+            Concession concessionModel = catalog.get(cReq.getItemId());
+            if (concessionModel == null) {
+                throw new IllegalArgumentException("Concession không tồn tại: " + cReq.getItemId());
+            }
+            if (!Boolean.TRUE.equals(concessionModel.getAvailability())) {
+                 throw new IllegalArgumentException("Concession " + concessionModel.getName() + " không có sẵn.");
+            }
+            if (concessionModel.getCinemaIds() != null && !concessionModel.getCinemaIds().isEmpty() && !concessionModel.getCinemaIds().contains(showtime.getCinemaId())) {
+                throw new IllegalArgumentException("Concession " + concessionModel.getName() + " không áp dụng cho rạp này.");
+            }
+            Booking.ConcessionItem bookingConcession = new Booking.ConcessionItem();
+            bookingConcession.setItemId(cReq.getItemId());
+            bookingConcession.setName(concessionModel.getName());
+            bookingConcession.setQuantity(cReq.getQuantity());
+            bookingConcession.setPrice(concessionModel.getPrice());
+            return bookingConcession;
+        }).collect(Collectors.toList());
+    }
+
     /**
      * Phương thức này được gọi bởi VNPayService sau khi thanh toán thành công để hoàn tất booking.
      * Nó bao gồm việc cập nhật trạng thái thanh toán và xác nhận ghế.
+     * <p>
+     * Trạng thái chỉ được chuyển bằng lệnh cập nhật có điều kiện nên không ghi đè thay đổi đồng thời
+     * (PendingBookingReconciler chuyển EXPIRED). Booking đã EXPIRED, hoặc PENDING nhưng ghế đã hết HOLDING, được
+     * giữ lại ghế nếu ghế còn trống; nếu không (hoặc booking đã bị hủy), booking chuyển REFUND_REQUIRED để hoàn tiền
+     * hoặc xử lý thủ công.
      */
     @Transactional
     public BookingDetailsDto finalizeSuccessfulPayment(String bookingId, PaymentMethodType paymentMethod, String paymentTransactionId) {
         log.info("Hoàn tất booking sau thanh toán thành công cho ID: {}, Phương thức: {}, Tham chiếu TT: {}", bookingId, paymentMethod, paymentTransactionId);
-        Booking booking = bookingRepository.findById(bookingId)
-                .orElseThrow(() -> new IllegalArgumentException("Booking không tồn tại: " + bookingId));
+        // Đọc lại khi trạng thái vừa đổi giữa lệnh đọc và lệnh cập nhật (tối đa PENDING -> EXPIRED -> kết quả cuối)
+        for (int attempt = 0; attempt < MAX_PAYMENT_TRANSITION_ATTEMPTS; attempt++) {
+            Booking booking = bookingRepository.findById(bookingId)
+                    .orElseThrow(() -> new IllegalArgumentException("Booking không tồn tại: " + bookingId));
+            PaymentStatusType status = booking.getPaymentStatus();
 
-        if (booking.getPaymentStatus() == PaymentStatusType.COMPLETED) {
-            log.warn("Booking {} đã được hoàn tất thanh toán trước đó.", bookingId);
-            return getBookingDetailsDto(booking);
+            if (status == PaymentStatusType.COMPLETED || status == PaymentStatusType.REFUND_REQUIRED) {
+                log.warn("Booking {} đã được xử lý thanh toán trước đó (trạng thái {}).", bookingId, status);
+                return getBookingDetailsDto(booking);
+            }
+            if (status == PaymentStatusType.PENDING && seatService.isHolding(booking.getShowtimeId(), booking.getSeats())) {
+                Optional<Booking> completed = completePayment(booking, status, paymentMethod, paymentTransactionId);
+                if (completed.isPresent()) {
+                    return getBookingDetailsDto(completed.get());
+                }
+                continue;
+            }
+            // Booking đã EXPIRED, hoặc vẫn PENDING nhưng lượt giữ ghế đã bị giải phóng trước khi job đối soát kịp đánh dấu
+            if ((status == PaymentStatusType.PENDING || status == PaymentStatusType.EXPIRED)
+                    && seatService.tryHoldSeats(booking.getShowtimeId(), booking.getSeats())) {
+                log.info("Booking {} ({}) không còn giữ ghế nhưng ghế còn trống, giữ lại ghế để hoàn tất thanh toán.", bookingId, status);
+                Optional<Booking> completed = completePayment(booking, status, paymentMethod, paymentTransactionId);
+                if (completed.isPresent()) {
+                    return getBookingDetailsDto(completed.get());
+                }
+                seatService.releaseSeats(booking.getShowtimeId(), booking.getSeats());
+                continue;
+            }
+
+            Optional<Booking> flagged = bookingRepository.updatePaymentStatus(
+                    bookingId, status, PaymentStatusType.REFUND_REQUIRED, paymentMethod, paymentTransactionId);
+            if (flagged.isPresent()) {
+                log.error("Booking {} (trạng thái {}) đã được thanh toán nhưng không thể giữ ghế. Cần hoàn tiền, tham chiếu TT: {}",
+                        bookingId, status, paymentTransactionId);
+                evictDetails(List.of(booking.getConfirmationCode()));
+                outboxService.publish(OutboxEvent.BOOKING_REFUND_REQUIRED, bookingId, bookingEventPayload(flagged.get()));
+                return getBookingDetailsDto(flagged.get());
+            }
         }
+        throw new IllegalStateException("Trạng thái booking " + bookingId + " đang thay đổi, vui lòng thử lại.");
+    }
 
-        booking.setPaymentStatus(PaymentStatusType.COMPLETED);
-        booking.setPaymentMethod(paymentMethod);
-        booking.setPaymentReference(paymentTransactionId);
-        booking.setUpdatedAt(LocalDateTime.now());
-        Booking updatedBooking = bookingRepository.save(booking);
+    /**
+     * Chuyển booking từ {@code expected} sang COMPLETED và xác nhận ghế (đang HOLDING) sang BOOKED.
+     */
+    private Optional<Booking> completePayment(Booking booking, PaymentStatusType expected,
+                                              PaymentMethodType paymentMethod, String paymentTransactionId) {
+        Optional<Booking> completed = bookingRepository.updatePaymentStatus(
+                booking.getId(), expected, PaymentStatusType.COMPLETED, paymentMethod, paymentTransactionId);
+        if (completed.isEmpty()) {
+            return completed;
+        }
+        Booking updatedBooking = completed.get();
+        evictDetails(List.of(updatedBooking.getConfirmationCode()));
         log.info("Đã cập nhật trạng thái thanh toán thành công cho booking: {}", updatedBooking.getId());
 
         // Bước 3: Xác nhận ghế (chuyển từ HOLDING sang BOOKED)
         // Nếu bước này thất bại, Exception sẽ được ném ra và transaction ở VNPayService sẽ rollback
         seatService.confirmSeatBooking(updatedBooking.getShowtimeId(), updatedBooking.getSeats(), updatedBooking.getId());
         log.info("Đã xác nhận (BOOKED) ghế thành công cho bookingId: {}", updatedBooking.getId());
-
-        return getBookingDetailsDto(updatedBooking);
+        outboxService.publish(OutboxEvent.BOOKING_PAID, updatedBooking.getId(), bookingEventPayload(updatedBooking));
+        return completed;
     }
     
     // Legacy method, can be removed or kept for manual confirmation
@@ -156,23 +261,91 @@ public class BookingService {
 
     public Optional<BookingAggregatedDetailsDto> getBookingDetailsByConfirmationCode(String confirmationCode) {
         log.debug("Tra cứu booking chi tiết bằng mã xác nhận: {}", confirmationCode);
-        return bookingRepository.findByConfirmationCode(confirmationCode)
-                .flatMap(booking -> bookingRepository.findBookingWithDetailsById(booking.getId()));
+        if (confirmationCodeGenerator.isMistyped(confirmationCode)) {
+            return Optional.empty();
+        }
+        CachedDetails cached = detailsCache.get(confirmationCode);
+        if (cached != null && System.nanoTime() - cached.loadedAtNanos() < detailsCacheTtlNanos()) {
+            return Optional.of(cached.details());
+        }
+        return bookingRepository.findBookingWithDetailsByConfirmationCode(confirmationCode).map(this::cacheDetails);
     }
 
     public Optional<BookingAggregatedDetailsDto> lookupBookingDetails(String phone, String email) {
         log.debug("Tra cứu booking chi tiết bằng SĐT: {} và Email: {}", phone, email);
-        return bookingRepository.findByCustomerInfo_PhoneAndCustomerInfo_Email(phone, email)
-                .flatMap(booking -> bookingRepository.findBookingWithDetailsById(booking.getId()));
+        return bookingRepository.findBookingWithDetailsByCustomer(phone, email).map(this::cacheDetails);
+    }
+
+    private BookingAggregatedDetailsDto cacheDetails(BookingAggregatedDetailsDto details) {
+        if (details.getConfirmationCode() != null) {
+            detailsCache.put(details.getConfirmationCode(), new CachedDetails(details, System.nanoTime()));
+        }
+        return details;
+    }
+
+    /**
+     * Bỏ chi tiết booking đã cache sau khi trạng thái booking thay đổi. Trong transaction thì chỉ bỏ sau khi commit,
+     * để request đọc đồng thời không nạp lại dữ liệu chưa commit (hoặc sắp bị rollback) vào cache.
+     */
+    public void evictDetails(Collection<String> confirmationCodes) {
+        if (confirmationCodes.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            confirmationCodes.forEach(detailsCache::remove);
+            return;
+        }
+        List<String> codes = List.copyOf(confirmationCodes);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                codes.forEach(detailsCache::remove);
+            }
+        });
     }
 
-    private String generateConfirmationCode() {
-        String prefix = appProperties.getBooking().getConfirmationCode().getPrefix();
-        String randomPart = UUID.randomUUID().toString().replace("-", "").substring(0, 8).toUpperCase();
-        return prefix + randomPart;
+    private long detailsCacheTtlNanos() {
+        return TimeUnit.SECONDS.toNanos(appProperties.getBooking().getDetailsCacheSeconds());
+    }
+
+    /**
+     * Danh sách booking cho quản trị, mới nhất trước, phân trang theo con trỏ (createdAt, _id) nên
+     * độ trễ không phụ thuộc trang sâu tới đâu.
+     */
+    public BookingPageDto getBookingsPage(String cursor, int size, boolean includeTotal) {
+        LocalDateTime cursorCreatedAt = null;
+        String cursorId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+                cursorCreatedAt = LocalDateTime.parse(parts[0]);
+                cursorId = parts[1];
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Con trỏ phân trang không hợp lệ.");
+            }
+            if (!ObjectId.isValid(cursorId)) {
+                throw new IllegalArgumentException("Con trỏ phân trang không hợp lệ.");
+            }
+        }
+
+        // Lấy dư một booking để biết còn trang sau hay không
+        List<BookingAggregatedDetailsDto> items = bookingRepository.findBookingsWithDetailsBefore(cursorCreatedAt, cursorId, size + 1);
+        String nextCursor = null;
+        if (items.size() > size) {
+            items = items.subList(0, size);
+            BookingAggregatedDetailsDto last = items.get(size - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((last.getCreatedAt() + "|" + last.getId()).getBytes(StandardCharsets.UTF_8));
+        }
+        Long estimatedTotal = includeTotal ? bookingRepository.estimatedCount() : null;
+        return new BookingPageDto(items, nextCursor, estimatedTotal);
     }
 
     private BookingDetailsDto getBookingDetailsDto(Booking booking) {
+        if (booking.getDisplay() != null) {
+            return BookingDetailsDto.fromBooking(booking);
+        }
+        // Booking cũ chưa được bổ sung thông tin hiển thị
         Showtime showtime = showtimeRepository.findById(booking.getShowtimeId()).orElse(null);
         Movie movie = null;
         Cinema cinema = null;
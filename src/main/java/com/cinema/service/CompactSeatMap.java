@@ -0,0 +1,185 @@
+package com.cinema.service;
+
+import com.cinema.enums.SeatState;
+import com.cinema.model.Showtime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mã hóa/giải mã trạng thái ghế dạng bitmap: 2 bit cho mỗi ghế, 32 ghế trong một phần tử int64.
+ * <p>
+ * Dùng mảng int64 thay vì BSON binary vì MongoDB chỉ hỗ trợ $bit (cập nhật) và
+ * $bitsAllSet/$bitsAllClear (điều kiện) trên số nguyên, nhờ đó mọi chuyển trạng thái
+ * vẫn là một lệnh cập nhật có điều kiện, nguyên tử trên từng document.
+ */
+public final class CompactSeatMap {
+
+    public static final String ENCODING = "bitmap";
+    /** Trạng thái tạm trong lúc chuyển đổi: các lệnh giữ ghế (dù theo cách mã hóa nào) đều không khớp. */
+    public static final String MIGRATING = "migrating";
+    public static final int SEATS_PER_WORD = 32;
+    private static final int BITS_PER_SEAT = 2;
+    private static final long SEAT_MASK = 0b11L;
+
+    private CompactSeatMap() {
+    }
+
+    public static boolean isCompact(Showtime showtime) {
+        return ENCODING.equals(showtime.getSeatEncoding());
+    }
+
+    public static int code(SeatState state) {
+        if (state == null) {
+            return 0;
+        }
+        return switch (state) {
+            case AVAILABLE -> 0;
+            case HOLDING -> 1;
+            case BOOKED -> 2;
+            case UNAVAILABLE -> 3;
+        };
+    }
+
+    public static SeatState stateOf(int code) {
+        return switch (code) {
+            case 1 -> SeatState.HOLDING;
+            case 2 -> SeatState.BOOKED;
+            case 3 -> SeatState.UNAVAILABLE;
+            default -> SeatState.AVAILABLE;
+        };
+    }
+
+    public static int wordIndex(int ordinal) {
+        return ordinal / SEATS_PER_WORD;
+    }
+
+    public static int shift(int ordinal) {
+        return (ordinal % SEATS_PER_WORD) * BITS_PER_SEAT;
+    }
+
+    public static int wordCount(int seatCount) {
+        return (seatCount + SEATS_PER_WORD - 1) / SEATS_PER_WORD;
+    }
+
+    public static SeatState stateAt(List<Long> words, int ordinal) {
+        int index = wordIndex(ordinal);
+        if (words == null || index >= words.size() || words.get(index) == null) {
+            return SeatState.AVAILABLE;
+        }
+        return stateOf((int) ((words.get(index) >>> shift(ordinal)) & SEAT_MASK));
+    }
+
+    public static void setState(List<Long> words, int ordinal, SeatState state) {
+        int index = wordIndex(ordinal);
+        long word = words.get(index);
+        word &= ~(SEAT_MASK << shift(ordinal));
+        word |= ((long) code(state)) << shift(ordinal);
+        words.set(index, word);
+    }
+
+    /**
+     * Mặt nạ XOR chuyển một ghế từ trạng thái from sang to (dùng với $bit xor).
+     */
+    public static long transitionMask(int ordinal, SeatState from, SeatState to) {
+        return ((long) (code(from) ^ code(to))) << shift(ordinal);
+    }
+
+    /**
+     * Vị trí bit (trong phần tử chứa ghế) phải bằng 1 / bằng 0 để ghế đang ở trạng thái state.
+     */
+    public static List<Integer> setBitPositions(int ordinal, SeatState state) {
+        return bitPositions(ordinal, code(state), true);
+    }
+
+    public static List<Integer> clearBitPositions(int ordinal, SeatState state) {
+        return bitPositions(ordinal, code(state), false);
+    }
+
+    private static List<Integer> bitPositions(int ordinal, int code, boolean set) {
+        List<Integer> positions = new ArrayList<>(BITS_PER_SEAT);
+        for (int bit = 0; bit < BITS_PER_SEAT; bit++) {
+            if ((((code >> bit) & 1) == 1) == set) {
+                positions.add(shift(ordinal) + bit);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Mã hóa bản đồ ghế dạng cũ thành bitmap. Ghế không có trong map được coi là AVAILABLE.
+     */
+    public static List<Long> encode(SeatLayout layout, Map<String, Showtime.SeatStatus> seatStatus) {
+        List<Long> words = new ArrayList<>(wordCount(layout.size()));
+        for (int i = 0; i < wordCount(layout.size()); i++) {
+            words.add(0L);
+        }
+        if (seatStatus != null) {
+            seatStatus.forEach((seatId, status) -> {
+                if (status != null && status.getStatus() != null && status.getStatus() != SeatState.AVAILABLE) {
+                    setState(words, layout.ordinalOf(seatId), status.getStatus());
+                }
+            });
+        }
+        return words;
+    }
+
+    /**
+     * Phần map phụ cần giữ lại khi mã hóa: chỉ các ghế HOLDING/BOOKED (mang holdStartedAt/bookingId).
+     */
+    public static Map<String, Showtime.SeatStatus> sideEntries(Map<String, Showtime.SeatStatus> seatStatus) {
+        Map<String, Showtime.SeatStatus> side = new HashMap<>();
+        if (seatStatus != null) {
+            seatStatus.forEach((seatId, status) -> {
+                if (status != null && (SeatState.HOLDING.equals(status.getStatus()) || SeatState.BOOKED.equals(status.getStatus()))) {
+                    side.put(seatId, status);
+                }
+            });
+        }
+        return side;
+    }
+
+    /**
+     * Giải mã bitmap thành bản đồ trạng thái đầy đủ (mọi ghế của phòng), bổ sung thông tin từ map phụ.
+     */
+    public static Map<String, Showtime.SeatStatus> decode(SeatLayout layout, List<Long> words, Map<String, Showtime.SeatStatus> sideEntries) {
+        Map<String, Showtime.SeatStatus> result = new HashMap<>(layout.size() * 2);
+        List<String> seatIds = layout.getSeatIds();
+        for (int ordinal = 0; ordinal < seatIds.size(); ordinal++) {
+            String seatId = seatIds.get(ordinal);
+            SeatState state = stateAt(words, ordinal);
+            Showtime.SeatStatus side = sideEntries != null ? sideEntries.get(seatId) : null;
+            result.put(seatId, new Showtime.SeatStatus(
+                    state,
+                    side != null && state == SeatState.HOLDING ? side.getHoldStartedAt() : null,
+                    side != null && state == SeatState.BOOKED ? side.getBookingId() : null));
+        }
+        return result;
+    }
+
+    /**
+     * Trạng thái của mọi ghế theo ordinal, đọc được từ cả hai cách mã hóa.
+     * Ghế có trong map dạng cũ nhưng không thuộc layout bị bỏ qua.
+     */
+    public static SeatState[] statesOf(SeatLayout layout, Showtime showtime) {
+        SeatState[] states = new SeatState[layout.size()];
+        if (isCompact(showtime)) {
+            for (int ordinal = 0; ordinal < states.length; ordinal++) {
+                states[ordinal] = stateAt(showtime.getSeatBits(), ordinal);
+            }
+            return states;
+        }
+        Arrays.fill(states, SeatState.AVAILABLE);
+        if (showtime.getSeatStatus() != null) {
+            showtime.getSeatStatus().forEach((seatId, status) -> {
+                if (layout.contains(seatId) && status != null && status.getStatus() != null) {
+                    states[layout.ordinalOf(seatId)] = status.getStatus();
+                }
+            });
+        }
+        return states;
+    }
+}
@@ -0,0 +1,173 @@
+package com.cinema.service;
+
+import com.cinema.model.Concession;
+import com.cinema.repository.ConcessionRepository;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Danh mục đồ ăn thức uống trong bộ nhớ, chia theo rạp, dùng khi tạo booking.
+ * <p>
+ * Danh mục được nạp toàn bộ một lần (số sản phẩm nhỏ) và bị bỏ khi có thay đổi trên collection concessions
+ * (change stream), lần dùng sau sẽ nạp lại. Khi change stream chưa chạy hoặc bị gián đoạn, danh mục không được
+ * dùng và mọi lần tra cứu đọc thẳng MongoDB bằng một lệnh findAllById.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConcessionCatalog {
+
+    private static final long WATCH_RETRY_MILLIS = 1000;
+
+    private final ConcessionRepository concessionRepository;
+    private final MongoTemplate mongoTemplate;
+
+    private final Object lock = new Object();
+    // null khi cần nạp lại
+    private volatile Snapshot snapshot;
+    // Tăng mỗi khi danh mục bị bỏ; bản nạp chỉ được dùng nếu generation không đổi trong lúc đọc
+    private long generation;
+    private volatile boolean watching;
+    private volatile boolean running;
+    private Thread watcher;
+
+    /**
+     * Sản phẩm áp dụng cho từng rạp (byCinema) và sản phẩm không giới hạn rạp (global).
+     */
+    private record Snapshot(Map<String, Map<String, Concession>> byCinema, Map<String, Concession> global) {
+
+        static Snapshot of(List<Concession> concessions) {
+            Map<String, Map<String, Concession>> byCinema = new HashMap<>();
+            Map<String, Concession> global = new HashMap<>();
+            for (Concession concession : concessions) {
+                if (concession.getCinemaIds() == null || concession.getCinemaIds().isEmpty()) {
+                    global.put(concession.getId(), concession);
+                } else {
+                    concession.getCinemaIds().forEach(cinemaId ->
+                            byCinema.computeIfAbsent(cinemaId, k -> new HashMap<>()).put(concession.getId(), concession));
+                }
+            }
+            return new Snapshot(byCinema, global);
+        }
+
+        Concession lookup(String cinemaId, String itemId) {
+            Map<String, Concession> cinemaCatalog = cinemaId != null ? byCinema.get(cinemaId) : null;
+            Concession concession = cinemaCatalog != null ? cinemaCatalog.get(itemId) : null;
+            return concession != null ? concession : global.get(itemId);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        watcher = Thread.ofVirtual().name("concession-catalog-watcher").start(this::watch);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+    }
+
+    /**
+     * Tra cứu các sản phẩm theo id cho một rạp. Sản phẩm không có trong danh mục của rạp (hoặc khi danh mục
+     * không dùng được) được đọc bằng một lệnh findAllById duy nhất. Id không tồn tại không có trong kết quả.
+     */
+    public Map<String, Concession> resolve(String cinemaId, Collection<String> itemIds) {
+        Set<String> requested = new LinkedHashSet<>(itemIds);
+        Map<String, Concession> resolved = new HashMap<>(requested.size() * 2);
+        Snapshot current = watching ? currentSnapshot() : null;
+        List<String> misses = requested.stream()
+                .filter(itemId -> {
+                    Concession concession = current != null ? current.lookup(cinemaId, itemId) : null;
+                    if (concession != null) {
+                        resolved.put(itemId, concession);
+                        return false;
+                    }
+                    return true;
+                })
+                .toList();
+        if (!misses.isEmpty()) {
+            concessionRepository.findAllById(misses).forEach(concession -> resolved.put(concession.getId(), concession));
+        }
+        return resolved;
+    }
+
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        long readGeneration;
+        synchronized (lock) {
+            readGeneration = generation;
+        }
+        Snapshot loaded = Snapshot.of(concessionRepository.findAll());
+        synchronized (lock) {
+            if (generation == readGeneration && watching) {
+                snapshot = loaded;
+            }
+        }
+        return loaded;
+    }
+
+    private void invalidate(boolean nowWatching) {
+        synchronized (lock) {
+            generation++;
+            watching = nowWatching;
+            snapshot = null;
+        }
+    }
+
+    private void watch() {
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = mongoTemplate
+                    .getCollection(mongoTemplate.getCollectionName(Concession.class))
+                    .watch(List.of(Aggregates.project(Projections.include("operationType", "documentKey"))))
+                    .maxAwaitTime(1, TimeUnit.SECONDS)
+                    .cursor()) {
+                invalidate(true);
+                log.info("Concession catalog is watching concession changes.");
+                while (running) {
+                    if (cursor.tryNext() != null) {
+                        invalidate(true);
+                    }
+                }
+            } catch (MongoException e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Concession change stream interrupted, catalog disabled until it reconnects: {}", e.getMessage());
+            } finally {
+                invalidate(false);
+            }
+            try {
+                Thread.sleep(WATCH_RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+}
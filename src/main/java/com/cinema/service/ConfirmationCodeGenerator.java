@@ -0,0 +1,208 @@
+package com.cinema.service;
+
+import com.cinema.config.AppProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Sinh mã xác nhận booking duy nhất trong toàn cụm mà không cần truy vấn DB.
+ * <p>
+ * Mỗi mã là một số 60 bit = [giây kể từ 2025-01-01: 32 bit][slot của node: 6 bit][số thứ tự trong giây: 22 bit].
+ * Slot do ConfirmationCodeSlots cấp: node giữ slot suốt vòng đời và chỉ cấp mã trong khoảng giây của lease
+ * (từ sau giây cuối cùng của chủ cũ tới giây đã ghi trước), nên hai node, hoặc một node trước và sau khi khởi động lại,
+ * không bao giờ sinh cùng một mã. Node không nhận được slot (quá 63 node) dùng slot chung với số thứ tự ngẫu nhiên;
+ * mã đó có thể trùng (rất hiếm) và được index unique của confirmationCode phát hiện, bên gọi tạo lại booking.
+ * Số này được hoán vị bằng mạng Feistel có khóa (song ánh, nên vẫn duy nhất) để mã liên tiếp không đoán được,
+ * rồi mã hóa Crockford base32 (12 ký tự) kèm một ký tự kiểm tra mod 37.
+ */
+@Component
+public class ConfirmationCodeGenerator {
+
+    // Slot 0..62 được cấp cho từng node; slot 63 dùng chung cho các node không nhận được slot
+    public static final int LEASED_SLOTS = 63;
+    private static final int SHARED_SLOT = 63;
+
+    private static final long CUSTOM_EPOCH_SECONDS = 1_735_689_600L; // 2025-01-01T00:00:00Z
+    private static final int SLOT_BITS = 6;
+    private static final int SEQUENCE_BITS = 22;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int HALF_BITS = 30;
+    private static final long HALF_MASK = (1L << HALF_BITS) - 1;
+    private static final int ROUNDS = 4;
+    private static final int CODE_LENGTH = 12;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final char[] CHECK_ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ*~$=U".toCharArray();
+
+    private final char[] prefix;
+    private final long[] roundKeys;
+    private final SlotSource slots;
+    private final LongSupplier epochSeconds;
+    // (slot << CURSOR_SLOT_SHIFT) | (giây << SEQUENCE_BITS) | số thứ tự của mã cấp gần nhất; -1 khi chưa cấp mã nào
+    private final AtomicLong cursor = new AtomicLong(-1);
+
+    private static final int CURSOR_SLOT_SHIFT = 54;
+    private static final long CURSOR_MASK = (1L << CURSOR_SLOT_SHIFT) - 1;
+
+    /**
+     * Slot của node và khoảng giây [fromSecond, untilSecond] (tính từ mốc 2025-01-01) được phép cấp mã trên slot đó.
+     */
+    public record SlotLease(int slot, long fromSecond, long untilSecond) {
+    }
+
+    /**
+     * Nguồn cấp slot cho node.
+     */
+    @FunctionalInterface
+    public interface SlotSource {
+        /**
+         * Lease có khoảng giây chứa {@code second}, hoặc null nếu node chưa có slot.
+         */
+        SlotLease leaseFor(long second);
+    }
+
+    @Autowired
+    public ConfirmationCodeGenerator(AppProperties appProperties, ConfirmationCodeSlots slots) {
+        this(appProperties.getBooking().getConfirmationCode().getPrefix(),
+                appProperties.getBooking().getConfirmationCode().getSecret(),
+                slots,
+                () -> System.currentTimeMillis() / 1000);
+    }
+
+    public ConfirmationCodeGenerator(String prefix, String secret, SlotSource slots, LongSupplier epochSeconds) {
+        this.prefix = prefix.toCharArray();
+        this.roundKeys = roundKeys(secret);
+        this.slots = slots;
+        this.epochSeconds = epochSeconds;
+    }
+
+    /**
+     * Giây hiện tại tính từ mốc của mã.
+     */
+    static long currentSecond() {
+        return System.currentTimeMillis() / 1000 - CUSTOM_EPOCH_SECONDS;
+    }
+
+    public String next() {
+        long now = epochSeconds.getAsLong() - CUSTOM_EPOCH_SECONDS;
+        SlotLease lease = slots.leaseFor(now);
+        long value;
+        if (lease == null) {
+            value = (now << (SLOT_BITS + SEQUENCE_BITS)) | ((long) SHARED_SLOT << SEQUENCE_BITS)
+                    | ThreadLocalRandom.current().nextLong(SEQUENCE_MASK + 1);
+        } else {
+            long issued = nextTimeAndSequence(lease, now);
+            long seconds = issued >>> SEQUENCE_BITS;
+            value = (seconds << (SLOT_BITS + SEQUENCE_BITS)) | ((long) lease.slot() << SEQUENCE_BITS) | (issued & SEQUENCE_MASK);
+        }
+        return encode(permute(value));
+    }
+
+    /**
+     * Mã có độ dài của định dạng này nhưng sai ký tự kiểm tra (thường do gõ nhầm), nên chắc chắn không tồn tại.
+     * Mã theo định dạng cũ (độ dài khác) luôn trả về false.
+     */
+    public boolean isMistyped(String code) {
+        if (code == null || code.length() != prefix.length + CODE_LENGTH + 1 || !code.startsWith(new String(prefix))) {
+            return false;
+        }
+        long value = 0;
+        for (int i = prefix.length; i < prefix.length + CODE_LENGTH; i++) {
+            int digit = indexOf(ALPHABET, code.charAt(i));
+            if (digit < 0) {
+                return true;
+            }
+            value = (value << 5) | digit;
+        }
+        return code.charAt(code.length() - 1) != CHECK_ALPHABET[(int) (value % CHECK_ALPHABET.length)];
+    }
+
+    /**
+     * (giây << SEQUENCE_BITS) | số thứ tự của mã tiếp theo trên slot của lease, không sớm hơn fromSecond.
+     */
+    private long nextTimeAndSequence(SlotLease lease, long now) {
+        long earliest = Math.max(now, lease.fromSecond());
+        while (true) {
+            long state = cursor.get();
+            long last = state & CURSOR_MASK;
+            long next;
+            if (state == -1 || (state >>> CURSOR_SLOT_SHIFT) != lease.slot() || earliest > last >>> SEQUENCE_BITS) {
+                next = earliest << SEQUENCE_BITS;
+            } else if ((last & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                // Cùng giây (hoặc đồng hồ lùi): tăng số thứ tự trên giây đã cấp gần nhất
+                next = last + 1;
+            } else {
+                // Hết số thứ tự trong giây: dùng trước giây kế tiếp (vẫn nằm trong khoảng đã đặt trước)
+                next = ((last >>> SEQUENCE_BITS) + 1) << SEQUENCE_BITS;
+            }
+            if (next >>> SEQUENCE_BITS > lease.untilSecond()) {
+                throw new IllegalStateException("Đã hết khoảng mã xác nhận đặt trước của node, vui lòng thử lại.");
+            }
+            if (cursor.compareAndSet(state, ((long) lease.slot() << CURSOR_SLOT_SHIFT) | next)) {
+                return next;
+            }
+        }
+    }
+
+    private long permute(long value) {
+        long left = value >>> HALF_BITS;
+        long right = value & HALF_MASK;
+        for (long key : roundKeys) {
+            long mixed = left ^ (mix(right ^ key) & HALF_MASK);
+            left = right;
+            right = mixed;
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    private String encode(long value) {
+        char[] chars = new char[prefix.length + CODE_LENGTH + 1];
+        System.arraycopy(prefix, 0, chars, 0, prefix.length);
+        long remaining = value;
+        for (int i = prefix.length + CODE_LENGTH - 1; i >= prefix.length; i--) {
+            chars[i] = ALPHABET[(int) (remaining & 31)];
+            remaining >>>= 5;
+        }
+        chars[chars.length - 1] = CHECK_ALPHABET[(int) (value % CHECK_ALPHABET.length)];
+        return new String(chars);
+    }
+
+    private static long[] roundKeys(String secret) {
+        try {
+            ByteBuffer digest = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8)));
+            long[] keys = new long[ROUNDS];
+            for (int i = 0; i < ROUNDS; i++) {
+                keys[i] = digest.getLong();
+            }
+            return keys;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Bước trộn cuối của MurmurHash3 (64 bit)
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static int indexOf(char[] alphabet, char c) {
+        for (int i = 0; i < alphabet.length; i++) {
+            if (alphabet[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
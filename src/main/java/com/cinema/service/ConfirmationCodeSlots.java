@@ -0,0 +1,172 @@
+package com.cinema.service;
+
+import com.cinema.config.AppProperties;
+import com.cinema.model.ConfirmationCodeSlot;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cấp slot cho ConfirmationCodeGenerator: mỗi node nhận một slot khi khởi động và giữ tới khi dừng
+ * (không bị chia lại như PartitionLeaseService).
+ * <p>
+ * Trước khi cấp mã ở một giây, node ghi trước highWaterSecond của slot (mỗi lần đặt trước RESERVE_SECONDS giây).
+ * Node nhận slot (khi chủ cũ dừng hoặc lease hết hạn) chỉ cấp mã từ highWaterSecond cũ + 1, nên kể cả khi chủ cũ
+ * còn chạy (GC pause, mất kết nối) và khởi động lại với bộ đếm mới, hai node không thể sinh cùng một mã.
+ * Khoảng giây đã đặt trước vẫn dùng được khi MongoDB tạm thời không truy cập được.
+ */
+@Slf4j
+@Component
+public class ConfirmationCodeSlots implements ConfirmationCodeGenerator.SlotSource {
+
+    static final long RESERVE_SECONDS = 300;
+
+    private final MongoTemplate mongoTemplate;
+    private final AppProperties.PartitionLease config;
+    private final String nodeId;
+    private volatile ConfirmationCodeGenerator.SlotLease current;
+    private volatile boolean noSlotLogged;
+    // Khi không còn slot trống: chỉ thử nhận lại sau mỗi chu kỳ gia hạn, không phải ở mỗi booking
+    private volatile long nextClaimNanos;
+
+    public ConfirmationCodeSlots(MongoTemplate mongoTemplate, PartitionLeaseService partitionLeaseService, AppProperties appProperties) {
+        this.mongoTemplate = mongoTemplate;
+        this.config = appProperties.getPartitionLease();
+        this.nodeId = partitionLeaseService.getNodeId();
+    }
+
+    @Override
+    public ConfirmationCodeGenerator.SlotLease leaseFor(long second) {
+        ConfirmationCodeGenerator.SlotLease lease = current;
+        if (lease != null && second + RESERVE_SECONDS / 2 <= lease.untilSecond()) {
+            return lease;
+        }
+        if (lease == null && System.nanoTime() < nextClaimNanos) {
+            return null;
+        }
+        return refresh(second);
+    }
+
+    /**
+     * Nhận slot ngay khi khởi động thay vì ở booking đầu tiên.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reserveSlot() {
+        refresh(ConfirmationCodeGenerator.currentSecond());
+    }
+
+    /**
+     * Gia hạn lease (và khoảng giây đặt trước) kể cả khi không có booking, để node giữ slot suốt vòng đời.
+     */
+    @Scheduled(fixedDelayString = "${cinema.partition-lease.renew-interval-ms:10000}")
+    public void renew() {
+        refresh(ConfirmationCodeGenerator.currentSecond());
+    }
+
+    /**
+     * Nhả slot khi dừng (giữ nguyên highWaterSecond) để node khởi động lại nhận slot ngay.
+     */
+    @PreDestroy
+    public void release() {
+        ConfirmationCodeGenerator.SlotLease lease = current;
+        if (lease == null) {
+            return;
+        }
+        try {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(lease.slot()).and("owner").is(nodeId)),
+                    new Update().set("expiresAt", LocalDateTime.now()), ConfirmationCodeSlot.class);
+        } catch (DataAccessException e) {
+            log.warn("Không thể nhả slot sinh mã xác nhận {}: {}", lease.slot(), e.getMessage());
+        }
+    }
+
+    private synchronized ConfirmationCodeGenerator.SlotLease refresh(long second) {
+        ConfirmationCodeGenerator.SlotLease lease = current;
+        try {
+            if (lease != null) {
+                lease = extend(lease, second);
+            }
+            if (lease == null) {
+                lease = claim(second);
+                nextClaimNanos = lease == null ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getRenewIntervalMs()) : 0;
+            }
+            current = lease;
+            return lease;
+        } catch (DataAccessException e) {
+            log.warn("Không thể gia hạn slot sinh mã xác nhận: {}", e.getMessage());
+            // Khoảng giây đã ghi trước vẫn an toàn để dùng
+            return lease != null && second <= lease.untilSecond() ? lease : null;
+        }
+    }
+
+    /**
+     * Gia hạn lease của slot đang giữ; trả về null nếu slot đã thuộc node khác (lease từng hết hạn).
+     */
+    private ConfirmationCodeGenerator.SlotLease extend(ConfirmationCodeGenerator.SlotLease lease, long second) {
+        long until = Math.max(lease.untilSecond(), second + RESERVE_SECONDS);
+        Update update = new Update().set("expiresAt", LocalDateTime.now().plusSeconds(config.getTtlSeconds()))
+                .max("highWaterSecond", until);
+        if (mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(lease.slot()).and("owner").is(nodeId)),
+                update, ConfirmationCodeSlot.class).getMatchedCount() == 0) {
+            log.warn("Node {} mất slot sinh mã xác nhận {}, nhận slot khác.", nodeId, lease.slot());
+            return null;
+        }
+        return new ConfirmationCodeGenerator.SlotLease(lease.slot(), lease.fromSecond(), until);
+    }
+
+    /**
+     * Nhận một slot chưa có chủ hoặc có lease đã hết hạn. Lease còn hiệu lực của node khác khiến upsert chèn trùng _id.
+     */
+    private ConfirmationCodeGenerator.SlotLease claim(long second) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Integer> candidates = new ArrayList<>();
+        for (int slot = 0; slot < ConfirmationCodeGenerator.LEASED_SLOTS; slot++) {
+            candidates.add(slot);
+        }
+        // Mỗi node thử các slot theo thứ tự khác nhau để ít tranh chấp
+        Collections.rotate(candidates, Math.floorMod(nodeId.hashCode(), candidates.size()));
+        for (int slot : candidates) {
+            ConfirmationCodeSlot previous;
+            try {
+                previous = mongoTemplate.findAndModify(
+                        new Query(Criteria.where("_id").is(slot).and("expiresAt").lte(now)),
+                        new Update().set("owner", nodeId).set("expiresAt", now.plusSeconds(config.getTtlSeconds())),
+                        FindAndModifyOptions.options().upsert(true).returnNew(false),
+                        ConfirmationCodeSlot.class);
+            } catch (DuplicateKeyException e) {
+                continue;
+            }
+            // Hàng rào: chỉ cấp mã sau giây cuối cùng chủ cũ được phép dùng
+            long from = previous != null && previous.getHighWaterSecond() != null ? previous.getHighWaterSecond() + 1 : 0;
+            long until = Math.max(from, second) + RESERVE_SECONDS;
+            if (mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(slot).and("owner").is(nodeId)),
+                    new Update().max("highWaterSecond", until), ConfirmationCodeSlot.class).getMatchedCount() == 0) {
+                continue;
+            }
+            noSlotLogged = false;
+            log.info("Node {} nhận slot sinh mã xác nhận {} (cấp mã từ giây {}).", nodeId, slot, from);
+            return new ConfirmationCodeGenerator.SlotLease(slot, from, until);
+        }
+        if (!noSlotLogged) {
+            noSlotLogged = true;
+            log.warn("Không còn slot sinh mã xác nhận trống cho node {}, dùng slot chung (mã ngẫu nhiên, kiểm tra trùng khi lưu).", nodeId);
+        }
+        return null;
+    }
+}
@@ -8,6 +8,9 @@ import java.util.Map;
 import java.util.Optional;
 
 public interface IVNPayService {
+    // Hạn của URL thanh toán (vnp_ExpireDate tính từ lúc tạo)
+    int PAYMENT_URL_EXPIRY_MINUTES = 15;
+
     CreatePaymentResponseDto createPaymentUrl(CreatePaymentRequestDto paymentRequest, HttpServletRequest httpServletRequest);
     Payment processVnpayCallback(Map<String, String> vnpParams);
     Payment processVnpayReturn(Map<String, String> vnpParams);
@@ -0,0 +1,226 @@
+package com.cinema.service;
+
+import com.cinema.config.AppProperties;
+import com.cinema.dto.ApiResponse;
+import com.cinema.model.IdempotencyRecord;
+import com.cinema.util.LruCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.ReadPreference;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Thực thi request POST tối đa một lần cho mỗi Idempotency-Key.
+ * <p>
+ * Request đầu tiên nhận key bằng cách insert bản ghi IN_PROGRESS (_id duy nhất nên chỉ một node thắng),
+ * chạy xử lý rồi lưu phản hồi. Request gửi lại với cùng key và cùng body nhận lại nguyên văn phản hồi đã lưu
+ * (kèm header Idempotent-Replayed), từ LRU trong bộ nhớ hoặc từ collection idempotency_keys. Trong lúc request
+ * đầu còn chạy, request trùng nhận 409. Lỗi hệ thống (5xx/exception) và 403 không được lưu: key được giải phóng
+ * để client thử lại.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final AppProperties.Idempotency config;
+    // Chỉ giữ bản ghi COMPLETED (không còn thay đổi)
+    private final LruCache<String, IdempotencyRecord> completed;
+
+    public IdempotencyService(MongoTemplate mongoTemplate, ObjectMapper objectMapper, AppProperties appProperties) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.config = appProperties.getIdempotency();
+        this.completed = new LruCache<>(config.getCacheSize());
+    }
+
+    /**
+     * Chạy {@code action} nếu key chưa được dùng, ngược lại trả về phản hồi đã lưu. Không có key thì chạy như bình thường.
+     *
+     * @param scope    tên endpoint, để cùng một key dùng ở hai endpoint không lẫn nhau
+     * @param request  body request, dùng để phát hiện key bị dùng lại cho yêu cầu khác
+     * @param dataType kiểu của ApiResponse.data, để đọc lại phản hồi đã lưu
+     */
+    public <T> ResponseEntity<ApiResponse<T>> execute(String scope, String key, Object request, Class<T> dataType,
+                                                      Supplier<ResponseEntity<ApiResponse<T>>> action) {
+        return execute(scope, key, request, dataType, Duration.ofHours(config.getTtlHours()), action);
+    }
+
+    /**
+     * Như {@link #execute(String, String, Object, Class, Supplier)} nhưng giữ phản hồi trong {@code ttl} thay vì ttlHours,
+     * cho phản hồi chỉ có giá trị trong thời gian ngắn (ví dụ URL thanh toán có hạn).
+     */
+    public <T> ResponseEntity<ApiResponse<T>> execute(String scope, String key, Object request, Class<T> dataType, Duration ttl,
+                                                      Supplier<ResponseEntity<ApiResponse<T>>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("Idempotency-Key không được dài quá " + MAX_KEY_LENGTH + " ký tự."));
+        }
+        String id = scope + ":" + key;
+        String requestHash = hash(request);
+
+        IdempotencyRecord cached = completed.get(id);
+        if (cached != null && cached.getExpiresAt().isAfter(LocalDateTime.now())) {
+            return replayOrReject(cached, requestHash, dataType);
+        }
+
+        IdempotencyRecord existing;
+        try {
+            existing = claim(id, requestHash, ttl);
+        } catch (DataAccessException e) {
+            // Không chạy khi chưa nhận được key: client thử lại an toàn
+            log.error("Không thể nhận Idempotency-Key {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ApiResponse.error("Hệ thống đang bận, vui lòng thử lại."));
+        }
+        if (existing != null) {
+            if (existing.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+                completed.put(id, existing);
+            }
+            return replayOrReject(existing, requestHash, dataType);
+        }
+
+        ResponseEntity<ApiResponse<T>> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            release(id);
+            throw e;
+        }
+        // 403 (chưa có lượt vào phòng chờ) cũng không phải kết quả của yêu cầu: client gửi lại cùng key sau khi được vào
+        if (response.getStatusCode().is5xxServerError() || response.getStatusCode() == HttpStatus.FORBIDDEN) {
+            release(id);
+            return response;
+        }
+        complete(id, response);
+        return response;
+    }
+
+    /**
+     * Nhận key cho request này. Trả về null nếu nhận được, ngược lại trả về bản ghi đang giữ key.
+     */
+    private IdempotencyRecord claim(String id, String requestHash, Duration ttl) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            LocalDateTime now = LocalDateTime.now();
+            try {
+                mongoTemplate.insert(new IdempotencyRecord(id, requestHash, IdempotencyRecord.Status.IN_PROGRESS, null, null,
+                        now, now.plusSeconds(config.getLockTimeoutSeconds()), now.plus(ttl)));
+                return null;
+            } catch (DuplicateKeyException e) {
+                // Đọc từ primary: bản ghi vừa được node khác ghi
+                IdempotencyRecord existing = mongoTemplate.findOne(
+                        new Query(Criteria.where("_id").is(id)).withReadPreference(ReadPreference.primary()), IdempotencyRecord.class);
+                if (existing == null) {
+                    // Vừa bị giải phóng hoặc hết hạn giữa hai lệnh: thử nhận lại
+                    continue;
+                }
+                if (existing.getExpiresAt().isBefore(now)) {
+                    // Đã hết hạn nhưng index TTL chưa xóa (chạy mỗi phút): không phát lại phản hồi cũ
+                    mongoTemplate.remove(new Query(Criteria.where("_id").is(id).and("expiresAt").is(existing.getExpiresAt())),
+                            IdempotencyRecord.class);
+                    continue;
+                }
+                if (existing.getStatus() == IdempotencyRecord.Status.IN_PROGRESS
+                        && requestHash.equals(existing.getRequestHash())
+                        && existing.getLockedUntil().isBefore(now)
+                        && takeOver(id, now)) {
+                    log.warn("Idempotency-Key {} bị giữ quá hạn, chạy lại request.", id);
+                    return null;
+                }
+                return existing;
+            }
+        }
+        throw new IllegalStateException("Không thể nhận Idempotency-Key " + id);
+    }
+
+    // Node chạy request đầu dừng đột ngột: nhận lại key khi khóa đã hết hạn (chỉ một request thắng)
+    private boolean takeOver(String id, LocalDateTime now) {
+        Query stale = new Query(Criteria.where("_id").is(id)
+                .and("status").is(IdempotencyRecord.Status.IN_PROGRESS)
+                .and("lockedUntil").lt(now));
+        Update update = new Update().set("lockedUntil", now.plusSeconds(config.getLockTimeoutSeconds()));
+        return mongoTemplate.updateFirst(stale, update, IdempotencyRecord.class).getModifiedCount() == 1;
+    }
+
+    private <T> void complete(String id, ResponseEntity<ApiResponse<T>> response) {
+        try {
+            String body = objectMapper.writeValueAsString(response.getBody());
+            Query claimed = new Query(Criteria.where("_id").is(id).and("status").is(IdempotencyRecord.Status.IN_PROGRESS));
+            Update update = new Update()
+                    .set("status", IdempotencyRecord.Status.COMPLETED)
+                    .set("httpStatus", response.getStatusCode().value())
+                    .set("responseBody", body)
+                    .unset("lockedUntil");
+            IdempotencyRecord record = mongoTemplate.findAndModify(claimed, update,
+                    FindAndModifyOptions.options().returnNew(true), IdempotencyRecord.class);
+            if (record != null) {
+                completed.put(id, record);
+            }
+        } catch (JsonProcessingException | DataAccessException e) {
+            // Request đã xử lý xong; key sẽ được chạy lại sau lockTimeoutSeconds
+            log.error("Không thể lưu phản hồi cho Idempotency-Key {}: {}", id, e.getMessage());
+        }
+    }
+
+    private void release(String id) {
+        try {
+            mongoTemplate.remove(new Query(Criteria.where("_id").is(id).and("status").is(IdempotencyRecord.Status.IN_PROGRESS)),
+                    IdempotencyRecord.class);
+        } catch (DataAccessException e) {
+            log.warn("Không thể giải phóng Idempotency-Key {}: {}", id, e.getMessage());
+        }
+    }
+
+    private <T> ResponseEntity<ApiResponse<T>> replayOrReject(IdempotencyRecord record, String requestHash, Class<T> dataType) {
+        if (!requestHash.equals(record.getRequestHash())) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body(ApiResponse.error("Idempotency-Key đã được dùng cho một yêu cầu khác."));
+        }
+        if (record.getStatus() != IdempotencyRecord.Status.COMPLETED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error("Yêu cầu với Idempotency-Key này đang được xử lý, vui lòng thử lại sau."));
+        }
+        try {
+            JavaType type = objectMapper.getTypeFactory().constructParametricType(ApiResponse.class, dataType);
+            ApiResponse<T> body = objectMapper.readValue(record.getResponseBody(), type);
+            return ResponseEntity.status(record.getHttpStatus()).header(REPLAYED_HEADER, "true").body(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Phản hồi đã lưu cho Idempotency-Key không hợp lệ: " + record.getId(), e);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.cinema.service;
+
+import com.cinema.config.AppProperties;
+import com.cinema.model.OutboxEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Giao các sự kiện outbox cho OutboxHandler theo lô, mỗi sự kiện trên một virtual thread.
+ * <p>
+ * Node nhận lô bằng cách gắn claimToken và lùi availableAt thêm claimTimeoutSeconds; node dừng giữa chừng thì
+ * sự kiện tự được giao lại khi hết hạn (ít nhất một lần). Sự kiện lỗi được thử lại với backoff lũy thừa có
+ * jitter, quá maxAttempts thì chuyển sang FAILED. Độ trễ (tuổi của sự kiện chưa giao lâu nhất) được công bố
+ * qua gauge cinema.outbox.lag.seconds.
+ */
+@Slf4j
+@Service
+public class OutboxDispatcher {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectProvider<OutboxHandler> handlers;
+    private final AppProperties.Outbox config;
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private final Counter delivered;
+    private final Counter retried;
+    private final Counter failed;
+
+    public OutboxDispatcher(MongoTemplate mongoTemplate, ObjectProvider<OutboxHandler> handlers,
+                            AppProperties appProperties, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.handlers = handlers;
+        this.config = appProperties.getOutbox();
+        Gauge.builder("cinema.outbox.lag.seconds", lagSeconds, AtomicLong::get)
+                .description("Tuổi của sự kiện outbox chưa giao lâu nhất")
+                .register(meterRegistry);
+        this.delivered = outcomeCounter(meterRegistry, "delivered");
+        this.retried = outcomeCounter(meterRegistry, "retried");
+        this.failed = outcomeCounter(meterRegistry, "failed");
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("cinema.outbox.events")
+                .description("Số sự kiện outbox đã xử lý theo kết quả")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${cinema.outbox.poll-interval-ms:500}")
+    public void dispatch() {
+        try {
+            Map<String, List<OutboxHandler>> handlersByType = new HashMap<>();
+            handlers.orderedStream().forEach(handler ->
+                    handlersByType.computeIfAbsent(handler.eventType(), k -> new ArrayList<>()).add(handler));
+            while (dispatchBatch(handlersByType) == config.getBatchSize()) {
+                // Lô đầy: có thể còn sự kiện đang chờ
+            }
+            updateLag();
+        } catch (DataAccessException e) {
+            log.warn("Không thể giao sự kiện outbox: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Nhận và giao một lô sự kiện đến hạn. Trả về số sự kiện đến hạn đã tìm thấy.
+     */
+    private int dispatchBatch(Map<String, List<OutboxHandler>> handlersByType) {
+        LocalDateTime now = LocalDateTime.now();
+        Query due = new Query(Criteria.where("status").is(OutboxEvent.Status.PENDING).and("availableAt").lte(now))
+                .with(Sort.by(Sort.Direction.ASC, "availableAt"))
+                .limit(config.getBatchSize());
+        due.fields().include("_id");
+        List<String> ids = mongoTemplate.find(due, OutboxEvent.class).stream().map(OutboxEvent::getId).toList();
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        // Điều kiện lặp lại trạng thái đến hạn để node khác đã nhận trước thì bỏ qua
+        String claimToken = UUID.randomUUID().toString();
+        mongoTemplate.updateMulti(
+                new Query(Criteria.where("_id").in(ids).and("status").is(OutboxEvent.Status.PENDING).and("availableAt").lte(now)),
+                new Update().set("claimToken", claimToken).set("availableAt", now.plusSeconds(config.getClaimTimeoutSeconds())),
+                OutboxEvent.class);
+        List<OutboxEvent> events = mongoTemplate.find(new Query(Criteria.where("claimToken").is(claimToken)), OutboxEvent.class);
+        if (events.isEmpty()) {
+            return ids.size();
+        }
+
+        List<Future<?>> results = new ArrayList<>(events.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (OutboxEvent event : events) {
+                List<OutboxHandler> eventHandlers = handlersByType.getOrDefault(event.getType(), List.of());
+                results.add(executor.submit(() -> eventHandlers.forEach(handler -> handler.handle(event))));
+            }
+        }
+
+        LocalDateTime finishedAt = LocalDateTime.now();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OutboxEvent.class);
+        for (int i = 0; i < events.size(); i++) {
+            OutboxEvent event = events.get(i);
+            Query claimed = new Query(Criteria.where("_id").is(event.getId()).and("claimToken").is(claimToken));
+            Throwable error = failureOf(results.get(i));
+            if (error == null) {
+                bulk.updateOne(claimed, new Update().set("status", OutboxEvent.Status.DISPATCHED)
+                        .set("dispatchedAt", finishedAt).unset("claimToken"));
+                delivered.increment();
+                continue;
+            }
+            int attempts = event.getAttempts() + 1;
+            Update update = new Update().set("attempts", attempts).unset("claimToken")
+                    .set("lastError", abbreviate(String.valueOf(error)));
+            if (attempts >= config.getMaxAttempts()) {
+                update.set("status", OutboxEvent.Status.FAILED);
+                failed.increment();
+                log.error("Sự kiện outbox {} ({}) thất bại sau {} lần thử: {}", event.getId(), event.getType(), attempts, error.toString());
+            } else {
+                update.set("availableAt", finishedAt.plus(backoff(attempts)));
+                retried.increment();
+                log.warn("Sự kiện outbox {} ({}) lỗi lần {}, sẽ thử lại: {}", event.getId(), event.getType(), attempts, error.toString());
+            }
+            bulk.updateOne(claimed, update);
+        }
+        bulk.execute();
+        return ids.size();
+    }
+
+    private static Throwable failureOf(Future<?> result) {
+        try {
+            result.get();
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return e;
+        }
+    }
+
+    /**
+     * Backoff lũy thừa từ initialBackoffMs, tối đa maxBackoffMs, cộng/trừ 20% ngẫu nhiên để các node không thử lại cùng lúc.
+     */
+    private Duration backoff(int attempts) {
+        long base = Math.min(config.getMaxBackoffMs(), config.getInitialBackoffMs() << Math.min(attempts - 1, 30));
+        long jitter = (long) (base * 0.2 * (ThreadLocalRandom.current().nextDouble() * 2 - 1));
+        return Duration.ofMillis(Math.max(0, base + jitter));
+    }
+
+    private void updateLag() {
+        Query oldest = new Query(Criteria.where("status").is(OutboxEvent.Status.PENDING))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"));
+        oldest.fields().include("createdAt");
+        OutboxEvent event = mongoTemplate.findOne(oldest, OutboxEvent.class);
+        lagSeconds.set(event == null || event.getCreatedAt() == null ? 0
+                : Math.max(0, Duration.between(event.getCreatedAt(), LocalDateTime.now()).toSeconds()));
+    }
+
+    private static String abbreviate(String message) {
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -0,0 +1,14 @@
+package com.cinema.service;
+
+import com.cinema.model.OutboxEvent;
+
+/**
+ * Xử lý một loại sự kiện outbox (thông báo, vé điện tử, thống kê...) ngoài transaction của request.
+ * Sự kiện được giao ít nhất một lần nên handler phải idempotent; ném exception để được thử lại sau.
+ */
+public interface OutboxHandler {
+
+    String eventType();
+
+    void handle(OutboxEvent event);
+}
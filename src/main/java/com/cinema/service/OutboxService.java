@@ -0,0 +1,23 @@
+package com.cinema.service;
+
+import com.cinema.model.OutboxEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+
+/**
+ * Ghi sự kiện vào outbox. Gọi bên trong phương thức @Transactional để sự kiện được lưu cùng
+ * transaction với thay đổi nghiệp vụ (rollback thì sự kiện cũng không tồn tại).
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    private final MongoTemplate mongoTemplate;
+
+    public void publish(String type, String aggregateId, Map<String, Object> payload) {
+        mongoTemplate.insert(OutboxEvent.of(type, aggregateId, payload));
+    }
+}
@@ -0,0 +1,177 @@
+package com.cinema.service;
+
+import com.cinema.config.AppProperties;
+import com.cinema.model.PartitionLease;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chia các phân vùng công việc của một nhóm cho các node trong cụm bằng lease lưu trong MongoDB.
+ * <p>
+ * Mỗi node ghi nhịp tim thành viên, gia hạn lease của mình và nhận thêm phân vùng trống/hết hạn cho tới
+ * khi giữ đủ phần của mình (ceil(số phân vùng / số node)); node giữ quá phần thì nhả bớt. Node dừng đột ngột
+ * sẽ mất lease sau ttlSeconds và các node còn lại nhận thay. Node chỉ coi phân vùng là của mình cho tới
+ * thời điểm lease hết hạn tính theo đồng hồ cục bộ (trừ một khoảng an toàn).
+ */
+@Slf4j
+@Service
+public class PartitionLeaseService {
+
+    private final MongoTemplate mongoTemplate;
+    private final AppProperties.PartitionLease config;
+    @Getter
+    private final String nodeId;
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+
+    public PartitionLeaseService(MongoTemplate mongoTemplate, AppProperties appProperties) {
+        this.mongoTemplate = mongoTemplate;
+        this.config = appProperties.getPartitionLease();
+        this.nodeId = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    private static final class Group {
+        private final String name;
+        private final int partitionCount;
+        private volatile Set<Integer> owned = Set.of();
+        private volatile long validUntilNanos;
+
+        private Group(String name, int partitionCount) {
+            this.name = name;
+            this.partitionCount = partitionCount;
+        }
+    }
+
+    /**
+     * Các phân vùng của nhóm mà node này đang giữ lease. Lần gọi đầu tiên đăng ký nhóm và nhận lease ngay.
+     * Trả về tập rỗng nếu lease chưa được gia hạn kịp (không chắc còn sở hữu).
+     */
+    public Set<Integer> ownedPartitions(String group, int partitionCount) {
+        Group state = groups.computeIfAbsent(group, name -> {
+            Group created = new Group(name, partitionCount);
+            rebalanceQuietly(created);
+            return created;
+        });
+        return System.nanoTime() < state.validUntilNanos ? state.owned : Set.of();
+    }
+
+    @Scheduled(fixedDelayString = "${cinema.partition-lease.renew-interval-ms:10000}")
+    public void renewLeases() {
+        groups.values().forEach(this::rebalanceQuietly);
+    }
+
+    /**
+     * Nhả toàn bộ lease khi dừng để node khác nhận ngay thay vì chờ hết hạn.
+     */
+    @PreDestroy
+    public void releaseAll() {
+        for (Group group : groups.values()) {
+            try {
+                mongoTemplate.remove(new Query(Criteria.where("group").is(group.name).and("owner").is(nodeId)), PartitionLease.class);
+            } catch (Exception e) {
+                log.warn("Không thể nhả lease của nhóm {}: {}", group.name, e.getMessage());
+            }
+        }
+    }
+
+    private void rebalanceQuietly(Group group) {
+        try {
+            rebalance(group);
+        } catch (Exception e) {
+            log.warn("Không thể gia hạn lease của nhóm {}: {}", group.name, e.getMessage());
+        }
+    }
+
+    private synchronized void rebalance(Group group) {
+        long startedNanos = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusSeconds(config.getTtlSeconds());
+
+        // Nhịp tim thành viên
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(PartitionLease.memberIdOf(group.name, nodeId))),
+                new Update().set("group", group.name).set("owner", nodeId).set("expiresAt", expiresAt),
+                PartitionLease.class);
+        long members = Math.max(1, mongoTemplate.count(new Query(Criteria.where("group").is(group.name)
+                .and("partition").is(null).and("expiresAt").gt(now)), PartitionLease.class));
+        int target = (int) ((group.partitionCount + members - 1) / members);
+
+        // Gia hạn các lease còn hiệu lực của node này
+        mongoTemplate.updateMulti(new Query(Criteria.where("group").is(group.name).and("owner").is(nodeId)
+                        .and("partition").ne(null).and("expiresAt").gt(now)),
+                new Update().set("expiresAt", expiresAt), PartitionLease.class);
+        Query leasedQuery = new Query(Criteria.where("group").is(group.name).and("partition").ne(null).and("expiresAt").gt(now));
+        leasedQuery.fields().include("partition").include("owner");
+        Set<Integer> owned = new TreeSet<>();
+        Set<Integer> taken = new TreeSet<>();
+        for (PartitionLease lease : mongoTemplate.find(leasedQuery, PartitionLease.class)) {
+            (nodeId.equals(lease.getOwner()) ? owned : taken).add(lease.getPartition());
+        }
+
+        if (owned.size() > target) {
+            List<Integer> surplus = new ArrayList<>(owned).subList(target, owned.size());
+            mongoTemplate.remove(new Query(Criteria.where("group").is(group.name).and("owner").is(nodeId)
+                    .and("partition").in(surplus)), PartitionLease.class);
+            surplus.forEach(owned::remove);
+            log.info("Node {} nhả {} phân vùng của nhóm {}", nodeId, surplus.size(), group.name);
+        } else if (owned.size() < target) {
+            List<Integer> candidates = new ArrayList<>();
+            for (int partition = 0; partition < group.partitionCount; partition++) {
+                if (!owned.contains(partition) && !taken.contains(partition)) {
+                    candidates.add(partition);
+                }
+            }
+            // Mỗi node thử các phân vùng theo thứ tự khác nhau để ít tranh chấp
+            Collections.rotate(candidates, Math.floorMod(nodeId.hashCode(), Math.max(1, candidates.size())));
+            for (Integer partition : candidates) {
+                if (owned.size() >= target) {
+                    break;
+                }
+                if (tryAcquire(group.name, partition, now, expiresAt)) {
+                    owned.add(partition);
+                }
+            }
+        }
+
+        Set<Integer> previous = group.owned;
+        group.owned = Collections.unmodifiableSet(owned);
+        // Khoảng an toàn 1/3 TTL bù cho độ lệch đồng hồ và độ trễ ghi
+        group.validUntilNanos = startedNanos + TimeUnit.SECONDS.toNanos(config.getTtlSeconds()) * 2 / 3;
+        if (!previous.equals(owned)) {
+            log.info("Node {} giữ {}/{} phân vùng của nhóm {} ({} node)", nodeId, owned.size(), group.partitionCount, group.name, members);
+        }
+    }
+
+    /**
+     * Nhận phân vùng nếu chưa có lease hoặc lease đã hết hạn. Lease còn hiệu lực của node khác khiến
+     * upsert chèn trùng _id và bị từ chối.
+     */
+    private boolean tryAcquire(String group, int partition, LocalDateTime now, LocalDateTime expiresAt) {
+        Query query = new Query(Criteria.where("_id").is(PartitionLease.idOf(group, partition)).and("expiresAt").lte(now));
+        Update update = new Update().set("group", group).set("partition", partition).set("owner", nodeId).set("expiresAt", expiresAt);
+        try {
+            var result = mongoTemplate.upsert(query, update, PartitionLease.class);
+            return result.getUpsertedId() != null || result.getModifiedCount() > 0;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+}
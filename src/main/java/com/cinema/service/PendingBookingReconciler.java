@@ -0,0 +1,237 @@
+package com.cinema.service;
+
+import com.cinema.config.AppProperties;
+import com.cinema.enums.PaymentStatusType;
+import com.cinema.model.Booking;
+import com.cinema.model.SeatHold;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chuyển các booking PENDING bị bỏ dở (quá hạn giữ ghế mà chưa thanh toán) sang EXPIRED.
+ * <p>
+ * Job quét seat_holds chỉ giải phóng ghế, còn booking thì nằm PENDING mãi. Job này đọc theo lô trên index
+ * (paymentStatus, bookingTime) các booking PENDING tạo trước seat-hold.expiry-minutes + graceMinutes, giải phóng
+ * các lượt giữ đã hết hạn còn sót của booking đó rồi đánh dấu EXPIRED bằng bulk write có điều kiện (vẫn PENDING),
+ * nên thanh toán hoàn tất đồng thời không bị ghi đè. Booking có ghế vẫn còn được giữ (khách đã gia hạn) được chờ
+ * tới maxPendingMinutes. Chỉ node giữ lease của nhóm booking-reconciliation chạy job.
+ * <p>
+ * Metrics: cinema.booking.reconciliation.expired (booking đã đánh dấu), cinema.booking.reconciliation.holds.released
+ * (ghế được giải phóng), timer cinema.booking.reconciliation.run, gauge cinema.booking.reconciliation.backlog
+ * (số booking PENDING quá hạn còn lại) và cinema.booking.reconciliation.oldest.seconds.
+ */
+@Slf4j
+@Service
+public class PendingBookingReconciler {
+
+    public static final String LEASE_GROUP = "booking-reconciliation";
+    // Giới hạn lệnh đếm backlog để gauge không thành truy vấn nặng khi tồn đọng lớn
+    private static final int BACKLOG_COUNT_LIMIT = 100_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final SeatService seatService;
+    private final BookingService bookingService;
+    private final PartitionLeaseService partitionLeaseService;
+    private final AppProperties appProperties;
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicLong oldestSeconds = new AtomicLong();
+    private final Counter expired;
+    private final Counter holdsReleased;
+    private final Timer runTimer;
+
+    public PendingBookingReconciler(MongoTemplate mongoTemplate, SeatService seatService, BookingService bookingService,
+                                    PartitionLeaseService partitionLeaseService, AppProperties appProperties, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.seatService = seatService;
+        this.bookingService = bookingService;
+        this.partitionLeaseService = partitionLeaseService;
+        this.appProperties = appProperties;
+        this.expired = Counter.builder("cinema.booking.reconciliation.expired")
+                .description("Số booking PENDING quá hạn đã chuyển sang EXPIRED")
+                .register(meterRegistry);
+        this.holdsReleased = Counter.builder("cinema.booking.reconciliation.holds.released")
+                .description("Số ghế còn giữ của booking quá hạn đã được giải phóng")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("cinema.booking.reconciliation.run")
+                .description("Thời gian một lượt đối soát booking PENDING")
+                .register(meterRegistry);
+        Gauge.builder("cinema.booking.reconciliation.backlog", backlog, AtomicLong::get)
+                .description("Số booking PENDING quá hạn chưa được đối soát")
+                .register(meterRegistry);
+        Gauge.builder("cinema.booking.reconciliation.oldest.seconds", oldestSeconds, AtomicLong::get)
+                .description("Tuổi của booking PENDING quá hạn lâu nhất")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${cinema.booking.reconciliation.interval-ms:60000}",
+            initialDelayString = "${cinema.booking.reconciliation.interval-ms:60000}")
+    public void scheduledReconcile() {
+        if (partitionLeaseService.ownedPartitions(LEASE_GROUP, 1).isEmpty()) {
+            return;
+        }
+        try {
+            reconcile();
+        } catch (DataAccessException e) {
+            log.warn("Không thể đối soát booking PENDING quá hạn: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Chạy tối đa maxBatchesPerRun lô. Trả về số booking đã chuyển sang EXPIRED và số ghế đã giải phóng.
+     */
+    public Map<String, Object> reconcile() {
+        AppProperties.Booking.Reconciliation config = appProperties.getBooking().getReconciliation();
+        long startedNanos = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = cutoff(now);
+        LocalDateTime waitLimit = now.minusMinutes(config.getMaxPendingMinutes());
+
+        long expiredCount = 0;
+        int releasedCount = 0;
+        int waiting = 0;
+        int batches = 0;
+        // Đọc tiếp sau booking cuối của lô trước: booking được chờ (ghế còn giữ) không chặn các lô sau
+        LocalDateTime after = null;
+        List<Booking> candidates;
+        do {
+            candidates = findCandidates(cutoff, after, config.getBatchSize());
+            if (candidates.isEmpty()) {
+                break;
+            }
+            after = candidates.get(candidates.size() - 1).getBookingTime();
+            batches++;
+
+            Map<String, SeatHold> holds = holdsOf(candidates);
+            List<Booking> abandoned = new ArrayList<>(candidates.size());
+            List<SeatHold> residual = new ArrayList<>();
+            for (Booking booking : candidates) {
+                List<SeatHold> bookingHolds = booking.getSeats() == null ? List.of() : booking.getSeats().stream()
+                        .map(seatId -> holds.get(SeatHold.idOf(booking.getShowtimeId(), seatId)))
+                        .filter(Objects::nonNull)
+                        .toList();
+                boolean stillHeld = bookingHolds.stream().anyMatch(hold -> hold.getExpiresAt().isAfter(now));
+                if (stillHeld && booking.getBookingTime().isAfter(waitLimit)) {
+                    waiting++;
+                    continue;
+                }
+                abandoned.add(booking);
+                bookingHolds.stream().filter(hold -> !hold.getExpiresAt().isAfter(now)).forEach(residual::add);
+            }
+
+            // Giải phóng ghế trước: lệnh giải phóng chỉ khớp khi ghế vẫn HOLDING bởi đúng lượt giữ đã hết hạn
+            if (!residual.isEmpty()) {
+                int released = seatService.releaseExpiredHolds(residual);
+                holdsReleased.increment(released);
+                releasedCount += released;
+            }
+            long marked = markExpired(abandoned, cutoff);
+            // Chi tiết đã cache trên node này vẫn hiện PENDING: bỏ để lần tra cứu sau đọc trạng thái EXPIRED
+            bookingService.evictDetails(abandoned.stream().map(Booking::getConfirmationCode).filter(Objects::nonNull).toList());
+            expired.increment(marked);
+            expiredCount += marked;
+        } while (candidates.size() == config.getBatchSize() && batches < config.getMaxBatchesPerRun());
+
+        updateBacklog(cutoff, now);
+        runTimer.record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+        if (expiredCount > 0 || releasedCount > 0) {
+            log.info("Đối soát booking PENDING: {} booking chuyển EXPIRED, {} ghế được giải phóng, {} booking còn chờ, {} lô trong {} ms.",
+                    expiredCount, releasedCount, waiting, batches, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos));
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("expired", expiredCount);
+        result.put("holdsReleased", releasedCount);
+        result.put("waiting", waiting);
+        result.put("backlog", backlog.get());
+        return result;
+    }
+
+    private LocalDateTime cutoff(LocalDateTime now) {
+        return now.minusMinutes(appProperties.getSeatHold().getExpiryMinutes()
+                + appProperties.getBooking().getReconciliation().getGraceMinutes());
+    }
+
+    /**
+     * Booking PENDING tạo trước cutoff, cũ nhất trước (index idx_booking_paymentStatus_bookingTime).
+     */
+    private List<Booking> findCandidates(LocalDateTime cutoff, LocalDateTime after, int limit) {
+        Criteria criteria = Criteria.where("paymentStatus").is(PaymentStatusType.PENDING).and("bookingTime").lt(cutoff);
+        if (after != null) {
+            criteria.gt(after);
+        }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "bookingTime"))
+                .limit(limit);
+        query.fields().include("showtimeId").include("seats").include("bookingTime").include("confirmationCode");
+        return mongoTemplate.find(query, Booking.class);
+    }
+
+    /**
+     * Các bản ghi seat_holds còn tồn tại cho ghế của các booking trong lô, đọc bằng một truy vấn theo _id.
+     */
+    private Map<String, SeatHold> holdsOf(List<Booking> bookings) {
+        List<String> ids = new ArrayList<>();
+        for (Booking booking : bookings) {
+            if (booking.getSeats() != null) {
+                booking.getSeats().forEach(seatId -> ids.add(SeatHold.idOf(booking.getShowtimeId(), seatId)));
+            }
+        }
+        Map<String, SeatHold> holds = new HashMap<>();
+        if (!ids.isEmpty()) {
+            mongoTemplate.find(new Query(Criteria.where("_id").in(ids)), SeatHold.class)
+                    .forEach(hold -> holds.put(hold.getId(), hold));
+        }
+        return holds;
+    }
+
+    /**
+     * Đánh dấu EXPIRED bằng một bulk write không thứ tự; mỗi lệnh chỉ khớp khi booking vẫn PENDING và quá hạn.
+     */
+    private long markExpired(List<Booking> bookings, LocalDateTime cutoff) {
+        if (bookings.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Booking.class);
+        for (Booking booking : bookings) {
+            bulk.updateOne(new Query(Criteria.where("_id").is(booking.getId())
+                            .and("paymentStatus").is(PaymentStatusType.PENDING)
+                            .and("bookingTime").lt(cutoff)),
+                    new Update().set("paymentStatus", PaymentStatusType.EXPIRED).set("updatedAt", now));
+        }
+        return bulk.execute().getModifiedCount();
+    }
+
+    private void updateBacklog(LocalDateTime cutoff, LocalDateTime now) {
+        Criteria overdue = Criteria.where("paymentStatus").is(PaymentStatusType.PENDING).and("bookingTime").lt(cutoff);
+        backlog.set(mongoTemplate.count(new Query(overdue).limit(BACKLOG_COUNT_LIMIT), Booking.class));
+
+        Query oldest = new Query(overdue).with(Sort.by(Sort.Direction.ASC, "bookingTime"));
+        oldest.fields().include("bookingTime");
+        Booking booking = mongoTemplate.findOne(oldest, Booking.class);
+        oldestSeconds.set(booking == null || booking.getBookingTime() == null ? 0
+                : Math.max(0, Duration.between(booking.getBookingTime(), now).toSeconds()));
+    }
+}
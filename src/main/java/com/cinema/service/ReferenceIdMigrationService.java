@@ -0,0 +1,183 @@
+package com.cinema.service;
+
+import com.cinema.model.Booking;
+import com.cinema.model.Concession;
+import com.cinema.model.Payment;
+import com.cinema.model.Room;
+import com.cinema.model.Showtime;
+import com.cinema.util.MongoIds;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Chuẩn hóa các trường tham chiếu giữa các collection về cùng kiểu với _id được tham chiếu
+ * (chuỗi hex 24 ký tự -> ObjectId, id dạng slug giữ nguyên chuỗi).
+ * <p>
+ * Chạy trực tuyến theo lô: mỗi bản ghi được cập nhật kèm điều kiện giá trị cũ chưa đổi nên không ghi đè
+ * thay đổi đồng thời, và bản ghi đã chuẩn hóa không còn khớp bộ lọc nên chạy lại sẽ tiếp tục từ chỗ dừng.
+ * Khi không còn tham chiếu nào dạng cũ, trạng thái hoàn tất được lưu vào collection migrations; từ đó các
+ * truy vấn chuyển sang so sánh bằng một kiểu duy nhất. Các repository đọc trạng thái này qua
+ * {@link #referenceValues(String)} và {@link #isReferencesNormalized()}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReferenceIdMigrationService {
+
+    private static final String STATE_COLLECTION = "migrations";
+    private static final String MIGRATION_ID = "reference-ids";
+    private static final String HEX_ID_PATTERN = "^[0-9a-fA-F]{24}$";
+    private static final int BATCH_SIZE = 500;
+
+    private record Step(Class<?> entity, String field) {
+        String name(MongoTemplate mongoTemplate) {
+            return mongoTemplate.getCollectionName(entity) + "." + field;
+        }
+    }
+
+    private static final List<Step> STEPS = List.of(
+            new Step(Showtime.class, "movieId"),
+            new Step(Showtime.class, "cinemaId"),
+            new Step(Showtime.class, "roomId"),
+            new Step(Booking.class, "showtimeId"),
+            new Step(Room.class, "cinemaId"),
+            new Step(Payment.class, "bookingId"),
+            new Step(Concession.class, "cinemaIds")
+    );
+
+    private final MongoTemplate mongoTemplate;
+
+    // Bật khi mọi trường tham chiếu đã được chuẩn hóa (đọc từ collection migrations)
+    private volatile boolean referencesNormalized;
+
+    public boolean isReferencesNormalized() {
+        return referencesNormalized;
+    }
+
+    /**
+     * Các giá trị cần khớp khi lọc theo một trường tham chiếu trỏ tới {@code id}.
+     */
+    public List<Object> referenceValues(String id) {
+        return MongoIds.referenceValues(id, referencesNormalized);
+    }
+
+    public List<Object> referenceValues(List<String> ids) {
+        return MongoIds.referenceValues(ids, referencesNormalized);
+    }
+
+    /**
+     * Node khác có thể đã hoàn tất chuyển đổi: kiểm tra lại trạng thái cho tới khi thấy hoàn tất.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+    public void refreshState() {
+        if (referencesNormalized) {
+            return;
+        }
+        try {
+            Document state = mongoTemplate.getCollection(STATE_COLLECTION).find(new Document("_id", MIGRATION_ID)).first();
+            if (state != null && state.get("completedAt") != null) {
+                referencesNormalized = true;
+                log.info("Các trường tham chiếu đã được chuẩn hóa, truy vấn dùng một kiểu id.");
+            }
+        } catch (Exception e) {
+            log.warn("Không thể đọc trạng thái chuẩn hóa tham chiếu: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Chuẩn hóa tối đa {@code limit} bản ghi. Gọi lại cho tới khi kết quả có completed = true.
+     */
+    public Map<String, Object> migrate(int limit) {
+        Map<String, Long> converted = new LinkedHashMap<>();
+        long remaining = limit;
+        for (Step step : STEPS) {
+            long count = remaining > 0 ? migrateStep(step, remaining) : 0;
+            converted.put(step.name(mongoTemplate), count);
+            remaining -= count;
+        }
+
+        boolean completed = STEPS.stream().noneMatch(this::hasLegacyReferences);
+        if (completed) {
+            mongoTemplate.upsert(new Query(Criteria.where("_id").is(MIGRATION_ID)),
+                    new Update().setOnInsert("completedAt", LocalDateTime.now()), STATE_COLLECTION);
+            referencesNormalized = true;
+        }
+        log.info("Chuẩn hóa tham chiếu: {} (hoàn tất: {})", converted, completed);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("converted", converted);
+        result.put("completed", completed);
+        return result;
+    }
+
+    private long migrateStep(Step step, long limit) {
+        Query query = legacyQuery(step).limit((int) Math.min(limit, Integer.MAX_VALUE));
+        query.fields().include("_id").include(step.field());
+        String collection = mongoTemplate.getCollectionName(step.entity());
+
+        long converted = 0;
+        BulkOperations bulk = null;
+        int pending = 0;
+        try (Stream<Document> documents = mongoTemplate.stream(query, Document.class, collection)) {
+            for (Document document : (Iterable<Document>) documents::iterator) {
+                Object current = document.get(step.field());
+                Object normalized = normalize(current);
+                if (normalized.equals(current)) {
+                    continue;
+                }
+                if (bulk == null) {
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+                }
+                bulk.updateOne(new Query(Criteria.where("_id").is(document.get("_id")).and(step.field()).is(current)),
+                        new Update().set(step.field(), normalized));
+                if (++pending == BATCH_SIZE) {
+                    converted += bulk.execute().getModifiedCount();
+                    bulk = null;
+                    pending = 0;
+                }
+            }
+        }
+        if (bulk != null) {
+            converted += bulk.execute().getModifiedCount();
+        }
+        return converted;
+    }
+
+    private boolean hasLegacyReferences(Step step) {
+        return mongoTemplate.exists(legacyQuery(step), mongoTemplate.getCollectionName(step.entity()));
+    }
+
+    /**
+     * Tham chiếu dạng cũ: chuỗi hex trỏ tới _id dạng ObjectId (với mảng, khớp khi có ít nhất một phần tử như vậy).
+     */
+    private static Query legacyQuery(Step step) {
+        return new Query(Criteria.where(step.field()).regex(HEX_ID_PATTERN));
+    }
+
+    private static Object normalize(Object value) {
+        if (value instanceof String id) {
+            return MongoIds.toDocumentId(id);
+        }
+        if (value instanceof List<?> ids) {
+            return ids.stream().map(id -> id instanceof String s ? MongoIds.toDocumentId(s) : id).toList();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,70 @@
+package com.cinema.service;
+
+import com.cinema.enums.SeatState;
+import com.cinema.exceptions.SeatConflictException;
+import com.cinema.model.Showtime;
+import com.mongodb.ReadPreference;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Chọn và giữ N ghế trống liền nhau tốt nhất cho khách trong một lần gọi.
+ * Khối ghế được giữ bằng SeatService.holdSeats (một lệnh cập nhật có điều kiện); nếu khối vừa bị
+ * người khác giữ thì thử khối tốt kế tiếp, rồi đọc lại trạng thái ghế một lần nữa.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SeatAllocationService {
+
+    private static final int CANDIDATES_PER_READ = 5;
+    private static final int MAX_READS = 2;
+
+    private final MongoTemplate mongoTemplate;
+    private final SeatLayoutService seatLayoutService;
+    private final SeatService seatService;
+
+    /**
+     * @return danh sách mã ghế đã được giữ
+     */
+    public List<String> holdBestAvailable(String showtimeId, int quantity, String seatType, String customerPhone) {
+        if (quantity < 1 || quantity > 10) {
+            throw new IllegalArgumentException("Số lượng ghế phải từ 1 đến 10.");
+        }
+        String requestedType = seatType == null || seatType.isBlank() ? null : seatType.trim();
+        for (int read = 1; read <= MAX_READS; read++) {
+            Query query = new Query(Criteria.where("_id").is(showtimeId)).withReadPreference(ReadPreference.primary());
+            query.fields().include("roomId").include("seatEncoding").include("seatBits").include("seatStatus");
+            Showtime showtime = mongoTemplate.findOne(query, Showtime.class);
+            if (showtime == null) {
+                throw new IllegalArgumentException("Showtime không tồn tại: " + showtimeId);
+            }
+            SeatLayout layout = seatLayoutService.layoutForRoom(showtime.getRoomId());
+            SeatState[] states = CompactSeatMap.statesOf(layout, showtime);
+
+            List<BestSeatFinder.Block> candidates = BestSeatFinder.findBest(layout, states, quantity, requestedType, CANDIDATES_PER_READ);
+            if (candidates.isEmpty()) {
+                throw new IllegalStateException("Không còn đủ " + quantity + " ghế trống liền nhau"
+                        + (requestedType != null ? " loại " + requestedType : "") + ".");
+            }
+            for (BestSeatFinder.Block block : candidates) {
+                List<String> seatIds = block.seatIds(layout);
+                try {
+                    seatService.holdSeats(showtimeId, seatIds, customerPhone);
+                    log.info("Đã chọn và giữ {} ghế tốt nhất cho Showtime {}: {} (điểm {})",
+                            quantity, showtimeId, seatIds, String.format("%.3f", block.score()));
+                    return seatIds;
+                } catch (SeatConflictException e) {
+                    log.debug("Khối ghế {} của Showtime {} vừa bị giữ, thử khối kế tiếp.", seatIds, showtimeId);
+                }
+            }
+        }
+        throw new IllegalStateException("Các ghế phù hợp vừa được người khác giữ, vui lòng thử lại.");
+    }
+}
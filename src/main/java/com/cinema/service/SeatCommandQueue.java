@@ -0,0 +1,486 @@
+package com.cinema.service;
+
+import com.cinema.config.AppProperties;
+import com.cinema.enums.SeatState;
+import com.cinema.exceptions.SeatConflictException;
+import com.cinema.model.SeatHold;
+import com.cinema.model.Showtime;
+import com.cinema.repository.SeatHoldRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chế độ tùy chọn (cinema.seat-command-queue.enabled) cho suất chiếu "nóng": mọi lệnh giữ/hủy/gia hạn/
+ * xác nhận ghế của một suất chiếu trên node này được đưa vào một hàng đợi riêng và do một virtual thread
+ * duy nhất xử lý.
+ * <p>
+ * Mỗi lượt, luồng xử lý lấy tối đa maxBatchSize lệnh, đọc trạng thái các ghế liên quan một lần, áp dụng
+ * lần lượt từng lệnh trên bản sao trong bộ nhớ (lệnh không hợp lệ bị từ chối riêng lẻ) rồi ghi kết quả
+ * của cả lô bằng một lệnh cập nhật duy nhất, có điều kiện seatVersion không đổi. Nếu node khác hoặc job
+ * hết hạn ghế vừa ghi vào suất chiếu thì lô được đọc lại và đánh giá lại.
+ * <p>
+ * Lệnh đi qua hàng đợi được ghi ngoài transaction của bên gọi. Vì vậy khi lệnh giữ hoặc xác nhận ghế thành
+ * công bên trong một transaction, hàng đợi đăng ký một lệnh bù chạy sau khi transaction đó rollback: giữ ghế
+ * được bù bằng giải phóng ghế, xác nhận được bù bằng đưa ghế BOOKED của đúng booking đó về HOLDING
+ * (giống trạng thái Mongo khôi phục khi không dùng hàng đợi).
+ */
+@Slf4j
+@Service
+public class SeatCommandQueue {
+
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+
+    private final MongoTemplate mongoTemplate;
+    private final SeatHoldRepository seatHoldRepository;
+    private final SeatHoldTimingWheel holdTimingWheel;
+    private final SeatSnapshotReader seatSnapshotReader;
+    private final SeatVersionCache seatVersionCache;
+    private final AppProperties.SeatCommandQueue config;
+    private final AppProperties.SeatHold holdConfig;
+
+    private final Map<String, ShowtimeQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger queuedCommands = new AtomicInteger();
+    private final DistributionSummary batchSizes;
+    private final Timer commandLatency;
+    private final MeterRegistry meterRegistry;
+
+    public SeatCommandQueue(MongoTemplate mongoTemplate, SeatHoldRepository seatHoldRepository,
+                            SeatHoldTimingWheel holdTimingWheel, SeatSnapshotReader seatSnapshotReader,
+                            SeatVersionCache seatVersionCache, AppProperties appProperties, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.seatHoldRepository = seatHoldRepository;
+        this.holdTimingWheel = holdTimingWheel;
+        this.seatSnapshotReader = seatSnapshotReader;
+        this.seatVersionCache = seatVersionCache;
+        this.config = appProperties.getSeatCommandQueue();
+        this.holdConfig = appProperties.getSeatHold();
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gauge("cinema.seat.command.queue.depth", queuedCommands);
+        this.batchSizes = DistributionSummary.builder("cinema.seat.command.batch.size")
+                .description("Số lệnh ghế được gộp vào một lệnh cập nhật MongoDB")
+                .register(meterRegistry);
+        this.commandLatency = Timer.builder("cinema.seat.command.latency")
+                .description("Thời gian từ lúc lệnh ghế vào hàng đợi tới khi có kết quả")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    public boolean hold(String showtimeId, List<String> seatIds) {
+        return submit(showtimeId, new Command(CommandType.HOLD, seatIds, null));
+    }
+
+    public boolean release(String showtimeId, List<String> seatIds) {
+        return submit(showtimeId, new Command(CommandType.RELEASE, seatIds, null));
+    }
+
+    public boolean extend(String showtimeId, List<String> seatIds) {
+        return submit(showtimeId, new Command(CommandType.EXTEND, seatIds, null));
+    }
+
+    public boolean confirm(String showtimeId, List<String> seatIds, String bookingId) {
+        return submit(showtimeId, new Command(CommandType.CONFIRM, seatIds, bookingId));
+    }
+
+    private boolean submit(String showtimeId, Command command) {
+        ShowtimeQueue queue = queues.computeIfAbsent(showtimeId, ShowtimeQueue::new);
+        if (!queue.offer(command)) {
+            meterRegistry.counter("cinema.seat.command.rejected").increment();
+            throw new IllegalStateException("Suất chiếu đang có quá nhiều yêu cầu, vui lòng thử lại sau giây lát.");
+        }
+        // Đăng ký trước khi chờ: lệnh quá thời gian chờ vẫn có thể chạy sau khi transaction đã rollback
+        registerCompensation(showtimeId, command);
+        try {
+            return command.result.get(config.getCommandTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Lệnh vẫn có thể được xử lý sau đó; client kiểm tra lại trạng thái ghế
+            throw new IllegalStateException("Hệ thống đang bận, vui lòng kiểm tra lại trạng thái ghế.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Yêu cầu bị gián đoạn.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    /**
+     * Lệnh được ghi ngoài transaction của bên gọi: nếu transaction đó rollback thì gửi lệnh bù (không chờ kết quả)
+     * ngay khi lệnh có kết quả, kể cả khi lệnh chỉ được xử lý sau khi bên gọi đã hết thời gian chờ.
+     */
+    private void registerCompensation(String showtimeId, Command command) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        CommandType compensation = switch (command.type) {
+            case HOLD -> CommandType.RELEASE;
+            case CONFIRM -> CommandType.UNCONFIRM;
+            default -> null;
+        };
+        if (compensation == null) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_ROLLED_BACK) {
+                    return;
+                }
+                // Lệnh bị từ chối hoặc lỗi thì không có gì để bù
+                command.result.thenAccept(outcome -> {
+                    if (!command.affectedSeats.isEmpty()) {
+                        compensate(showtimeId, new Command(compensation, command.affectedSeats, command.bookingId));
+                    }
+                });
+            }
+        });
+    }
+
+    private void compensate(String showtimeId, Command command) {
+        log.warn("Transaction của bên gọi đã rollback, bù lệnh ghế bằng {} cho Showtime {}: {}", command.type, showtimeId, command.seatIds);
+        meterRegistry.counter("cinema.seat.command.compensations", "type", command.type.name()).increment();
+        if (!queues.computeIfAbsent(showtimeId, ShowtimeQueue::new).offer(command)) {
+            // Ghế giữ sẽ được job hết hạn giải phóng; ghế BOOKED cần xử lý thủ công
+            log.error("Hàng đợi của Showtime {} đầy, không thể bù lệnh {} cho ghế {} (booking {}).",
+                    showtimeId, command.type, command.seatIds, command.bookingId);
+            return;
+        }
+        command.result.whenComplete((outcome, error) -> {
+            if (error != null) {
+                log.error("Bù lệnh {} cho Showtime {} thất bại: {}", command.type, showtimeId, error.getMessage());
+            }
+        });
+    }
+
+    private enum CommandType { HOLD, RELEASE, EXTEND, CONFIRM, UNCONFIRM }
+
+    private static final class Command {
+        final CommandType type;
+        final List<String> seatIds;
+        final String bookingId;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        // Kết quả tạm trong lượt đánh giá hiện tại
+        RuntimeException error;
+        boolean outcome;
+        List<String> affectedSeats = List.of();
+
+        Command(CommandType type, List<String> seatIds, String bookingId) {
+            this.type = type;
+            this.seatIds = seatIds;
+            this.bookingId = bookingId;
+        }
+    }
+
+    /**
+     * Hàng đợi của một suất chiếu; luồng xử lý chỉ chạy khi có lệnh.
+     */
+    private final class ShowtimeQueue {
+        private final String showtimeId;
+        private final LinkedBlockingQueue<Command> pending;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        ShowtimeQueue(String showtimeId) {
+            this.showtimeId = showtimeId;
+            this.pending = new LinkedBlockingQueue<>(Math.max(1, config.getMaxQueueSize()));
+        }
+
+        boolean offer(Command command) {
+            if (!pending.offer(command)) {
+                return false;
+            }
+            queuedCommands.incrementAndGet();
+            scheduleDrain();
+            return true;
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                Thread.ofVirtual().name("seat-commands-" + showtimeId).start(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                List<Command> batch = new ArrayList<>();
+                while (pending.drainTo(batch, Math.max(1, config.getMaxBatchSize())) > 0) {
+                    queuedCommands.addAndGet(-batch.size());
+                    processBatch(showtimeId, batch);
+                    batch.clear();
+                }
+            } finally {
+                draining.set(false);
+            }
+            // Lệnh đến sau lần drainTo cuối nhưng trước khi cờ được tắt
+            if (!pending.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+    }
+
+    private void processBatch(String showtimeId, List<Command> batch) {
+        batchSizes.record(batch.size());
+        try {
+            for (int attempt = 1; ; attempt++) {
+                if (tryApplyBatch(showtimeId, batch)) {
+                    break;
+                }
+                if (attempt >= MAX_BATCH_ATTEMPTS) {
+                    log.warn("Lô {} lệnh ghế của Showtime {} xung đột {} lần liên tiếp.", batch.size(), showtimeId, attempt);
+                    batch.forEach(command -> command.error = new IllegalStateException("Trạng thái ghế đang thay đổi, vui lòng thử lại."));
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Lỗi khi xử lý lô lệnh ghế của Showtime {}: {}", showtimeId, e.getMessage(), e);
+            batch.forEach(command -> command.error = e);
+        }
+        for (Command command : batch) {
+            commandLatency.record(System.nanoTime() - command.enqueuedAt, TimeUnit.NANOSECONDS);
+            if (command.error != null) {
+                command.result.completeExceptionally(command.error);
+            } else {
+                command.result.complete(command.outcome);
+            }
+        }
+    }
+
+    /**
+     * Đánh giá và ghi cả lô. Trả về false nếu seatVersion đã đổi kể từ lúc đọc (cần đánh giá lại).
+     */
+    private boolean tryApplyBatch(String showtimeId, List<Command> batch) {
+        Set<String> touchedSeats = new LinkedHashSet<>();
+        batch.forEach(command -> touchedSeats.addAll(command.seatIds));
+
+        SeatSnapshot current;
+        try {
+            current = seatSnapshotReader.read(showtimeId, touchedSeats);
+        } catch (IllegalArgumentException e) {
+            batch.forEach(command -> command.error = e);
+            return true;
+        }
+        SeatLayout layout = current.layout();
+
+        // Trạng thái ban đầu và trạng thái làm việc của các ghế có trong lô
+        Map<String, Showtime.SeatStatus> initial = new HashMap<>(current.seats());
+        Map<String, Showtime.SeatStatus> working = new HashMap<>();
+        initial.forEach((seatId, status) -> working.put(seatId, copy(status)));
+
+        LocalDateTime now = LocalDateTime.now();
+        for (Command command : batch) {
+            command.error = null;
+            command.outcome = false;
+            command.affectedSeats = List.of();
+            try {
+                evaluate(showtimeId, command, working, now);
+            } catch (RuntimeException e) {
+                command.error = e;
+            }
+        }
+
+        Map<String, Showtime.SeatStatus> changed = new LinkedHashMap<>();
+        working.forEach((seatId, status) -> {
+            if (!sameStatus(initial.get(seatId), status)) {
+                changed.put(seatId, status);
+            }
+        });
+        if (changed.isEmpty()) {
+            return true;
+        }
+
+        Update update = new Update();
+        Map<Integer, Long> xorMasks = new TreeMap<>();
+        int holdingDelta = 0;
+        int bookedDelta = 0;
+        for (Map.Entry<String, Showtime.SeatStatus> entry : changed.entrySet()) {
+            String seatId = entry.getKey();
+            Showtime.SeatStatus after = entry.getValue();
+            SeatState before = initial.get(seatId).getStatus();
+            holdingDelta += (after.getStatus() == SeatState.HOLDING ? 1 : 0) - (before == SeatState.HOLDING ? 1 : 0);
+            bookedDelta += (after.getStatus() == SeatState.BOOKED ? 1 : 0) - (before == SeatState.BOOKED ? 1 : 0);
+            String path = "seatStatus." + seatId;
+            if (layout != null) {
+                int ordinal = layout.ordinalOf(seatId);
+                xorMasks.merge(CompactSeatMap.wordIndex(ordinal),
+                        CompactSeatMap.transitionMask(ordinal, before, after.getStatus()), (a, b) -> a ^ b);
+                if (after.getStatus() == SeatState.HOLDING || after.getStatus() == SeatState.BOOKED) {
+                    update.set(path, after);
+                } else {
+                    update.unset(path);
+                }
+            } else if (after.getStatus() == SeatState.AVAILABLE) {
+                update.set(path + ".status", SeatState.AVAILABLE).unset(path + ".holdStartedAt").unset(path + ".bookingId");
+            } else {
+                update.set(path, after);
+            }
+        }
+        xorMasks.forEach((word, mask) -> update.bitwise("seatBits." + word).xor(mask));
+        if (holdingDelta != 0) {
+            update.inc("holdingSeats", holdingDelta);
+        }
+        if (bookedDelta != 0) {
+            update.inc("bookedSeats", bookedDelta);
+        }
+        if (holdingDelta + bookedDelta != 0) {
+            update.inc("availableSeats", -(holdingDelta + bookedDelta));
+        }
+        // seatVersion được khóa trong điều kiện ghi nên holdingSeats sau lệnh này biết chính xác: đặt cờ cùng lệnh
+        boolean exactFlag = holdingDelta != 0 && current.holdingSeats() != null;
+        if (exactFlag) {
+            update.set("hasHoldingSeats", current.holdingSeats() + holdingDelta > 0);
+        } else if (holdingDelta > 0) {
+            update.set("hasHoldingSeats", true);
+        }
+        update.inc("seatVersion", 1);
+
+        Query guard = new Query(Criteria.where("_id").is(showtimeId)
+                .and("seatEncoding").is(current.seatEncoding())
+                .and("seatVersion").is(current.seatVersion()));
+        if (mongoTemplate.updateFirst(guard, update, Showtime.class).getMatchedCount() == 0) {
+            meterRegistry.counter("cinema.seat.command.batch.conflicts").increment();
+            return false;
+        }
+        seatVersionCache.evict(showtimeId);
+        if (holdingDelta < 0 && !exactFlag) {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(showtimeId).and("holdingSeats").lte(0)),
+                    new Update().set("hasHoldingSeats", false), Showtime.class);
+        }
+        applySideEffects(showtimeId, batch, now);
+        log.debug("Đã ghi lô {} lệnh ({} ghế thay đổi) cho Showtime {}", batch.size(), changed.size(), showtimeId);
+        return true;
+    }
+
+    /**
+     * Áp dụng một lệnh lên trạng thái làm việc, giữ nguyên ngữ nghĩa của các thao tác tương ứng trong SeatService.
+     */
+    private void evaluate(String showtimeId, Command command, Map<String, Showtime.SeatStatus> working, LocalDateTime now) {
+        for (String seatId : command.seatIds) {
+            if (!working.containsKey(seatId) && (command.type == CommandType.HOLD || command.type == CommandType.CONFIRM)) {
+                throw new IllegalArgumentException("Ghế " + seatId + " không tồn tại trong phòng chiếu.");
+            }
+        }
+        switch (command.type) {
+            case HOLD -> {
+                List<String> conflicting = command.seatIds.stream()
+                        .filter(seatId -> working.get(seatId).getStatus() != SeatState.AVAILABLE)
+                        .toList();
+                if (!conflicting.isEmpty()) {
+                    throw new SeatConflictException(showtimeId, conflicting);
+                }
+                command.seatIds.forEach(seatId -> working.put(seatId, new Showtime.SeatStatus(SeatState.HOLDING, now, null)));
+                command.affectedSeats = command.seatIds;
+                command.outcome = true;
+            }
+            case RELEASE -> {
+                List<String> released = command.seatIds.stream()
+                        .filter(seatId -> working.containsKey(seatId) && working.get(seatId).getStatus() == SeatState.HOLDING)
+                        .toList();
+                released.forEach(seatId -> working.put(seatId, new Showtime.SeatStatus(SeatState.AVAILABLE, null, null)));
+                command.affectedSeats = released;
+                command.outcome = !released.isEmpty();
+            }
+            case EXTEND -> {
+                LocalDateTime threshold = now.minusMinutes(holdConfig.getExpiryMinutes());
+                List<String> extended = command.seatIds.stream()
+                        .filter(seatId -> {
+                            Showtime.SeatStatus status = working.get(seatId);
+                            return status != null && status.getStatus() == SeatState.HOLDING
+                                    && status.getHoldStartedAt() != null && status.getHoldStartedAt().isAfter(threshold);
+                        })
+                        .toList();
+                extended.forEach(seatId -> working.get(seatId).setHoldStartedAt(now));
+                command.affectedSeats = extended;
+                command.outcome = !extended.isEmpty();
+            }
+            case CONFIRM -> {
+                for (String seatId : command.seatIds) {
+                    if (working.get(seatId).getStatus() != SeatState.HOLDING) {
+                        throw new IllegalStateException("Ghế " + seatId + " không thể xác nhận. Vui lòng thử lại.");
+                    }
+                }
+                command.seatIds.forEach(seatId -> working.put(seatId, new Showtime.SeatStatus(SeatState.BOOKED, null, command.bookingId)));
+                command.affectedSeats = command.seatIds;
+                command.outcome = true;
+            }
+            case UNCONFIRM -> {
+                // Chỉ ghế còn BOOKED bởi đúng booking của lệnh xác nhận đã rollback
+                List<String> reverted = command.seatIds.stream()
+                        .filter(seatId -> {
+                            Showtime.SeatStatus status = working.get(seatId);
+                            return status != null && status.getStatus() == SeatState.BOOKED
+                                    && Objects.equals(status.getBookingId(), command.bookingId);
+                        })
+                        .toList();
+                reverted.forEach(seatId -> working.put(seatId, new Showtime.SeatStatus(SeatState.HOLDING, now, null)));
+                command.affectedSeats = reverted;
+                command.outcome = !reverted.isEmpty();
+            }
+        }
+    }
+
+    private void applySideEffects(String showtimeId, List<Command> batch, LocalDateTime now) {
+        LocalDateTime expiresAt = now.plusMinutes(holdConfig.getExpiryMinutes());
+        for (Command command : batch) {
+            if (command.error != null || command.affectedSeats.isEmpty()) {
+                continue;
+            }
+            switch (command.type) {
+                case HOLD, UNCONFIRM -> {
+                    seatHoldRepository.upsertHolds(showtimeId, command.affectedSeats, now, expiresAt);
+                    command.affectedSeats.forEach(seatId -> holdTimingWheel.schedule(SeatHold.idOf(showtimeId, seatId), expiresAt));
+                }
+                case EXTEND -> {
+                    seatHoldRepository.extendHolds(showtimeId, command.affectedSeats, now, expiresAt);
+                    command.affectedSeats.forEach(seatId -> holdTimingWheel.schedule(SeatHold.idOf(showtimeId, seatId), expiresAt));
+                }
+                case RELEASE, CONFIRM -> {
+                    seatHoldRepository.deleteHolds(showtimeId, command.affectedSeats);
+                    command.affectedSeats.forEach(seatId -> holdTimingWheel.cancel(SeatHold.idOf(showtimeId, seatId)));
+                }
+            }
+        }
+    }
+
+    private static Showtime.SeatStatus copy(Showtime.SeatStatus status) {
+        return new Showtime.SeatStatus(status.getStatus(), status.getHoldStartedAt(), status.getBookingId());
+    }
+
+    private static boolean sameStatus(Showtime.SeatStatus a, Showtime.SeatStatus b) {
+        return a.getStatus() == b.getStatus()
+                && Objects.equals(a.getHoldStartedAt(), b.getHoldStartedAt())
+                && Objects.equals(a.getBookingId(), b.getBookingId());
+    }
+}
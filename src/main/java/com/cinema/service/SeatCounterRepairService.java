@@ -0,0 +1,154 @@
+package com.cinema.service;
+
+import com.cinema.config.AppProperties;
+import com.cinema.enums.SeatState;
+import com.cinema.model.Showtime;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Kiểm tra và sửa sai lệch của bộ đếm availableSeats/holdingSeats/bookedSeats so với bản đồ ghế.
+ * <p>
+ * Bộ đếm bình thường được cập nhật bằng $inc cùng lệnh đổi trạng thái ghế; job này chỉ để khởi tạo
+ * bộ đếm cho dữ liệu cũ và sửa sai lệch (ví dụ do ghi thủ công). Lệnh sửa có điều kiện bộ đếm vẫn
+ * bằng giá trị đã đọc, nên nếu suất chiếu vừa thay đổi thì bỏ qua và để lượt sau kiểm tra lại.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SeatCounterRepairService {
+
+    private final MongoTemplate mongoTemplate;
+    private final SeatLayoutService seatLayoutService;
+    private final SeatMapMigrationService seatMapMigrationService;
+    private final AppProperties appProperties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void repairOnStartup() {
+        repairSeatCounters();
+    }
+
+    @Scheduled(fixedDelayString = "${cinema.seat-counters.repair-rate-ms:900000}", initialDelayString = "${cinema.seat-counters.repair-rate-ms:900000}")
+    public void scheduledRepair() {
+        repairSeatCounters();
+    }
+
+    /**
+     * Đếm lại trạng thái ghế của các suất chiếu gần đây/sắp tới và sửa bộ đếm bị lệch.
+     */
+    public Map<String, Integer> repairSeatCounters() {
+        // Suất chiếu kẹt ở "migrating" bị bỏ qua khi đếm và chặn mọi thao tác ghế: gỡ dấu quá hạn trước
+        int recoveredMigrations = seatMapMigrationService.recoverStaleMigrations();
+        LocalDateTime from = LocalDateTime.now().minusHours(appProperties.getSeatCounters().getRepairLookbackHours());
+        Query query = new Query(Criteria.where("showDateTime").gte(from));
+        query.fields().include("roomId").include("totalSeats").include("availableSeats").include("holdingSeats")
+                .include("bookedSeats").include("hasHoldingSeats").include("seatStatus").include("seatEncoding").include("seatBits");
+
+        // Cờ còn bật trên suất chiếu không còn ghế giữ (mọi suất chiếu, theo index idx_showtime_hasHoldingSeats)
+        long staleFlags = mongoTemplate.updateMulti(
+                new Query(Criteria.where("hasHoldingSeats").is(true).and("holdingSeats").lte(0)),
+                new Update().set("hasHoldingSeats", false), Showtime.class).getModifiedCount();
+        if (staleFlags > 0) {
+            log.info("Đã tắt cờ hasHoldingSeats của {} suất chiếu không còn ghế đang giữ.", staleFlags);
+        }
+
+        int checked = 0;
+        int repaired = 0;
+        int skipped = 0;
+        try (Stream<Showtime> showtimes = mongoTemplate.stream(query, Showtime.class)) {
+            for (Showtime showtime : (Iterable<Showtime>) showtimes::iterator) {
+                checked++;
+                try {
+                    Boolean result = repair(showtime);
+                    if (result == null) {
+                        skipped++;
+                    } else if (result) {
+                        repaired++;
+                    }
+                } catch (RuntimeException e) {
+                    skipped++;
+                    log.warn("Không thể kiểm tra bộ đếm ghế của suất chiếu {}: {}", showtime.getId(), e.getMessage());
+                }
+            }
+        }
+        if (repaired > 0 || skipped > 0) {
+            log.info("Kiểm tra bộ đếm ghế: {} suất chiếu, đã sửa {}, bỏ qua {}.", checked, repaired, skipped);
+        }
+        Map<String, Integer> result = new LinkedHashMap<>();
+        result.put("checked", checked);
+        result.put("repaired", repaired);
+        result.put("skipped", skipped);
+        result.put("migrationsRecovered", recoveredMigrations);
+        return result;
+    }
+
+    /**
+     * @return true nếu đã sửa, false nếu bộ đếm đúng, null nếu suất chiếu vừa thay đổi (bỏ qua lượt này).
+     */
+    private Boolean repair(Showtime showtime) {
+        if (showtime.getTotalSeats() == null || CompactSeatMap.MIGRATING.equals(showtime.getSeatEncoding())) {
+            return null;
+        }
+        int holding = 0;
+        int booked = 0;
+        SeatLayout layout = seatLayoutService.compactLayoutOf(showtime);
+        if (layout != null) {
+            for (int ordinal = 0; ordinal < layout.size(); ordinal++) {
+                SeatState state = CompactSeatMap.stateAt(showtime.getSeatBits(), ordinal);
+                if (state == SeatState.HOLDING) {
+                    holding++;
+                } else if (state == SeatState.BOOKED) {
+                    booked++;
+                }
+            }
+        } else if (showtime.getSeatStatus() != null) {
+            for (Showtime.SeatStatus status : showtime.getSeatStatus().values()) {
+                if (SeatState.HOLDING.equals(status.getStatus())) {
+                    holding++;
+                } else if (SeatState.BOOKED.equals(status.getStatus())) {
+                    booked++;
+                }
+            }
+        }
+        int available = showtime.getTotalSeats() - holding - booked;
+        if (Objects.equals(showtime.getAvailableSeats(), available)
+                && Objects.equals(showtime.getHoldingSeats(), holding)
+                && Objects.equals(showtime.getBookedSeats(), booked)
+                && showtime.isHasHoldingSeats() == (holding > 0)) {
+            return false;
+        }
+
+        Query guard = new Query(Criteria.where("_id").is(showtime.getId())
+                .and("seatEncoding").is(showtime.getSeatEncoding())
+                .and("availableSeats").is(showtime.getAvailableSeats())
+                .and("holdingSeats").is(showtime.getHoldingSeats())
+                .and("bookedSeats").is(showtime.getBookedSeats()));
+        Update update = new Update()
+                .set("availableSeats", available)
+                .set("holdingSeats", holding)
+                .set("bookedSeats", booked)
+                .set("hasHoldingSeats", holding > 0)
+                .inc("seatVersion", 1);
+        if (mongoTemplate.updateFirst(guard, update, Showtime.class).getModifiedCount() == 0) {
+            return null;
+        }
+        log.warn("Đã sửa bộ đếm ghế của suất chiếu {}: trống {} -> {}, đang giữ {} -> {}, đã đặt {} -> {}",
+                showtime.getId(), showtime.getAvailableSeats(), available, showtime.getHoldingSeats(), holding,
+                showtime.getBookedSeats(), booked);
+        return true;
+    }
+}
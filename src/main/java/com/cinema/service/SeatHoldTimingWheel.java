@@ -0,0 +1,325 @@
+package com.cinema.service;
+
+import com.cinema.config.AppProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Bộ hẹn giờ dạng "hashed timing wheel" dùng để giải phóng ghế đúng hạn (sai số khoảng một tick).
+ * <p>
+ * Mỗi lượt giữ ghế được gắn vào một ô của vòng quay theo thời điểm hết hạn; hạn xa hơn một vòng
+ * được lưu số vòng còn lại. Lên lịch và hủy đều O(1): các thao tác được đưa vào hàng đợi và chỉ
+ * luồng worker mới chạm vào các ô, nên không cần khóa trên cấu trúc vòng quay.
+ * Khi đến hạn, khóa của lượt giữ được chuyển cho handler trên một virtual thread.
+ */
+@Slf4j
+@Component
+public class SeatHoldTimingWheel {
+
+    private final AppProperties appProperties;
+    private final Clock clock;
+    private final LongSupplier nanoTime;
+
+    private final Map<String, Timeout> timeouts = new ConcurrentHashMap<>();
+    private final Queue<Timeout> pendingAdds = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> pendingCancels = new ConcurrentLinkedQueue<>();
+
+    private Bucket[] wheel;
+    private int mask;
+    private long tickNanos;
+    private long startTime;
+    private long tick;
+
+    private volatile Consumer<String> expiryHandler;
+    private volatile boolean running;
+    private Thread worker;
+    private Executor handlerExecutor;
+
+    @Autowired
+    public SeatHoldTimingWheel(AppProperties appProperties) {
+        this(appProperties, Clock.systemDefaultZone(), System::nanoTime);
+    }
+
+    /**
+     * Dùng trong test: đồng hồ giả, kết hợp với start(Executor) và advance() thay cho luồng worker.
+     */
+    SeatHoldTimingWheel(AppProperties appProperties, Clock clock, LongSupplier nanoTime) {
+        this.appProperties = appProperties;
+        this.clock = clock;
+        this.nanoTime = nanoTime;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!start(Executors.newVirtualThreadPerTaskExecutor())) {
+            log.info("Seat hold timing wheel is disabled; expiry relies on the periodic sweep only.");
+            return;
+        }
+        this.worker = Thread.ofPlatform().daemon().name("seat-hold-wheel").start(this::runWorker);
+        log.info("Seat hold timing wheel started: {} buckets, tick={}ms", wheel.length, TimeUnit.NANOSECONDS.toMillis(tickNanos));
+    }
+
+    /**
+     * Khởi tạo vòng quay (không tạo luồng worker). Trả về false nếu bộ hẹn giờ bị tắt trong cấu hình.
+     */
+    boolean start(Executor handlerExecutor) {
+        AppProperties.SeatHold.TimingWheel config = appProperties.getSeatHold().getTimingWheel();
+        if (!config.isEnabled()) {
+            return false;
+        }
+        int size = Integer.highestOneBit(Math.max(2, config.getTicksPerWheel() - 1)) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(10, config.getTickMs()));
+        this.handlerExecutor = handlerExecutor;
+        this.startTime = nanoTime.getAsLong();
+        this.running = true;
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+        if (handlerExecutor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * Đăng ký hàm xử lý được gọi (với khóa lượt giữ) khi một lượt giữ đến hạn.
+     */
+    public void onExpiry(Consumer<String> handler) {
+        this.expiryHandler = handler;
+    }
+
+    /**
+     * Lên lịch (hoặc lên lịch lại) thời điểm hết hạn cho một lượt giữ.
+     */
+    public void schedule(String key, LocalDateTime expiresAt) {
+        if (!running) {
+            return;
+        }
+        long delayNanos = Math.max(0, Duration.between(LocalDateTime.now(clock), expiresAt).toNanos());
+        Timeout timeout = new Timeout(key, nanoTime.getAsLong() - startTime + delayNanos);
+        Timeout previous = timeouts.put(key, timeout);
+        if (previous != null) {
+            cancelTimeout(previous);
+        }
+        pendingAdds.add(timeout);
+    }
+
+    /**
+     * Hủy lịch hết hạn của một lượt giữ (ghế đã được hủy giữ hoặc đã được đặt).
+     */
+    public void cancel(String key) {
+        if (!running) {
+            return;
+        }
+        Timeout timeout = timeouts.remove(key);
+        if (timeout != null) {
+            cancelTimeout(timeout);
+        }
+    }
+
+    public int size() {
+        return timeouts.size();
+    }
+
+    private void cancelTimeout(Timeout timeout) {
+        if (timeout.state == Timeout.PENDING) {
+            timeout.state = Timeout.CANCELLED;
+            pendingCancels.add(timeout);
+        }
+    }
+
+    private void runWorker() {
+        while (running) {
+            long deadline = waitForNextTick();
+            if (deadline < 0) {
+                continue;
+            }
+            processTick(deadline);
+        }
+    }
+
+    /**
+     * Xử lý mọi tick đã đến hạn theo đồng hồ trên luồng gọi; dùng trong test thay cho luồng worker.
+     */
+    void advance() {
+        long elapsed = nanoTime.getAsLong() - startTime;
+        while (tickNanos * (tick + 1) <= elapsed) {
+            processTick(tickNanos * (tick + 1));
+        }
+    }
+
+    private void processTick(long deadline) {
+        processCancellations();
+        transferPendingAdds();
+        Bucket bucket = wheel[(int) (tick & mask)];
+        bucket.expire(deadline);
+        tick++;
+    }
+
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long sleepNanos = deadline - (nanoTime.getAsLong() - startTime);
+            if (sleepNanos <= 0) {
+                return deadline;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void processCancellations() {
+        Timeout timeout;
+        while ((timeout = pendingCancels.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferPendingAdds() {
+        Timeout timeout;
+        while ((timeout = pendingAdds.poll()) != null) {
+            if (timeout.state == Timeout.CANCELLED) {
+                continue;
+            }
+            // Ô thứ N được xử lý tại thời điểm (N + 1) * tick nên không bao giờ hết hạn sớm hơn deadline
+            long calculated = timeout.deadline / tickNanos;
+            long ticks = Math.max(calculated, tick);
+            timeout.remainingRounds = (ticks - tick) / wheel.length;
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void dispatch(Timeout timeout) {
+        timeout.state = Timeout.EXPIRED;
+        timeouts.remove(timeout.key, timeout);
+        Consumer<String> handler = expiryHandler;
+        if (handler == null) {
+            return;
+        }
+        handlerExecutor.execute(() -> {
+            try {
+                handler.accept(timeout.key);
+            } catch (Exception e) {
+                // Job quét định kỳ sẽ xử lý lại lượt giữ này
+                log.warn("Failed to release seat hold {} at its deadline: {}", timeout.key, e.getMessage());
+            }
+        });
+    }
+
+    private static final class Timeout {
+        static final int PENDING = 0;
+        static final int CANCELLED = 1;
+        static final int EXPIRED = 2;
+
+        final String key;
+        final long deadline;
+        long remainingRounds;
+        volatile int state = PENDING;
+        Bucket bucket;
+        Timeout prev;
+        Timeout next;
+
+        Timeout(String key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * Danh sách liên kết đôi các lượt giữ trong một ô; chỉ được truy cập bởi luồng worker.
+     */
+    private final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire(long deadline) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    if (timeout.state == Timeout.PENDING) {
+                        if (timeout.deadline <= deadline) {
+                            dispatch(timeout);
+                        } else {
+                            pendingAdds.add(timeout);
+                        }
+                    }
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = timeout.next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
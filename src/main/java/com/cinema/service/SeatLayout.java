@@ -0,0 +1,103 @@
+package com.cinema.service;
+
+import com.cinema.model.Room;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thứ tự ghế cố định của một phòng chiếu, suy ra từ Room.SeatMap (theo hàng, rồi theo ghế trong hàng).
+ * Số thứ tự (ordinal) của ghế là vị trí của nó trong mảng trạng thái dạng bitmap.
+ * Ghế cùng hàng có ordinal liên tiếp nên mỗi hàng được mô tả bằng một khoảng ordinal (dùng khi tìm ghế liền nhau).
+ */
+@Getter
+public final class SeatLayout {
+
+    private final String roomId;
+    private final List<String> seatIds;
+    private final Map<String, Integer> ordinals;
+    private final List<Row> rows;
+    private final List<String> seatTypes;
+    // true nếu màn hình ở phía hàng đầu tiên của sơ đồ (mặc định)
+    private final boolean screenAtFirstRow;
+    // Điểm vị trí của từng ghế (0..1, càng cao càng tốt), tính sẵn từ hình học phòng chiếu
+    @Getter(AccessLevel.NONE)
+    private final double[] preference;
+
+    /**
+     * Một hàng ghế: các ghế có ordinal từ firstOrdinal tới firstOrdinal + length - 1, theo thứ tự trong hàng.
+     */
+    public record Row(int index, String rowId, int firstOrdinal, int length) {
+    }
+
+    private SeatLayout(String roomId, List<String> seatIds, List<Row> rows, List<String> seatTypes, boolean screenAtFirstRow) {
+        this.roomId = roomId;
+        this.seatIds = Collections.unmodifiableList(seatIds);
+        this.rows = Collections.unmodifiableList(rows);
+        this.seatTypes = Collections.unmodifiableList(seatTypes);
+        this.screenAtFirstRow = screenAtFirstRow;
+        this.preference = BestSeatFinder.preferenceScores(rows, seatIds.size(), screenAtFirstRow);
+        Map<String, Integer> index = new HashMap<>(seatIds.size() * 2);
+        for (int i = 0; i < seatIds.size(); i++) {
+            if (index.putIfAbsent(seatIds.get(i), i) != null) {
+                throw new IllegalStateException("Phòng " + roomId + " có mã ghế trùng lặp: " + seatIds.get(i));
+            }
+        }
+        this.ordinals = Collections.unmodifiableMap(index);
+    }
+
+    public static SeatLayout from(Room room) {
+        if (room.getSeatMap() == null || room.getSeatMap().getRows() == null) {
+            throw new IllegalStateException("Phòng " + room.getId() + " chưa có sơ đồ ghế.");
+        }
+        List<String> seatIds = new ArrayList<>();
+        List<String> seatTypes = new ArrayList<>();
+        List<Row> rows = new ArrayList<>();
+        for (Room.SeatRow row : room.getSeatMap().getRows()) {
+            if (row.getSeats() == null || row.getSeats().isEmpty()) {
+                continue;
+            }
+            rows.add(new Row(rows.size(), row.getId(), seatIds.size(), row.getSeats().size()));
+            for (Room.SeatInfo seat : row.getSeats()) {
+                seatIds.add(seat.getId());
+                seatTypes.add(seat.getType());
+            }
+        }
+        Room.SeatMetadata metadata = room.getSeatMap().getMetadata();
+        String screenPosition = metadata != null && metadata.getScreen() != null ? metadata.getScreen().getPosition() : null;
+        boolean screenAtFirstRow = !("bottom".equalsIgnoreCase(screenPosition) || "back".equalsIgnoreCase(screenPosition));
+        return new SeatLayout(room.getId(), seatIds, rows, seatTypes, screenAtFirstRow);
+    }
+
+    public int size() {
+        return seatIds.size();
+    }
+
+    public double preferenceOf(int ordinal) {
+        return preference[ordinal];
+    }
+
+    public String seatTypeOf(int ordinal) {
+        return seatTypes.get(ordinal);
+    }
+
+    public boolean contains(String seatId) {
+        return ordinals.containsKey(seatId);
+    }
+
+    /**
+     * Trả về ordinal của ghế; ném IllegalArgumentException nếu ghế không thuộc phòng.
+     */
+    public int ordinalOf(String seatId) {
+        Integer ordinal = ordinals.get(seatId);
+        if (ordinal == null) {
+            throw new IllegalArgumentException("Ghế " + seatId + " không tồn tại trong phòng chiếu.");
+        }
+        return ordinal;
+    }
+}
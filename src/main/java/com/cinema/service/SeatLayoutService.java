@@ -0,0 +1,81 @@
+package com.cinema.service;
+
+import com.cinema.model.Room;
+import com.cinema.model.Showtime;
+import com.cinema.repository.RoomRepository;
+import com.cinema.util.LruCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cung cấp thứ tự ghế (SeatLayout) theo phòng và cách mã hóa bản đồ ghế của từng suất chiếu.
+ * Cả hai gần như không đổi nên được cache trong bộ nhớ; SeatService luôn kèm điều kiện
+ * seatEncoding trong lệnh cập nhật nên cache cũ chỉ dẫn tới một lần thử lại, không gây sai dữ liệu.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SeatLayoutService {
+
+    private static final int SHOWTIME_CACHE_SIZE = 10_000;
+
+    private final RoomRepository roomRepository;
+    private final MongoTemplate mongoTemplate;
+
+    private final Map<String, SeatLayout> layoutsByRoom = new ConcurrentHashMap<>();
+    private final LruCache<String, ShowtimeSeatMode> modesByShowtime = new LruCache<>(SHOWTIME_CACHE_SIZE);
+
+    private record ShowtimeSeatMode(String roomId, boolean compact) {
+    }
+
+    public SeatLayout layoutForRoom(String roomId) {
+        return layoutsByRoom.computeIfAbsent(roomId, id -> SeatLayout.from(roomRepository.findById(id)
+                .orElseThrow(() -> new IllegalStateException("Phòng chiếu không tồn tại: " + id))));
+    }
+
+    /**
+     * Layout dạng bitmap của suất chiếu đã đọc sẵn, hoặc null nếu suất chiếu dùng bản đồ ghế dạng cũ.
+     */
+    public SeatLayout compactLayoutOf(Showtime showtime) {
+        return CompactSeatMap.isCompact(showtime) ? layoutForRoom(showtime.getRoomId()) : null;
+    }
+
+    /**
+     * Tạo SeatMutation phù hợp với cách mã hóa hiện tại của suất chiếu.
+     */
+    SeatMutation newMutation(String showtimeId) {
+        return SeatMutation.forLayout(cachedCompactLayout(showtimeId));
+    }
+
+    /**
+     * Layout dạng bitmap theo cách mã hóa đang cache của suất chiếu, hoặc null nếu là dạng cũ.
+     */
+    SeatLayout cachedCompactLayout(String showtimeId) {
+        ShowtimeSeatMode mode = modesByShowtime.computeIfAbsent(showtimeId, this::loadMode);
+        if (mode == null) {
+            throw new IllegalArgumentException("Showtime không tồn tại: " + showtimeId);
+        }
+        return mode.compact() ? layoutForRoom(mode.roomId()) : null;
+    }
+
+    public void evict(String showtimeId) {
+        modesByShowtime.remove(showtimeId);
+    }
+
+    private ShowtimeSeatMode loadMode(String showtimeId) {
+        Query query = new Query(Criteria.where("_id").is(showtimeId));
+        query.fields().include("roomId").include("seatEncoding");
+        Showtime showtime = mongoTemplate.findOne(query, Showtime.class);
+        if (showtime == null) {
+            return null;
+        }
+        return new ShowtimeSeatMode(showtime.getRoomId(), CompactSeatMap.isCompact(showtime));
+    }
+}
@@ -0,0 +1,165 @@
+package com.cinema.service;
+
+import com.cinema.model.Showtime;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chuyển đổi bản đồ ghế của suất chiếu giữa dạng cũ (map seatStatus) và dạng bitmap.
+ * <p>
+ * Mỗi suất chiếu được chuyển qua hai bước: đánh dấu seatEncoding = "migrating" bằng findAndModify
+ * (đọc từ primary, đồng thời chặn mọi lệnh giữ ghế có điều kiện), rồi ghi dạng mới kèm điều kiện
+ * vẫn đang "migrating". Nếu không mã hóa được thì trả lại trạng thái cũ.
+ * <p>
+ * Dạng mới luôn được ghi cùng lệnh gỡ dấu, nên dấu "migrating" còn lại quá MIGRATION_TIMEOUT (node dừng hoặc lỗi ghi
+ * giữa hai bước) chỉ cần được trả về dạng mà document đang có: còn seatBits là bitmap, không có là dạng cũ.
+ * recoverStaleMigrations chạy trước compactAll và trong job sửa bộ đếm ghế.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SeatMapMigrationService {
+
+    static final Duration MIGRATION_TIMEOUT = Duration.ofMinutes(5);
+
+    private final MongoTemplate mongoTemplate;
+    private final SeatLayoutService seatLayoutService;
+
+    /**
+     * Chuyển một suất chiếu sang dạng bitmap. Trả về false nếu suất chiếu đã ở dạng bitmap hoặc đang được chuyển.
+     */
+    public boolean compactShowtime(String showtimeId) {
+        Showtime showtime = markMigrating(showtimeId, null);
+        if (showtime == null) {
+            return false;
+        }
+        try {
+            SeatLayout layout = seatLayoutService.layoutForRoom(showtime.getRoomId());
+            List<Long> words = CompactSeatMap.encode(layout, showtime.getSeatStatus());
+            Update update = new Update()
+                    .set("seatBits", words)
+                    .set("seatStatus", CompactSeatMap.sideEntries(showtime.getSeatStatus()))
+                    .set("seatEncoding", CompactSeatMap.ENCODING);
+            finishMigration(showtimeId, update);
+            log.info("Đã chuyển bản đồ ghế của suất chiếu {} sang dạng bitmap ({} word).", showtimeId, words.size());
+            return true;
+        } catch (RuntimeException e) {
+            // Ghế không thuộc phòng chiếu hoặc phòng không tồn tại: giữ nguyên dạng cũ
+            finishMigration(showtimeId, new Update().unset("seatEncoding"));
+            log.warn("Không thể chuyển bản đồ ghế của suất chiếu {}: {}", showtimeId, e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Chuyển một suất chiếu từ dạng bitmap về dạng cũ (dùng khi cần rollback).
+     */
+    public boolean expandShowtime(String showtimeId) {
+        Showtime showtime = markMigrating(showtimeId, CompactSeatMap.ENCODING);
+        if (showtime == null) {
+            return false;
+        }
+        try {
+            SeatLayout layout = seatLayoutService.layoutForRoom(showtime.getRoomId());
+            Map<String, Showtime.SeatStatus> seatStatus = CompactSeatMap.decode(layout, showtime.getSeatBits(), showtime.getSeatStatus());
+            Update update = new Update()
+                    .set("seatStatus", seatStatus)
+                    .unset("seatBits")
+                    .unset("seatEncoding");
+            finishMigration(showtimeId, update);
+            log.info("Đã chuyển bản đồ ghế của suất chiếu {} về dạng cũ.", showtimeId);
+            return true;
+        } catch (RuntimeException e) {
+            finishMigration(showtimeId, new Update().set("seatEncoding", CompactSeatMap.ENCODING));
+            log.warn("Không thể chuyển bản đồ ghế của suất chiếu {} về dạng cũ: {}", showtimeId, e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Chuyển tối đa {@code limit} suất chiếu đang ở dạng cũ sang dạng bitmap.
+     * Suất chiếu lỗi được bỏ qua và ghi nhận trong kết quả.
+     */
+    public Map<String, Object> compactAll(int limit) {
+        int recovered = recoverStaleMigrations();
+        Query query = new Query(Criteria.where("seatEncoding").is(null)).limit(limit);
+        query.fields().include("_id");
+        List<String> showtimeIds = mongoTemplate.find(query, Showtime.class).stream().map(Showtime::getId).toList();
+
+        int migrated = 0;
+        Map<String, String> failures = new LinkedHashMap<>();
+        for (String showtimeId : showtimeIds) {
+            try {
+                if (compactShowtime(showtimeId)) {
+                    migrated++;
+                }
+            } catch (RuntimeException e) {
+                failures.put(showtimeId, e.getMessage());
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("recovered", recovered);
+        result.put("scanned", showtimeIds.size());
+        result.put("migrated", migrated);
+        result.put("failed", failures);
+        return result;
+    }
+
+    /**
+     * Gỡ các dấu "migrating" cũ hơn MIGRATION_TIMEOUT, trả suất chiếu về dạng mà bản đồ ghế đang có.
+     * Trả về số suất chiếu đã gỡ.
+     */
+    public int recoverStaleMigrations() {
+        LocalDateTime threshold = LocalDateTime.now().minus(MIGRATION_TIMEOUT);
+        Query query = new Query(Criteria.where("seatEncoding").is(CompactSeatMap.MIGRATING)
+                .orOperator(Criteria.where("seatMigrationStartedAt").lt(threshold),
+                        Criteria.where("seatMigrationStartedAt").exists(false)));
+        query.fields().include("seatBits").include("seatMigrationStartedAt");
+
+        int recovered = 0;
+        for (Showtime showtime : mongoTemplate.find(query, Showtime.class)) {
+            // Chỉ khớp khi vẫn là đúng dấu đã đọc (không gỡ lượt chuyển mới vừa bắt đầu)
+            Query stale = new Query(Criteria.where("_id").is(showtime.getId())
+                    .and("seatEncoding").is(CompactSeatMap.MIGRATING)
+                    .and("seatMigrationStartedAt").is(showtime.getSeatMigrationStartedAt()));
+            Update update = showtime.getSeatBits() != null
+                    ? new Update().set("seatEncoding", CompactSeatMap.ENCODING)
+                    : new Update().unset("seatEncoding");
+            update.unset("seatMigrationStartedAt");
+            if (mongoTemplate.updateFirst(stale, update, Showtime.class).getModifiedCount() > 0) {
+                seatLayoutService.evict(showtime.getId());
+                recovered++;
+                log.warn("Gỡ dấu chuyển đổi bản đồ ghế quá hạn của suất chiếu {} (trả về dạng {}).",
+                        showtime.getId(), showtime.getSeatBits() != null ? CompactSeatMap.ENCODING : "cũ");
+            }
+        }
+        return recovered;
+    }
+
+    private Showtime markMigrating(String showtimeId, String fromEncoding) {
+        Query query = new Query(Criteria.where("_id").is(showtimeId).and("seatEncoding").is(fromEncoding));
+        Update update = new Update().set("seatEncoding", CompactSeatMap.MIGRATING).set("seatMigrationStartedAt", LocalDateTime.now());
+        Showtime showtime = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Showtime.class);
+        seatLayoutService.evict(showtimeId);
+        return showtime;
+    }
+
+    private void finishMigration(String showtimeId, Update update) {
+        Query query = new Query(Criteria.where("_id").is(showtimeId).and("seatEncoding").is(CompactSeatMap.MIGRATING));
+        mongoTemplate.updateFirst(query, update.unset("seatMigrationStartedAt"), Showtime.class);
+        seatLayoutService.evict(showtimeId);
+    }
+}
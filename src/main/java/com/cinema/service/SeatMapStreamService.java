@@ -0,0 +1,400 @@
+package com.cinema.service;
+
+import com.cinema.config.AppProperties;
+import com.cinema.dto.response.SeatMapEventDto;
+import com.cinema.enums.SeatState;
+import com.cinema.model.Showtime;
+import com.cinema.util.MongoIds;
+import com.mongodb.MongoException;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đẩy trạng thái ghế của suất chiếu tới client qua Server-Sent Events.
+ * <p>
+ * Mỗi suất chiếu có đúng một kênh trong tiến trình: một virtual thread theo dõi change stream của
+ * document showtime (nên thấy cả thay đổi từ các node khác), so sánh với trạng thái đã biết và
+ * phát delta chỉ gồm các ghế vừa đổi. Id sự kiện là seatVersion của suất chiếu (giống nhau trên mọi
+ * node). Client nhận một snapshot rồi các delta; khi kết nối lại với Last-Event-ID còn nằm trong bộ
+ * đệm replay thì chỉ nhận các delta bị lỡ. Mỗi client có hàng đợi
+ * giới hạn: client chậm bị ngắt (sự kiện "resync") thay vì làm chậm kênh chung.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SeatMapStreamService {
+
+    private static final long WATCH_RETRY_MILLIS = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final SeatLayoutService seatLayoutService;
+    private final AppProperties appProperties;
+
+    private final Map<String, ShowtimeChannel> channels = new ConcurrentHashMap<>();
+
+    /**
+     * Đăng ký client theo dõi suất chiếu.
+     *
+     * @param lastEventId id sự kiện cuối cùng client đã nhận (header Last-Event-ID), có thể null
+     */
+    public SseEmitter subscribe(String showtimeId, String lastEventId) {
+        AppProperties.SeatStream config = appProperties.getSeatStream();
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(config.getTimeoutMinutes()));
+        while (true) {
+            ShowtimeChannel channel = channels.computeIfAbsent(showtimeId, ShowtimeChannel::new);
+            if (channel.addSubscriber(new Subscriber(channel, emitter, config.getClientQueueSize()), lastEventId)) {
+                return emitter;
+            }
+            // Kênh vừa đóng do client cuối cùng rời đi: tạo kênh mới
+            channels.remove(showtimeId, channel);
+        }
+    }
+
+    public int activeChannels() {
+        return channels.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        channels.values().forEach(ShowtimeChannel::close);
+        channels.clear();
+    }
+
+    private record SeatMapState(Map<String, SeatState> seats, long version) {
+    }
+
+    private SeatMapState loadSeatStates(String showtimeId) {
+        // Đọc từ primary để snapshot không cũ hơn các sự kiện change stream sẽ nhận sau đó
+        Query query = new Query(Criteria.where("_id").is(showtimeId)).withReadPreference(ReadPreference.primary());
+        Showtime showtime = mongoTemplate.findOne(query, Showtime.class);
+        if (showtime == null) {
+            throw new IllegalArgumentException("Showtime không tồn tại: " + showtimeId);
+        }
+        return seatStatesOf(showtime);
+    }
+
+    /**
+     * Trạng thái của mọi ghế đã biết kèm seatVersion; null nếu document đang được chuyển đổi cách mã hóa.
+     */
+    private SeatMapState seatStatesOf(Showtime showtime) {
+        if (CompactSeatMap.MIGRATING.equals(showtime.getSeatEncoding())) {
+            return null;
+        }
+        Map<String, SeatState> states = new HashMap<>();
+        SeatLayout layout = seatLayoutService.compactLayoutOf(showtime);
+        if (layout != null) {
+            List<String> seatIds = layout.getSeatIds();
+            for (int ordinal = 0; ordinal < seatIds.size(); ordinal++) {
+                states.put(seatIds.get(ordinal), CompactSeatMap.stateAt(showtime.getSeatBits(), ordinal));
+            }
+        } else if (showtime.getSeatStatus() != null) {
+            showtime.getSeatStatus().forEach((seatId, status) -> states.put(seatId,
+                    status != null && status.getStatus() != null ? status.getStatus() : SeatState.AVAILABLE));
+        }
+        return new SeatMapState(states, SeatVersionCache.versionOf(showtime.getSeatVersion()));
+    }
+
+    /**
+     * Kênh phát trạng thái ghế của một suất chiếu, dùng chung cho mọi client của suất chiếu đó.
+     */
+    private final class ShowtimeChannel {
+        private final String showtimeId;
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private final ArrayDeque<SeatMapEventDto> replay = new ArrayDeque<>();
+        private final Object lock = new Object();
+
+        private Map<String, SeatState> states;
+        private long version;
+        // Mọi delta có version lớn hơn replayFrom đều còn trong bộ đệm replay
+        private long replayFrom;
+        private boolean started;
+        private volatile boolean closed;
+        private MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+
+        ShowtimeChannel(String showtimeId) {
+            this.showtimeId = showtimeId;
+        }
+
+        boolean addSubscriber(Subscriber subscriber, String lastEventId) {
+            synchronized (lock) {
+                if (closed) {
+                    return false;
+                }
+                if (!started) {
+                    start();
+                }
+                List<SeatMapEventDto> backlog = resumeEvents(lastEventId);
+                if (backlog == null) {
+                    backlog = List.of(new SeatMapEventDto(showtimeId, version, true, new HashMap<>(states)));
+                }
+                backlog.forEach(subscriber::offer);
+                subscribers.add(subscriber);
+            }
+            subscriber.start();
+            return true;
+        }
+
+        void removeSubscriber(Subscriber subscriber) {
+            synchronized (lock) {
+                if (subscribers.remove(subscriber) && subscribers.isEmpty()) {
+                    close();
+                }
+            }
+        }
+
+        String eventId(long eventVersion) {
+            return String.valueOf(eventVersion);
+        }
+
+        /**
+         * Mở change stream trước rồi mới đọc snapshot, nên mọi thay đổi sau snapshot đều được thấy.
+         */
+        private void start() {
+            try {
+                cursor = openCursor(null);
+            } catch (MongoException e) {
+                closed = true;
+                channels.remove(showtimeId, this);
+                // Thường gặp nhất: MongoDB chạy standalone nên không có change stream
+                throw new IllegalStateException("Luồng trạng thái ghế không khả dụng: MongoDB cần chạy replica set để mở change stream ("
+                        + e.getMessage() + ")", e);
+            }
+            try {
+                SeatMapState snapshot = loadSeatStates(showtimeId);
+                if (snapshot == null) {
+                    throw new IllegalStateException("Bản đồ ghế của suất chiếu đang được chuyển đổi, vui lòng thử lại.");
+                }
+                states = snapshot.seats();
+                version = snapshot.version();
+                replayFrom = version;
+            } catch (RuntimeException e) {
+                cursor.close();
+                closed = true;
+                channels.remove(showtimeId, this);
+                throw e;
+            }
+            started = true;
+            Thread.ofVirtual().name("seat-stream-" + showtimeId).start(this::watch);
+            log.debug("Mở kênh trạng thái ghế cho Showtime {}", showtimeId);
+        }
+
+        private List<SeatMapEventDto> resumeEvents(String lastEventId) {
+            if (lastEventId == null) {
+                return null;
+            }
+            long lastVersion;
+            try {
+                lastVersion = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (lastVersion < replayFrom || lastVersion > version) {
+                return null; // Đã lỡ quá nhiều thay đổi (hoặc version lạ): gửi lại snapshot
+            }
+            return replay.stream().filter(event -> event.getVersion() > lastVersion).toList();
+        }
+
+        private MongoChangeStreamCursor<ChangeStreamDocument<Document>> openCursor(BsonDocument resumeToken) {
+            var stream = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Showtime.class))
+                    .watch(List.of(Aggregates.match(Filters.and(
+                            Filters.eq("documentKey._id", MongoIds.toDocumentId(showtimeId)),
+                            Filters.in("operationType", "update", "replace")))))
+                    .fullDocument(FullDocument.UPDATE_LOOKUP)
+                    .maxAwaitTime(1, TimeUnit.SECONDS);
+            if (resumeToken != null) {
+                stream.resumeAfter(resumeToken);
+            }
+            return stream.cursor();
+        }
+
+        private void watch() {
+            BsonDocument resumeToken = null;
+            while (!closed) {
+                try {
+                    if (cursor == null) {
+                        cursor = openCursor(resumeToken);
+                        // Có thể đã lỡ thay đổi trong lúc mất kết nối: đối chiếu lại với document hiện tại
+                        publish(loadSeatStates(showtimeId));
+                    }
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change == null) {
+                        continue;
+                    }
+                    resumeToken = change.getResumeToken();
+                    if (change.getFullDocument() != null) {
+                        publish(seatStatesOf(mongoTemplate.getConverter().read(Showtime.class, change.getFullDocument())));
+                    }
+                } catch (MongoException | IllegalArgumentException | IllegalStateException e) {
+                    if (closed) {
+                        break;
+                    }
+                    log.warn("Change stream của Showtime {} bị gián đoạn: {}", showtimeId, e.getMessage());
+                    closeCursor();
+                    try {
+                        Thread.sleep(WATCH_RETRY_MILLIS);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            closeCursor();
+        }
+
+        private void publish(SeatMapState current) {
+            if (current == null) {
+                return;
+            }
+            synchronized (lock) {
+                if (current.version() < version) {
+                    return; // Document cũ hơn trạng thái đã phát
+                }
+                Map<String, SeatState> newStates = current.seats();
+                Map<String, SeatState> changes = new HashMap<>();
+                Set<String> seatIds = new HashSet<>(states.keySet());
+                seatIds.addAll(newStates.keySet());
+                for (String seatId : seatIds) {
+                    SeatState after = newStates.getOrDefault(seatId, SeatState.AVAILABLE);
+                    if (after != states.getOrDefault(seatId, SeatState.AVAILABLE)) {
+                        changes.put(seatId, after);
+                    }
+                }
+                states = newStates;
+                version = current.version();
+                if (changes.isEmpty()) {
+                    return;
+                }
+                SeatMapEventDto event = new SeatMapEventDto(showtimeId, version, false, changes);
+                replay.addLast(event);
+                while (replay.size() > appProperties.getSeatStream().getReplayBufferSize()) {
+                    replayFrom = replay.pollFirst().getVersion();
+                }
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.offer(event);
+                }
+            }
+        }
+
+        private void close() {
+            closed = true;
+            channels.remove(showtimeId, this);
+            subscribers.forEach(Subscriber::stop);
+            log.debug("Đóng kênh trạng thái ghế cho Showtime {}", showtimeId);
+        }
+
+        private void closeCursor() {
+            if (cursor != null) {
+                try {
+                    cursor.close();
+                } catch (RuntimeException e) {
+                    log.debug("Lỗi khi đóng change stream của Showtime {}: {}", showtimeId, e.getMessage());
+                }
+                cursor = null;
+            }
+        }
+    }
+
+    /**
+     * Một client SSE: hàng đợi giới hạn và virtual thread riêng để ghi ra kết nối.
+     */
+    private final class Subscriber {
+        private final ShowtimeChannel channel;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SeatMapEventDto> queue;
+        private volatile boolean overflowed;
+        private volatile boolean stopped;
+        private Thread sender;
+
+        Subscriber(ShowtimeChannel channel, SseEmitter emitter, int queueSize) {
+            this.channel = channel;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        }
+
+        void offer(SeatMapEventDto event) {
+            if (!overflowed && !queue.offer(event)) {
+                overflowed = true;
+            }
+        }
+
+        void start() {
+            emitter.onCompletion(this::detach);
+            emitter.onTimeout(this::detach);
+            emitter.onError(e -> detach());
+            sender = Thread.ofVirtual().name("seat-stream-client").start(this::run);
+        }
+
+        void stop() {
+            stopped = true;
+            if (sender != null) {
+                sender.interrupt();
+            }
+        }
+
+        private void detach() {
+            stop();
+            channel.removeSubscriber(this);
+        }
+
+        private void run() {
+            long heartbeatSeconds = appProperties.getSeatStream().getHeartbeatSeconds();
+            try {
+                while (!stopped) {
+                    if (overflowed) {
+                        // Client không theo kịp: báo client tải lại và ngắt kết nối
+                        emitter.send(SseEmitter.event().name("resync").data("overflow"));
+                        emitter.complete();
+                        break;
+                    }
+                    SeatMapEventDto event = queue.poll(heartbeatSeconds, TimeUnit.SECONDS);
+                    if (event == null) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                        continue;
+                    }
+                    emitter.send(SseEmitter.event()
+                            .id(channel.eventId(event.getVersion()))
+                            .name(event.isSnapshot() ? "snapshot" : "delta")
+                            .data(event, MediaType.APPLICATION_JSON));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Client ngắt kết nối khỏi luồng ghế của Showtime {}: {}", channel.showtimeId, e.getMessage());
+            } finally {
+                if (stopped) {
+                    emitter.complete();
+                }
+                channel.removeSubscriber(this);
+            }
+        }
+    }
+}
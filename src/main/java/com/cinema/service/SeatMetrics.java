@@ -0,0 +1,129 @@
+package com.cinema.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Metric của các thao tác ghế. Tag chỉ gồm loại thao tác và kết quả (số giá trị cố định);
+ * mức tải theo từng suất chiếu được theo dõi riêng bằng ShowtimeContentionTracker và chỉ xuất
+ * ra gauge theo thứ hạng (rank 1..HOT_SHOWTIME_GAUGES) để không làm tăng số time series.
+ */
+@Component
+public class SeatMetrics {
+
+    public static final String HOLD = "hold";
+    public static final String RELEASE = "release";
+    public static final String EXTEND = "extend";
+    public static final String CONFIRM = "confirm";
+
+    private static final int HOT_SHOWTIME_GAUGES = 10;
+    private static final String[] OUTCOMES = {"success", "rejected", "conflict", "invalid", "error"};
+
+    private final MeterRegistry meterRegistry;
+    private final ShowtimeContentionTracker contentionTracker;
+    private final Map<String, Timer> operationTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> seatCounters = new ConcurrentHashMap<>();
+    private final Timer expirySweepTimer;
+    private final Timer expiryBatchTimer;
+    private final Counter expiryReleases;
+    private final Counter expiryFailures;
+
+    public SeatMetrics(MeterRegistry meterRegistry, ShowtimeContentionTracker contentionTracker) {
+        this.meterRegistry = meterRegistry;
+        this.contentionTracker = contentionTracker;
+        for (String operation : new String[]{HOLD, RELEASE, EXTEND, CONFIRM}) {
+            for (String outcome : OUTCOMES) {
+                operationTimers.put(operation + ":" + outcome, Timer.builder("cinema.seat.operation")
+                        .description("Thời gian xử lý thao tác ghế")
+                        .tag("operation", operation)
+                        .tag("outcome", outcome)
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofMillis(1))
+                        .maximumExpectedValue(Duration.ofSeconds(10))
+                        .register(meterRegistry));
+            }
+            seatCounters.put(operation, Counter.builder("cinema.seat.seats")
+                    .description("Số ghế được xử lý thành công theo thao tác (hold/confirm cho tỉ lệ chuyển đổi)")
+                    .tag("operation", operation)
+                    .register(meterRegistry));
+        }
+        Gauge.builder("cinema.seat.hold.conversion", this, SeatMetrics::holdConversion)
+                .description("Tỉ lệ ghế được giữ đã chuyển thành đặt vé (từ khi khởi động)")
+                .register(meterRegistry);
+        for (int rank = 1; rank <= HOT_SHOWTIME_GAUGES; rank++) {
+            int r = rank;
+            Gauge.builder("cinema.seat.hot.showtime.operations", contentionTracker, t -> t.operationsAtRank(r))
+                    .description("Số thao tác ghế gần đây của suất chiếu đứng thứ rank; chi tiết ở /actuator/hotshowtimes")
+                    .tag("rank", String.valueOf(rank))
+                    .register(meterRegistry);
+        }
+        this.expirySweepTimer = Timer.builder("cinema.seat.hold.expiry.sweep")
+                .description("Thời gian một lượt quét giải phóng ghế hết hạn")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.expiryBatchTimer = Timer.builder("cinema.seat.hold.expiry.batch")
+                .description("Thời gian ghi một lô giải phóng ghế hết hạn")
+                .register(meterRegistry);
+        this.expiryReleases = meterRegistry.counter("cinema.seat.hold.expiry.released");
+        this.expiryFailures = meterRegistry.counter("cinema.seat.hold.expiry.failed");
+    }
+
+    /**
+     * Đo một thao tác ghế: kết quả true là success, false là rejected; IllegalStateException (kể cả
+     * SeatConflictException) là conflict, IllegalArgumentException là invalid.
+     */
+    public boolean record(String operation, String showtimeId, int seatCount, Supplier<Boolean> action) {
+        long startedNanos = System.nanoTime();
+        String outcome = "error";
+        try {
+            boolean result = action.get();
+            outcome = result ? "success" : "rejected";
+            if (result) {
+                seatCounters.get(operation).increment(seatCount);
+            }
+            return result;
+        } catch (IllegalStateException e) {
+            // Gồm SeatConflictException và lỗi hết số lần thử lại do tranh chấp
+            outcome = "conflict";
+            throw e;
+        } catch (IllegalArgumentException e) {
+            outcome = "invalid";
+            throw e;
+        } finally {
+            operationTimers.get(operation + ":" + outcome).record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+            contentionTracker.record(showtimeId, "conflict".equals(outcome));
+        }
+    }
+
+    public Timer.Sample startExpirySweep() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void stopExpirySweep(Timer.Sample sample) {
+        sample.stop(expirySweepTimer);
+    }
+
+    public Timer.Sample startExpiryBatch() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void stopExpiryBatch(Timer.Sample sample, int released, int failed) {
+        sample.stop(expiryBatchTimer);
+        expiryReleases.increment(released);
+        expiryFailures.increment(failed);
+    }
+
+    private double holdConversion() {
+        double held = seatCounters.get(HOLD).count();
+        return held > 0 ? seatCounters.get(CONFIRM).count() / held : 0;
+    }
+}
@@ -0,0 +1,178 @@
+package com.cinema.service;
+
+import com.cinema.enums.SeatState;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Xây dựng một lệnh cập nhật có điều kiện cho nhiều ghế của cùng một suất chiếu,
+ * dùng được cho cả bản đồ ghế dạng cũ (seatStatus.&lt;seatId&gt;) và dạng bitmap (seatBits).
+ * <p>
+ * Mỗi thao tác vừa thêm điều kiện "ghế đang ở trạng thái X" vừa thêm phần cập nhật tương ứng,
+ * nên lệnh chỉ được áp dụng khi mọi ghế đều còn đúng trạng thái mong đợi.
+ */
+final class SeatMutation {
+
+    private final SeatLayout layout; // null: bản đồ ghế dạng cũ
+    private final List<Criteria> guards = new ArrayList<>();
+    private final Map<Integer, List<Integer>> setBits = new TreeMap<>();
+    private final Map<Integer, List<Integer>> clearBits = new TreeMap<>();
+    private final Map<Integer, Long> xorMasks = new TreeMap<>();
+    private final Update update = new Update();
+    private boolean bitsApplied;
+
+    private SeatMutation(SeatLayout layout) {
+        this.layout = layout;
+    }
+
+    static SeatMutation forLayout(SeatLayout compactLayout) {
+        return new SeatMutation(compactLayout);
+    }
+
+    boolean isCompact() {
+        return layout != null;
+    }
+
+    /**
+     * AVAILABLE -> HOLDING.
+     */
+    SeatMutation hold(String seatId, LocalDateTime holdStartedAt) {
+        expect(seatId, SeatState.AVAILABLE);
+        transition(seatId, SeatState.AVAILABLE, SeatState.HOLDING);
+        update.set(path(seatId) + ".status", SeatState.HOLDING)
+              .set(path(seatId) + ".holdStartedAt", holdStartedAt);
+        return this;
+    }
+
+    /**
+     * HOLDING -> AVAILABLE.
+     */
+    SeatMutation release(String seatId) {
+        expect(seatId, SeatState.HOLDING);
+        transition(seatId, SeatState.HOLDING, SeatState.AVAILABLE);
+        if (isCompact()) {
+            update.unset(path(seatId));
+        } else {
+            update.set(path(seatId) + ".status", SeatState.AVAILABLE)
+                  .unset(path(seatId) + ".holdStartedAt")
+                  .unset(path(seatId) + ".bookingId");
+        }
+        return this;
+    }
+
+    /**
+     * HOLDING -> BOOKED.
+     */
+    SeatMutation book(String seatId, String bookingId) {
+        expect(seatId, SeatState.HOLDING);
+        transition(seatId, SeatState.HOLDING, SeatState.BOOKED);
+        update.set(path(seatId) + ".status", SeatState.BOOKED)
+              .set(path(seatId) + ".bookingId", bookingId)
+              .unset(path(seatId) + ".holdStartedAt");
+        return this;
+    }
+
+    /**
+     * HOLDING -> HOLDING với thời điểm bắt đầu giữ mới.
+     */
+    SeatMutation extend(String seatId, LocalDateTime holdStartedAt) {
+        expect(seatId, SeatState.HOLDING);
+        update.set(path(seatId) + ".holdStartedAt", holdStartedAt);
+        return this;
+    }
+
+    /**
+     * Điều kiện bổ sung: lượt giữ hiện tại của ghế bắt đầu không muộn hơn thời điểm cho trước.
+     */
+    SeatMutation holdStartedNotAfter(String seatId, LocalDateTime holdStartedAt) {
+        guards.add(Criteria.where(path(seatId) + ".holdStartedAt").lte(holdStartedAt));
+        return this;
+    }
+
+    /**
+     * Điều kiện bổ sung: lượt giữ hiện tại của ghế bắt đầu sau thời điểm cho trước (chưa hết hạn).
+     */
+    SeatMutation holdStartedAfter(String seatId, LocalDateTime threshold) {
+        guards.add(Criteria.where(path(seatId) + ".holdStartedAt").gt(threshold));
+        return this;
+    }
+
+    /**
+     * Phần cập nhật, để bên gọi bổ sung các trường khác (bộ đếm, cờ...).
+     */
+    Update update() {
+        if (!bitsApplied) {
+            xorMasks.forEach((word, mask) -> update.bitwise("seatBits." + word).xor(mask));
+            bitsApplied = true;
+        }
+        return update;
+    }
+
+    Query query(String showtimeId) {
+        List<Criteria> all = new ArrayList<>(guards);
+        all.add(isCompact()
+                ? Criteria.where("seatEncoding").is(CompactSeatMap.ENCODING)
+                : Criteria.where("seatEncoding").is(null));
+        for (Integer word : unionKeys()) {
+            Criteria wordCriteria = Criteria.where("seatBits." + word);
+            List<Integer> set = setBits.get(word);
+            List<Integer> clear = clearBits.get(word);
+            if (set != null) {
+                wordCriteria.bits().allSet(set);
+            }
+            if (clear != null) {
+                wordCriteria.bits().allClear(clear);
+            }
+            all.add(wordCriteria);
+        }
+        return new Query(Criteria.where("_id").is(showtimeId).andOperator(all));
+    }
+
+    private void expect(String seatId, SeatState state) {
+        if (!isCompact()) {
+            if (state == SeatState.AVAILABLE) {
+                guards.add(new Criteria().orOperator(
+                        Criteria.where(path(seatId)).exists(false),
+                        Criteria.where(path(seatId) + ".status").is(SeatState.AVAILABLE)));
+            } else {
+                guards.add(Criteria.where(path(seatId) + ".status").is(state));
+            }
+            return;
+        }
+        int ordinal = layout.ordinalOf(seatId);
+        int word = CompactSeatMap.wordIndex(ordinal);
+        List<Integer> set = CompactSeatMap.setBitPositions(ordinal, state);
+        List<Integer> clear = CompactSeatMap.clearBitPositions(ordinal, state);
+        if (!set.isEmpty()) {
+            setBits.computeIfAbsent(word, w -> new ArrayList<>()).addAll(set);
+        }
+        if (!clear.isEmpty()) {
+            clearBits.computeIfAbsent(word, w -> new ArrayList<>()).addAll(clear);
+        }
+    }
+
+    private void transition(String seatId, SeatState from, SeatState to) {
+        if (!isCompact()) {
+            return;
+        }
+        int ordinal = layout.ordinalOf(seatId);
+        xorMasks.merge(CompactSeatMap.wordIndex(ordinal), CompactSeatMap.transitionMask(ordinal, from, to), (a, b) -> a ^ b);
+    }
+
+    private List<Integer> unionKeys() {
+        List<Integer> words = new ArrayList<>(setBits.keySet());
+        clearBits.keySet().stream().filter(word -> !setBits.containsKey(word)).forEach(words::add);
+        return words;
+    }
+
+    private static String path(String seatId) {
+        return "seatStatus." + seatId;
+    }
+}
@@ -3,20 +3,37 @@ package com.cinema.service;
 import com.cinema.config.AppProperties;
 import com.cinema.dto.response.SeatStatusDto;
 import com.cinema.enums.SeatState;
+import com.cinema.exceptions.SeatConflictException;
+import com.cinema.model.SeatHold;
 import com.cinema.model.Showtime;
+import com.cinema.repository.SeatHoldRepository;
 import com.cinema.repository.ShowtimeRepository;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate; 
 import org.springframework.data.mongodb.core.query.Criteria; 
 import org.springframework.data.mongodb.core.query.Query;    
@@ -29,67 +46,301 @@ import com.mongodb.client.result.UpdateResult;
 public class SeatService {
 
     private final ShowtimeRepository showtimeRepository;
+    private final SeatHoldRepository seatHoldRepository;
     private final AppProperties appProperties; 
     private final MongoTemplate mongoTemplate;
+    private final SeatHoldTimingWheel holdTimingWheel;
+    private final SeatLayoutService seatLayoutService;
+    private final SeatVersionCache seatVersionCache;
+    private final SeatCommandQueue seatCommandQueue;
+    private final SeatSnapshotReader seatSnapshotReader;
+    private final PartitionLeaseService partitionLeaseService;
+    private final SeatMetrics seatMetrics;
+
+    // Mã ghế được ghép trực tiếp vào đường dẫn field (seatStatus.<seatId>) nên chỉ chấp nhận ký tự an toàn
+    private static final Pattern SEAT_ID_PATTERN = Pattern.compile("^[A-Za-z0-9_-]{1,16}$");
+    // Số lần đọc lại/thử lại tối đa khi lệnh cập nhật ghế có điều kiện bị xung đột
+    private static final int MAX_SEAT_UPDATE_ATTEMPTS = 3;
+    // Trạng thái các job chuyển đổi dữ liệu một lần (dùng chung với ReferenceIdMigrationService)
+    private static final String MIGRATION_STATE_COLLECTION = "migrations";
+    private static final String SEAT_HOLD_BACKFILL_ID = "seat-holds-backfill";
 
     // Cache không còn cần thiết nếu dựa hoàn toàn vào DB state và scheduled job
     // private final Map<String, LocalDateTime> seatHoldCache = new ConcurrentHashMap<>();
 
     /**
      * Chạy định kỳ để kiểm tra và giải phóng ghế hết hạn giữ.
+     * Chỉ đọc các bản ghi seat_holds đã hết hạn (theo index expiresAt) và giải phóng từng ghế
+     * bằng lệnh cập nhật có điều kiện, nên chi phí tỉ lệ với số ghế hết hạn.
+     * Các suất chiếu được chia thành SeatHold.SWEEP_PARTITIONS phân vùng; mỗi node chỉ quét các phân vùng
+     * nó đang giữ lease, nên công việc được chia cho các node thay vì lặp lại trên mọi node.
+     * Các lệnh cập nhật được gửi theo lô (bulk write không thứ tự, releaseBatchSize lệnh mỗi lô).
      */
-@Scheduled(fixedRateString = "${cinema.seat-hold.expiry-check-rate-ms:60000}")
-    @Transactional
+    @Scheduled(fixedRateString = "${cinema.seat-hold.expiry-check-rate-ms:60000}")
     public void releaseExpiredSeatHolds() {
-        log.debug("Checking for expired seat holds...");
-        int holdExpiryMinutes = appProperties.getSeatHold().getExpiryMinutes();
+        Set<Integer> partitions = partitionLeaseService.ownedPartitions(SeatHold.SWEEP_LEASE_GROUP, SeatHold.SWEEP_PARTITIONS);
+        if (partitions.isEmpty()) {
+            log.debug("No seat hold sweep partitions owned by this node, skipping.");
+            return;
+        }
+        log.debug("Checking for expired seat holds in {} partitions...", partitions.size());
+        Timer.Sample sweepSample = seatMetrics.startExpirySweep();
+        long startedNanos = System.nanoTime();
         LocalDateTime now = LocalDateTime.now();
-        LocalDateTime expiryThreshold = now.minusMinutes(holdExpiryMinutes);
+        int readSize = appProperties.getSeatHold().getSweepBatchSize();
+        int flushSize = Math.max(1, appProperties.getSeatHold().getReleaseBatchSize());
+        // Bản ghi cũ chưa có partition do node giữ phân vùng 0 xử lý
+        boolean includeUnpartitioned = partitions.contains(0);
+
+        int batches = 0;
+        int releasedCount = 0;
+        int failedCount = 0;
+        List<SeatHold> expiredHolds;
+        int removedInRead;
+        do {
+            expiredHolds = seatHoldRepository.findExpired(partitions, includeUnpartitioned, now, readSize);
+            removedInRead = 0;
+            for (int from = 0; from < expiredHolds.size(); from += flushSize) {
+                ExpiryBatchResult result = flushExpiredHolds(expiredHolds.subList(from, Math.min(from + flushSize, expiredHolds.size())));
+                batches++;
+                releasedCount += result.released();
+                failedCount += result.failed();
+                removedInRead += result.removed();
+                if (result.aborted()) {
+                    // Lỗi kết nối/ghi cả lô: dừng lượt này, các bản ghi còn nguyên sẽ được xử lý ở lượt sau
+                    expiredHolds = List.of();
+                    break;
+                }
+            }
+            // Dừng nếu cả lượt đọc không xóa được bản ghi nào (đọc từ secondary bị trễ), lượt sau sẽ xử lý tiếp.
+        } while (expiredHolds.size() == readSize && removedInRead > 0);
+        seatMetrics.stopExpirySweep(sweepSample);
 
-        // Sử dụng phương thức repository mới
-        List<Showtime> showtimesWithHoldingSeats = showtimeRepository.findByHasHoldingSeatsTrue(); // THAY ĐỔI Ở ĐÂY
+        if (releasedCount > 0 || failedCount > 0) {
+            log.info("Released {} expired seat holds in {} batches ({} failed) in {} ms.",
+                    releasedCount, batches, failedCount, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos));
+        }
+    }
+
+    /**
+     * Giải phóng các lượt giữ hết hạn được chỉ định (ví dụ: của booking quá hạn thanh toán) theo lô như job quét.
+     * Mỗi ghế chỉ được giải phóng nếu vẫn HOLDING bởi đúng lượt giữ đó. Trả về số ghế đã giải phóng.
+     */
+    public int releaseExpiredHolds(List<SeatHold> holds) {
+        int flushSize = Math.max(1, appProperties.getSeatHold().getReleaseBatchSize());
+        int released = 0;
+        for (int from = 0; from < holds.size(); from += flushSize) {
+            ExpiryBatchResult result = flushExpiredHolds(holds.subList(from, Math.min(from + flushSize, holds.size())));
+            released += result.released();
+            if (result.aborted()) {
+                break;
+            }
+        }
+        return released;
+    }
 
-        for (Showtime showtime : showtimesWithHoldingSeats) {
-            boolean hasChangesToSeatStatus = false;
-            Map<String, Showtime.SeatStatus> seatStatusMap = showtime.getSeatStatus();
-            int currentHoldingCount = 0; // Đếm số ghế còn đang giữ sau khi kiểm tra
+    private record ExpiryBatchResult(int released, int failed, int removed, boolean aborted) {
+    }
 
-            if (seatStatusMap != null && !seatStatusMap.isEmpty()) {
-                for (Map.Entry<String, Showtime.SeatStatus> entry : seatStatusMap.entrySet()) {
-                    String seatId = entry.getKey();
-                    Showtime.SeatStatus status = entry.getValue();
+    /**
+     * Giải phóng một lô lượt giữ hết hạn bằng hai bulk write không thứ tự: một cho showtimes (mỗi ghế một
+     * lệnh cập nhật có điều kiện, độc lập với nhau) và một để xóa các bản ghi seat_holds tương ứng.
+     * Bản ghi seat_holds của lệnh bị lỗi được giữ lại để lượt sau thử lại.
+     */
+    private ExpiryBatchResult flushExpiredHolds(List<SeatHold> holds) {
+        Timer.Sample sample = seatMetrics.startExpiryBatch();
+        BulkOperations releases = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Showtime.class);
+        List<SeatHold> queued = new ArrayList<>(holds.size());
+        List<SeatHold> removable = new ArrayList<>(holds.size());
+        for (SeatHold hold : holds) {
+            holdTimingWheel.cancel(hold.getId());
+            SeatMutation mutation = expiryMutationOf(hold);
+            if (mutation == null) {
+                removable.add(hold);
+                continue;
+            }
+            releases.updateOne(mutation.query(hold.getShowtimeId()), expiryUpdateOf(mutation));
+            queued.add(hold);
+        }
+
+        int released = 0;
+        Set<Integer> failedIndexes = new HashSet<>();
+        if (!queued.isEmpty()) {
+            try {
+                released = releases.execute().getModifiedCount();
+            } catch (BulkOperationException e) {
+                released = e.getResult().getModifiedCount();
+                e.getErrors().forEach(error -> failedIndexes.add(error.getIndex()));
+                log.warn("{}/{} expired seat hold releases failed in batch: {}", failedIndexes.size(), queued.size(),
+                        e.getErrors().get(0).getMessage());
+            } catch (DataAccessException e) {
+                log.error("Expired seat hold release batch of {} failed: {}", queued.size(), e.getMessage());
+                seatMetrics.stopExpiryBatch(sample, 0, queued.size());
+                return new ExpiryBatchResult(0, queued.size(), 0, true);
+            }
+            List<String> showtimeIds = queued.stream().map(SeatHold::getShowtimeId).distinct().toList();
+            showtimeIds.forEach(seatVersionCache::evict);
+            if (released > 0) {
+                clearHoldingFlagsIfIdle(showtimeIds);
+            }
+        }
+        for (int i = 0; i < queued.size(); i++) {
+            if (!failedIndexes.contains(i)) {
+                removable.add(queued.get(i));
+            }
+        }
+        // Bản ghi được xóa dù ghế đã đổi trạng thái (đã đặt/hủy); nếu ghế vừa được gia hạn thì giữ nguyên.
+        int removed = seatHoldRepository.deleteIfUnchanged(removable);
+
+        seatMetrics.stopExpiryBatch(sample, released, failedIndexes.size());
+        return new ExpiryBatchResult(released, failedIndexes.size(), removed, false);
+    }
+
+    /**
+     * Giải phóng một ghế hết hạn nếu nó vẫn đang được giữ bởi đúng lượt giữ đã ghi nhận.
+     */
+    private boolean releaseExpiredHold(SeatHold hold) {
+        SeatMutation mutation = expiryMutationOf(hold);
+        if (mutation == null) {
+            return false;
+        }
+        boolean released = mongoTemplate.updateFirst(mutation.query(hold.getShowtimeId()), expiryUpdateOf(mutation), Showtime.class)
+                .getModifiedCount() > 0;
+        if (released) {
+            seatVersionCache.evict(hold.getShowtimeId());
+            clearHoldingFlagIfIdle(hold.getShowtimeId());
+            log.info("Released expired seat hold: ShowtimeID={}, SeatID={}", hold.getShowtimeId(), hold.getSeatId());
+        }
+        return released;
+    }
+
+    /**
+     * Lệnh giải phóng ghế của một lượt giữ, chỉ khớp khi ghế vẫn HOLDING với holdStartedAt không mới hơn lượt giữ đã ghi nhận.
+     * Trả về null nếu suất chiếu không còn tồn tại.
+     */
+    private SeatMutation expiryMutationOf(SeatHold hold) {
+        try {
+            return seatLayoutService.newMutation(hold.getShowtimeId())
+                    .release(hold.getSeatId())
+                    .holdStartedNotAfter(hold.getSeatId(), hold.getHoldStartedAt());
+        } catch (IllegalArgumentException e) {
+            log.warn("Bỏ qua lượt giữ {}: {}", hold.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static Update expiryUpdateOf(SeatMutation mutation) {
+        return mutation.update().inc("availableSeats", 1).inc("holdingSeats", -1).inc("seatVersion", 1);
+    }
+
+    /**
+     * Bổ sung bản ghi seat_holds cho các ghế đang HOLDING được tạo trước khi có collection này.
+     * Chạy khi khởi động cho tới khi hoàn tất một lần; trạng thái hoàn tất được lưu trong collection migrations
+     * nên các lần khởi động sau (trên mọi node) bỏ qua.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void backfillSeatHolds() {
+        if (mongoTemplate.exists(new Query(Criteria.where("_id").is(SEAT_HOLD_BACKFILL_ID).and("completedAt").ne(null)),
+                MIGRATION_STATE_COLLECTION)) {
+            log.debug("Seat hold index backfill already completed, skipping.");
+            return;
+        }
+        int backfilled = repairMissingSeatHolds();
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(SEAT_HOLD_BACKFILL_ID)),
+                new Update().setOnInsert("completedAt", LocalDateTime.now()), MIGRATION_STATE_COLLECTION);
+        log.info("Seat hold index backfill completed: {} seat holds added.", backfilled);
+    }
+
+    /**
+     * Định kỳ bổ sung bản ghi seat_holds cho ghế HOLDING bị thiếu: ngoài transaction, lệnh giữ ghế và lệnh ghi
+     * seat_holds là hai lệnh riêng, nếu lệnh sau lỗi thì ghế sẽ HOLDING mãi vì job quét và vòng hẹn giờ chỉ đọc
+     * seat_holds. Chỉ node giữ phân vùng 0 của job quét chạy.
+     */
+    @Scheduled(fixedDelayString = "${cinema.seat-hold.orphan-repair-rate-ms:300000}",
+            initialDelayString = "${cinema.seat-hold.orphan-repair-rate-ms:300000}")
+    public void scheduledSeatHoldRepair() {
+        if (!partitionLeaseService.ownedPartitions(SeatHold.SWEEP_LEASE_GROUP, SeatHold.SWEEP_PARTITIONS).contains(0)) {
+            return;
+        }
+        try {
+            int repaired = repairMissingSeatHolds();
+            if (repaired > 0) {
+                log.warn("Added {} missing seat hold records for HOLDING seats.", repaired);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Seat hold repair failed: {}", e.getMessage());
+        }
+    }
 
-                    if (SeatState.HOLDING.equals(status.getStatus())) { 
-                        if (status.getHoldStartedAt() != null &&
-                            status.getHoldStartedAt().isBefore(expiryThreshold)) {
-
-                            status.setStatus(SeatState.AVAILABLE); // Sử dụng hằng số/enum nếu có
-                            status.setHoldStartedAt(null);
-                            status.setBookingId(null);
-                            hasChangesToSeatStatus = true;
-                            log.info("Released expired seat hold: ShowtimeID={}, SeatID={}", showtime.getId(), seatId);
-                        } else {
-                            currentHoldingCount++; // Ghế này vẫn đang được giữ hợp lệ
-                        }
+    /**
+     * Thêm bản ghi seat_holds (hạn tính từ holdStartedAt) cho mọi ghế HOLDING chưa có, trên các suất chiếu có
+     * hasHoldingSeats (index idx_showtime_hasHoldingSeats). Ghế đã quá hạn được job quét giải phóng ở lượt kế tiếp.
+     * Dùng được cho cả hai cách mã hóa: map phụ của dạng bitmap cũng giữ ghế HOLDING kèm holdStartedAt.
+     * Trả về số bản ghi đã thêm.
+     */
+    public int repairMissingSeatHolds() {
+        int holdExpiryMinutes = appProperties.getSeatHold().getExpiryMinutes();
+        Query query = new Query(Criteria.where("hasHoldingSeats").is(true));
+        query.fields().include("seatStatus");
+        int added = 0;
+        try (Stream<Showtime> showtimes = mongoTemplate.stream(query, Showtime.class)) {
+            for (Showtime showtime : (Iterable<Showtime>) showtimes::iterator) {
+                if (showtime.getSeatStatus() == null) {
+                    continue;
+                }
+                for (Map.Entry<String, Showtime.SeatStatus> entry : showtime.getSeatStatus().entrySet()) {
+                    Showtime.SeatStatus status = entry.getValue();
+                    if (status != null && SeatState.HOLDING.equals(status.getStatus()) && status.getHoldStartedAt() != null
+                            && seatHoldRepository.insertIfAbsent(new SeatHold(
+                                    SeatHold.idOf(showtime.getId(), entry.getKey()),
+                                    showtime.getId(),
+                                    entry.getKey(),
+                                    status.getHoldStartedAt(),
+                                    status.getHoldStartedAt().plusMinutes(holdExpiryMinutes)))) {
+                        added++;
                     }
                 }
             }
+        }
+        return added;
+    }
 
-            if (hasChangesToSeatStatus) {
-                updateAvailableSeatsCount(showtime); // Cập nhật số ghế trống
-                // Cập nhật lại cờ hasHoldingSeats
-                showtime.setHasHoldingSeats(currentHoldingCount > 0); // THAY ĐỔI Ở ĐÂY
-                showtimeRepository.save(showtime);
-            } else if (currentHoldingCount == 0 && showtime.isHasHoldingSeats()) {
-                // Trường hợp không có thay đổi nào về trạng thái ghế (không có ghế nào hết hạn)
-                // nhưng trước đó hasHoldingSeats là true và giờ không còn ghế nào holding nữa
-                // (ví dụ: tất cả ghế holding đã được release bởi user hoặc confirm booking)
-                // Cần đảm bảo cờ này được cập nhật đúng ở các hàm holdSeats, releaseSeats, confirmSeatBooking.
-                // Dòng này có thể không cần nếu các hàm khác đã cập nhật đúng.
-                // showtime.setHasHoldingSeats(false);
-                // showtimeRepository.save(showtime);
-            }
+    /**
+     * Nạp lại vòng hẹn giờ từ seat_holds khi khởi động để các lượt giữ đang tồn tại được giải phóng đúng hạn.
+     * Chạy sau backfillSeatHolds để bao gồm cả các lượt giữ cũ vừa được bổ sung.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void rebuildHoldTimingWheel() {
+        if (!holdTimingWheel.isEnabled()) {
+            return;
         }
+        holdTimingWheel.onExpiry(this::releaseHoldAtDeadline);
+        // Chỉ nạp các lượt giữ thuộc phân vùng của node này; phân vùng nhận thêm sau đó do job quét định kỳ xử lý
+        Set<Integer> partitions = partitionLeaseService.ownedPartitions(SeatHold.SWEEP_LEASE_GROUP, SeatHold.SWEEP_PARTITIONS);
+        Criteria owned = partitions.contains(0)
+                ? new Criteria().orOperator(Criteria.where("partition").in(partitions), Criteria.where("partition").is(null))
+                : Criteria.where("partition").in(partitions);
+        try (Stream<SeatHold> holds = mongoTemplate.stream(new Query(owned), SeatHold.class)) {
+            holds.forEach(hold -> holdTimingWheel.schedule(hold.getId(), hold.getExpiresAt()));
+        }
+        log.info("Seat hold timing wheel rebuilt with {} active holds.", holdTimingWheel.size());
+    }
+
+    /**
+     * Được vòng hẹn giờ gọi khi một lượt giữ đến hạn.
+     * Đọc lại bản ghi seat_holds vì lượt giữ có thể đã được gia hạn hoặc xử lý ở node khác.
+     */
+    private void releaseHoldAtDeadline(String holdId) {
+        seatHoldRepository.findById(holdId).ifPresent(hold -> {
+            if (hold.getExpiresAt().isAfter(LocalDateTime.now())) {
+                holdTimingWheel.schedule(hold.getId(), hold.getExpiresAt());
+                return;
+            }
+            releaseExpiredHold(hold);
+            seatHoldRepository.deleteIfUnchanged(hold);
+        });
     }
 
     /**
@@ -97,14 +348,20 @@ public class SeatService {
      */
     public Optional<SeatStatusDto> getSeatStatusForShowtime(String showtimeId) {
         return showtimeRepository.findById(showtimeId).map(showtime -> {
+            Map<String, Showtime.SeatStatus> seatStatusMap = seatStatesOf(showtime, seatLayoutService.compactLayoutOf(showtime));
             SeatStatusDto dto = new SeatStatusDto();
             dto.setShowtimeId(showtimeId);
-            dto.setSeatStatus(showtime.getSeatStatus() != null ? showtime.getSeatStatus() : new ConcurrentHashMap<>());
+            dto.setSeatStatus(seatStatusMap != null ? seatStatusMap : new ConcurrentHashMap<>());
             dto.setTotalSeats(showtime.getTotalSeats());
             
-            if (showtime.getSeatStatus() != null) {
-                long holdingCount = showtime.getSeatStatus().values().stream().filter(s -> SeatState.HOLDING.equals(s.getStatus())).count();
-                long bookedCount = showtime.getSeatStatus().values().stream().filter(s -> SeatState.BOOKED.equals(s.getStatus())).count();
+            if (hasSeatCounters(showtime)) {
+                dto.setHoldingSeats(showtime.getHoldingSeats());
+                dto.setBookedSeats(showtime.getBookedSeats());
+                dto.setAvailableSeats(showtime.getAvailableSeats());
+            } else if (seatStatusMap != null) {
+                // Suất chiếu chưa được job sửa bộ đếm khởi tạo: đếm trực tiếp
+                long holdingCount = seatStatusMap.values().stream().filter(s -> SeatState.HOLDING.equals(s.getStatus())).count();
+                long bookedCount = seatStatusMap.values().stream().filter(s -> SeatState.BOOKED.equals(s.getStatus())).count();
                 dto.setHoldingSeats((int) holdingCount);
                 dto.setBookedSeats((int) bookedCount);
                 dto.setAvailableSeats(showtime.getTotalSeats() - (int) holdingCount - (int) bookedCount);
@@ -113,6 +370,7 @@ public class SeatService {
                 dto.setHoldingSeats(0);
                 dto.setBookedSeats(0);
             }
+            dto.setSeatVersion(SeatVersionCache.versionOf(showtime.getSeatVersion()));
             return dto;
         });
     }
@@ -120,192 +378,321 @@ public class SeatService {
 
     /**
      * Giữ ghế cho khách hàng.
+     * Toàn bộ ghế được giữ bằng một lệnh cập nhật có điều kiện duy nhất: hoặc tất cả ghế
+     * chuyển sang HOLDING, hoặc không ghế nào thay đổi.
      */
-    // Trong phương thức holdSeats
     @Transactional
     public boolean holdSeats(String showtimeId, List<String> seatIds, String customerPhone) {
-        log.info("Attempting to hold seats atomically for showtimeId: {}, seats: {}", showtimeId, seatIds);
-        LocalDateTime now = LocalDateTime.now();
+        return seatMetrics.record(SeatMetrics.HOLD, showtimeId, seatCountOf(seatIds),
+                () -> holdSeatsAtomically(showtimeId, seatIds));
+    }
 
-        // Vòng lặp để thử giữ từng ghế một cách nguyên tử
-        for (String seatId : seatIds) {
-            // Điều kiện: tìm suất chiếu với ID, và ghế cụ thể phải đang AVAILABLE hoặc chưa tồn tại trong map
-            Query query = new Query(Criteria.where("_id").is(showtimeId)
-                .orOperator(
-                    Criteria.where("seatStatus." + seatId).exists(false),
-                    Criteria.where("seatStatus." + seatId + ".status").is(SeatState.AVAILABLE)
-                )
-            );
-
-            // Thao tác: đặt trạng thái ghế thành HOLDING
-            Update update = new Update()
-                    .set("seatStatus." + seatId + ".status", SeatState.HOLDING)
-                    .set("seatStatus." + seatId + ".holdStartedAt", now);
-            
-            UpdateResult result = mongoTemplate.updateFirst(query, update, Showtime.class);
+    /**
+     * Tất cả ghế có đang HOLDING hay không (lượt giữ chưa bị job hết hạn giải phóng).
+     */
+    public boolean isHolding(String showtimeId, List<String> seatIds) {
+        List<String> requestedSeats = normalizeSeatIds(seatIds);
+        SeatSnapshot current = seatSnapshotReader.read(showtimeId, requestedSeats);
+        return requestedSeats.stream().allMatch(seatId -> current.stateOf(seatId) == SeatState.HOLDING);
+    }
 
-            // Nếu không có document nào được cập nhật, nghĩa là ghế đã bị người khác giữ.
-            if (result.getModifiedCount() == 0) {
-                log.warn("Failed to hold seat {}. It was not available or showtimeId is invalid.", seatId);
-                // Ném exception để @Transactional tự động rollback các ghế đã giữ thành công trước đó trong cùng request này.
-                throw new IllegalStateException("Ghế " + seatId + " không còn trống hoặc đã được giữ. Vui lòng chọn ghế khác.");
-            }
-            log.debug("Atomically held seat: ShowtimeID={}, SeatID={}", showtimeId, seatId);
+    /**
+     * Giữ lại ghế nếu tất cả còn trống; trả về false thay vì ném lỗi khi có ghế đã bị giữ hoặc đặt.
+     * Không có @Transactional nên xung đột không đánh dấu rollback transaction của bên gọi
+     * (dùng khi bên gọi có phương án khác cho trường hợp ghế không còn).
+     */
+    public boolean tryHoldSeats(String showtimeId, List<String> seatIds) {
+        try {
+            return seatMetrics.record(SeatMetrics.HOLD, showtimeId, seatCountOf(seatIds),
+                    () -> holdSeatsAtomically(showtimeId, seatIds));
+        } catch (SeatConflictException e) {
+            return false;
         }
+    }
+
+    private boolean holdSeatsAtomically(String showtimeId, List<String> seatIds) {
+        List<String> requestedSeats = normalizeSeatIds(seatIds);
+        log.info("Attempting to hold seats atomically for showtimeId: {}, seats: {}", showtimeId, requestedSeats);
+        if (seatCommandQueue.isEnabled()) {
+            return seatCommandQueue.hold(showtimeId, requestedSeats);
+        }
+        LocalDateTime now = LocalDateTime.now();
 
-        // Sau khi giữ tất cả các ghế thành công, cập nhật lại số ghế trống và cờ hasHoldingSeats
-        Showtime showtime = showtimeRepository.findById(showtimeId)
-                .orElseThrow(() -> new IllegalStateException("Không thể tìm thấy lại showtime sau khi giữ ghế. Lỗi nghiêm trọng."));
-                
-        updateAvailableSeatsCount(showtime);
-        showtime.setHasHoldingSeats(true);
-        showtimeRepository.save(showtime);
+        // Điều kiện: mọi ghế được yêu cầu phải đang AVAILABLE (hoặc chưa tồn tại trong map dạng cũ).
+        // Thao tác: chuyển tất cả ghế sang HOLDING, đồng thời cập nhật số ghế trống và cờ hasHoldingSeats.
+        // Nếu cách mã hóa của suất chiếu vừa thay đổi (cache cũ) thì thử lại đúng một lần.
+        for (int attempt = 0; ; attempt++) {
+            SeatMutation mutation = seatLayoutService.newMutation(showtimeId);
+            requestedSeats.forEach(seatId -> mutation.hold(seatId, now));
+            Update update = mutation.update()
+                    .inc("availableSeats", -requestedSeats.size())
+                    .inc("holdingSeats", requestedSeats.size())
+                    .set("hasHoldingSeats", true)
+                    .inc("seatVersion", 1);
+
+            UpdateResult result = mongoTemplate.updateFirst(mutation.query(showtimeId), update, Showtime.class);
+            if (result.getMatchedCount() > 0) {
+                break;
+            }
+            // Không có document nào khớp: suất chiếu không tồn tại hoặc có ít nhất một ghế đã bị người khác giữ.
+            RuntimeException conflict = resolveHoldConflict(showtimeId, requestedSeats, mutation.isCompact());
+            if (conflict != null) {
+                throw conflict;
+            }
+            seatLayoutService.evict(showtimeId);
+            if (attempt > 0) {
+                throw new SeatConflictException(showtimeId, requestedSeats);
+            }
+        }
+        seatVersionCache.evict(showtimeId);
+        LocalDateTime expiresAt = now.plusMinutes(appProperties.getSeatHold().getExpiryMinutes());
+        seatHoldRepository.upsertHolds(showtimeId, requestedSeats, now, expiresAt);
+        requestedSeats.forEach(seatId -> holdTimingWheel.schedule(SeatHold.idOf(showtimeId, seatId), expiresAt));
 
-        log.info("Đã giữ thành công {} ghế cho Showtime {}: {}", seatIds.size(), showtimeId, seatIds);
+        log.info("Đã giữ thành công {} ghế cho Showtime {}: {}", requestedSeats.size(), showtimeId, requestedSeats);
         return true;
     }
 
+    /**
+     * Xác định nguyên nhân khiến lệnh giữ ghế không khớp document nào.
+     * Chỉ đọc trạng thái của các ghế được yêu cầu thay vì toàn bộ bản đồ ghế.
+     * Trả về null nếu nguyên nhân là cách mã hóa bản đồ ghế đã thay đổi (bên gọi cần thử lại).
+     */
+    private RuntimeException resolveHoldConflict(String showtimeId, List<String> requestedSeats, boolean assumedCompact) {
+        SeatSnapshot current;
+        try {
+            current = seatSnapshotReader.read(showtimeId, requestedSeats);
+        } catch (IllegalArgumentException e) {
+            log.warn("Failed to hold seats {}: showtime {} does not exist.", requestedSeats, showtimeId);
+            return e;
+        }
+        if (current.isCompact() != assumedCompact) {
+            return null;
+        }
+
+        List<String> conflictingSeats = requestedSeats.stream()
+                .filter(seatId -> current.stateOf(seatId) != SeatState.AVAILABLE)
+                .toList();
+        // Ghế có thể vừa được giải phóng giữa lệnh cập nhật và lệnh đọc: vẫn báo xung đột để client thử lại.
+        if (conflictingSeats.isEmpty()) {
+            conflictingSeats = requestedSeats;
+        }
+        log.warn("Failed to hold seats for showtime {}. Conflicting seats: {}", showtimeId, conflictingSeats);
+        return new SeatConflictException(showtimeId, conflictingSeats);
+    }
+
+    /**
+     * Bản đồ trạng thái đầy đủ để xử lý trong bộ nhớ: dạng cũ trả về chính map của showtime,
+     * dạng bitmap được giải mã thành map mới.
+     */
+    private Map<String, Showtime.SeatStatus> seatStatesOf(Showtime showtime, SeatLayout layout) {
+        if (layout == null) {
+            return showtime.getSeatStatus();
+        }
+        return CompactSeatMap.decode(layout, showtime.getSeatBits(), showtime.getSeatStatus());
+    }
+
+    /**
+     * Loại bỏ ghế trùng lặp và kiểm tra mã ghế trước khi dùng làm đường dẫn field trong MongoDB.
+     */
+    private List<String> normalizeSeatIds(List<String> seatIds) {
+        if (seatIds == null || seatIds.isEmpty()) {
+            throw new IllegalArgumentException("Danh sách ghế không được để trống.");
+        }
+        List<String> normalized = seatIds.stream().distinct().toList();
+        for (String seatId : normalized) {
+            if (seatId == null || !SEAT_ID_PATTERN.matcher(seatId).matches()) {
+                throw new IllegalArgumentException("Mã ghế không hợp lệ: " + seatId);
+            }
+        }
+        return normalized;
+    }
+
     /**
      * Hủy giữ ghế (khách hàng tự hủy hoặc admin hủy).
+     * Chỉ các ghế đang HOLDING được giải phóng, bằng một lệnh cập nhật có điều kiện; nếu trạng thái
+     * ghế vừa bị thay đổi bởi yêu cầu khác thì đọc lại và thử lại (tối đa MAX_SEAT_UPDATE_ATTEMPTS lần).
      */
-    @Transactional
     public boolean releaseSeats(String showtimeId, List<String> seatIds) {
-        log.info("Attempting to release seats for showtimeId: {}, seats: {}", showtimeId, seatIds);
-        Showtime showtime = showtimeRepository.findById(showtimeId)
-                .orElseThrow(() -> new IllegalArgumentException("Showtime không tồn tại: " + showtimeId));
-
-        Map<String, Showtime.SeatStatus> seatStatusMap = showtime.getSeatStatus();
-        if (seatStatusMap == null) {
-            log.warn("Không có bản đồ trạng thái ghế cho Showtime {}. Không có ghế nào được giải phóng.", showtimeId);
-            return false; // Không có gì để giải phóng
-        }
-
-        boolean releasedAny = false;
-        for (String seatId : seatIds) {
-            Showtime.SeatStatus currentStatus = seatStatusMap.get(seatId);
-            if (currentStatus != null && SeatState.HOLDING.equals(currentStatus.getStatus())) {
-                // Chỉ giải phóng ghế đang "holding"
-                currentStatus.setStatus(SeatState.AVAILABLE);
-                currentStatus.setHoldStartedAt(null);
-                currentStatus.setBookingId(null);
-                log.debug("Đã giải phóng ghế: ShowtimeID={}, SeatID={}", showtimeId, seatId);
-                releasedAny = true;
-            } else {
-                log.warn("Không thể giải phóng ghế {} cho Showtime {}. Trạng thái hiện tại: {}", 
-                         seatId, showtimeId, (currentStatus != null ? currentStatus.getStatus() : "không tồn tại"));
-            }
+        return seatMetrics.record(SeatMetrics.RELEASE, showtimeId, seatCountOf(seatIds),
+                () -> releaseHeldSeats(showtimeId, seatIds));
+    }
+
+    private boolean releaseHeldSeats(String showtimeId, List<String> seatIds) {
+        List<String> requestedSeats = normalizeSeatIds(seatIds);
+        log.info("Attempting to release seats for showtimeId: {}, seats: {}", showtimeId, requestedSeats);
+        if (seatCommandQueue.isEnabled()) {
+            return seatCommandQueue.release(showtimeId, requestedSeats);
         }
+        for (int attempt = 1; ; attempt++) {
+            SeatSnapshot current = seatSnapshotReader.read(showtimeId, requestedSeats);
+
+            List<String> releasedSeats = new ArrayList<>();
+            for (String seatId : requestedSeats) {
+                SeatState state = current.stateOf(seatId);
+                if (SeatState.HOLDING.equals(state)) {
+                    // Chỉ giải phóng ghế đang "holding"
+                    releasedSeats.add(seatId);
+                } else {
+                    log.warn("Không thể giải phóng ghế {} cho Showtime {}. Trạng thái hiện tại: {}",
+                             seatId, showtimeId, (state != null ? state : "không tồn tại"));
+                }
+            }
+            if (releasedSeats.isEmpty()) {
+                return false; // Không có gì để giải phóng
+            }
 
-        if (releasedAny) {
-            updateAvailableSeatsCount(showtime);
-            boolean stillHasHolding = showtime.getSeatStatus().values().stream()
-                                            .anyMatch(s -> SeatState.HOLDING.equals(s.getStatus()));
-            showtime.setHasHoldingSeats(stillHasHolding);
-            showtimeRepository.save(showtime);
-            log.info("Đã giải phóng thành công một số ghế cho Showtime {}: {}", showtimeId, seatIds.stream().filter(s -> seatStatusMap.get(s) != null && SeatState.AVAILABLE.equals(seatStatusMap.get(s).getStatus())).collect(Collectors.toList()));
+            SeatMutation mutation = SeatMutation.forLayout(current.layout());
+            releasedSeats.forEach(mutation::release);
+            Update update = mutation.update()
+                    .inc("availableSeats", releasedSeats.size())
+                    .inc("holdingSeats", -releasedSeats.size())
+                    .inc("seatVersion", 1);
+            if (applySeatUpdate(showtimeId, mutation, update, attempt)) {
+                clearHoldingFlagIfIdle(showtimeId);
+                seatHoldRepository.deleteHolds(showtimeId, releasedSeats);
+                releasedSeats.forEach(seatId -> holdTimingWheel.cancel(SeatHold.idOf(showtimeId, seatId)));
+                log.info("Đã giải phóng thành công một số ghế cho Showtime {}: {}", showtimeId, releasedSeats);
+                return true;
+            }
         }
-        return releasedAny;
     }
 
     /**
      * Gia hạn thời gian giữ ghế.
+     * Điều kiện cập nhật gồm cả holdStartedAt còn trong hạn, nên lượt giữ vừa hết hạn sẽ không được gia hạn.
      */
-    @Transactional
     public boolean extendSeatHold(String showtimeId, List<String> seatIds) {
-        log.info("Attempting to extend seat hold for showtimeId: {}, seats: {}", showtimeId, seatIds);
-        Showtime showtime = showtimeRepository.findById(showtimeId)
-                .orElseThrow(() -> new IllegalArgumentException("Showtime không tồn tại: " + showtimeId));
+        return seatMetrics.record(SeatMetrics.EXTEND, showtimeId, seatCountOf(seatIds),
+                () -> extendHeldSeats(showtimeId, seatIds));
+    }
 
-        Map<String, Showtime.SeatStatus> seatStatusMap = showtime.getSeatStatus();
-        if (seatStatusMap == null) {
-            log.warn("Không có bản đồ trạng thái ghế cho Showtime {}. Không thể gia hạn.", showtimeId);
-            return false;
+    private boolean extendHeldSeats(String showtimeId, List<String> seatIds) {
+        List<String> requestedSeats = normalizeSeatIds(seatIds);
+        log.info("Attempting to extend seat hold for showtimeId: {}, seats: {}", showtimeId, requestedSeats);
+        if (seatCommandQueue.isEnabled()) {
+            return seatCommandQueue.extend(showtimeId, requestedSeats);
         }
-        
         int holdExpiryMinutes = appProperties.getSeatHold().getExpiryMinutes();
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime currentExpiryThreshold = now.minusMinutes(holdExpiryMinutes);
-
-        boolean extendedAny = false;
-        for (String seatId : seatIds) {
-            Showtime.SeatStatus currentStatus = seatStatusMap.get(seatId);
-            // Chỉ gia hạn ghế đang "holding" và chưa hết hạn (hoặc có một khoảng thời gian gia hạn cho phép)
-            if (currentStatus != null && SeatState.HOLDING.equals(currentStatus.getStatus())) {
-                if (currentStatus.getHoldStartedAt() != null && currentStatus.getHoldStartedAt().isAfter(currentExpiryThreshold)) {
-                     currentStatus.setHoldStartedAt(now); // Reset thời gian bắt đầu giữ
-                     log.debug("Đã gia hạn giữ ghế: ShowtimeID={}, SeatID={}, NewHoldStartAt={}", showtimeId, seatId, now);
-                     extendedAny = true;
+        for (int attempt = 1; ; attempt++) {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime currentExpiryThreshold = now.minusMinutes(holdExpiryMinutes);
+            SeatSnapshot current = seatSnapshotReader.read(showtimeId, requestedSeats);
+            SeatMutation mutation = SeatMutation.forLayout(current.layout());
+
+            List<String> extendedSeats = new ArrayList<>();
+            for (String seatId : requestedSeats) {
+                // Chỉ gia hạn ghế đang "holding" và chưa hết hạn
+                if (!SeatState.HOLDING.equals(current.stateOf(seatId))) {
+                    log.warn("Không thể gia hạn ghế {} cho Showtime {}. Ghế không ở trạng thái holding.", seatId, showtimeId);
+                    continue;
+                }
+                LocalDateTime holdStartedAt = current.holdStartedAtOf(seatId);
+                if (holdStartedAt != null && holdStartedAt.isAfter(currentExpiryThreshold)) {
+                    mutation.extend(seatId, now).holdStartedAfter(seatId, currentExpiryThreshold);
+                    extendedSeats.add(seatId);
                 } else {
                     log.warn("Không thể gia hạn ghế {} cho Showtime {}. Ghế đã hết hạn giữ hoặc không ở trạng thái holding.", seatId, showtimeId);
-                    // Tùy chọn: có thể giải phóng ghế này luôn nếu đã hết hạn
-                    // releaseSeats(showtimeId, List.of(seatId)); 
-                    // throw new IllegalStateException("Không thể gia hạn ghế " + seatId + " do đã hết hạn giữ.");
                 }
-            } else {
-                 log.warn("Không thể gia hạn ghế {} cho Showtime {}. Ghế không ở trạng thái holding.", seatId, showtimeId);
             }
-        }
+            if (extendedSeats.isEmpty()) {
+                return false;
+            }
 
-        if (extendedAny) {
-            // Không cần cập nhật availableSeats vì số ghế holding/booked không đổi
-            showtimeRepository.save(showtime);
-            log.info("Đã gia hạn thành công thời gian giữ cho một số ghế của Showtime {}: {}", showtimeId, seatIds);
+            // Không cần cập nhật bộ đếm vì số ghế holding/booked không đổi
+            Update update = mutation.update().inc("seatVersion", 1);
+            if (applySeatUpdate(showtimeId, mutation, update, attempt)) {
+                LocalDateTime expiresAt = now.plusMinutes(holdExpiryMinutes);
+                seatHoldRepository.extendHolds(showtimeId, extendedSeats, now, expiresAt);
+                extendedSeats.forEach(seatId -> holdTimingWheel.schedule(SeatHold.idOf(showtimeId, seatId), expiresAt));
+                log.info("Đã gia hạn thành công thời gian giữ cho một số ghế của Showtime {}: {}", showtimeId, extendedSeats);
+                return true;
+            }
         }
-        return extendedAny;
     }
     
     /**
      * Xác nhận đặt ghế (chuyển từ holding sang booked).
      * Phương thức này được gọi bởi BookingService sau khi booking được tạo.
+     * Mọi ghế phải đang HOLDING; tất cả được chuyển sang BOOKED trong cùng một lệnh cập nhật có điều kiện.
      */
-    @Transactional
     public boolean confirmSeatBooking(String showtimeId, List<String> seatIds, String bookingId) {
-        // Logic này đã có trong SeatHoldExpiryService cũ, bạn có thể di chuyển và điều chỉnh nếu cần.
-        log.info("Attempting to confirm seat booking for showtimeId: {}, seats: {}, bookingId: {}", showtimeId, seatIds, bookingId);
-        Showtime showtime = showtimeRepository.findById(showtimeId)
-                .orElseThrow(() -> new IllegalArgumentException("Showtime không tồn tại: " + showtimeId));
-
-        Map<String, Showtime.SeatStatus> seatStatusMap = showtime.getSeatStatus();
-        if (seatStatusMap == null) {
-            log.error("Không có bản đồ trạng thái ghế cho Showtime {}. Không thể xác nhận đặt vé.", showtimeId);
-            throw new IllegalStateException("Lỗi hệ thống: không tìm thấy thông tin ghế của suất chiếu.");
-        }
-
-        for (String seatId : seatIds) {
-            Showtime.SeatStatus currentStatus = seatStatusMap.get(seatId);
-            if (currentStatus == null || !SeatState.HOLDING.equals(currentStatus.getStatus())) {
-                // Nếu ghế không được tìm thấy hoặc không ở trạng thái "holding" (có thể đã bị người khác đặt hoặc hết hạn)
-                log.error("Không thể xác nhận ghế {}: không ở trạng thái 'holding' hoặc không tồn tại. Showtime: {}, Booking: {}", seatId, showtimeId, bookingId);
-                // Xử lý lỗi: có thể hủy booking hoặc thông báo lỗi nghiêm trọng
-                throw new IllegalStateException("Ghế " + seatId + " không thể xác nhận. Vui lòng thử lại.");
-            }
-            currentStatus.setStatus(SeatState.BOOKED);
-            currentStatus.setBookingId(bookingId);
-            currentStatus.setHoldStartedAt(null);
-        }
-        
-        boolean stillHasHolding = showtime.getSeatStatus().values().stream()
-                                      .anyMatch(s -> SeatState.HOLDING.equals(s.getStatus()));
-        showtime.setHasHoldingSeats(stillHasHolding); // CẬP NHẬT CỜ
-        showtimeRepository.save(showtime);
-        log.info("Đã xác nhận thành công đặt {} ghế cho Showtime {}, BookingID {}", seatIds.size(), showtimeId, bookingId);
-        return true;
+        return seatMetrics.record(SeatMetrics.CONFIRM, showtimeId, seatCountOf(seatIds),
+                () -> confirmHeldSeats(showtimeId, seatIds, bookingId));
     }
 
+    private boolean confirmHeldSeats(String showtimeId, List<String> seatIds, String bookingId) {
+        List<String> requestedSeats = normalizeSeatIds(seatIds);
+        log.info("Attempting to confirm seat booking for showtimeId: {}, seats: {}, bookingId: {}", showtimeId, requestedSeats, bookingId);
+        if (seatCommandQueue.isEnabled()) {
+            return seatCommandQueue.confirm(showtimeId, requestedSeats, bookingId);
+        }
+        for (int attempt = 1; ; attempt++) {
+            SeatSnapshot current = seatSnapshotReader.read(showtimeId, requestedSeats);
+            for (String seatId : requestedSeats) {
+                if (!SeatState.HOLDING.equals(current.stateOf(seatId))) {
+                    // Ghế không tồn tại hoặc không ở trạng thái "holding" (có thể đã bị người khác đặt hoặc hết hạn)
+                    log.error("Không thể xác nhận ghế {}: không ở trạng thái 'holding' hoặc không tồn tại. Showtime: {}, Booking: {}", seatId, showtimeId, bookingId);
+                    throw new IllegalStateException("Ghế " + seatId + " không thể xác nhận. Vui lòng thử lại.");
+                }
+            }
+
+            SeatMutation mutation = SeatMutation.forLayout(current.layout());
+            requestedSeats.forEach(seatId -> mutation.book(seatId, bookingId));
+            Update update = mutation.update()
+                    .inc("holdingSeats", -requestedSeats.size())
+                    .inc("bookedSeats", requestedSeats.size())
+                    .inc("seatVersion", 1);
+            if (applySeatUpdate(showtimeId, mutation, update, attempt)) {
+                clearHoldingFlagIfIdle(showtimeId);
+                seatHoldRepository.deleteHolds(showtimeId, requestedSeats);
+                requestedSeats.forEach(seatId -> holdTimingWheel.cancel(SeatHold.idOf(showtimeId, seatId)));
+                log.info("Đã xác nhận thành công đặt {} ghế cho Showtime {}, BookingID {}", requestedSeats.size(), showtimeId, bookingId);
+                return true;
+            }
+        }
+    }
 
     /**
-     * Cập nhật số ghế trống trong model Showtime.
+     * Áp dụng lệnh cập nhật có điều kiện. Trả về false nếu ghế vừa bị yêu cầu khác thay đổi (bên gọi đọc lại
+     * và thử lại); quá MAX_SEAT_UPDATE_ATTEMPTS lần thì báo lỗi để client thử lại sau.
      */
-    private void updateAvailableSeatsCount(Showtime showtime) {
-        if (showtime.getSeatStatus() == null || showtime.getSeatStatus().isEmpty()) {
-            showtime.setAvailableSeats(showtime.getTotalSeats());
-            return;
+    private boolean applySeatUpdate(String showtimeId, SeatMutation mutation, Update update, int attempt) {
+        if (mongoTemplate.updateFirst(mutation.query(showtimeId), update, Showtime.class).getMatchedCount() > 0) {
+            seatVersionCache.evict(showtimeId);
+            return true;
+        }
+        if (attempt >= MAX_SEAT_UPDATE_ATTEMPTS) {
+            log.warn("Cập nhật ghế của Showtime {} xung đột {} lần liên tiếp, dừng thử lại.", showtimeId, attempt);
+            throw new IllegalStateException("Trạng thái ghế đang thay đổi, vui lòng thử lại.");
         }
-        long unavailableCount = showtime.getSeatStatus().values().stream()
-                .filter(status -> SeatState.HOLDING.equals(status.getStatus()) || SeatState.BOOKED.equals(status.getStatus()))
-                .count();
-        showtime.setAvailableSeats(showtime.getTotalSeats() - (int) unavailableCount);
-        log.debug("Cập nhật số ghế trống cho Showtime {}: Tổng={}, Không khả dụng={}, Trống={}",
-                  showtime.getId(), showtime.getTotalSeats(), unavailableCount, showtime.getAvailableSeats());
+        log.debug("Trạng thái ghế của Showtime {} vừa thay đổi, thử lại lần {}", showtimeId, attempt + 1);
+        return false;
+    }
+
+    /**
+     * Tắt cờ hasHoldingSeats nếu suất chiếu không còn ghế nào đang giữ.
+     * Điều kiện holdingSeats <= 0 đảm bảo không tắt nhầm khi vừa có lượt giữ mới.
+     */
+    private void clearHoldingFlagIfIdle(String showtimeId) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(showtimeId).and("holdingSeats").lte(0)),
+                new Update().set("hasHoldingSeats", false), Showtime.class);
+    }
+
+    /**
+     * Như clearHoldingFlagIfIdle cho nhiều suất chiếu trong một lệnh (sau một lô giải phóng ghế hết hạn).
+     */
+    private void clearHoldingFlagsIfIdle(Collection<String> showtimeIds) {
+        mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(showtimeIds)
+                        .and("hasHoldingSeats").is(true).and("holdingSeats").lte(0)),
+                new Update().set("hasHoldingSeats", false), Showtime.class);
+    }
+
+    private static int seatCountOf(List<String> seatIds) {
+        return seatIds != null ? (int) seatIds.stream().distinct().count() : 0;
+    }
+
+    private static boolean hasSeatCounters(Showtime showtime) {
+        return showtime.getAvailableSeats() != null && showtime.getHoldingSeats() != null && showtime.getBookedSeats() != null;
     }
-}
\ No newline at end of file
+}
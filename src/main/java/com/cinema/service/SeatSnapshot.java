@@ -0,0 +1,43 @@
+package com.cinema.service;
+
+import com.cinema.enums.SeatState;
+import com.cinema.model.Showtime;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Trạng thái của một số ghế (không phải toàn bộ bản đồ ghế) cùng bộ đếm và version của suất chiếu,
+ * đọc bằng SeatSnapshotReader cho các thao tác chỉ chạm vài ghế.
+ *
+ * @param layout layout dạng bitmap, hoặc null nếu suất chiếu dùng bản đồ ghế dạng cũ
+ * @param seats  trạng thái của các ghế được yêu cầu; với dạng bitmap, ghế không thuộc phòng chiếu không có mặt
+ */
+public record SeatSnapshot(String showtimeId,
+                           String roomId,
+                           String seatEncoding,
+                           SeatLayout layout,
+                           Long seatVersion,
+                           Integer totalSeats,
+                           Integer availableSeats,
+                           Integer holdingSeats,
+                           Integer bookedSeats,
+                           Map<String, Showtime.SeatStatus> seats) {
+
+    public boolean isCompact() {
+        return layout != null;
+    }
+
+    /**
+     * Trạng thái ghế, hoặc null nếu ghế không thuộc phòng chiếu.
+     */
+    public SeatState stateOf(String seatId) {
+        Showtime.SeatStatus status = seats.get(seatId);
+        return status != null ? status.getStatus() : null;
+    }
+
+    public LocalDateTime holdStartedAtOf(String seatId) {
+        Showtime.SeatStatus status = seats.get(seatId);
+        return status != null ? status.getHoldStartedAt() : null;
+    }
+}
@@ -0,0 +1,127 @@
+package com.cinema.service;
+
+import com.cinema.enums.SeatState;
+import com.cinema.model.Showtime;
+import com.cinema.util.MongoIds;
+import com.mongodb.ReadPreference;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Đọc trạng thái của một số ghế bằng projection: chỉ seatStatus.&lt;seatId&gt; của các ghế được yêu cầu,
+ * đoạn seatBits chứa các ghế đó ($slice), bộ đếm và seatVersion. Kết quả được giải mã trực tiếp từ
+ * Document thành SeatSnapshot, không qua entity Showtime, nên chi phí không phụ thuộc kích thước phòng.
+ * Luôn đọc từ primary vì kết quả được dùng làm điều kiện cho lệnh cập nhật ngay sau đó.
+ */
+@Component
+@RequiredArgsConstructor
+public class SeatSnapshotReader {
+
+    private final MongoTemplate mongoTemplate;
+    private final SeatLayoutService seatLayoutService;
+
+    /**
+     * @throws IllegalArgumentException nếu suất chiếu không tồn tại
+     */
+    public SeatSnapshot read(String showtimeId, Collection<String> seatIds) {
+        SeatLayout assumed = seatLayoutService.cachedCompactLayout(showtimeId);
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Document document = fetch(showtimeId, seatIds, assumed);
+            if (document == null) {
+                seatLayoutService.evict(showtimeId);
+                throw new IllegalArgumentException("Showtime không tồn tại: " + showtimeId);
+            }
+            boolean compact = CompactSeatMap.ENCODING.equals(document.getString("seatEncoding"));
+            if (compact == (assumed != null)) {
+                return decode(showtimeId, document, seatIds, assumed);
+            }
+            // Cách mã hóa trong cache đã cũ: đọc lại với đúng projection
+            seatLayoutService.evict(showtimeId);
+            assumed = compact ? seatLayoutService.layoutForRoom(MongoIds.fromDocumentValue(document.get("roomId"))) : null;
+        }
+        throw new IllegalStateException("Bản đồ ghế của suất chiếu đang được chuyển đổi, vui lòng thử lại.");
+    }
+
+    private Document fetch(String showtimeId, Collection<String> seatIds, SeatLayout layout) {
+        Query query = new Query(Criteria.where("_id").is(MongoIds.toDocumentId(showtimeId))).withReadPreference(ReadPreference.primary());
+        query.fields().include("roomId").include("seatEncoding").include("seatVersion").include("totalSeats")
+                .include("availableSeats").include("holdingSeats").include("bookedSeats");
+        seatIds.forEach(seatId -> query.fields().include("seatStatus." + seatId));
+        if (layout != null) {
+            int[] words = wordRange(layout, seatIds);
+            if (words != null) {
+                query.fields().slice("seatBits", words[0], words[1] - words[0] + 1);
+            }
+        }
+        return mongoTemplate.findOne(query, Document.class, mongoTemplate.getCollectionName(Showtime.class));
+    }
+
+    private SeatSnapshot decode(String showtimeId, Document document, Collection<String> seatIds, SeatLayout layout) {
+        Document seatStatus = document.get("seatStatus", Document.class);
+        Map<String, Showtime.SeatStatus> seats = new HashMap<>(seatIds.size() * 2);
+        int[] words = layout != null ? wordRange(layout, seatIds) : null;
+        List<?> seatBits = document.getList("seatBits", Object.class);
+        for (String seatId : seatIds) {
+            Document side = seatStatus != null ? seatStatus.get(seatId, Document.class) : null;
+            SeatState state;
+            if (layout != null) {
+                if (!layout.contains(seatId)) {
+                    continue;
+                }
+                int ordinal = layout.ordinalOf(seatId);
+                state = stateInSlice(seatBits, CompactSeatMap.wordIndex(ordinal) - words[0], ordinal);
+            } else {
+                state = side != null && side.getString("status") != null
+                        ? SeatState.fromValue(side.getString("status")) : SeatState.AVAILABLE;
+            }
+            seats.put(seatId, new Showtime.SeatStatus(state,
+                    side != null && state == SeatState.HOLDING ? toLocalDateTime(side.getDate("holdStartedAt")) : null,
+                    side != null && state == SeatState.BOOKED ? side.getString("bookingId") : null));
+        }
+        Number seatVersion = document.get("seatVersion", Number.class);
+        return new SeatSnapshot(showtimeId, MongoIds.fromDocumentValue(document.get("roomId")), document.getString("seatEncoding"), layout,
+                seatVersion != null ? seatVersion.longValue() : null,
+                document.getInteger("totalSeats"), document.getInteger("availableSeats"),
+                document.getInteger("holdingSeats"), document.getInteger("bookedSeats"), seats);
+    }
+
+    /**
+     * Chỉ số phần tử seatBits nhỏ nhất và lớn nhất chứa các ghế được yêu cầu, hoặc null nếu không có ghế nào thuộc phòng.
+     */
+    private static int[] wordRange(SeatLayout layout, Collection<String> seatIds) {
+        int min = Integer.MAX_VALUE;
+        int max = -1;
+        for (String seatId : seatIds) {
+            if (layout.contains(seatId)) {
+                int word = CompactSeatMap.wordIndex(layout.ordinalOf(seatId));
+                min = Math.min(min, word);
+                max = Math.max(max, word);
+            }
+        }
+        return max < 0 ? null : new int[]{min, max};
+    }
+
+    private static SeatState stateInSlice(List<?> slice, int index, int ordinal) {
+        if (slice == null || index < 0 || index >= slice.size() || !(slice.get(index) instanceof Number word)) {
+            return SeatState.AVAILABLE;
+        }
+        return CompactSeatMap.stateOf((int) ((word.longValue() >>> CompactSeatMap.shift(ordinal)) & 0b11L));
+    }
+
+    private static LocalDateTime toLocalDateTime(Date date) {
+        // Cùng quy ước với converter mặc định của Spring Data (múi giờ hệ thống)
+        return date != null ? LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault()) : null;
+    }
+}
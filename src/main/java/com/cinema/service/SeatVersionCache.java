@@ -0,0 +1,184 @@
+package com.cinema.service;
+
+import com.cinema.model.Showtime;
+import com.cinema.util.LruCache;
+import com.cinema.util.MongoIds;
+import com.mongodb.MongoException;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache seatVersion của các suất chiếu để trả lời If-None-Match mà không cần đọc MongoDB.
+ * <p>
+ * Một change stream duy nhất trên collection showtimes (chỉ lấy _id và seatVersion) giữ cache
+ * khớp với mọi node. Khi change stream chưa chạy hoặc bị gián đoạn, cache bị xóa và không được
+ * dùng, để không bao giờ trả 304 cho dữ liệu đã thay đổi.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SeatVersionCache {
+
+    private static final int MAX_ENTRIES = 20_000;
+    private static final long WATCH_RETRY_MILLIS = 1000;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final LruCache<String, Long> versions = new LruCache<>(MAX_ENTRIES);
+    private volatile boolean watching;
+    // Tăng mỗi khi change stream mở/đóng; giá trị đọc từ DB chỉ được ghi nếu generation không đổi
+    private long generation;
+    private volatile boolean running;
+    private Thread watcher;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        watcher = Thread.ofVirtual().name("seat-version-watcher").start(this::watch);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+    }
+
+    /**
+     * seatVersion hiện tại của suất chiếu, hoặc null nếu cache không dùng được (bên gọi đọc MongoDB như bình thường).
+     * Lần đầu gặp một suất chiếu sẽ đọc riêng seatVersion từ primary.
+     */
+    public Long currentVersion(String showtimeId) {
+        if (!watching) {
+            return null;
+        }
+        Long cached = versions.get(showtimeId);
+        if (cached != null) {
+            return cached;
+        }
+        long readGeneration;
+        synchronized (versions) {
+            readGeneration = generation;
+        }
+        Query query = new Query(Criteria.where("_id").is(showtimeId)).withReadPreference(ReadPreference.primary());
+        query.fields().include("seatVersion");
+        Showtime showtime = mongoTemplate.findOne(query, Showtime.class);
+        if (showtime == null) {
+            return null;
+        }
+        synchronized (versions) {
+            if (!watching || generation != readGeneration) {
+                return null;
+            }
+            return record(showtimeId, versionOf(showtime.getSeatVersion()));
+        }
+    }
+
+    /**
+     * Bỏ giá trị đã cache sau khi node này vừa thay đổi ghế, để lần đọc sau không trả 304 trước khi change stream kịp cập nhật.
+     */
+    public void evict(String showtimeId) {
+        versions.remove(showtimeId);
+    }
+
+    public static long versionOf(Long seatVersion) {
+        return seatVersion != null ? seatVersion : 0L;
+    }
+
+    private Long record(String showtimeId, long version) {
+        // Version chỉ tăng: giá trị cũ hơn đến muộn không ghi đè giá trị mới
+        return versions.merge(showtimeId, version, Math::max);
+    }
+
+    private void watch() {
+        BsonDocument resumeToken = null;
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = openCursor(resumeToken)) {
+                resetCache(true);
+                log.info("Seat version cache is watching showtime changes.");
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change == null) {
+                        continue;
+                    }
+                    resumeToken = change.getResumeToken();
+                    apply(change);
+                }
+            } catch (MongoException e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Seat version change stream interrupted, cache disabled until it reconnects: {}", e.getMessage());
+                resumeToken = null;
+            } finally {
+                resetCache(false);
+            }
+            try {
+                Thread.sleep(WATCH_RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    private void resetCache(boolean nowWatching) {
+        synchronized (versions) {
+            generation++;
+            watching = nowWatching;
+            versions.clear();
+        }
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> openCursor(BsonDocument resumeToken) {
+        var stream = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Showtime.class))
+                .watch(List.of(
+                        Aggregates.match(Filters.in("operationType", "update", "replace", "delete")),
+                        Aggregates.project(Projections.include("operationType", "documentKey",
+                                "updateDescription.updatedFields.seatVersion", "fullDocument.seatVersion"))))
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        if (resumeToken != null) {
+            stream.resumeAfter(resumeToken);
+        }
+        return stream.cursor();
+    }
+
+    private void apply(ChangeStreamDocument<Document> change) {
+        String showtimeId = MongoIds.fromDocumentKey(change.getDocumentKey() != null ? change.getDocumentKey().get("_id") : null);
+        if (showtimeId == null) {
+            return;
+        }
+        BsonValue version = null;
+        if (change.getUpdateDescription() != null && change.getUpdateDescription().getUpdatedFields() != null) {
+            version = change.getUpdateDescription().getUpdatedFields().get("seatVersion");
+        }
+        if (version != null && version.isNumber()) {
+            record(showtimeId, version.asNumber().longValue());
+        } else if (change.getFullDocument() != null && change.getFullDocument().get("seatVersion") instanceof Number number) {
+            record(showtimeId, number.longValue());
+        } else {
+            // Thay đổi không mang seatVersion (xóa, ghi ngoài SeatService...): đọc lại khi cần
+            versions.remove(showtimeId);
+        }
+    }
+}
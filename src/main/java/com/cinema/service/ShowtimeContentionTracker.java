@@ -0,0 +1,89 @@
+package com.cinema.service;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Theo dõi các suất chiếu có nhiều thao tác ghế nhất bằng thuật toán Space-Saving với số bộ đếm cố định,
+ * nên bộ nhớ không phụ thuộc số suất chiếu. Bộ đếm giảm một nửa mỗi phút để phản ánh mức tải gần đây.
+ * Giá trị có thể cao hơn thực tế tối đa bằng overestimate của từng mục.
+ */
+@Component
+public class ShowtimeContentionTracker {
+
+    private static final int CAPACITY = 256;
+
+    private final Map<String, Entry> entries = new HashMap<>(CAPACITY * 2);
+
+    public record HotShowtime(String showtimeId, long operations, long conflicts, long overestimate) {
+    }
+
+    private static final class Entry {
+        private final String showtimeId;
+        private double operations;
+        private double conflicts;
+        private double overestimate;
+
+        private Entry(String showtimeId) {
+            this.showtimeId = showtimeId;
+        }
+    }
+
+    public synchronized void record(String showtimeId, boolean conflict) {
+        if (showtimeId == null) {
+            return;
+        }
+        Entry entry = entries.get(showtimeId);
+        if (entry == null) {
+            entry = new Entry(showtimeId);
+            if (entries.size() >= CAPACITY) {
+                // Thay mục nhỏ nhất: mục mới kế thừa số đếm của nó làm sai số tối đa
+                Entry min = entries.values().stream().min(Comparator.comparingDouble(e -> e.operations)).orElseThrow();
+                entries.remove(min.showtimeId);
+                entry.operations = min.operations;
+                entry.overestimate = min.operations;
+            }
+            entries.put(showtimeId, entry);
+        }
+        entry.operations++;
+        if (conflict) {
+            entry.conflicts++;
+        }
+    }
+
+    /**
+     * Các suất chiếu có nhiều thao tác nhất, giảm dần.
+     */
+    public synchronized List<HotShowtime> top(int limit) {
+        List<Entry> sorted = new ArrayList<>(entries.values());
+        sorted.sort(Comparator.comparingDouble((Entry e) -> e.operations).reversed());
+        return sorted.stream()
+                .limit(Math.max(0, limit))
+                .map(e -> new HotShowtime(e.showtimeId, Math.round(e.operations), Math.round(e.conflicts), Math.round(e.overestimate)))
+                .toList();
+    }
+
+    /**
+     * Số thao tác của suất chiếu đứng thứ rank (bắt đầu từ 1), 0 nếu không có.
+     */
+    public long operationsAtRank(int rank) {
+        List<HotShowtime> top = top(rank);
+        return top.size() >= rank ? top.get(rank - 1).operations() : 0;
+    }
+
+    @Scheduled(fixedRate = 60_000)
+    public synchronized void decay() {
+        entries.values().removeIf(entry -> {
+            entry.operations /= 2;
+            entry.conflicts /= 2;
+            entry.overestimate /= 2;
+            return entry.operations < 0.5;
+        });
+    }
+}
@@ -1,5 +1,6 @@
 package com.cinema.service;
 
+import com.cinema.dto.response.ShowtimeDetailsDto;
 import com.cinema.dto.response.ShowtimeSummaryDto;
 import com.cinema.enums.ShowtimeStatus;
 import com.cinema.model.Cinema; // <<< THAY ĐỔI: Import model Cinema
@@ -26,6 +27,7 @@ public class ShowtimeService {
 
     private final ShowtimeRepository showtimeRepository;
     private final CinemaRepository cinemaRepository; // <<< THAY ĐỔI: Inject CinemaRepository
+    private final SeatLayoutService seatLayoutService;
 
     /**
      * Lấy danh sách suất chiếu có filter (trả về DTO tóm tắt).
@@ -83,9 +85,36 @@ public class ShowtimeService {
                 .collect(Collectors.toList());
     }
 
-    public Optional<Showtime> getShowtimeById(String id) {
+    public Optional<ShowtimeDetailsDto> getShowtimeById(String id) {
         log.info("Request lấy chi tiết suất chiếu ID: {}", id);
-        return showtimeRepository.findByIdAndStatus(id, ShowtimeStatus.ACTIVE);
+        return showtimeRepository.findByIdAndStatus(id, ShowtimeStatus.ACTIVE).map(this::toDetailsDto);
+    }
+
+    /**
+     * Chi tiết trả cho client: bản đồ ghế dạng bitmap được giải mã về map seatStatus đầy đủ như dạng cũ
+     * (map phụ của dạng bitmap chỉ chứa ghế HOLDING/BOOKED).
+     */
+    private ShowtimeDetailsDto toDetailsDto(Showtime showtime) {
+        Map<String, Showtime.SeatStatus> seatStatus = showtime.getSeatBits() != null
+                ? CompactSeatMap.decode(seatLayoutService.layoutForRoom(showtime.getRoomId()), showtime.getSeatBits(), showtime.getSeatStatus())
+                : showtime.getSeatStatus();
+        return new ShowtimeDetailsDto(
+                showtime.getId(),
+                showtime.getMovieId(),
+                showtime.getCinemaId(),
+                showtime.getRoomId(),
+                showtime.getShowDateTime(),
+                showtime.getScreenType(),
+                showtime.getPricingTiers(),
+                showtime.getTotalSeats(),
+                showtime.getAvailableSeats(),
+                showtime.getHoldingSeats(),
+                showtime.getBookedSeats(),
+                showtime.getSeatVersion(),
+                showtime.getStatus(),
+                seatStatus,
+                showtime.isHasHoldingSeats(),
+                showtime.isHotSale());
     }
 
     // --- CÁC PHƯƠNG THỨC DEBUG/TEST ---
@@ -58,6 +58,10 @@ public class VNPayService implements IVNPayService {
                  log.warn("Booking {} đã được thanh toán.", booking.getId());
                  return new CreatePaymentResponseDto(false, "Booking này đã được thanh toán.", null, null);
             }
+            if (booking.getPaymentStatus() == PaymentStatusType.EXPIRED) {
+                 log.warn("Booking {} đã hết hạn thanh toán.", booking.getId());
+                 return new CreatePaymentResponseDto(false, "Booking đã hết hạn thanh toán, vui lòng đặt lại.", null, null);
+            }
 
             // Tạo một bản ghi Payment mới cho mỗi lần yêu cầu tạo URL, hoặc tìm và cập nhật bản ghi PENDING cũ (tùy logic)
             // Để đơn giản và theo dõi tốt hơn, tạo mới mỗi lần.
@@ -100,7 +104,7 @@ public class VNPayService implements IVNPayService {
             String vnpCreateDate = formatter.format(cld.getTime());
             vnpParams.put("vnp_CreateDate", vnpCreateDate);
 
-            cld.add(Calendar.MINUTE, 15); // Thời gian hết hạn thanh toán (ví dụ: 15 phút)
+            cld.add(Calendar.MINUTE, PAYMENT_URL_EXPIRY_MINUTES); // Thời gian hết hạn thanh toán
             String vnpExpireDate = formatter.format(cld.getTime());
             vnpParams.put("vnp_ExpireDate", vnpExpireDate);
 
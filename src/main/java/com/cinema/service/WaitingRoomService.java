@@ -0,0 +1,496 @@
+package com.cinema.service;
+
+import com.cinema.config.AppProperties;
+import com.cinema.dto.response.WaitingRoomStatusDto;
+import com.cinema.model.Showtime;
+import com.cinema.model.WaitingRoomTicket;
+import com.cinema.util.LruCache;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Phòng chờ cho các suất chiếu mở bán nóng (hotSale = true).
+ * <p>
+ * Mỗi suất chiếu có một hàng đợi FIFO trong bộ nhớ; job định kỳ cho một số người ở đầu hàng vào
+ * theo tốc độ cấu hình và cấp admission token (HMAC, có thời hạn). API giữ ghế/đặt vé của suất chiếu
+ * nóng chỉ chấp nhận yêu cầu có token hợp lệ, nên tải phía sau bị giới hạn theo tốc độ cho vào.
+ * Vé xếp hàng được ghi vào collection waiting_room_tickets để khôi phục thứ tự khi khởi động lại.
+ * <p>
+ * Hàng đợi của một suất chiếu nằm trên node nhận yêu cầu: khi chạy nhiều node cần định tuyến
+ * các yêu cầu phòng chờ theo showtimeId. Sau khi khởi động lại, hàng đợi của một suất chiếu chỉ được khôi phục
+ * khi node nhận yêu cầu đầu tiên của suất chiếu đó, nên mỗi node chỉ nạp vé của các suất chiếu được định tuyến tới nó.
+ * <p>
+ * Token gắn với clientId: yêu cầu giữ ghế/đặt vé phải gửi kèm đúng clientId đã xếp hàng (header X-Waiting-Room-Client).
+ * Mỗi lượt được cho vào chỉ giữ được tối đa maxSeatsPerAdmission ghế khác nhau (tập ghế lưu trên vé xếp hàng
+ * trong MongoDB, nên có hiệu lực trên mọi node). Ghế chỉ được tính sau khi giữ/đặt thành công và được trả lại
+ * khi client hủy giữ; giữ rồi đặt cùng các ghế đó không bị tính hai lần.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WaitingRoomService {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final Pattern CLIENT_ID_PATTERN = Pattern.compile("^[A-Za-z0-9_-]{8,64}$");
+
+    private final MongoTemplate mongoTemplate;
+    private final AppProperties appProperties;
+
+    private final Map<String, ShowtimeQueue> queues = new ConcurrentHashMap<>();
+    private final LruCache<String, HotFlag> hotFlags = new LruCache<>(10_000);
+    private SecretKeySpec tokenKey;
+
+    private record HotFlag(boolean hot, long loadedAtNanos) {
+    }
+
+    @PostConstruct
+    void initTokenKey() {
+        String secret = appProperties.getWaitingRoom().getTokenSecret();
+        byte[] key;
+        if (secret == null || secret.isBlank()) {
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            log.warn("cinema.waiting-room.token-secret chưa được cấu hình, dùng khóa ngẫu nhiên (token chỉ hợp lệ trên node này).");
+        } else {
+            key = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        tokenKey = new SecretKeySpec(key, HMAC_ALGORITHM);
+    }
+
+    /**
+     * Khôi phục hàng đợi của một suất chiếu từ các vé chưa hết hạn, khi node chưa có hàng đợi của suất chiếu đó.
+     * Người đang chờ được coi như vừa hỏi trạng thái.
+     */
+    private void restoreQueue(String showtimeId) {
+        if (queues.containsKey(showtimeId)) {
+            return;
+        }
+        Query query = new Query(Criteria.where("showtimeId").is(showtimeId).and("expiresAt").gt(LocalDateTime.now()))
+                .with(Sort.by("position"));
+        ShowtimeQueue restored = new ShowtimeQueue(showtimeId);
+        int recovered = 0;
+        try (Stream<WaitingRoomTicket> tickets = mongoTemplate.stream(query, WaitingRoomTicket.class)) {
+            for (Iterator<WaitingRoomTicket> it = tickets.iterator(); it.hasNext(); recovered++) {
+                restored.restore(it.next());
+            }
+        } catch (Exception e) {
+            log.error("Không thể khôi phục phòng chờ của Showtime {}: {}", showtimeId, e.getMessage(), e);
+            return;
+        }
+        // Yêu cầu khác có thể vừa tạo hàng đợi: giữ hàng đợi đó
+        if (recovered > 0 && queues.putIfAbsent(showtimeId, restored) == null) {
+            log.info("Đã khôi phục {} vé phòng chờ của Showtime {}.", recovered, showtimeId);
+        }
+    }
+
+    /**
+     * Vào hàng chờ (hoặc lấy lại vị trí nếu clientId đã xếp hàng). clientId = null thì cấp clientId mới.
+     * Suất chiếu không mở bán nóng được cho vào ngay.
+     */
+    public WaitingRoomStatusDto join(String showtimeId, String clientId) {
+        String id = clientId != null ? validClientId(clientId) : UUID.randomUUID().toString();
+        if (!isAdmissionRequired(showtimeId)) {
+            return admittedStatus(showtimeId, id, LocalDateTime.now().plusMinutes(appProperties.getWaitingRoom().getTokenTtlMinutes()));
+        }
+        restoreQueue(showtimeId);
+        // Vào hàng bên trong compute để không chen vào đúng lúc hàng đợi rỗng bị gỡ khỏi map
+        JoinResult[] joined = new JoinResult[1];
+        ShowtimeQueue queue = queues.compute(showtimeId, (key, current) -> {
+            ShowtimeQueue target = current != null ? current : new ShowtimeQueue(key);
+            joined[0] = target.join(id, appProperties.getWaitingRoom().getMaxQueueSize());
+            return target;
+        });
+        JoinResult result = joined[0];
+        if (result.created()) {
+            Entry entry = result.entry();
+            mongoTemplate.save(new WaitingRoomTicket(WaitingRoomTicket.idOf(showtimeId, id), showtimeId, id, entry.position,
+                    entry.joinedAt, null, entry.joinedAt.plusHours(appProperties.getWaitingRoom().getMaxWaitHours()), null));
+        }
+        return statusOf(queue, result.entry());
+    }
+
+    /**
+     * Trạng thái của người xếp hàng; client cần hỏi định kỳ để giữ chỗ trong hàng.
+     *
+     * @throws IllegalArgumentException nếu clientId không có trong hàng chờ của suất chiếu
+     */
+    public WaitingRoomStatusDto status(String showtimeId, String clientId) {
+        String id = validClientId(clientId);
+        if (!isAdmissionRequired(showtimeId)) {
+            return admittedStatus(showtimeId, id, LocalDateTime.now().plusMinutes(appProperties.getWaitingRoom().getTokenTtlMinutes()));
+        }
+        restoreQueue(showtimeId);
+        ShowtimeQueue queue = queues.get(showtimeId);
+        Entry entry = queue != null ? queue.touch(id) : null;
+        if (entry == null) {
+            throw new IllegalArgumentException("Không tìm thấy lượt xếp hàng, vui lòng vào lại phòng chờ.");
+        }
+        return statusOf(queue, entry);
+    }
+
+    /**
+     * Suất chiếu có yêu cầu admission token hay không. Cờ hotSale được cache trong thời gian ngắn.
+     */
+    public boolean isAdmissionRequired(String showtimeId) {
+        if (showtimeId == null) {
+            return false;
+        }
+        long now = System.nanoTime();
+        HotFlag flag = hotFlags.get(showtimeId);
+        if (flag == null || now - flag.loadedAtNanos() > TimeUnit.SECONDS.toNanos(appProperties.getWaitingRoom().getHotFlagCacheSeconds())) {
+            Query query = new Query(Criteria.where("_id").is(showtimeId));
+            query.fields().include("hotSale");
+            Showtime showtime = mongoTemplate.findOne(query, Showtime.class);
+            flag = new HotFlag(showtime != null && showtime.isHotSale(), now);
+            hotFlags.put(showtimeId, flag);
+        }
+        return flag.hot();
+    }
+
+    /**
+     * Kiểm tra yêu cầu tới API giữ ghế/đặt vé: luôn hợp lệ với suất chiếu thường,
+     * với suất chiếu nóng cần admission token còn hạn được cấp cho đúng suất chiếu và đúng clientId.
+     */
+    public boolean isAdmitted(String showtimeId, String admissionToken, String clientId) {
+        if (!isAdmissionRequired(showtimeId)) {
+            return true;
+        }
+        return admissionToken != null && clientId != null && verifyToken(showtimeId, admissionToken, clientId);
+    }
+
+    /**
+     * Như isAdmitted, đồng thời kiểm tra lượt này còn đủ hạn mức maxSeatsPerAdmission cho các ghế yêu cầu.
+     * Ghế client đã giữ bằng lượt này không bị tính lại. Chỉ kiểm tra, không trừ hạn mức: bên gọi gọi claimSeats
+     * sau khi giữ/đặt ghế thành công.
+     */
+    public boolean admitSeats(String showtimeId, String admissionToken, String clientId, Collection<String> seatIds) {
+        return admitSeats(showtimeId, admissionToken, clientId, seatIds, 0);
+    }
+
+    /**
+     * Như admitSeats nhưng cho seatCount ghế chưa biết trước (giữ ghế tốt nhất).
+     */
+    public boolean admitSeatCount(String showtimeId, String admissionToken, String clientId, int seatCount) {
+        return admitSeats(showtimeId, admissionToken, clientId, List.of(), seatCount);
+    }
+
+    private boolean admitSeats(String showtimeId, String admissionToken, String clientId, Collection<String> seatIds, int unknownSeats) {
+        if (!isAdmissionRequired(showtimeId)) {
+            return true;
+        }
+        if (!isAdmitted(showtimeId, admissionToken, clientId)) {
+            return false;
+        }
+        int maxSeats = appProperties.getWaitingRoom().getMaxSeatsPerAdmission();
+        if (maxSeats <= 0) {
+            return true;
+        }
+        Query query = new Query(Criteria.where("_id").is(WaitingRoomTicket.idOf(showtimeId, clientId)));
+        query.fields().include("claimedSeats");
+        WaitingRoomTicket ticket = mongoTemplate.findOne(query, WaitingRoomTicket.class);
+        Set<String> seats = new HashSet<>(seatIds);
+        if (ticket != null && ticket.getClaimedSeats() != null) {
+            seats.addAll(ticket.getClaimedSeats());
+        }
+        if (seats.size() + unknownSeats > maxSeats) {
+            log.warn("Client {} vượt hạn mức {} ghế của lượt vào Showtime {}.", clientId, maxSeats, showtimeId);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tính các ghế vừa giữ/đặt thành công vào hạn mức của lượt (ghế đã tính trước đó không bị tính lại).
+     * Cập nhật có điều kiện trên vé xếp hàng nên hai yêu cầu đồng thời không cùng vượt hạn mức;
+     * trả về false nếu vượt, bên gọi hoàn tác thao tác vừa làm.
+     */
+    public boolean claimSeats(String showtimeId, String clientId, Collection<String> seatIds) {
+        int maxSeats = appProperties.getWaitingRoom().getMaxSeatsPerAdmission();
+        if (clientId == null || maxSeats <= 0 || seatIds.isEmpty() || !isAdmissionRequired(showtimeId)) {
+            return true;
+        }
+        List<String> seats = List.copyOf(new LinkedHashSet<>(seatIds));
+        // size(claimedSeats ∪ seats) <= maxSeats
+        Document filter = new Document("_id", WaitingRoomTicket.idOf(showtimeId, clientId))
+                .append("admittedAt", new Document("$ne", null))
+                .append("$expr", new Document("$lte", Arrays.asList(
+                        new Document("$size", new Document("$setUnion", Arrays.asList(
+                                new Document("$ifNull", Arrays.asList("$claimedSeats", List.of())), seats))),
+                        maxSeats)));
+        boolean claimed = mongoTemplate.updateFirst(new BasicQuery(filter),
+                new Update().addToSet("claimedSeats").each(seats.toArray()), WaitingRoomTicket.class).getMatchedCount() > 0;
+        if (!claimed) {
+            log.warn("Client {} vượt hạn mức {} ghế của lượt vào Showtime {}.", clientId, maxSeats, showtimeId);
+        }
+        return claimed;
+    }
+
+    /**
+     * Trả lại hạn mức của các ghế client đã hủy giữ.
+     */
+    public void returnSeats(String showtimeId, String clientId, Collection<String> seatIds) {
+        if (clientId == null || seatIds.isEmpty() || !isAdmissionRequired(showtimeId)) {
+            return;
+        }
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(WaitingRoomTicket.idOf(showtimeId, clientId))),
+                new Update().pullAll("claimedSeats", seatIds.toArray()), WaitingRoomTicket.class);
+    }
+
+    /**
+     * Bật/tắt chế độ mở bán nóng của suất chiếu.
+     */
+    public void setHotSale(String showtimeId, boolean hotSale) {
+        long matched = mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(showtimeId)),
+                new Update().set("hotSale", hotSale), Showtime.class).getMatchedCount();
+        if (matched == 0) {
+            throw new IllegalArgumentException("Showtime không tồn tại: " + showtimeId);
+        }
+        hotFlags.remove(showtimeId);
+        if (!hotSale) {
+            queues.remove(showtimeId);
+            mongoTemplate.remove(new Query(Criteria.where("showtimeId").is(showtimeId)), WaitingRoomTicket.class);
+        }
+        log.info("Đã {} chế độ mở bán nóng cho Showtime {}", hotSale ? "bật" : "tắt", showtimeId);
+    }
+
+    /**
+     * Cho người ở đầu mỗi hàng đợi vào theo tốc độ cấu hình; bỏ qua người đã rời hàng.
+     */
+    @Scheduled(fixedRateString = "${cinema.waiting-room.admit-interval-ms:1000}")
+    public void admitNext() {
+        AppProperties.WaitingRoom config = appProperties.getWaitingRoom();
+        int perTick = Math.max(1, (int) Math.round(config.getAdmissionsPerSecond() * config.getAdmitIntervalMs() / 1000.0));
+        long abandonNanos = TimeUnit.SECONDS.toNanos(config.getAbandonAfterSeconds());
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusMinutes(config.getTokenTtlMinutes());
+
+        for (ShowtimeQueue queue : queues.values()) {
+            AdmitResult result = queue.admit(perTick, abandonNanos, now, expiresAt);
+            try {
+                if (!result.admitted().isEmpty()) {
+                    mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(ticketIds(queue.showtimeId, result.admitted()))),
+                            new Update().set("admittedAt", now).set("expiresAt", expiresAt), WaitingRoomTicket.class);
+                }
+                if (!result.abandoned().isEmpty()) {
+                    mongoTemplate.remove(new Query(Criteria.where("_id").in(ticketIds(queue.showtimeId, result.abandoned()))),
+                            WaitingRoomTicket.class);
+                }
+            } catch (Exception e) {
+                // Trạng thái trong bộ nhớ vẫn đúng; bản ghi cũ chỉ ảnh hưởng lần khôi phục sau
+                log.warn("Không thể lưu trạng thái phòng chờ của Showtime {}: {}", queue.showtimeId, e.getMessage());
+            }
+            queues.computeIfPresent(queue.showtimeId, (key, current) -> current.isIdle() ? null : current);
+        }
+    }
+
+    private static List<String> ticketIds(String showtimeId, List<String> clientIds) {
+        return clientIds.stream().map(clientId -> WaitingRoomTicket.idOf(showtimeId, clientId)).toList();
+    }
+
+    private WaitingRoomStatusDto statusOf(ShowtimeQueue queue, Entry entry) {
+        if (entry.admittedAt != null) {
+            return admittedStatus(queue.showtimeId, entry.clientId, entry.expiresAt);
+        }
+        long ahead = queue.peopleAhead(entry);
+        long rate = Math.max(1, appProperties.getWaitingRoom().getAdmissionsPerSecond());
+        return new WaitingRoomStatusDto(queue.showtimeId, entry.clientId, false, ahead, (ahead + rate - 1) / rate, null, null);
+    }
+
+    private WaitingRoomStatusDto admittedStatus(String showtimeId, String clientId, LocalDateTime expiresAt) {
+        return new WaitingRoomStatusDto(showtimeId, clientId, true, 0, 0, issueToken(showtimeId, clientId, expiresAt), expiresAt);
+    }
+
+    private static String validClientId(String clientId) {
+        if (clientId == null || !CLIENT_ID_PATTERN.matcher(clientId).matches()) {
+            throw new IllegalArgumentException("Mã lượt xếp hàng không hợp lệ.");
+        }
+        return clientId;
+    }
+
+    // Token: base64url("<showtimeId>|<clientId>|<epochSecond hết hạn>") + "." + base64url(HMAC-SHA256)
+    private String issueToken(String showtimeId, String clientId, LocalDateTime expiresAt) {
+        long expiresAtEpoch = expiresAt.atZone(ZoneId.systemDefault()).toEpochSecond();
+        byte[] payload = (showtimeId + "|" + clientId + "|" + expiresAtEpoch).getBytes(StandardCharsets.UTF_8);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payload) + "." + encoder.encodeToString(sign(payload));
+    }
+
+    private boolean verifyToken(String showtimeId, String token, String clientId) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return false;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            byte[] payload = decoder.decode(token.substring(0, dot));
+            if (!MessageDigest.isEqual(sign(payload), decoder.decode(token.substring(dot + 1)))) {
+                return false;
+            }
+            String[] parts = new String(payload, StandardCharsets.UTF_8).split("\\|");
+            return parts.length == 3
+                    && parts[0].equals(showtimeId)
+                    && parts[1].equals(clientId)
+                    && Long.parseLong(parts[2]) > System.currentTimeMillis() / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private byte[] sign(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(tokenKey);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Không thể ký admission token", e);
+        }
+    }
+
+    private static final class Entry {
+        private final String clientId;
+        private final long position;
+        private final LocalDateTime joinedAt;
+        private volatile long lastSeenNanos = System.nanoTime();
+        private volatile LocalDateTime admittedAt;
+        private volatile LocalDateTime expiresAt;
+
+        private Entry(String clientId, long position, LocalDateTime joinedAt) {
+            this.clientId = clientId;
+            this.position = position;
+            this.joinedAt = joinedAt;
+        }
+    }
+
+    private record JoinResult(Entry entry, boolean created) {
+    }
+
+    private record AdmitResult(List<String> admitted, List<String> abandoned) {
+    }
+
+    /**
+     * Hàng đợi của một suất chiếu: người chờ theo thứ tự vào hàng và người đã được cho vào (cho tới khi token hết hạn).
+     */
+    private static final class ShowtimeQueue {
+        private final String showtimeId;
+        private final LinkedHashMap<String, Entry> waiting = new LinkedHashMap<>();
+        private final Map<String, Entry> admitted = new HashMap<>();
+        private long nextPosition = 1;
+        private long lastAdmittedPosition;
+
+        private ShowtimeQueue(String showtimeId) {
+            this.showtimeId = showtimeId;
+        }
+
+        synchronized JoinResult join(String clientId, int maxQueueSize) {
+            Entry existing = touch(clientId);
+            if (existing != null) {
+                return new JoinResult(existing, false);
+            }
+            if (waiting.size() >= maxQueueSize) {
+                throw new IllegalStateException("Phòng chờ đã đầy, vui lòng thử lại sau.");
+            }
+            Entry entry = new Entry(clientId, nextPosition++, LocalDateTime.now());
+            waiting.put(clientId, entry);
+            return new JoinResult(entry, true);
+        }
+
+        synchronized Entry touch(String clientId) {
+            Entry entry = waiting.get(clientId);
+            if (entry == null) {
+                entry = admitted.get(clientId);
+                if (entry != null && entry.expiresAt.isBefore(LocalDateTime.now())) {
+                    admitted.remove(clientId);
+                    return null;
+                }
+            }
+            if (entry != null) {
+                entry.lastSeenNanos = System.nanoTime();
+            }
+            return entry;
+        }
+
+        synchronized void restore(WaitingRoomTicket ticket) {
+            Entry entry = new Entry(ticket.getClientId(), ticket.getPosition(), ticket.getJoinedAt());
+            if (ticket.getAdmittedAt() != null) {
+                entry.admittedAt = ticket.getAdmittedAt();
+                entry.expiresAt = ticket.getExpiresAt();
+                admitted.put(entry.clientId, entry);
+                lastAdmittedPosition = Math.max(lastAdmittedPosition, entry.position);
+            } else {
+                waiting.put(entry.clientId, entry);
+            }
+            nextPosition = Math.max(nextPosition, entry.position + 1);
+        }
+
+        /**
+         * Số người đứng trước (ước lượng theo vị trí, có thể cao hơn thực tế nếu có người rời hàng).
+         */
+        synchronized long peopleAhead(Entry entry) {
+            Entry head = waiting.isEmpty() ? null : waiting.values().iterator().next();
+            long from = head != null ? head.position : lastAdmittedPosition + 1;
+            return Math.max(0, entry.position - from);
+        }
+
+        synchronized AdmitResult admit(int count, long abandonNanos, LocalDateTime now, LocalDateTime expiresAt) {
+            admitted.values().removeIf(entry -> entry.expiresAt.isBefore(now));
+            List<String> admittedIds = new ArrayList<>();
+            List<String> abandonedIds = new ArrayList<>();
+            long nowNanos = System.nanoTime();
+            Iterator<Entry> it = waiting.values().iterator();
+            while (admittedIds.size() < count && it.hasNext()) {
+                Entry entry = it.next();
+                it.remove();
+                if (nowNanos - entry.lastSeenNanos > abandonNanos) {
+                    abandonedIds.add(entry.clientId);
+                    continue;
+                }
+                entry.expiresAt = expiresAt;
+                entry.admittedAt = now;
+                admitted.put(entry.clientId, entry);
+                lastAdmittedPosition = entry.position;
+                admittedIds.add(entry.clientId);
+            }
+            return new AdmitResult(admittedIds, abandonedIds);
+        }
+
+        synchronized boolean isIdle() {
+            return waiting.isEmpty() && admitted.isEmpty();
+        }
+    }
+}
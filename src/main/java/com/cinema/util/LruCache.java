@@ -0,0 +1,67 @@
+package com.cinema.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Cache LRU có giới hạn số phần tử, an toàn khi dùng từ nhiều luồng.
+ * Dùng cho các dữ liệu nhỏ, đọc nhiều (ví dụ: thông tin bố trí ghế theo suất chiếu).
+ */
+public class LruCache<K, V> {
+
+    private final Map<K, V> entries;
+
+    public LruCache(int maxSize) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Gộp giá trị mới với giá trị hiện có (nếu có) một cách nguyên tử, như Map.merge.
+     */
+    public synchronized V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+        return entries.merge(key, value, remapping);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Lấy giá trị từ cache, nếu chưa có thì tính bằng loader (loader chạy ngoài khóa).
+     * Giá trị null không được lưu vào cache.
+     */
+    public V computeIfAbsent(K key, Function<K, V> loader) {
+        V cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        V loaded = loader.apply(key);
+        if (loaded != null) {
+            put(key, loaded);
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,59 @@
+package com.cinema.util;
+
+import org.bson.BsonValue;
+import org.bson.types.ObjectId;
+
+import java.util.List;
+
+/**
+ * Chuyển đổi giữa id dạng String của entity và giá trị _id thực sự lưu trong MongoDB.
+ * Spring Data lưu id String dạng hex 24 ký tự thành ObjectId, các id khác giữ nguyên chuỗi.
+ * <p>
+ * Trường tham chiếu (movieId, showtimeId...) được chuẩn hóa về cùng kiểu với _id mà nó trỏ tới. Trong lúc
+ * dữ liệu cũ chưa chuyển đổi xong, truy vấn theo tham chiếu phải khớp cả dạng chuỗi lẫn dạng ObjectId.
+ */
+public final class MongoIds {
+
+    private MongoIds() {
+    }
+
+    public static Object toDocumentId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    public static String fromDocumentKey(BsonValue id) {
+        if (id == null) {
+            return null;
+        }
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        return id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    /**
+     * Đọc một id/tham chiếu từ Document thô, bất kể được lưu dạng ObjectId hay chuỗi.
+     */
+    public static String fromDocumentValue(Object value) {
+        if (value == null) {
+            return null;
+        }
+        return value instanceof ObjectId objectId ? objectId.toHexString() : value.toString();
+    }
+
+    /**
+     * Các giá trị cần khớp khi lọc theo một trường tham chiếu: chỉ dạng chuẩn sau khi đã chuẩn hóa,
+     * cả hai dạng trong lúc chuyển đổi. Trạng thái chuẩn hóa do ReferenceIdMigrationService nắm giữ.
+     */
+    public static List<Object> referenceValues(String id, boolean normalized) {
+        Object documentId = toDocumentId(id);
+        if (normalized || documentId instanceof String) {
+            return List.of(documentId);
+        }
+        return List.of(documentId, id);
+    }
+
+    public static List<Object> referenceValues(List<String> ids, boolean normalized) {
+        return ids.stream().flatMap(id -> referenceValues(id, normalized).stream()).toList();
+    }
+}
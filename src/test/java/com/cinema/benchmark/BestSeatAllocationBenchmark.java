@@ -0,0 +1,93 @@
+package com.cinema.benchmark;
+
+import com.cinema.enums.SeatState;
+import com.cinema.model.Room;
+import com.cinema.service.BestSeatFinder;
+import com.cinema.service.SeatLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đo thời gian tìm khối ghế liền nhau tốt nhất trên phòng 500 ghế (20 hàng x 25 ghế) ở các mức lấp đầy cao.
+ * Không chạy cùng mvn test; chạy bằng main().
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BestSeatAllocationBenchmark {
+
+    private static final int ROWS = 20;
+    private static final int SEATS_PER_ROW = 25;
+
+    @Param({"0.7", "0.9", "0.97"})
+    private double occupancy;
+
+    @Param({"2", "4", "6"})
+    private int quantity;
+
+    private SeatLayout layout;
+    private SeatState[] states;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        layout = SeatLayout.from(room());
+        states = new SeatState[layout.size()];
+        Random random = new Random(7);
+        for (int ordinal = 0; ordinal < states.length; ordinal++) {
+            states[ordinal] = random.nextDouble() < occupancy ? SeatState.BOOKED : SeatState.AVAILABLE;
+        }
+    }
+
+    @Benchmark
+    public List<BestSeatFinder.Block> findBestBlocks() {
+        return BestSeatFinder.findBest(layout, states, quantity, null, 5);
+    }
+
+    @Benchmark
+    public List<BestSeatFinder.Block> findBestVipBlocks() {
+        return BestSeatFinder.findBest(layout, states, quantity, "vip", 5);
+    }
+
+    private static Room room() {
+        List<Room.SeatRow> rows = new ArrayList<>();
+        for (int r = 0; r < ROWS; r++) {
+            String rowId = String.valueOf((char) ('A' + r));
+            List<Room.SeatInfo> seats = new ArrayList<>();
+            for (int s = 1; s <= SEATS_PER_ROW; s++) {
+                // Khu VIP ở các hàng giữa phòng
+                String type = r >= 8 && r < 14 && s > 5 && s <= 20 ? "vip" : "standard";
+                seats.add(new Room.SeatInfo(rowId + s, type));
+            }
+            rows.add(new Room.SeatRow(rowId, seats));
+        }
+        Room room = new Room();
+        room.setId("benchmark-room");
+        room.setSeatMap(new Room.SeatMap(rows, null));
+        return room;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BestSeatAllocationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,72 @@
+package com.cinema.benchmark;
+
+import com.cinema.service.ConfirmationCodeGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh cách sinh mã xác nhận cũ (UUID.randomUUID, bỏ dấu gạch, lấy 8 ký tự) với ConfirmationCodeGenerator,
+ * một luồng và 8 luồng đồng thời. Chạy với -prof gc để xem số byte cấp phát mỗi mã.
+ * Không chạy cùng mvn test; chạy bằng main().
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfirmationCodeBenchmark {
+
+    private static final String PREFIX = "CINESTAR";
+
+    private static final ConfirmationCodeGenerator.SlotLease LEASE = new ConfirmationCodeGenerator.SlotLease(7, 0, Long.MAX_VALUE);
+
+    private final ConfirmationCodeGenerator generator = new ConfirmationCodeGenerator(PREFIX, "benchmark", second -> LEASE,
+            () -> System.currentTimeMillis() / 1000);
+
+    @Benchmark
+    public String legacyUuid() {
+        return legacyCode();
+    }
+
+    @Benchmark
+    public String generator() {
+        return generator.next();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String legacyUuidContended() {
+        return legacyCode();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String generatorContended() {
+        return generator.next();
+    }
+
+    // Cách sinh mã trước đây trong BookingService
+    private static String legacyCode() {
+        String randomPart = UUID.randomUUID().toString().replace("-", "").substring(0, 8).toUpperCase();
+        return PREFIX + randomPart;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ConfirmationCodeBenchmark.class.getSimpleName()).build()).run();
+    }
+}
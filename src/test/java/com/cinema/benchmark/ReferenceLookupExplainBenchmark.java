@@ -0,0 +1,242 @@
+package com.cinema.benchmark;
+
+import com.cinema.CinemaApplication;
+import com.cinema.repository.BookingRepository;
+import com.cinema.service.ReferenceIdMigrationService;
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * So sánh explain plan và độ trễ của các truy vấn theo tham chiếu trước/sau khi chuẩn hóa kiểu id
+ * (ReferenceIdMigrationService), trên một database tạm của MongoDB cục bộ. Dữ liệu mẫu được ghi với
+ * tham chiếu dạng chuỗi hex như dữ liệu cũ. Không chạy cùng mvn test; chạy bằng main():
+ * <pre>
+ * java -Dexplain.mongoUri=mongodb://localhost:27017/?replicaSet=rs0 -Dexplain.bookings=100000 \
+ *      -cp target/test-classes:target/classes:&lt;classpath&gt; com.cinema.benchmark.ReferenceLookupExplainBenchmark
+ * </pre>
+ * Tham số (system property): explain.bookings, explain.showtimes, explain.pageSize, explain.iterations, explain.keep.
+ * <p>
+ * Báo cáo: với bộ lọc movieId của tìm kiếm suất chiếu và từng $lookup của danh sách booking, số key/document
+ * đã đọc, index được dùng và thời gian; cùng p50/p99 của một trang danh sách booking qua repository.
+ */
+public class ReferenceLookupExplainBenchmark {
+
+    private final int bookings = Integer.getInteger("explain.bookings", 50_000);
+    private final int showtimes = Integer.getInteger("explain.showtimes", 2_000);
+    private final int pageSize = Integer.getInteger("explain.pageSize", 50);
+    private final int iterations = Integer.getInteger("explain.iterations", 200);
+
+    private static final int MOVIES = 50;
+    private static final int CINEMAS = 20;
+    private static final int ROOMS_PER_CINEMA = 8;
+    private static final int BATCH = 5_000;
+
+    public static void main(String[] args) {
+        new ReferenceLookupExplainBenchmark().run();
+    }
+
+    private void run() {
+        String database = "cinema_explain_" + System.currentTimeMillis();
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(CinemaApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.data.mongodb.uri=" + System.getProperty("explain.mongoUri", "mongodb://localhost:27017/?replicaSet=rs0"),
+                        "spring.data.mongodb.database=" + database,
+                        "logging.level.com.cinema=WARN",
+                        "vnpay.tmn-code=explain", "vnpay.hash-secret=explain", "vnpay.pay-url=http://localhost",
+                        "vnpay.default-return-url=http://localhost",
+                        "frontend.payment.success-url=http://localhost", "frontend.payment.failure-url=http://localhost")
+                .run();
+        MongoTemplate mongoTemplate = context.getBean(MongoTemplate.class);
+        try {
+            MongoDatabase db = mongoTemplate.getDb();
+            String movieId = seed(db);
+            BookingRepository bookingRepository = context.getBean(BookingRepository.class);
+            System.out.printf("Reference explain: %d bookings, %d showtimes, page size %d%n", bookings, showtimes, pageSize);
+
+            System.out.println("--- Trước khi chuẩn hóa (tham chiếu dạng chuỗi, $or / $convert) ---");
+            explainFind(db, "movieId $or String|ObjectId", new Document("$or", List.of(
+                    new Document("movieId", movieId), new Document("movieId", new ObjectId(movieId)))));
+            explainLookups(db, legacyLookups());
+            printLatency("booking page", pageLatencies(bookingRepository));
+
+            long started = System.nanoTime();
+            Map<String, Object> result = context.getBean(ReferenceIdMigrationService.class).migrate(Integer.MAX_VALUE);
+            System.out.printf("Migration: %s in %.2f s%n", result, (System.nanoTime() - started) / 1e9);
+
+            System.out.println("--- Sau khi chuẩn hóa (ObjectId, so sánh bằng) ---");
+            explainFind(db, "movieId equality", new Document("movieId", new ObjectId(movieId)));
+            explainLookups(db, normalizedLookups());
+            printLatency("booking page", pageLatencies(bookingRepository));
+        } finally {
+            if (!Boolean.getBoolean("explain.keep")) {
+                mongoTemplate.getDb().drop();
+            }
+            context.close();
+        }
+    }
+
+    /**
+     * Ghi dữ liệu bằng driver (bỏ qua ReferenceIdSaveCallback) để tham chiếu ở dạng chuỗi như dữ liệu cũ.
+     * Trả về id của một phim để lọc.
+     */
+    private String seed(MongoDatabase db) {
+        List<String> movieIds = insertNamed(db, "movies", "title", MOVIES, i -> new Document());
+        List<String> cinemaIds = insertNamed(db, "cinemas", "name", CINEMAS, i -> new Document());
+        List<String> roomIds = insertNamed(db, "rooms", "name", CINEMAS * ROOMS_PER_CINEMA,
+                i -> new Document("cinemaId", cinemaIds.get(i / ROOMS_PER_CINEMA)));
+        List<String> showtimeIds = insertNamed(db, "showtimes", "screenType", showtimes, i -> {
+            int room = i % roomIds.size();
+            return new Document("movieId", movieIds.get(i % MOVIES))
+                    .append("cinemaId", cinemaIds.get(room / ROOMS_PER_CINEMA))
+                    .append("roomId", roomIds.get(room))
+                    .append("showDateTime", new Date(System.currentTimeMillis() + i * 60_000L));
+        });
+        db.getCollection("showtimes").createIndex(new Document("movieId", 1));
+        db.getCollection("bookings").createIndex(new Document("createdAt", -1).append("_id", -1));
+
+        long now = System.currentTimeMillis();
+        List<Document> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < bookings; i++) {
+            batch.add(new Document("_id", new ObjectId())
+                    .append("showtimeId", showtimeIds.get(i % showtimeIds.size()))
+                    .append("confirmationCode", "EXP" + i)
+                    .append("seats", List.of("A" + (i % 20 + 1)))
+                    .append("createdAt", new Date(now - i * 1000L)));
+            if (batch.size() == BATCH) {
+                db.getCollection("bookings").insertMany(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            db.getCollection("bookings").insertMany(batch);
+        }
+        return movieIds.get(0);
+    }
+
+    private interface Fields {
+        Document of(int index);
+    }
+
+    private static List<String> insertNamed(MongoDatabase db, String collection, String nameField, int count, Fields fields) {
+        List<String> ids = new ArrayList<>(count);
+        List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ObjectId id = new ObjectId();
+            ids.add(id.toHexString());
+            documents.add(fields.of(i).append("_id", id).append(nameField, collection + " " + i));
+        }
+        db.getCollection(collection).insertMany(documents);
+        return ids;
+    }
+
+    private static void explainFind(MongoDatabase db, String name, Document filter) {
+        Document explain = db.getCollection("showtimes").find(filter).explain(ExplainVerbosity.EXECUTION_STATS);
+        Document stats = explain.get("executionStats", Document.class);
+        System.out.printf("  showtimes %-30s keys %7d  docs %7d  returned %6d  %4d ms%n", name,
+                number(stats, "totalKeysExamined"), number(stats, "totalDocsExamined"),
+                number(stats, "nReturned"), number(stats, "executionTimeMillis"));
+    }
+
+    /**
+     * Explain trang đầu danh sách booking (sort + limit trước, rồi các $lookup) và in thống kê từng $lookup.
+     */
+    private void explainLookups(MongoDatabase db, List<Document> lookups) {
+        List<Document> pipeline = new ArrayList<>();
+        pipeline.add(new Document("$sort", new Document("createdAt", -1).append("_id", -1)));
+        pipeline.add(new Document("$limit", pageSize));
+        pipeline.addAll(lookups);
+        Document explain = db.runCommand(new Document("explain", new Document("aggregate", "bookings")
+                .append("pipeline", pipeline).append("cursor", new Document()))
+                .append("verbosity", "executionStats"));
+        List<Document> stages = explain.getList("stages", Document.class, List.of());
+        for (Document stage : stages) {
+            Document lookup = stage.get("$lookup", Document.class);
+            if (lookup == null) {
+                continue;
+            }
+            Object indexesUsed = stage.get("indexesUsed");
+            System.out.printf("  $lookup %-22s keys %7d  docs %7d  collscans %4d  indexes %-8s %4d ms%n",
+                    lookup.getString("from") + "->" + lookup.getString("as"),
+                    number(stage, "totalKeysExamined"), number(stage, "totalDocsExamined"),
+                    number(stage, "collectionScans"), indexesUsed, number(stage, "executionTimeMillisEstimate"));
+        }
+        if (stages.isEmpty()) {
+            System.out.println("  (server không trả về thống kê theo stage cho pipeline này)");
+        }
+    }
+
+    private List<Long> pageLatencies(BookingRepository bookingRepository) {
+        List<Long> samples = new ArrayList<>(iterations);
+        for (int i = 0; i < iterations; i++) {
+            long started = System.nanoTime();
+            bookingRepository.findBookingsWithDetailsBefore(null, null, pageSize);
+            samples.add(System.nanoTime() - started);
+        }
+        return samples;
+    }
+
+    private static List<Document> legacyLookups() {
+        return List.of(
+                convertLookup("showtimes", "showtimeId", "showtime"), unwind("showtime"),
+                convertLookup("movies", "showtime.movieId", "movie"), unwind("movie"),
+                convertLookup("cinemas", "showtime.cinemaId", "cinema"), unwind("cinema"),
+                convertLookup("rooms", "showtime.roomId", "room"), unwind("room"));
+    }
+
+    private static List<Document> normalizedLookups() {
+        return List.of(
+                plainLookup("showtimes", "showtimeId", "showtime"), unwind("showtime"),
+                plainLookup("movies", "showtime.movieId", "movie"), unwind("movie"),
+                plainLookup("cinemas", "showtime.cinemaId", "cinema"), unwind("cinema"),
+                plainLookup("rooms", "showtime.roomId", "room"), unwind("room"));
+    }
+
+    // Cùng dạng với BookingRepositoryCustomImpl.createPipelineLookup khi tham chiếu chưa được chuẩn hóa
+    private static Document convertLookup(String from, String localField, String as) {
+        return new Document("$lookup", new Document("from", from)
+                .append("let", new Document("lookupId", "$" + localField))
+                .append("pipeline", List.of(new Document("$match", new Document("$expr", new Document("$or", List.of(
+                        new Document("$eq", Arrays.asList("$_id", new Document("$convert", new Document("input", "$$lookupId")
+                                .append("to", "objectId").append("onError", null).append("onNull", null)))),
+                        new Document("$eq", List.of("$_id", "$$lookupId"))))))))
+                .append("as", as));
+    }
+
+    private static Document plainLookup(String from, String localField, String as) {
+        return new Document("$lookup", new Document("from", from).append("localField", localField)
+                .append("foreignField", "_id").append("as", as));
+    }
+
+    private static Document unwind(String field) {
+        return new Document("$unwind", new Document("path", "$" + field).append("preserveNullAndEmptyArrays", true));
+    }
+
+    private static long number(Document document, String key) {
+        Object value = document.get(key);
+        return value instanceof Number n ? n.longValue() : 0;
+    }
+
+    private static void printLatency(String name, List<Long> samples) {
+        long[] sorted = samples.stream().mapToLong(Long::longValue).sorted().toArray();
+        System.out.printf("  %-12s p50 %7.2f ms  p99 %7.2f ms  max %7.2f ms  (n=%d)%n", name,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), sorted[sorted.length - 1] / 1e6, sorted.length);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,172 @@
+package com.cinema.benchmark;
+
+import com.cinema.config.converters.SeatStateToStringConverter;
+import com.cinema.config.converters.StringToSeatStateConverter;
+import com.cinema.enums.SeatState;
+import com.cinema.model.Room;
+import com.cinema.model.Showtime;
+import com.cinema.service.CompactSeatMap;
+import com.cinema.service.SeatLayout;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh bản đồ ghế dạng cũ (map seatStatus đầy đủ) với dạng bitmap: kích thước BSON của document
+ * showtime và thời gian đọc document thành trạng thái ghế. Không chạy cùng mvn test; chạy bằng main().
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeatMapEncodingBenchmark {
+
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+
+    @Param({"120", "300"})
+    private int seats;
+
+    @Param({"0.3", "0.8"})
+    private double occupancy;
+
+    private SeatLayout layout;
+    private MappingMongoConverter converter;
+    private RawBsonDocument legacyBson;
+    private RawBsonDocument compactBson;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        MongoCustomConversions conversions = new MongoCustomConversions(
+                List.of(new SeatStateToStringConverter(), new StringToSeatStateConverter()));
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+
+        layout = SeatLayout.from(room(seats));
+        Map<String, Showtime.SeatStatus> seatStatus = randomSeatStatus(layout, occupancy);
+
+        Showtime legacy = showtime();
+        legacy.setSeatStatus(seatStatus);
+        Showtime compact = showtime();
+        compact.setSeatEncoding(CompactSeatMap.ENCODING);
+        compact.setSeatBits(CompactSeatMap.encode(layout, seatStatus));
+        compact.setSeatStatus(CompactSeatMap.sideEntries(seatStatus));
+
+        legacyBson = toBson(legacy);
+        compactBson = toBson(compact);
+        System.out.printf("%n[seats=%d, occupancy=%.1f] BSON legacy=%d bytes, bitmap=%d bytes%n",
+                seats, occupancy, legacyBson.getByteBuffer().remaining(), compactBson.getByteBuffer().remaining());
+    }
+
+    @Benchmark
+    public Map<String, Showtime.SeatStatus> readLegacy() {
+        return converter.read(Showtime.class, parse(legacyBson)).getSeatStatus();
+    }
+
+    @Benchmark
+    public Map<String, Showtime.SeatStatus> readCompact() {
+        Showtime showtime = converter.read(Showtime.class, parse(compactBson));
+        return CompactSeatMap.decode(layout, showtime.getSeatBits(), showtime.getSeatStatus());
+    }
+
+    @Benchmark
+    public int countAvailableCompact() {
+        // Đếm ghế trống trực tiếp trên bitmap, không dựng map trạng thái
+        Showtime showtime = converter.read(Showtime.class, parse(compactBson));
+        int available = 0;
+        for (int ordinal = 0; ordinal < layout.size(); ordinal++) {
+            if (CompactSeatMap.stateAt(showtime.getSeatBits(), ordinal) == SeatState.AVAILABLE) {
+                available++;
+            }
+        }
+        return available;
+    }
+
+    // Giải mã từ byte BSON mỗi lần để tính cả chi phí parse của driver
+    private static Document parse(RawBsonDocument bson) {
+        return bson.decode(DOCUMENT_CODEC);
+    }
+
+    private RawBsonDocument toBson(Showtime showtime) {
+        Document document = new Document();
+        converter.write(showtime, document);
+        return RawBsonDocument.parse(document.toJson());
+    }
+
+    private static Showtime showtime() {
+        Showtime showtime = new Showtime();
+        showtime.setId("benchmark-showtime");
+        showtime.setRoomId("benchmark-room");
+        return showtime;
+    }
+
+    private static Room room(int seatCount) {
+        List<Room.SeatRow> rows = new ArrayList<>();
+        int perRow = 20;
+        for (int r = 0; r * perRow < seatCount; r++) {
+            String rowId = String.valueOf((char) ('A' + r % 26)) + (r / 26 == 0 ? "" : r / 26);
+            List<Room.SeatInfo> rowSeats = new ArrayList<>();
+            for (int s = 1; s <= perRow && r * perRow + s <= seatCount; s++) {
+                rowSeats.add(new Room.SeatInfo(rowId + s, "standard"));
+            }
+            rows.add(new Room.SeatRow(rowId, rowSeats));
+        }
+        Room room = new Room();
+        room.setId("benchmark-room");
+        room.setSeatMap(new Room.SeatMap(rows, null));
+        return room;
+    }
+
+    private static Map<String, Showtime.SeatStatus> randomSeatStatus(SeatLayout layout, double occupancy) {
+        Random random = new Random(42);
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, Showtime.SeatStatus> seatStatus = new HashMap<>();
+        for (String seatId : layout.getSeatIds()) {
+            double roll = random.nextDouble();
+            if (roll < occupancy * 0.8) {
+                seatStatus.put(seatId, new Showtime.SeatStatus(SeatState.BOOKED, null, "booking-" + seatId));
+            } else if (roll < occupancy) {
+                seatStatus.put(seatId, new Showtime.SeatStatus(SeatState.HOLDING, now, null));
+            } else {
+                seatStatus.put(seatId, new Showtime.SeatStatus(SeatState.AVAILABLE, null, null));
+            }
+        }
+        return seatStatus;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SeatMapEncodingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,310 @@
+package com.cinema.benchmark;
+
+import com.cinema.CinemaApplication;
+import com.cinema.dto.request.CreateBookingRequest;
+import com.cinema.dto.response.BookingDetailsDto;
+import com.cinema.enums.PaymentMethodType;
+import com.cinema.enums.PaymentStatusType;
+import com.cinema.enums.SeatState;
+import com.cinema.enums.ShowtimeStatus;
+import com.cinema.model.Booking;
+import com.cinema.model.Cinema;
+import com.cinema.model.Movie;
+import com.cinema.model.Room;
+import com.cinema.model.Showtime;
+import com.cinema.service.BookingService;
+import com.cinema.service.CompactSeatMap;
+import com.cinema.service.SeatLayout;
+import com.cinema.service.SeatMapMigrationService;
+import com.cinema.util.MongoIds;
+import com.mongodb.client.MongoClient;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mô phỏng đợt mở bán: hàng nghìn người dùng ảo đồng thời giữ ghế -> tạo booking -> thanh toán
+ * qua BookingService/SeatService thật, trên một database tạm của MongoDB cục bộ (cần replica set
+ * một node vì có transaction và change stream). Không chạy cùng mvn test; chạy bằng main():
+ * <pre>
+ * java -Dstorm.mongoUri=mongodb://localhost:27017/?replicaSet=rs0 -Dstorm.users=5000 -Dstorm.concurrency=1000 \
+ *      -cp target/test-classes:target/classes:&lt;classpath&gt; com.cinema.benchmark.SeatStormSimulator
+ * </pre>
+ * Tham số (system property): storm.users, storm.concurrency, storm.rows (&lt;= 26), storm.seatsPerRow,
+ * storm.maxSeatsPerUser, storm.attempts, storm.encoding (legacy|bitmap), storm.commandQueue (true|false), storm.keep.
+ * <p>
+ * Báo cáo: thông lượng, p50/p99 độ trễ từng bước, tỉ lệ xung đột, số ghế bị đặt trùng / lệch trạng thái
+ * và số thao tác DB trên mỗi booking (theo opcounters của server, nên cần MongoDB riêng cho lần chạy).
+ */
+public class SeatStormSimulator {
+
+    private final int users = Integer.getInteger("storm.users", 2000);
+    private final int concurrency = Integer.getInteger("storm.concurrency", 500);
+    private final int rows = Math.min(26, Integer.getInteger("storm.rows", 20));
+    private final int seatsPerRow = Integer.getInteger("storm.seatsPerRow", 25);
+    private final int maxSeatsPerUser = Integer.getInteger("storm.maxSeatsPerUser", 4);
+    private final int attempts = Integer.getInteger("storm.attempts", 3);
+
+    private final ConcurrentLinkedQueue<Long> bookLatencies = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Long> payLatencies = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Long> journeyLatencies = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger bookingAttempts = new AtomicInteger();
+    private final AtomicInteger conflicts = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+    private final AtomicInteger completedBookings = new AtomicInteger();
+    private final AtomicInteger gaveUp = new AtomicInteger();
+    private final AtomicLong seatsSold = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        new SeatStormSimulator().run();
+    }
+
+    private void run() throws Exception {
+        String database = "cinema_storm_" + System.currentTimeMillis();
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(CinemaApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.data.mongodb.uri=" + System.getProperty("storm.mongoUri", "mongodb://localhost:27017/?replicaSet=rs0"),
+                        "spring.data.mongodb.database=" + database,
+                        "cinema.seat-command-queue.enabled=" + Boolean.getBoolean("storm.commandQueue"),
+                        "logging.level.com.cinema=WARN",
+                        "vnpay.tmn-code=storm", "vnpay.hash-secret=storm", "vnpay.pay-url=http://localhost",
+                        "vnpay.default-return-url=http://localhost",
+                        "frontend.payment.success-url=http://localhost", "frontend.payment.failure-url=http://localhost")
+                .run();
+        MongoTemplate mongoTemplate = context.getBean(MongoTemplate.class);
+        try {
+            Room room = seed(mongoTemplate);
+            Showtime showtime = seedShowtime(mongoTemplate, room);
+            if ("bitmap".equals(System.getProperty("storm.encoding"))) {
+                context.getBean(SeatMapMigrationService.class).compactShowtime(showtime.getId());
+            }
+            BookingService bookingService = context.getBean(BookingService.class);
+            MongoClient mongoClient = context.getBean(MongoClient.class);
+
+            System.out.printf("Seat storm: %d users, concurrency %d, %d seats, encoding=%s, commandQueue=%s%n",
+                    users, concurrency, rows * seatsPerRow, System.getProperty("storm.encoding", "legacy"),
+                    Boolean.getBoolean("storm.commandQueue"));
+            Map<String, Long> opsBefore = opCounters(mongoClient);
+            long startedNanos = System.nanoTime();
+            Semaphore permits = new Semaphore(concurrency);
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int user = 0; user < users; user++) {
+                    permits.acquire();
+                    int userIndex = user;
+                    executor.submit(() -> {
+                        try {
+                            simulateUser(bookingService, showtime.getId(), userIndex);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                }
+            }
+            long elapsedNanos = System.nanoTime() - startedNanos;
+            Map<String, Long> opsAfter = opCounters(mongoClient);
+
+            report(elapsedNanos, opsBefore, opsAfter);
+            verify(mongoTemplate, room, showtime.getId());
+        } finally {
+            if (!Boolean.getBoolean("storm.keep")) {
+                mongoTemplate.getDb().drop();
+            }
+            context.close();
+        }
+    }
+
+    private void simulateUser(BookingService bookingService, String showtimeId, int userIndex) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int quantity = 1 + random.nextInt(maxSeatsPerUser);
+        long journeyStarted = System.nanoTime();
+        for (int attempt = 0; attempt < attempts; attempt++) {
+            List<String> seats = pickSeats(random, quantity);
+            CreateBookingRequest request = new CreateBookingRequest(showtimeId,
+                    new CreateBookingRequest.CustomerInfoRequest("Storm User " + userIndex, String.format("09%08d", userIndex), null),
+                    seats, List.of(new CreateBookingRequest.TicketTypeRequest("standard", quantity, 90_000L)), null);
+            bookingAttempts.incrementAndGet();
+            long started = System.nanoTime();
+            BookingDetailsDto booking;
+            try {
+                booking = bookingService.createBooking(request);
+                bookLatencies.add(System.nanoTime() - started);
+            } catch (IllegalStateException e) {
+                conflicts.incrementAndGet();
+                continue;
+            } catch (RuntimeException e) {
+                errors.incrementAndGet();
+                return;
+            }
+            started = System.nanoTime();
+            try {
+                bookingService.finalizeSuccessfulPayment(booking.getId(), PaymentMethodType.CASH, "STORM-" + userIndex);
+                payLatencies.add(System.nanoTime() - started);
+                journeyLatencies.add(System.nanoTime() - journeyStarted);
+                completedBookings.incrementAndGet();
+                seatsSold.addAndGet(seats.size());
+            } catch (RuntimeException e) {
+                errors.incrementAndGet();
+            }
+            return;
+        }
+        gaveUp.incrementAndGet();
+    }
+
+    /**
+     * Chọn quantity ghế liền nhau, ưu tiên các hàng giữa phòng để tạo điểm nóng như khi mở bán thật.
+     */
+    private List<String> pickSeats(ThreadLocalRandom random, int quantity) {
+        double centered = (random.nextGaussian() * 0.2 + 0.5) * rows;
+        int row = (int) Math.max(0, Math.min(rows - 1, centered));
+        int start = random.nextInt(Math.max(1, seatsPerRow - quantity + 1));
+        List<String> seats = new ArrayList<>(quantity);
+        for (int s = start; s < Math.min(seatsPerRow, start + quantity); s++) {
+            seats.add(seatId(row, s));
+        }
+        return seats;
+    }
+
+    private static String seatId(int row, int seat) {
+        return (char) ('A' + row) + String.valueOf(seat + 1);
+    }
+
+    private Room seed(MongoTemplate mongoTemplate) {
+        Cinema cinema = new Cinema();
+        cinema.setId(new ObjectId().toString());
+        cinema.setName("Storm Cinema");
+        mongoTemplate.insert(cinema);
+
+        List<Room.SeatRow> seatRows = new ArrayList<>();
+        for (int r = 0; r < rows; r++) {
+            List<Room.SeatInfo> seats = new ArrayList<>();
+            for (int s = 0; s < seatsPerRow; s++) {
+                seats.add(new Room.SeatInfo(seatId(r, s), "standard"));
+            }
+            seatRows.add(new Room.SeatRow(String.valueOf((char) ('A' + r)), seats));
+        }
+        Room room = new Room();
+        room.setId(new ObjectId().toString());
+        room.setCinemaId(cinema.getId());
+        room.setName("Storm Room");
+        room.setCapacity(rows * seatsPerRow);
+        room.setSeatMap(new Room.SeatMap(seatRows, null));
+        return mongoTemplate.insert(room);
+    }
+
+    private Showtime seedShowtime(MongoTemplate mongoTemplate, Room room) {
+        Movie movie = new Movie();
+        movie.setId(new ObjectId().toString());
+        movie.setTitle("Storm Movie");
+        mongoTemplate.insert(movie);
+
+        int totalSeats = rows * seatsPerRow;
+        Showtime showtime = new Showtime();
+        showtime.setId(new ObjectId().toString());
+        showtime.setMovieId(movie.getId());
+        showtime.setCinemaId(room.getCinemaId());
+        showtime.setRoomId(room.getId());
+        showtime.setShowDateTime(LocalDateTime.now().plusDays(1));
+        showtime.setStatus(ShowtimeStatus.ACTIVE);
+        showtime.setTotalSeats(totalSeats);
+        showtime.setAvailableSeats(totalSeats);
+        showtime.setHoldingSeats(0);
+        showtime.setBookedSeats(0);
+        showtime.setSeatVersion(0L);
+        showtime.setSeatStatus(new HashMap<>());
+        return mongoTemplate.insert(showtime);
+    }
+
+    private static Map<String, Long> opCounters(MongoClient mongoClient) {
+        Document counters = mongoClient.getDatabase("admin").runCommand(new Document("serverStatus", 1)).get("opcounters", Document.class);
+        Map<String, Long> result = new HashMap<>();
+        counters.forEach((key, value) -> result.put(key, ((Number) value).longValue()));
+        return result;
+    }
+
+    private void report(long elapsedNanos, Map<String, Long> before, Map<String, Long> after) {
+        double seconds = elapsedNanos / 1e9;
+        int completed = completedBookings.get();
+        System.out.printf("Elapsed: %.2f s, completed bookings: %d (%.1f/s), seats sold: %d, gave up: %d, errors: %d%n",
+                seconds, completed, completed / seconds, seatsSold.get(), gaveUp.get(), errors.get());
+        System.out.printf("Conflict rate: %.2f%% (%d of %d booking attempts)%n",
+                bookingAttempts.get() > 0 ? 100.0 * conflicts.get() / bookingAttempts.get() : 0, conflicts.get(), bookingAttempts.get());
+        printLatency("hold+book", bookLatencies);
+        printLatency("pay+confirm", payLatencies);
+        printLatency("journey", journeyLatencies);
+
+        long crud = 0;
+        for (String op : List.of("insert", "query", "update", "delete", "getmore")) {
+            crud += after.getOrDefault(op, 0L) - before.getOrDefault(op, 0L);
+        }
+        long commands = after.getOrDefault("command", 0L) - before.getOrDefault("command", 0L);
+        System.out.printf("DB ops per completed booking: %.1f CRUD, %.1f commands (server-wide, includes background jobs)%n",
+                completed > 0 ? (double) crud / completed : 0, completed > 0 ? (double) commands / completed : 0);
+    }
+
+    private static void printLatency(String name, ConcurrentLinkedQueue<Long> samples) {
+        long[] sorted = samples.stream().mapToLong(Long::longValue).toArray();
+        if (sorted.length == 0) {
+            System.out.printf("  %-12s no samples%n", name);
+            return;
+        }
+        Arrays.sort(sorted);
+        System.out.printf("  %-12s p50 %7.2f ms  p99 %7.2f ms  max %7.2f ms  (n=%d)%n", name,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), sorted[sorted.length - 1] / 1e6, sorted.length);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    /**
+     * Kiểm tra bất biến sau khi chạy: mỗi ghế thuộc tối đa một booking đã thanh toán, bản đồ ghế khớp
+     * với các booking và bộ đếm khớp với bản đồ ghế.
+     */
+    private void verify(MongoTemplate mongoTemplate, Room room, String showtimeId) {
+        Map<String, List<String>> bookingsBySeat = new HashMap<>();
+        List<Booking> paid = mongoTemplate.find(new Query(Criteria.where("showtimeId").in(MongoIds.referenceValues(showtimeId, false))
+                .and("paymentStatus").is(PaymentStatusType.COMPLETED)), Booking.class);
+        for (Booking booking : paid) {
+            booking.getSeats().forEach(seatId -> bookingsBySeat.computeIfAbsent(seatId, k -> new ArrayList<>()).add(booking.getId()));
+        }
+        long doubleBooked = bookingsBySeat.values().stream().filter(ids -> ids.size() > 1).count();
+
+        Showtime showtime = mongoTemplate.findById(showtimeId, Showtime.class);
+        SeatLayout layout = SeatLayout.from(room);
+        SeatState[] states = CompactSeatMap.statesOf(layout, showtime);
+        int bookedInMap = 0;
+        int mismatched = 0;
+        for (int ordinal = 0; ordinal < layout.size(); ordinal++) {
+            boolean booked = states[ordinal] == SeatState.BOOKED;
+            bookedInMap += booked ? 1 : 0;
+            if (booked != bookingsBySeat.containsKey(layout.getSeatIds().get(ordinal))) {
+                mismatched++;
+            }
+        }
+        boolean countersOk = showtime.getBookedSeats() != null && showtime.getBookedSeats() == bookedInMap;
+        System.out.printf("Double-booked seats: %d, seat map/booking mismatches: %d, bookedSeats counter %s (%s vs %d in map)%n",
+                doubleBooked, mismatched, countersOk ? "OK" : "DRIFTED", showtime.getBookedSeats(), bookedInMap);
+    }
+}
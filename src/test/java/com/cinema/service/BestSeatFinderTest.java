@@ -0,0 +1,136 @@
+package com.cinema.service;
+
+import com.cinema.enums.SeatState;
+import com.cinema.model.Room;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BestSeatFinderTest {
+
+    @Test
+    void prefersCenterOfRowAtTwoThirdsDepth() {
+        SeatLayout layout = TestLayouts.grid(10, 12);
+
+        List<BestSeatFinder.Block> blocks = BestSeatFinder.findBest(layout, available(layout), 2, null, 5);
+
+        assertEquals(5, blocks.size());
+        assertEquals(List.of("G6", "G7"), blocks.get(0).seatIds(layout));
+        for (int i = 1; i < blocks.size(); i++) {
+            assertTrue(blocks.get(i - 1).score() >= blocks.get(i).score());
+        }
+    }
+
+    @Test
+    void blockNeverSpansTwoRows() {
+        SeatLayout layout = TestLayouts.rows(3, 3);
+        SeatState[] states = available(layout);
+
+        assertTrue(BestSeatFinder.findBest(layout, states, 4, null, 10).isEmpty());
+
+        List<BestSeatFinder.Block> blocks = BestSeatFinder.findBest(layout, states, 3, null, 10);
+        assertEquals(2, blocks.size());
+        for (BestSeatFinder.Block block : blocks) {
+            List<String> seatIds = block.seatIds(layout);
+            assertTrue(seatIds.stream().allMatch(id -> id.charAt(0) == seatIds.get(0).charAt(0)), seatIds.toString());
+        }
+    }
+
+    @Test
+    void takenSeatSplitsRowLikeAnAisle() {
+        SeatLayout layout = TestLayouts.rows(5);
+        SeatState[] states = available(layout);
+        states[layout.ordinalOf("A3")] = SeatState.BOOKED;
+
+        assertTrue(BestSeatFinder.findBest(layout, states, 3, null, 10).isEmpty());
+
+        List<List<String>> blocks = BestSeatFinder.findBest(layout, states, 2, null, 10).stream()
+                .map(block -> block.seatIds(layout))
+                .toList();
+        assertEquals(2, blocks.size());
+        assertTrue(blocks.containsAll(List.of(List.of("A1", "A2"), List.of("A4", "A5"))));
+    }
+
+    @Test
+    void blockAtRowEdgeIsFound() {
+        SeatLayout layout = TestLayouts.rows(4);
+        SeatState[] states = available(layout);
+        states[layout.ordinalOf("A1")] = SeatState.HOLDING;
+
+        List<BestSeatFinder.Block> blocks = BestSeatFinder.findBest(layout, states, 3, null, 10);
+
+        assertEquals(1, blocks.size());
+        assertEquals(List.of("A2", "A3", "A4"), blocks.get(0).seatIds(layout));
+    }
+
+    @Test
+    void blockLeavingSingleSeatRanksBelowOneThatDoesNot() {
+        SeatLayout layout = TestLayouts.rows(5);
+        SeatState[] states = available(layout);
+        states[layout.ordinalOf("A1")] = SeatState.BOOKED;
+
+        List<List<String>> blocks = BestSeatFinder.findBest(layout, states, 2, null, 10).stream()
+                .map(block -> block.seatIds(layout))
+                .toList();
+
+        // A3-A4 gần giữa hàng như A2-A3 nhưng bỏ lẻ A2 và A5
+        assertEquals(List.of(List.of("A2", "A3"), List.of("A4", "A5"), List.of("A3", "A4")), blocks);
+    }
+
+    @Test
+    void noBlockWhenNoContiguousRunIsLongEnough() {
+        SeatLayout layout = TestLayouts.grid(3, 4);
+        SeatState[] states = available(layout);
+        for (String seatId : List.of("A2", "B3", "C2")) {
+            states[layout.ordinalOf(seatId)] = SeatState.BOOKED;
+        }
+
+        assertTrue(BestSeatFinder.findBest(layout, states, 3, null, 10).isEmpty());
+
+        SeatState[] full = new SeatState[states.length];
+        Arrays.fill(full, SeatState.BOOKED);
+        assertTrue(BestSeatFinder.findBest(layout, full, 1, null, 10).isEmpty());
+    }
+
+    @Test
+    void nonPositiveCountOrResultsReturnsNothing() {
+        SeatLayout layout = TestLayouts.grid(2, 4);
+
+        assertTrue(BestSeatFinder.findBest(layout, available(layout), 0, null, 10).isEmpty());
+        assertTrue(BestSeatFinder.findBest(layout, available(layout), 2, null, 0).isEmpty());
+    }
+
+    @Test
+    void seatTypeFilterKeepsWholeBlockInType() {
+        SeatLayout layout = vipMiddleRow();
+
+        List<BestSeatFinder.Block> blocks = BestSeatFinder.findBest(layout, available(layout), 2, "VIP", 10);
+
+        assertEquals(2, blocks.size());
+        blocks.forEach(block -> block.seatIds(layout).forEach(id -> assertTrue(id.equals("A2") || id.equals("A3") || id.equals("A4"), id)));
+    }
+
+    private static SeatState[] available(SeatLayout layout) {
+        SeatState[] states = new SeatState[layout.getSeatIds().size()];
+        Arrays.fill(states, SeatState.AVAILABLE);
+        return states;
+    }
+
+    // Hàng A: A1 thường, A2-A4 VIP, A5 thường
+    private static SeatLayout vipMiddleRow() {
+        List<Room.SeatInfo> seats = List.of(
+                new Room.SeatInfo("A1", "standard"),
+                new Room.SeatInfo("A2", "vip"),
+                new Room.SeatInfo("A3", "vip"),
+                new Room.SeatInfo("A4", "vip"),
+                new Room.SeatInfo("A5", "standard"));
+        Room room = new Room();
+        room.setId("room-vip");
+        room.setSeatMap(new Room.SeatMap(List.of(new Room.SeatRow("A", seats)), null));
+        return SeatLayout.from(room);
+    }
+}
@@ -0,0 +1,160 @@
+package com.cinema.service;
+
+import com.cinema.enums.SeatState;
+import com.cinema.model.Showtime;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactSeatMapTest {
+
+    // 3 hàng x 20 ghế = 60 ghế, trải trên hai phần tử int64
+    private final SeatLayout layout = TestLayouts.grid(3, 20);
+
+    @Test
+    void codesRoundTripForEveryState() {
+        for (SeatState state : SeatState.values()) {
+            assertEquals(state, CompactSeatMap.stateOf(CompactSeatMap.code(state)));
+        }
+        assertEquals(0, CompactSeatMap.code(null));
+    }
+
+    @Test
+    void wordCountAndPositions() {
+        assertEquals(0, CompactSeatMap.wordCount(0));
+        assertEquals(1, CompactSeatMap.wordCount(32));
+        assertEquals(2, CompactSeatMap.wordCount(33));
+        assertEquals(1, CompactSeatMap.wordIndex(32));
+        assertEquals(62, CompactSeatMap.shift(31));
+        assertEquals(0, CompactSeatMap.shift(32));
+    }
+
+    @Test
+    void legacyToBitmapAndBackPreservesStatesAndSideFields() {
+        LocalDateTime heldAt = LocalDateTime.of(2026, 1, 1, 19, 30);
+        Map<String, Showtime.SeatStatus> legacy = new HashMap<>();
+        legacy.put("A1", new Showtime.SeatStatus(SeatState.HOLDING, heldAt, null));
+        legacy.put("B2", new Showtime.SeatStatus(SeatState.BOOKED, null, "booking-1"));
+        legacy.put("C20", new Showtime.SeatStatus(SeatState.UNAVAILABLE, null, null));
+        legacy.put("A2", new Showtime.SeatStatus(SeatState.AVAILABLE, null, null));
+        // Ghế cuối của phần tử đầu và ghế đầu của phần tử thứ hai
+        legacy.put(layout.getSeatIds().get(31), new Showtime.SeatStatus(SeatState.HOLDING, heldAt, null));
+        legacy.put(layout.getSeatIds().get(32), new Showtime.SeatStatus(SeatState.BOOKED, null, "booking-2"));
+
+        List<Long> words = CompactSeatMap.encode(layout, legacy);
+        assertEquals(2, words.size());
+
+        Map<String, Showtime.SeatStatus> decoded = CompactSeatMap.decode(layout, words, CompactSeatMap.sideEntries(legacy));
+        assertEquals(layout.size(), decoded.size());
+        for (String seatId : layout.getSeatIds()) {
+            Showtime.SeatStatus original = legacy.get(seatId);
+            SeatState expected = original != null ? original.getStatus() : SeatState.AVAILABLE;
+            assertEquals(expected, decoded.get(seatId).getStatus(), seatId);
+        }
+        assertEquals(heldAt, decoded.get("A1").getHoldStartedAt());
+        assertEquals("booking-1", decoded.get("B2").getBookingId());
+        assertEquals("booking-2", decoded.get(layout.getSeatIds().get(32)).getBookingId());
+        assertNull(decoded.get("C20").getBookingId());
+    }
+
+    @Test
+    void sideEntriesKeepOnlyHoldingAndBookedSeats() {
+        Map<String, Showtime.SeatStatus> legacy = new HashMap<>();
+        legacy.put("A1", new Showtime.SeatStatus(SeatState.HOLDING, LocalDateTime.now(), null));
+        legacy.put("A2", new Showtime.SeatStatus(SeatState.BOOKED, null, "booking-1"));
+        legacy.put("A3", new Showtime.SeatStatus(SeatState.AVAILABLE, null, null));
+        legacy.put("A4", new Showtime.SeatStatus(SeatState.UNAVAILABLE, null, null));
+
+        assertEquals(List.of("A1", "A2"), CompactSeatMap.sideEntries(legacy).keySet().stream().sorted().toList());
+    }
+
+    @Test
+    void setStateOverwritesOnlyTheTargetSeat() {
+        List<Long> words = new ArrayList<>(List.of(0L, 0L));
+        for (int ordinal = 0; ordinal < layout.size(); ordinal++) {
+            CompactSeatMap.setState(words, ordinal, SeatState.UNAVAILABLE);
+        }
+        CompactSeatMap.setState(words, 33, SeatState.HOLDING);
+
+        for (int ordinal = 0; ordinal < layout.size(); ordinal++) {
+            assertEquals(ordinal == 33 ? SeatState.HOLDING : SeatState.UNAVAILABLE, CompactSeatMap.stateAt(words, ordinal));
+        }
+    }
+
+    @Test
+    void missingWordsReadAsAvailable() {
+        assertEquals(SeatState.AVAILABLE, CompactSeatMap.stateAt(null, 5));
+        assertEquals(SeatState.AVAILABLE, CompactSeatMap.stateAt(List.of(0L), 40));
+    }
+
+    @Test
+    void transitionMaskXorMovesSeatBetweenStates() {
+        SeatState[][] transitions = {
+                {SeatState.AVAILABLE, SeatState.HOLDING},
+                {SeatState.HOLDING, SeatState.AVAILABLE},
+                {SeatState.HOLDING, SeatState.BOOKED},
+                {SeatState.BOOKED, SeatState.AVAILABLE},
+        };
+        for (int ordinal : new int[]{0, 17, 31, 32, 59}) {
+            for (SeatState[] transition : transitions) {
+                List<Long> words = new ArrayList<>(List.of(0L, 0L));
+                // Ghế bên cạnh có trạng thái khác để bắt lỗi tràn mặt nạ
+                int neighbour = ordinal == 0 ? 1 : ordinal - 1;
+                CompactSeatMap.setState(words, neighbour, SeatState.UNAVAILABLE);
+                CompactSeatMap.setState(words, ordinal, transition[0]);
+
+                int word = CompactSeatMap.wordIndex(ordinal);
+                words.set(word, words.get(word) ^ CompactSeatMap.transitionMask(ordinal, transition[0], transition[1]));
+
+                assertEquals(transition[1], CompactSeatMap.stateAt(words, ordinal));
+                assertEquals(SeatState.UNAVAILABLE, CompactSeatMap.stateAt(words, neighbour));
+            }
+        }
+    }
+
+    @Test
+    void bitPositionsMatchExactlyTheEncodedState() {
+        for (int ordinal : new int[]{0, 31, 32}) {
+            for (SeatState expected : SeatState.values()) {
+                for (SeatState actual : SeatState.values()) {
+                    List<Long> words = new ArrayList<>(List.of(0L, 0L));
+                    CompactSeatMap.setState(words, ordinal, actual);
+                    long word = words.get(CompactSeatMap.wordIndex(ordinal));
+                    boolean matches = CompactSeatMap.setBitPositions(ordinal, expected).stream().allMatch(bit -> ((word >>> bit) & 1) == 1)
+                            && CompactSeatMap.clearBitPositions(ordinal, expected).stream().allMatch(bit -> ((word >>> bit) & 1) == 0);
+                    assertEquals(expected == actual, matches, expected + " vs " + actual + " @" + ordinal);
+                }
+            }
+        }
+    }
+
+    @Test
+    void statesOfReadsBothEncodings() {
+        Map<String, Showtime.SeatStatus> legacy = new HashMap<>();
+        legacy.put("A3", new Showtime.SeatStatus(SeatState.BOOKED, null, "booking-1"));
+        legacy.put("Z9", new Showtime.SeatStatus(SeatState.BOOKED, null, "ngoài layout"));
+
+        Showtime legacyShowtime = new Showtime();
+        legacyShowtime.setSeatStatus(legacy);
+        Showtime compactShowtime = new Showtime();
+        compactShowtime.setSeatEncoding(CompactSeatMap.ENCODING);
+        compactShowtime.setSeatBits(CompactSeatMap.encode(layout, Map.of("A3", legacy.get("A3"))));
+
+        SeatState[] fromLegacy = CompactSeatMap.statesOf(layout, legacyShowtime);
+        SeatState[] fromCompact = CompactSeatMap.statesOf(layout, compactShowtime);
+        assertEquals(layout.size(), fromLegacy.length);
+        for (int ordinal = 0; ordinal < layout.size(); ordinal++) {
+            assertEquals(fromLegacy[ordinal], fromCompact[ordinal]);
+        }
+        assertEquals(SeatState.BOOKED, fromCompact[layout.ordinalOf("A3")]);
+        assertTrue(CompactSeatMap.isCompact(compactShowtime));
+    }
+}
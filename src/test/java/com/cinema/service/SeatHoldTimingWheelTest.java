@@ -0,0 +1,165 @@
+package com.cinema.service;
+
+import com.cinema.config.AppProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeatHoldTimingWheelTest {
+
+    private static final long TICK_MS = 1000;
+    private static final int TICKS_PER_WHEEL = 512;
+
+    private final FakeClock clock = new FakeClock();
+    private final List<String> expired = new ArrayList<>();
+    private SeatHoldTimingWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new SeatHoldTimingWheel(properties(true), clock, clock::nanos);
+        assertTrue(wheel.start(Runnable::run));
+        wheel.onExpiry(expired::add);
+    }
+
+    @Test
+    void firesWithinOneTickAfterDeadlineAndNotBefore() {
+        wheel.schedule("s1:A1", clock.now().plusSeconds(5));
+
+        advanceSeconds(5);
+        assertTrue(expired.isEmpty());
+
+        advanceSeconds(1);
+        assertEquals(List.of("s1:A1"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void pastDeadlineFiresOnNextTick() {
+        wheel.schedule("s1:A1", clock.now().minusSeconds(30));
+
+        advanceSeconds(1);
+        assertEquals(List.of("s1:A1"), expired);
+    }
+
+    @Test
+    void cancelledHoldNeverFires() {
+        wheel.schedule("s1:A1", clock.now().plusSeconds(5));
+        wheel.schedule("s1:A2", clock.now().plusSeconds(5));
+        wheel.cancel("s1:A1");
+
+        advanceSeconds(10);
+        assertEquals(List.of("s1:A2"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cancelAfterTransferToBucketRemovesIt() {
+        wheel.schedule("s1:A1", clock.now().plusSeconds(5));
+        advanceSeconds(2);
+        wheel.cancel("s1:A1");
+
+        advanceSeconds(10);
+        assertTrue(expired.isEmpty());
+    }
+
+    @Test
+    void rescheduleReplacesPreviousDeadline() {
+        wheel.schedule("s1:A1", clock.now().plusSeconds(5));
+        wheel.schedule("s1:A1", clock.now().plusSeconds(20));
+
+        advanceSeconds(10);
+        assertTrue(expired.isEmpty());
+
+        advanceSeconds(11);
+        assertEquals(List.of("s1:A1"), expired);
+    }
+
+    @Test
+    void deadlineBeyondOneRotationWaitsForRemainingRounds() {
+        long seconds = 2 * TICKS_PER_WHEEL + 276;
+        wheel.schedule("s1:A1", clock.now().plusSeconds(seconds));
+        // Cùng ô nhưng ở vòng hiện tại: phải hết hạn trước
+        wheel.schedule("s1:A2", clock.now().plusSeconds(276));
+
+        advanceSeconds(277);
+        assertEquals(List.of("s1:A2"), expired);
+
+        advanceSeconds(seconds - 277);
+        assertEquals(List.of("s1:A2"), expired);
+
+        advanceSeconds(1);
+        assertEquals(List.of("s1:A2", "s1:A1"), expired);
+    }
+
+    @Test
+    void disabledWheelIgnoresSchedules() {
+        SeatHoldTimingWheel disabled = new SeatHoldTimingWheel(properties(false), clock, clock::nanos);
+        assertFalse(disabled.start(Runnable::run));
+        assertFalse(disabled.isEnabled());
+
+        disabled.schedule("s1:A1", clock.now().plusSeconds(1));
+        assertEquals(0, disabled.size());
+    }
+
+    private void advanceSeconds(long seconds) {
+        clock.advance(Duration.ofSeconds(seconds));
+        wheel.advance();
+    }
+
+    private static AppProperties properties(boolean enabled) {
+        AppProperties properties = new AppProperties();
+        AppProperties.SeatHold.TimingWheel config = properties.getSeatHold().getTimingWheel();
+        config.setEnabled(enabled);
+        config.setTickMs(TICK_MS);
+        config.setTicksPerWheel(TICKS_PER_WHEEL);
+        return properties;
+    }
+
+    /**
+     * Đồng hồ giả dùng chung cho LocalDateTime.now(clock) và nanoTime của vòng quay.
+     */
+    private static final class FakeClock extends Clock {
+        private Instant instant = Instant.parse("2026-01-01T00:00:00Z");
+        private long nanos = 1_000_000_000L;
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+            nanos += duration.toNanos();
+        }
+
+        long nanos() {
+            return nanos;
+        }
+
+        LocalDateTime now() {
+            return LocalDateTime.now(this);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.cinema.service;
+
+import com.cinema.enums.SeatState;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeatMutationTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 1, 1, 19, 0);
+
+    // 3 hàng x 20 ghế: A1..A20 có ordinal 0..19, B13 là ordinal 32 (phần tử thứ hai)
+    private final SeatLayout layout = TestLayouts.grid(3, 20);
+
+    @Test
+    void holdGuardsAvailableAndXorsToHolding() {
+        SeatMutation mutation = SeatMutation.forLayout(layout).hold("A2", NOW).hold("B13", NOW);
+        Document update = mutation.update().getUpdateObject();
+        Document query = mutation.query("s1").getQueryObject();
+
+        // AVAILABLE = 00: cả hai bit phải bằng 0
+        assertEquals(List.of(2, 3), bitsCondition(query, 0, "$bitsAllClear"));
+        assertNull(bitsCondition(query, 0, "$bitsAllSet"));
+        assertEquals(List.of(0, 1), bitsCondition(query, 1, "$bitsAllClear"));
+
+        List<Long> words = new ArrayList<>(List.of(0L, 0L));
+        applyXor(update, words);
+        assertEquals(SeatState.HOLDING, CompactSeatMap.stateAt(words, layout.ordinalOf("A2")));
+        assertEquals(SeatState.HOLDING, CompactSeatMap.stateAt(words, layout.ordinalOf("B13")));
+        assertEquals(SeatState.AVAILABLE, CompactSeatMap.stateAt(words, layout.ordinalOf("A1")));
+        assertEquals(NOW, ((Document) update.get("$set")).get("seatStatus.A2.holdStartedAt"));
+    }
+
+    @Test
+    void releaseGuardsHoldingAndClearsSideEntry() {
+        List<Long> words = new ArrayList<>(List.of(0L, 0L));
+        CompactSeatMap.setState(words, layout.ordinalOf("A5"), SeatState.HOLDING);
+        CompactSeatMap.setState(words, layout.ordinalOf("A6"), SeatState.BOOKED);
+
+        SeatMutation mutation = SeatMutation.forLayout(layout).release("A5");
+        Document query = mutation.query("s1").getQueryObject();
+        Document update = mutation.update().getUpdateObject();
+
+        // HOLDING = 01 tại ordinal 4 (bit 8, 9)
+        assertEquals(List.of(8), bitsCondition(query, 0, "$bitsAllSet"));
+        assertEquals(List.of(9), bitsCondition(query, 0, "$bitsAllClear"));
+        assertTrue(((Document) update.get("$unset")).containsKey("seatStatus.A5"));
+
+        applyXor(update, words);
+        assertEquals(SeatState.AVAILABLE, CompactSeatMap.stateAt(words, layout.ordinalOf("A5")));
+        assertEquals(SeatState.BOOKED, CompactSeatMap.stateAt(words, layout.ordinalOf("A6")));
+    }
+
+    @Test
+    void bookGuardsHoldingAndXorsToBooked() {
+        List<Long> words = new ArrayList<>(List.of(0L, 0L));
+        CompactSeatMap.setState(words, layout.ordinalOf("A1"), SeatState.HOLDING);
+        CompactSeatMap.setState(words, layout.ordinalOf("A2"), SeatState.HOLDING);
+
+        SeatMutation mutation = SeatMutation.forLayout(layout).book("A1", "booking-1").book("A2", "booking-1");
+        Document query = mutation.query("s1").getQueryObject();
+        Document update = mutation.update().getUpdateObject();
+
+        assertEquals(List.of(0, 2), bitsCondition(query, 0, "$bitsAllSet"));
+        assertEquals(List.of(1, 3), bitsCondition(query, 0, "$bitsAllClear"));
+        // Hai ghế cùng phần tử được gộp thành một mặt nạ xor
+        assertEquals(1, ((Document) update.get("$bit")).size());
+
+        applyXor(update, words);
+        assertEquals(SeatState.BOOKED, CompactSeatMap.stateAt(words, 0));
+        assertEquals(SeatState.BOOKED, CompactSeatMap.stateAt(words, 1));
+        assertEquals("booking-1", ((Document) update.get("$set")).get("seatStatus.A1.bookingId"));
+    }
+
+    @Test
+    void extendOnlyGuardsHoldingWithoutChangingBits() {
+        SeatMutation mutation = SeatMutation.forLayout(layout).extend("A1", NOW).holdStartedAfter("A1", NOW.minusMinutes(10));
+        Document update = mutation.update().getUpdateObject();
+
+        assertNull(update.get("$bit"));
+        assertEquals(List.of(0), bitsCondition(mutation.query("s1").getQueryObject(), 0, "$bitsAllSet"));
+        assertNotNull(findCondition(mutation.query("s1").getQueryObject(), "seatStatus.A1.holdStartedAt"));
+    }
+
+    @Test
+    void compactQueryRequiresBitmapEncoding() {
+        Document query = SeatMutation.forLayout(layout).hold("A1", NOW).query("s1").getQueryObject();
+        assertEquals("s1", query.get("_id"));
+        assertEquals(CompactSeatMap.ENCODING, findCondition(query, "seatEncoding"));
+    }
+
+    @Test
+    void legacyMutationUsesSeatStatusPathsAndNoBits() {
+        SeatMutation mutation = SeatMutation.forLayout(null).hold("A1", NOW).release("A2");
+        Document query = mutation.query("s1").getQueryObject();
+        Document update = mutation.update().getUpdateObject();
+
+        assertFalse(mutation.isCompact());
+        assertNull(update.get("$bit"));
+        assertTrue(findCondition(query, "seatEncoding") == null && conditionKeys(query).contains("seatEncoding"));
+        assertEquals(SeatState.HOLDING, ((Document) update.get("$set")).get("seatStatus.A1.status"));
+        assertEquals(SeatState.AVAILABLE, ((Document) update.get("$set")).get("seatStatus.A2.status"));
+        assertEquals(SeatState.HOLDING, findCondition(query, "seatStatus.A2.status"));
+    }
+
+    @Test
+    void updateAppliesBitsOnlyOnce() {
+        SeatMutation mutation = SeatMutation.forLayout(layout).hold("A1", NOW);
+        long first = (long) ((Document) ((Document) mutation.update().getUpdateObject().get("$bit")).get("seatBits.0")).get("xor");
+        long second = (long) ((Document) ((Document) mutation.update().getUpdateObject().get("$bit")).get("seatBits.0")).get("xor");
+        assertEquals(first, second);
+        assertEquals(1L, first);
+    }
+
+    private static void applyXor(Document update, List<Long> words) {
+        Document bits = (Document) update.get("$bit");
+        if (bits == null) {
+            return;
+        }
+        bits.forEach((path, operation) -> {
+            int word = Integer.parseInt(path.substring("seatBits.".length()));
+            words.set(word, words.get(word) ^ (long) ((Document) operation).get("xor"));
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Integer> bitsCondition(Document query, int word, String operator) {
+        Object condition = findCondition(query, "seatBits." + word);
+        if (!(condition instanceof Document document) || !document.containsKey(operator)) {
+            return null;
+        }
+        List<Integer> positions = new ArrayList<>((List<Integer>) document.get(operator));
+        positions.sort(null);
+        return positions;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Document> conditions(Document query) {
+        return (List<Document>) query.get("$and");
+    }
+
+    private static List<String> conditionKeys(Document query) {
+        return conditions(query).stream().flatMap(condition -> condition.keySet().stream()).toList();
+    }
+
+    private static Object findCondition(Document query, String key) {
+        for (Document condition : conditions(query)) {
+            if (condition.containsKey(key)) {
+                return condition.get(key);
+            }
+        }
+        return null;
+    }
+}
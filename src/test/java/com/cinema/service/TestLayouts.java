@@ -0,0 +1,38 @@
+package com.cinema.service;
+
+import com.cinema.model.Room;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Phòng chiếu mẫu cho các test: hàng A, B, C... mỗi hàng có số ghế cho trước, mã ghế dạng A1, A2...
+ */
+final class TestLayouts {
+
+    private TestLayouts() {
+    }
+
+    static SeatLayout grid(int rows, int seatsPerRow) {
+        int[] lengths = new int[rows];
+        Arrays.fill(lengths, seatsPerRow);
+        return rows(lengths);
+    }
+
+    static SeatLayout rows(int... seatsPerRow) {
+        List<Room.SeatRow> rows = new ArrayList<>();
+        for (int r = 0; r < seatsPerRow.length; r++) {
+            String rowId = String.valueOf((char) ('A' + r));
+            List<Room.SeatInfo> seats = new ArrayList<>();
+            for (int s = 1; s <= seatsPerRow[r]; s++) {
+                seats.add(new Room.SeatInfo(rowId + s, "standard"));
+            }
+            rows.add(new Room.SeatRow(rowId, seats));
+        }
+        Room room = new Room();
+        room.setId("room-1");
+        room.setSeatMap(new Room.SeatMap(rows, null));
+        return SeatLayout.from(room);
+    }
+}